@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.handler.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * <p>Disk hit of CommonDecodeHandler (decode from cache file), on a corpus of cached JPEGs, PNGs and GIFs.</p>
+ *
+ * <p>path: baseline (isGif(File) by RandomAccessFile, then BitmapUtils.decodeFromFile(String) opens the file for bounds
+ * and again for decoding), singleHandle (BitmapUtils.decodeFromFile(File) with GifHeaderFilter: one FileInputStream,
+ * header, bounds and decoding share it, rewinding the channel). GIF is handed to the gif decoder in both paths, which
+ * opens the file itself.</p>
+ *
+ * <p>BitmapFactory (and the gif library) are native, ImageIO stands in for them, so the decoding cost is the JVM's,
+ * the difference between paths (opening and sniffing) is what's measured.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskHitDecodeBenchmark {
+
+    private static final int FILE_NUM = 16;
+    private static final int IMAGE_SIZE = 320;
+    private static final int REQ_SIZE = 160;//thumbnail, inSampleSize 2
+    private static final byte[] GIF_HEADER = {0x47, 0x49, 0x46, 0x38};
+
+    @Param({"jpeg", "png", "gif"})
+    public String format;
+
+    @Param({"baseline", "singleHandle"})
+    public String path;
+
+    private File cacheDir;
+    private File[] files;
+    private int index = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        ImageIO.setUseCache(false);
+        cacheDir = File.createTempFile("disk-hit-decode", "");
+        if (!cacheDir.delete() || !cacheDir.mkdirs()) {
+            throw new IOException("[DiskHitDecodeBenchmark]can't create cache dir " + cacheDir);
+        }
+        Random random = new Random(FILE_NUM);
+        files = new File[FILE_NUM];
+        for (int i = 0 ; i < FILE_NUM ; i++) {
+            files[i] = new File(cacheDir, "cache_" + i);
+            if (!ImageIO.write(newImage(random), "jpeg".equals(format) ? "jpg" : format, files[i])) {
+                throw new IOException("[DiskHitDecodeBenchmark]no writer for " + format);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        for (File file : files) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        if (!cacheDir.delete()) {
+            cacheDir.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage diskHit() throws IOException {
+        File file = files[index++ % FILE_NUM];
+        return "baseline".equals(path) ? decodeBaseline(file) : decodeSingleHandle(file);
+    }
+
+    /**
+     * isGif(File) + BitmapUtils.decodeFromFile(String): three opens for bitmap, two for gif
+     */
+    private BufferedImage decodeBaseline(File file) throws IOException {
+        byte[] header = new byte[GIF_HEADER.length];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.readFully(header);
+        } finally {
+            randomAccessFile.close();
+        }
+        if (Arrays.equals(GIF_HEADER, header)) {
+            return decodeGif(file);
+        }
+        //BitmapFactory.decodeFile opens a FileInputStream each time
+        int[] bounds;
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            bounds = decodeBounds(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        inputStream = new FileInputStream(file);
+        try {
+            return decode(inputStream, inSampleSize(bounds));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * BitmapUtils.decodeFromFile(File, ..., HeaderFilter): one open for bitmap, two for gif
+     */
+    private BufferedImage decodeSingleHandle(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] header = new byte[GIF_HEADER.length];
+            int length = 0;
+            int readLength;
+            while (length < header.length && (readLength = inputStream.read(header, length, header.length - length)) >= 0) {
+                length += readLength;
+            }
+            if (length == header.length && Arrays.equals(GIF_HEADER, header)) {
+                //rejected by GifHeaderFilter, close before gif decoding
+                inputStream.close();
+                return decodeGif(file);
+            }
+            inputStream.getChannel().position(0);
+            int[] bounds = decodeBounds(inputStream);
+            inputStream.getChannel().position(0);
+            return decode(inputStream, inSampleSize(bounds));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * EnhancedGifDrawable.decode(File) opens the file itself
+     */
+    private BufferedImage decodeGif(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return decode(inputStream, 1);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * inJustDecodeBounds
+     */
+    private int[] decodeBounds(InputStream inputStream) throws IOException {
+        ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream);
+        ImageReader reader = getReader(imageInputStream);
+        try {
+            return new int[]{reader.getWidth(0), reader.getHeight(0)};
+        } finally {
+            reader.dispose();
+            imageInputStream.close();
+        }
+    }
+
+    private BufferedImage decode(InputStream inputStream, int inSampleSize) throws IOException {
+        ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream);
+        ImageReader reader = getReader(imageInputStream);
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(inSampleSize, inSampleSize, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+            imageInputStream.close();
+        }
+    }
+
+    private ImageReader getReader(ImageInputStream imageInputStream) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+        if (!readers.hasNext()) {
+            throw new IOException("[DiskHitDecodeBenchmark]illegal image data");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(imageInputStream, true, true);
+        return reader;
+    }
+
+    /**
+     * power of 2, like BitmapUtils.calculateInSampleSize
+     */
+    private int inSampleSize(int[] bounds){
+        int inSampleSize = 1;
+        while (bounds[0] / (inSampleSize * 2) >= REQ_SIZE && bounds[1] / (inSampleSize * 2) >= REQ_SIZE) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * gradient with noise, compressible like a photo thumbnail
+     */
+    private BufferedImage newImage(Random random){
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        int offset = random.nextInt(256);
+        for (int y = 0 ; y < IMAGE_SIZE ; y++) {
+            for (int x = 0 ; x < IMAGE_SIZE ; x++) {
+                int r = (x + offset) & 0xFF;
+                int g = (y + offset) & 0xFF;
+                int b = (x + y + random.nextInt(16)) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import android.graphics.drawable.Drawable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.common.statics.PublicConstants;
+import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.JvmLoader;
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.JvmView;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+
+/**
+ * <p>Latency of binding a cached image to view (every key hits the memory cache), through the real
+ * LoadNode/LoadStub/NodeControllerImpl/MemoryEngine of a TILoader started by {@link JvmLoader}. It's measured
+ * from load to the image drawable set to the view (by the main Looper thread).</p>
+ *
+ * <p>inline: load is called on the main thread, LoadStub finds the image in the memory cache when it's initialized,
+ * and binds it at once.</p>
+ *
+ * <p>queued: load is called on the benchmark thread, LoadStub can't check the memory cache (not the main Looper),
+ * it shows the loading drawable. The first frame (drawing the loading drawable on the main thread) launches the
+ * stub, NodeControllerImpl finds the image in the memory cache and executes the task by MemoryEngine, then the
+ * response is dispatched to the stub by the Handler of main Looper. It's the path of the memory cache hits which
+ * are missed by LoadStub (the image is cached after the load method called).</p>
+ *
+ * <p>Both of them post one message to the main Looper (load and draw / draw), with a flat drawable instead of
+ * Canvas (native in android-all).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindLatencyBenchmark {
+
+    private static final int KEY_NUM = 256;
+    private static final int ENTRY_SIZE = 64 * 1024;
+    private static final String NODE_ID = "bind_latency";
+    private static final long TIMEOUT = 10000L;
+
+    //the key depends on the view size in sizeMatchView mode, LoadStub doesn't check the memory cache
+    private final Params params = new Params.Builder().setReqSize(256, 256).build();
+
+    private Node node;
+    private BindView view;
+    private String[] urls;
+
+    @Setup
+    public void setup() throws IOException {
+        FakeImageResourceHandler handler = new FakeImageResourceHandler();
+        ComponentManager manager = JvmLoader.start(Files.createTempDirectory("bind_latency").toFile(), handler);
+        node = NodeFixtures.newLoadNode(manager, NODE_ID);
+        view = JvmView.newInstance(BindView.class);
+        view.bound = new Semaphore(0);
+
+        urls = new String[KEY_NUM];
+        for (int i = 0 ; i < KEY_NUM ; i++){
+            urls[i] = "http://benchmark.turquoise/image/bind/" + i;
+            manager.getMemoryCacheServer().put(TaskFixtures.newTask(NODE_ID, urls[i], params, LoadPriority.ON_SCREEN).getKey(),
+                    FakeImageResourceHandler.newResource(ENTRY_SIZE));
+        }
+    }
+
+    @Benchmark
+    public Drawable inline() throws InterruptedException {
+        final String url = urls[ThreadLocalRandom.current().nextInt(KEY_NUM)];
+        JvmLoader.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                node.load(url, params, view);
+                drawFrame();
+            }
+        });
+        return awaitBound();
+    }
+
+    @Benchmark
+    public Drawable queued() throws InterruptedException {
+        String url = urls[ThreadLocalRandom.current().nextInt(KEY_NUM)];
+        node.load(url, params, view);
+        JvmLoader.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                drawFrame();
+            }
+        });
+        return awaitBound();
+    }
+
+    /**
+     * ContainerDrawable launches the stub when it's drawn
+     */
+    private void drawFrame(){
+        Drawable drawable = view.getDrawable();
+        if (drawable != null){
+            drawable.draw(null);
+        }
+    }
+
+    private Drawable awaitBound() throws InterruptedException {
+        if (!view.bound.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS)){
+            throw new RuntimeException("[BindLatencyBenchmark]image not bound in " + TIMEOUT + "ms");
+        }
+        return view.getDrawable();
+    }
+
+    /**
+     * releases a permit when the image is set (stub succeed)
+     */
+    public static class BindView extends JvmView {
+
+        private Semaphore bound;
+
+        @Override
+        protected void onDrawableChanged(Drawable drawable) {
+            Object stub = getTag(PublicConstants.ViewTag.TILoaderStub);
+            if (stub instanceof Stub && ((Stub) stub).getState() == Stub.State.LOAD_SUCCEED){
+                bound.release();
+            }
+        }
+
+    }
+
+}
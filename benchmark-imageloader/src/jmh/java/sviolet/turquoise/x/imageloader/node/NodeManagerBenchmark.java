@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.queue.RequestQueue;
+import sviolet.turquoise.x.imageloader.server.Server;
+
+/**
+ * <p>NodeManager.pullTasks, invoked by EngineScheduler each time an engine is idle. Half of the nodes are idle
+ * (no task), like the pages in back stack.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeManagerBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int nodeNum;
+
+    private NodeManager nodeManager;
+
+    @Setup
+    public void setup(){
+        nodeManager = new NodeManager(null);
+        for (int i = 0 ; i < nodeNum ; i++){
+            Task task = i % 2 == 0 ? TaskFixtures.newTask("node" + i, "http://benchmark.turquoise/image/" + i, LoadPriority.ON_SCREEN) : null;
+            FakeNode.attach(nodeManager, new FakeNode("node" + i, new ConstantQueue(task)));
+        }
+    }
+
+    @Benchmark
+    public List<Task> pullTasks(){
+        return nodeManager.pullTasks(Server.Type.MEMORY_ENGINE);
+    }
+
+    /**
+     * always returns the same task (or null), to measure NodeManager without queue cost
+     */
+    private static class ConstantQueue implements RequestQueue {
+
+        private final Task task;
+
+        private ConstantQueue(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public Task put(Task task) {
+            return null;
+        }
+
+        @Override
+        public Task get() {
+            return task;
+        }
+
+        @Override
+        public void setSize(int size) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>Request queues of Node: put/get in steady state, and a burst which overflows the queue (scrolling fast),
+ * then drained by engine.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestQueueBenchmark {
+
+    private static final int TASK_NUM = 256;
+
+    @Param({"LOSSY", "INFINITE", "PRIORITY"})
+    public String queueType;
+
+    @Param({"10"})
+    public int queueSize;
+
+    private RequestQueue queue;
+    private Task[] tasks;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        switch (queueType) {
+            case "LOSSY":
+                queue = new LossyRequestQueue(queueSize, NullLogger.INSTANCE);
+                break;
+            case "INFINITE":
+                queue = new InfiniteRequestQueue();
+                break;
+            case "PRIORITY":
+                queue = new PriorityRequestQueue(queueSize, NullLogger.INSTANCE);
+                break;
+            default:
+                throw new IllegalArgumentException("[RequestQueueBenchmark]unknown queue type:" + queueType);
+        }
+        LoadPriority[] priorities = LoadPriority.values();
+        tasks = new Task[TASK_NUM];
+        for (int i = 0 ; i < TASK_NUM ; i++){
+            tasks[i] = TaskFixtures.newTask("node", "http://benchmark.turquoise/image/" + i, priorities[i % priorities.length]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear(){
+        queue.clear();
+    }
+
+    /**
+     * one task in, one task out
+     */
+    @Benchmark
+    public Task putGet(){
+        queue.put(nextTask());
+        return queue.get();
+    }
+
+    /**
+     * put 3 times of queue size (the earliest / lowest priority tasks are dropped), then drain
+     */
+    @Benchmark
+    public void burstDrain(Blackhole blackhole){
+        for (int i = 0 ; i < queueSize * 3 ; i++){
+            blackhole.consume(queue.put(nextTask()));
+        }
+        Task task;
+        while ((task = queue.get()) != null){
+            blackhole.consume(task);
+        }
+    }
+
+    private Task nextTask(){
+        index = (index + 1) & (TASK_NUM - 1);
+        return tasks[index];
+    }
+
+}
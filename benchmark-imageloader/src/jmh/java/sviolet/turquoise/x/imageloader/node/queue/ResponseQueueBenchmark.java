@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>InfiniteResponseQueue: engine threads put results, UI thread (node) takes them.</p>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseQueueBenchmark {
+
+    private static final int MAX_BACKLOG = 1024;
+
+    private InfiniteResponseQueue queue;
+    private Task task;
+
+    @Setup
+    public void setup(){
+        queue = new InfiniteResponseQueue();
+        task = TaskFixtures.newTask("node", "http://benchmark.turquoise/image/response", LoadPriority.ON_SCREEN);
+    }
+
+    /**
+     * engine threads, bounded backlog to avoid OOM when the consumer is slower
+     */
+    @Benchmark
+    @Group("handoff")
+    public void engine(){
+        if (queue.size() < MAX_BACKLOG) {
+            queue.put(task);
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    public Task node(){
+        return queue.get();
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+
+/**
+ * <p>EngineCallback handoff from the loading thread (NetworkLoadHandler) to the engine, blocking mode
+ * ({@link EngineCallback#getResult()}) and completion mode ({@link EngineCallback#setOnResultListener}).</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineCallbackBenchmark {
+
+    private static final long TIMEOUT = 10000L;
+
+    private final byte[] data = new byte[16];
+    private ExecutorService loader;
+
+    @Setup
+    public void setup(){
+        loader = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown(){
+        loader.shutdownNow();
+    }
+
+    /**
+     * same thread, no handoff
+     */
+    @Benchmark
+    public int direct(){
+        EngineCallback<byte[]> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+        callback.setResultSucceed(data);
+        return callback.getResult();
+    }
+
+    /**
+     * engine thread blocks in getResult until the loader thread sets result
+     */
+    @Benchmark
+    public int blocking(){
+        final EngineCallback<byte[]> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.setResultSucceed(data);
+            }
+        });
+        return callback.getResult();
+    }
+
+    /**
+     * listener invoked in the loader thread
+     */
+    @Benchmark
+    public int completion() throws InterruptedException {
+        final EngineCallback<byte[]> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int[] result = new int[1];
+        callback.setOnResultListener(new EngineCallback.OnResultListener() {
+            @Override
+            public void onResult(int r) {
+                result[0] = r;
+                latch.countDown();
+            }
+        });
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.setResultSucceed(data);
+            }
+        });
+        latch.await();
+        return result[0];
+    }
+
+}
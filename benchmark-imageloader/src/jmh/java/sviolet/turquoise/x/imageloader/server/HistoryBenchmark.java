@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Download history of NetEngine: put after each succeed download, contains before each download.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private static final int KEY_NUM = 4096;
+
+    @Param({"256", "4096"})
+    public int capacity;
+
+    private History history;
+    private String[] keys;
+
+    @Setup
+    public void setup(){
+        history = new History(capacity, TimeUnit.MINUTES.toMillis(10));
+        keys = new String[KEY_NUM];
+        for (int i = 0 ; i < KEY_NUM ; i++){
+            keys[i] = "http://benchmark.turquoise/image/" + i;
+            history.put(keys[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void put(){
+        history.put(randomKey());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean contains(){
+        return history.contains(randomKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean containsContended(){
+        return history.contains(randomKey());
+    }
+
+    private String randomKey(){
+        return keys[ThreadLocalRandom.current().nextInt(KEY_NUM)];
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server.module;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import sviolet.thistle.model.cache.DiskLruCache;
+import sviolet.turquoise.x.imageloader.benchmark.FailingExceptionHandler;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>Concurrent read/write of disk cache ({@link DiskCacheModule}), like DiskEngine (disk hit) and NetEngine
+ * (downloaded) threads: read the entry file, or edit-write-commit an entry (1/4 of operations).</p>
+ *
+ * <p>shards: 1 (one DiskLruCache and journal), 4 (ServerSettings->setDiskCacheShards). fs: tmpfs (/dev/shm, the
+ * journal and file cost are memory only, contention is what's left) and disk (java.io.tmpdir), override the
+ * directories by -DdiskCacheBenchmark.tmpfs=... / -DdiskCacheBenchmark.disk=... . persistent: the journal is flushed
+ * by batch (ServerSettings->setDiskCachePersistent), or on every write.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskCacheShardBenchmark {
+
+    private static final int KEY_NUM = 256;
+    private static final int ENTRY_SIZE = 16 * 1024;
+    private static final int WRITE_PERCENT = 25;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    @Param({"tmpfs", "disk"})
+    public String fs;
+
+    @Param({"false", "true"})
+    public boolean persistent;
+
+    private DiskCacheModule module;
+    private File path;
+    private Task[] tasks;
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        File root = "tmpfs".equals(fs) ?
+                new File(System.getProperty("diskCacheBenchmark.tmpfs", "/dev/shm")) :
+                new File(System.getProperty("diskCacheBenchmark.disk", System.getProperty("java.io.tmpdir")));
+        if (!root.isDirectory()) {
+            throw new IOException("[DiskCacheShardBenchmark]directory of " + fs + " not found:" + root);
+        }
+        path = new File(root, "disk-cache-shard-benchmark-" + System.nanoTime());
+        module = new DiskCacheModule();
+        //twice of the entries, no eviction
+        module.init(path, KEY_NUM * ENTRY_SIZE * 2, shards, persistent, FailingExceptionHandler.INSTANCE, NullLogger.INSTANCE);
+        data = new byte[ENTRY_SIZE];
+        tasks = new Task[KEY_NUM];
+        for (int i = 0 ; i < KEY_NUM ; i++) {
+            tasks[i] = TaskFixtures.newTask("disk", "http://127.0.0.1/disk/" + i, LoadPriority.ON_SCREEN);
+            write(tasks[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        DiskLruCache.deleteContents(path);
+        if (!path.delete()) {
+            path.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int readWrite() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Task task = tasks[random.nextInt(KEY_NUM)];
+        if (random.nextInt(100) < WRITE_PERCENT) {
+            return write(task) ? ENTRY_SIZE : 0;
+        }
+        return read(task);
+    }
+
+    /**
+     * like DiskCacheServer.read
+     */
+    private int read(Task task) throws IOException {
+        File file = module.get(task);
+        try {
+            if (file == null) {
+                return 0;
+            }
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[DiskCacheModule.BUFFER_SIZE];
+                int length = 0;
+                int readLength;
+                while ((readLength = inputStream.read(buffer)) >= 0) {
+                    length += readLength;
+                }
+                return length;
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            module.release(task, false);
+        }
+    }
+
+    /**
+     * like DiskCacheServer.write
+     * @return false if the entry is being edited by another thread
+     */
+    private boolean write(Task task) throws IOException {
+        DiskLruCache.Editor editor = module.edit(task);
+        if (editor == null) {
+            module.release(task, false);
+            return false;
+        }
+        try {
+            OutputStream outputStream = editor.newOutputStream(DiskCacheModule.INDEX_DATA);
+            try {
+                outputStream.write(data);
+                outputStream.flush();
+            } finally {
+                outputStream.close();
+            }
+            editor.commit();
+            return true;
+        } finally {
+            module.release(task, true);
+        }
+    }
+
+}
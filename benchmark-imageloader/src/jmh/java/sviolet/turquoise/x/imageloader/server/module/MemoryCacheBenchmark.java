@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server.module;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+
+/**
+ * <p>Memory cache of TILoader with fake Bitmaps: get (loading on UI thread and engines), put when missed
+ * (engines), the cache holds half of the keys, so it keeps evicting.</p>
+ *
+ * <p>module: segmented ({@link SegmentedImageResourceCacheModule}, opt-in), lru ({@link ImageResourceCacheModule},
+ * default, one monitor).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryCacheBenchmark {
+
+    private static final int KEY_NUM = 2048;
+    private static final int ENTRY_SIZE = 64 * 1024;
+
+    @Param({"segmented", "lru"})
+    public String module;
+
+    private ImageResourceCache cache;
+    private String[] keys;
+
+    @Setup
+    public void setup(){
+        FakeImageResourceHandler handler = new FakeImageResourceHandler();
+        ActiveResourceModule activeResources = new ActiveResourceModule(handler, null, NullLogger.INSTANCE);
+        if ("lru".equals(module)) {
+            cache = new ImageResourceCacheModule(KEY_NUM / 2 * ENTRY_SIZE, handler, activeResources, NullLogger.INSTANCE);
+        } else {
+            cache = new SegmentedImageResourceCacheModule(KEY_NUM / 2 * ENTRY_SIZE, handler, activeResources, NullLogger.INSTANCE);
+        }
+        keys = new String[KEY_NUM];
+        for (int i = 0 ; i < KEY_NUM ; i++){
+            keys[i] = "benchmark_memory_cache_" + i;
+            cache.put(keys[i], FakeImageResourceHandler.newResource(ENTRY_SIZE));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ImageResource getOrPut(){
+        return getOrPut0();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ImageResource getOrPutContended(){
+        return getOrPut0();
+    }
+
+    private ImageResource getOrPut0(){
+        String key = keys[ThreadLocalRandom.current().nextInt(KEY_NUM)];
+        ImageResource resource = cache.get(key);
+        if (resource == null){
+            resource = FakeImageResourceHandler.newResource(ENTRY_SIZE);
+            cache.put(key, resource);
+        }
+        return resource;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.stub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.ResourceKeyScheme;
+
+/**
+ * <p>AbsStub.getResourceKey of new stubs (each View binding creates a stub). The urls are more than the cache
+ * of {@link ResourceKeys}, so {@link #miss()} measures the digest, {@link #hit()} measures the cached path.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceKeyBenchmark {
+
+    private static final int URL_NUM = 4096;
+    private static final int HOT_URL_NUM = 64;
+
+    @Param({"SHA1", "MURMUR3_128"})
+    public ResourceKeyScheme scheme;
+
+    private final Params params = new Params.Builder().build();
+    private String[] urls;
+    private int index = 0;
+
+    @Setup
+    public void setup(){
+        ResourceKeys.setScheme(scheme);
+        urls = new String[URL_NUM];
+        for (int i = 0 ; i < URL_NUM ; i++){
+            urls[i] = "http://benchmark.turquoise/image/" + i + "?width=720&height=1280&quality=80";
+        }
+    }
+
+    @Benchmark
+    public String miss(){
+        index = (index + 1) & (URL_NUM - 1);
+        return new KeyStub(urls[index], params).getResourceKey();
+    }
+
+    @Benchmark
+    public String hit(){
+        index = (index + 1) & (HOT_URL_NUM - 1);
+        return new KeyStub(urls[index], params).getResourceKey();
+    }
+
+    private static class KeyStub extends AbsStub {
+
+        private KeyStub(String url, Params params) {
+            super(url, params);
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LOAD;
+        }
+
+    }
+
+}
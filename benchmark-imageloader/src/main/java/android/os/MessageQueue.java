@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.os;
+
+/**
+ * <p>JVM replacement of android.os.MessageQueue (native in android-all), messages are kept in a list ordered by
+ * {@link Message#when}, the looper thread waits on the monitor of queue. No sync barrier, no file descriptor events.</p>
+ */
+public final class MessageQueue {
+
+    private final boolean mQuitAllowed;
+    private Message mMessages;
+    private boolean mQuitting;
+
+    MessageQueue(boolean quitAllowed) {
+        mQuitAllowed = quitAllowed;
+    }
+
+    public synchronized boolean isIdle() {
+        return mMessages == null || SystemClock.uptimeMillis() < mMessages.when;
+    }
+
+    public void addIdleHandler(IdleHandler handler) {
+        throw new UnsupportedOperationException("IdleHandler is not supported on JVM");
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+    }
+
+    /**
+     * @return next message (blocking), null if quit
+     */
+    Message next() {
+        synchronized (this) {
+            while (true) {
+                if (mQuitting) {
+                    return null;
+                }
+                long now = SystemClock.uptimeMillis();
+                Message msg = mMessages;
+                if (msg != null && msg.when <= now) {
+                    mMessages = msg.next;
+                    msg.next = null;
+                    msg.markInUse();
+                    return msg;
+                }
+                try {
+                    if (msg == null) {
+                        wait();
+                    } else {
+                        wait(Math.max(1L, msg.when - now));
+                    }
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    void quit(boolean safe) {
+        if (!mQuitAllowed) {
+            throw new IllegalStateException("Main thread not allowed to quit.");
+        }
+        synchronized (this) {
+            mQuitting = true;
+            mMessages = null;
+            notifyAll();
+        }
+    }
+
+    boolean enqueueMessage(Message msg, long when) {
+        if (msg.target == null) {
+            throw new IllegalArgumentException("Message must have a target.");
+        }
+        synchronized (this) {
+            if (msg.isInUse()) {
+                throw new IllegalStateException(msg + " This message is already in use.");
+            }
+            if (mQuitting) {
+                msg.recycle();
+                return false;
+            }
+            msg.markInUse();
+            msg.when = when;
+            Message p = mMessages;
+            if (p == null || when < p.when) {
+                msg.next = p;
+                mMessages = msg;
+            } else {
+                Message prev;
+                do {
+                    prev = p;
+                    p = p.next;
+                } while (p != null && p.when <= when);
+                msg.next = p;
+                prev.next = msg;
+            }
+            notifyAll();
+        }
+        return true;
+    }
+
+    synchronized boolean hasMessages(Handler h, int what, Object object) {
+        for (Message p = mMessages ; p != null ; p = p.next) {
+            if (p.target == h && p.what == what && (object == null || p.obj == object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean hasMessages(Handler h, Runnable r, Object object) {
+        for (Message p = mMessages ; p != null ; p = p.next) {
+            if (p.target == h && p.callback == r && (object == null || p.obj == object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean hasMessages(Handler h) {
+        for (Message p = mMessages ; p != null ; p = p.next) {
+            if (p.target == h) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void removeMessages(Handler h, int what, Object object) {
+        removeMessages(h, what, null, object, true);
+    }
+
+    void removeMessages(Handler h, Runnable r, Object object) {
+        if (r != null) {
+            removeMessages(h, 0, r, object, false);
+        }
+    }
+
+    void removeCallbacksAndMessages(Handler h, Object object) {
+        removeMessages(h, 0, null, object, false);
+    }
+
+    private synchronized void removeMessages(Handler h, int what, Runnable r, Object object, boolean matchWhat) {
+        Message prev = null;
+        Message p = mMessages;
+        while (p != null) {
+            Message n = p.next;
+            if (p.target == h && (!matchWhat || p.what == what) && (r == null || p.callback == r) && (object == null || p.obj == object)) {
+                if (prev == null) {
+                    mMessages = n;
+                } else {
+                    prev.next = n;
+                }
+                p.recycleUnchecked();
+            } else {
+                prev = p;
+            }
+            p = n;
+        }
+    }
+
+    void dump(android.util.Printer pw, String prefix, Handler h) {
+    }
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.os;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>JVM replacement of android.os.SystemProperties (native in android-all), the properties are kept in memory,
+ * the sdk version is the version of android-all (8.1.0, 27).</p>
+ */
+public class SystemProperties {
+
+    public static final int PROP_NAME_MAX = 31;
+    public static final int PROP_VALUE_MAX = 91;
+
+    private static final Map<String, String> sProperties = new HashMap<String, String>();
+    private static final ArrayList<Runnable> sChangeCallbacks = new ArrayList<Runnable>();
+
+    static {
+        sProperties.put("ro.build.version.sdk", "27");
+        sProperties.put("ro.build.version.release", "8.1.0");
+        sProperties.put("ro.build.version.codename", "REL");
+        sProperties.put("ro.build.version.all_codenames", "REL");
+        sProperties.put("ro.build.type", "user");
+        sProperties.put("dalvik.vm.heapgrowthlimit", "256m");
+        sProperties.put("ro.product.cpu.abilist", "arm64-v8a,armeabi-v7a,armeabi");
+        sProperties.put("ro.product.cpu.abilist32", "armeabi-v7a,armeabi");
+        sProperties.put("ro.product.cpu.abilist64", "arm64-v8a");
+    }
+
+    public static String get(String key) {
+        return get(key, "");
+    }
+
+    public static synchronized String get(String key, String def) {
+        String value = sProperties.get(key);
+        return value != null ? value : def;
+    }
+
+    public static int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static long getLong(String key, long def) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        String value = get(key, "");
+        if ("1".equals(value) || "y".equals(value) || "yes".equals(value) || "on".equals(value) || "true".equals(value)) {
+            return true;
+        }
+        if ("0".equals(value) || "n".equals(value) || "no".equals(value) || "off".equals(value) || "false".equals(value)) {
+            return false;
+        }
+        return def;
+    }
+
+    public static synchronized void set(String key, String val) {
+        sProperties.put(key, val);
+    }
+
+    public static void addChangeCallback(Runnable callback) {
+        synchronized (sChangeCallbacks) {
+            sChangeCallbacks.add(callback);
+        }
+    }
+
+    public static void reportSyspropChanged() {
+    }
+
+}
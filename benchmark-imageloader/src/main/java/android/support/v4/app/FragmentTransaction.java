@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.support.v4.app;
+
+/**
+ * <p>Stub of support library for JVM benchmark, compile only.</p>
+ */
+public abstract class FragmentTransaction {
+
+    public abstract FragmentTransaction add(Fragment fragment, String tag);
+
+    public abstract FragmentTransaction remove(Fragment fragment);
+
+    public abstract int commit();
+
+    public abstract int commitAllowingStateLoss();
+
+}
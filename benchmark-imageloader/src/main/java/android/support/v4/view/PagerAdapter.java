@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.support.v4.view;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * <p>Stub of support library for JVM benchmark, compile only.</p>
+ */
+public abstract class PagerAdapter {
+
+    public static final int POSITION_UNCHANGED = -1;
+    public static final int POSITION_NONE = -2;
+
+    public abstract int getCount();
+
+    public Object instantiateItem(ViewGroup container, int position) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public abstract boolean isViewFromObject(View view, Object object);
+
+    public int getItemPosition(Object object) {
+        return POSITION_UNCHANGED;
+    }
+
+    public void notifyDataSetChanged() {
+        throw new RuntimeException("Stub!");
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.support.v7.widget;
+
+/**
+ * <p>Stub of support library for JVM benchmark, compile only.</p>
+ */
+public class LinearLayoutManager extends RecyclerView.LayoutManager {
+
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+
+    public int getOrientation() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int findFirstVisibleItemPosition() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int findFirstCompletelyVisibleItemPosition() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int findLastCompletelyVisibleItemPosition() {
+        throw new RuntimeException("Stub!");
+    }
+
+}
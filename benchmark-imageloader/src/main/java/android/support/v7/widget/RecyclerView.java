@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package android.support.v7.widget;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * <p>Stub of support library for JVM benchmark, compile only.</p>
+ */
+public class RecyclerView extends ViewGroup {
+
+    public static final int SCROLL_STATE_IDLE = 0;
+    public static final int SCROLL_STATE_DRAGGING = 1;
+    public static final int SCROLL_STATE_SETTLING = 2;
+
+    public RecyclerView(Context context) {
+        super(context);
+        throw new RuntimeException("Stub!");
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public LayoutManager getLayoutManager() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public abstract static class LayoutManager {
+
+        public int getChildCount() {
+            throw new RuntimeException("Stub!");
+        }
+
+        public View getChildAt(int index) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public int getItemCount() {
+            throw new RuntimeException("Stub!");
+        }
+
+    }
+
+    public abstract static class OnScrollListener {
+
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        }
+
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        }
+
+    }
+
+    public abstract static class ViewHolder {
+
+        public final View itemView;
+
+        public ViewHolder(View itemView) {
+            this.itemView = itemView;
+        }
+
+        public final int getLayoutPosition() {
+            throw new RuntimeException("Stub!");
+        }
+
+    }
+
+}
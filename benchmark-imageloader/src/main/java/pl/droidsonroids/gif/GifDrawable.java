@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package pl.droidsonroids.gif;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * <p>Stub of android-gif-drawable for JVM benchmark, compile only, GIF can not be decoded in JVM.</p>
+ */
+public class GifDrawable extends Drawable {
+
+    GifDrawable(InputSource inputSource, GifDrawable oldDrawableToReuse, ScheduledThreadPoolExecutor executor, boolean isRenderingTriggeredOnDraw, GifOptions options) throws IOException {
+        throw new RuntimeException("Stub!");
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        throw new RuntimeException("Stub!");
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        throw new RuntimeException("Stub!");
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        throw new RuntimeException("Stub!");
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSPARENT;
+    }
+
+    public void recycle() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public boolean isRecycled() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public long getInputSourceByteCount() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public long getAllocationByteCount() {
+        throw new RuntimeException("Stub!");
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package pl.droidsonroids.gif;
+
+import java.io.File;
+
+/**
+ * <p>Stub of android-gif-drawable for JVM benchmark, compile only, GIF can not be decoded in JVM.</p>
+ */
+public abstract class InputSource {
+
+    public static class FileSource extends InputSource {
+
+        public FileSource(File file) {
+            throw new RuntimeException("Stub!");
+        }
+
+    }
+
+    public static class ByteArraySource extends InputSource {
+
+        public ByteArraySource(byte[] bytes) {
+            throw new RuntimeException("Stub!");
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.FlatDrawableFactory;
+import sviolet.turquoise.x.imageloader.benchmark.JvmContext;
+import sviolet.turquoise.x.imageloader.benchmark.JvmStubFactory;
+import sviolet.turquoise.x.imageloader.entity.ServerSettings;
+
+/**
+ * <p>Initialize the real TILoader (ComponentManager, servers, engines) on JVM, for test/benchmark:</p>
+ *
+ * <p>1.A "main" thread runs the main Looper (android.os.Looper/MessageQueue replaced in src/main/java).</p>
+ * <p>2.Contexts are {@link JvmContext}, the disk cache is in the given directory.</p>
+ * <p>3.Images are {@link FakeImageResourceHandler.FakeBitmap}, drawables are flat, stubs load into JvmView.</p>
+ *
+ * <p>ComponentManager is a singleton, TILoader can be started once in a JVM.</p>
+ */
+public class JvmLoader {
+
+    private static Handler mainHandler;
+
+    /**
+     * @param cacheDir cache directory of {@link JvmContext}
+     * @param imageResourceHandler handler of fake images
+     */
+    public static synchronized ComponentManager start(File cacheDir, final FakeImageResourceHandler imageResourceHandler){
+        if (mainHandler != null){
+            throw new RuntimeException("[JvmLoader]TILoader has been started in this JVM");
+        }
+        startMainLooper();
+
+        final ComponentManager manager = ComponentManager.getInstance();
+        JvmContext context = new JvmContext(cacheDir);
+        manager.setApplicationContextImage(context);
+        manager.setContextImage(context);
+
+        //setting in main thread, like Application#onCreate (handlers of settings are created with Looper of current thread)
+        final CountDownLatch initialized = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FlatDrawableFactory drawableFactory = new FlatDrawableFactory();
+                    ServerSettings settings = new ServerSettings.Builder()
+                            .setLogEnabled(false)
+                            .setCustomStubFactory(new JvmStubFactory())
+                            .setLoadingDrawableFactory(drawableFactory)
+                            .setFailedDrawableFactory(drawableFactory)
+                            .build();
+                    //no setter of them
+                    setValue(settings, "imageResourceHandler", imageResourceHandler);
+                    setValue(settings, "backgroundDrawableFactory", drawableFactory);
+                    if (!TILoader.setting(settings)){
+                        throw new RuntimeException("[JvmLoader]TILoader has been initialized");
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                } finally {
+                    initialized.countDown();
+                }
+            }
+        });
+        try {
+            initialized.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("[JvmLoader]interrupted", e);
+        }
+        if (error.get() != null){
+            throw new RuntimeException("[JvmLoader]failed to start TILoader", error.get());
+        }
+        return manager;
+    }
+
+    /**
+     * post to the main Looper, like View#post
+     */
+    public static void runOnMainThread(Runnable runnable){
+        if (!mainHandler.post(runnable)){
+            throw new RuntimeException("[JvmLoader]main Looper quit");
+        }
+    }
+
+    private static void startMainLooper(){
+        final CountDownLatch prepared = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Looper.prepareMainLooper();
+                prepared.countDown();
+                Looper.loop();
+            }
+        }, "main");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            prepared.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("[JvmLoader]interrupted", e);
+        }
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    private static void setValue(ServerSettings settings, String name, Object value){
+        try {
+            Field valuesField = ServerSettings.class.getDeclaredField("values");
+            valuesField.setAccessible(true);
+            Object values = valuesField.get(settings);
+            Field field = values.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(values, value);
+        } catch (Exception e) {
+            throw new RuntimeException("[JvmLoader]failed to set " + name + " of ServerSettings", e);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.content.Context;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.handler.ExceptionHandler;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>ExceptionHandler throws every exception, a failed disk/network/decode operation must not be measured as a
+ * fast path in JVM test/benchmark.</p>
+ */
+public class FailingExceptionHandler implements ExceptionHandler {
+
+    public static final FailingExceptionHandler INSTANCE = new FailingExceptionHandler();
+
+    @Override
+    public void onDiskCacheOpenException(Context applicationContext, Context context, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]disk cache open", throwable);
+    }
+
+    @Override
+    public void onDiskCacheReadException(Context applicationContext, Context context, Task.Info taskInfo, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]disk cache read, task:" + taskInfo, throwable);
+    }
+
+    @Override
+    public void onDiskCacheWriteException(Context applicationContext, Context context, Task.Info taskInfo, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]disk cache write, task:" + taskInfo, throwable);
+    }
+
+    @Override
+    public void onDiskCacheCommonException(Context applicationContext, Context context, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]disk cache", throwable);
+    }
+
+    @Override
+    public void onNetworkLoadException(Context applicationContext, Context context, Task.Info taskInfo, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]network load, task:" + taskInfo, throwable);
+    }
+
+    @Override
+    public void onImageDataLengthOutOfLimitException(Context applicationContext, Context context, Task.Info taskInfo, long dataLength, long lengthLimit, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]image data length " + dataLength + " out of limit " + lengthLimit + ", task:" + taskInfo);
+    }
+
+    @Override
+    public void onMemoryBufferLengthOutOfLimitException(Context applicationContext, Context context, Task.Info taskInfo, long dataLength, long lengthLimit, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]memory buffer length " + dataLength + " out of limit " + lengthLimit + ", task:" + taskInfo);
+    }
+
+    @Override
+    public void handleLowNetworkSpeedEvent(Context applicationContext, Context context, Task.Info taskInfo, long elapseTime, int speed, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]low network speed " + speed + ", task:" + taskInfo);
+    }
+
+    @Override
+    public void onDecodeException(Context applicationContext, Context context, Task.Info taskInfo, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]decode, task:" + taskInfo, throwable);
+    }
+
+    @Override
+    public void onMemoryCacheCommonException(Context applicationContext, Context context, Throwable throwable, TLogger logger) {
+        throw new RuntimeException("[FailingExceptionHandler]memory cache", throwable);
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>DecodeHandler without BitmapFactory (native in android-all): it reads the data like a decoder, and the decoding
+ * cost is simulated by sleeping in proportion to the data length. The result is a
+ * {@link FakeImageResourceHandler#newResource(int)} of the data length.</p>
+ *
+ * <p>Deriving (downscale from a decoded image) is supported if {@link #setDeriveCost(long)} is set, the result has the
+ * byte count of the required size (ARGB_8888).</p>
+ *
+ * <p>Streaming decode is supported ({@link #onDecode(Context, Context, Task.Info, InputStream, TLogger)}), the cost
+ * is paid for each chunk as it arrives, like a decoder pulling data from the stream.</p>
+ */
+public class FakeDecodeHandler extends DecodeHandler {
+
+    private final long nanosPerKb;
+    private long deriveNanos = -1;
+
+    private final AtomicInteger bytesDecodeCount = new AtomicInteger(0);
+    private final AtomicInteger fileDecodeCount = new AtomicInteger(0);
+    private final AtomicInteger streamDecodeCount = new AtomicInteger(0);
+    private final AtomicInteger deriveCount = new AtomicInteger(0);
+
+    /**
+     * @param nanosPerKb simulated decoding cost of 1 KB data
+     */
+    public FakeDecodeHandler(long nanosPerKb) {
+        this.nanosPerKb = nanosPerKb;
+    }
+
+    /**
+     * @param deriveNanos simulated cost of deriving, deriving is not supported if negative (default)
+     */
+    public FakeDecodeHandler setDeriveCost(long deriveNanos) {
+        this.deriveNanos = deriveNanos;
+        return this;
+    }
+
+    @Override
+    public ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, byte[] data, TLogger logger) {
+        bytesDecodeCount.incrementAndGet();
+        cost(data.length);
+        return FakeImageResourceHandler.newResource(data.length);
+    }
+
+    @Override
+    public ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, File file, TLogger logger) {
+        fileDecodeCount.incrementAndGet();
+        try {
+            return FakeImageResourceHandler.newResource(read(new FileInputStream(file)));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, InputStream inputStream, TLogger logger) throws Exception {
+        streamDecodeCount.incrementAndGet();
+        return FakeImageResourceHandler.newResource(read(inputStream));
+    }
+
+    @Override
+    public ImageResource onDerive(Context applicationContext, Context context, Task.Info taskInfo, Task.Info sourceInfo, ImageResource source, TLogger logger) {
+        if (deriveNanos < 0) {
+            return null;
+        }
+        deriveCount.incrementAndGet();
+        sleep(deriveNanos);
+        return FakeImageResourceHandler.newResource(taskInfo.getParams().getReqWidth() * taskInfo.getParams().getReqHeight() * 4);
+    }
+
+    private int read(InputStream inputStream) throws IOException {
+        int length = 0;
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0) {
+                length += readLength;
+                cost(readLength);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return length;
+    }
+
+    private void cost(int length){
+        sleep(length * nanosPerKb / 1024);
+    }
+
+    private void sleep(long nanos){
+        try {
+            Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getBytesDecodeCount() {
+        return bytesDecodeCount.get();
+    }
+
+    public int getFileDecodeCount() {
+        return fileDecodeCount.get();
+    }
+
+    public int getStreamDecodeCount() {
+        return streamDecodeCount.get();
+    }
+
+    public int getDeriveCount() {
+        return deriveCount.get();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
+
+/**
+ * <p>ImageResourceHandler without Bitmap, the resource of {@link #newResource(int)} is a {@link FakeBitmap}
+ * which only has a byte count, it's drawn as a {@link FlatDrawable}.</p>
+ */
+public class FakeImageResourceHandler implements ImageResourceHandler {
+
+    private final AtomicInteger recycledCount = new AtomicInteger(0);
+
+    /**
+     * @param byteCount byte count of the fake bitmap
+     */
+    public static ImageResource newResource(int byteCount){
+        return new ImageResource(ImageResource.Type.BITMAP, new FakeBitmap(byteCount));
+    }
+
+    @Override
+    public boolean isValid(ImageResource resource) {
+        return resource != null && resource.getResource() instanceof FakeBitmap && !((FakeBitmap) resource.getResource()).recycled;
+    }
+
+    @Override
+    public boolean isEqual(ImageResource src, ImageResource dst) {
+        return src == dst || (src != null && dst != null && src.getResource() == dst.getResource());
+    }
+
+    @Override
+    public boolean recycle(ImageResource resource) {
+        if (!isValid(resource)){
+            return false;
+        }
+        ((FakeBitmap) resource.getResource()).recycled = true;
+        recycledCount.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Drawable toDrawable(Context applicationContext, ImageResource resource, boolean skipDrawingException) {
+        return isValid(resource) ? new FlatDrawable() : null;
+    }
+
+    @Override
+    public int byteCountOf(ImageResource resource) {
+        if (resource == null || !(resource.getResource() instanceof FakeBitmap)){
+            return 0;
+        }
+        return ((FakeBitmap) resource.getResource()).byteCount;
+    }
+
+    public int getRecycledCount(){
+        return recycledCount.get();
+    }
+
+    public static class FakeBitmap {
+
+        private final int byteCount;
+        private volatile boolean recycled = false;
+
+        private FakeBitmap(int byteCount) {
+            this.byteCount = byteCount;
+        }
+
+        public boolean isRecycled() {
+            return recycled;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.drawable.BackgroundDrawableFactory;
+import sviolet.turquoise.x.imageloader.drawable.FailedDrawableFactory;
+import sviolet.turquoise.x.imageloader.drawable.LoadingDrawableFactory;
+import sviolet.turquoise.x.imageloader.entity.LoadProgress;
+import sviolet.turquoise.x.imageloader.entity.Params;
+
+/**
+ * <p>Loading/failed/background drawables of {@link FlatDrawable}, the common factories draw by Paint
+ * (native in android-all).</p>
+ */
+public class FlatDrawableFactory implements LoadingDrawableFactory, FailedDrawableFactory, BackgroundDrawableFactory {
+
+    @Override
+    public Drawable create(Context applicationContext, Context context, Params params, LoadProgress.Info progressInfo, TLogger logger) {
+        return new FlatDrawable();
+    }
+
+    @Override
+    public Drawable create(Context applicationContext, Context context, Params params, TLogger logger) {
+        return new FlatDrawable();
+    }
+
+    @Override
+    public void setBackgroundImageResId(int backgroundImageResId) {
+    }
+
+    @Override
+    public void setBackgroundColor(int backgroundColor) {
+    }
+
+    @Override
+    public void onDestroy() {
+    }
+
+}
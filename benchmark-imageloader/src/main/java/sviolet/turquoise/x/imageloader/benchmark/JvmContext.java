@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Handler;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+
+/**
+ * <p>Application context on JVM: cache directories in a temp directory, no resources, component callbacks ignored.
+ * The only system service is ActivityManager (memory class, from the replaced android.os.SystemProperties).</p>
+ */
+public class JvmContext extends ContextWrapper {
+
+    private final File cacheDir;
+
+    public JvmContext(File cacheDir) {
+        super(null);
+        this.cacheDir = cacheDir;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    @Override
+    public File getExternalCacheDir() {
+        return null;
+    }
+
+    @Override
+    public String getPackageName() {
+        return "sviolet.turquoise.x.imageloader.benchmark";
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        if (!ACTIVITY_SERVICE.equals(name)) {
+            return null;
+        }
+        try {
+            //hidden constructor
+            Constructor<ActivityManager> constructor = ActivityManager.class.getDeclaredConstructor(Context.class, Handler.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(this, null);
+        } catch (Exception e) {
+            throw new RuntimeException("[JvmContext]failed to create ActivityManager", e);
+        }
+    }
+
+    @Override
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+    }
+
+    @Override
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.stub.LoadStub;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+import sviolet.turquoise.x.imageloader.stub.StubFactory;
+
+/**
+ * <p>Creates LoadStub of {@link JvmView}, for ServerSettings.Builder#setCustomStubFactory.</p>
+ */
+public class JvmStubFactory extends StubFactory {
+
+    @Override
+    public Stub newLoadStub(String url, Params params, View view) {
+        if (view instanceof JvmView){
+            return new JvmViewLoadStub(url, params, (JvmView) view);
+        }
+        return null;
+    }
+
+    private static class JvmViewLoadStub extends LoadStub<JvmView> {
+
+        private JvmViewLoadStub(String url, Params params, JvmView view) {
+            super(url, params, view);
+        }
+
+        @Override
+        protected void setDrawableToView(Drawable drawable, JvmView view) {
+            view.setDrawable(drawable);
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import sun.misc.Unsafe;
+
+/**
+ * <p>View on JVM, only keeps tags and the drawable set by {@link JvmStubFactory}. The constructors of View reach
+ * native methods of android-all (RenderNode, Resources), so the instance is allocated without constructor,
+ * see {@link #newInstance(Class)}.</p>
+ */
+public class JvmView extends View {
+
+    private Map<Integer, Object> tags;
+    private volatile Drawable drawable;
+
+    /**
+     * never called, see {@link #newInstance(Class)}
+     */
+    protected JvmView() {
+        super(null);
+    }
+
+    /**
+     * @param type JvmView or its subclass, the fields are not initialized (null/0/false)
+     */
+    public static <T extends JvmView> T newInstance(Class<T> type){
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return type.cast(((Unsafe) field.get(null)).allocateInstance(type));
+        } catch (Exception e) {
+            throw new RuntimeException("[JvmView]failed to allocate " + type.getName(), e);
+        }
+    }
+
+    @Override
+    public synchronized Object getTag(int key) {
+        return tags != null ? tags.get(key) : null;
+    }
+
+    @Override
+    public synchronized void setTag(int key, Object tag) {
+        if (tags == null){
+            tags = new HashMap<>();
+        }
+        tags.put(key, tag);
+    }
+
+    public void setDrawable(Drawable drawable){
+        this.drawable = drawable;
+        onDrawableChanged(drawable);
+    }
+
+    public Drawable getDrawable(){
+        return drawable;
+    }
+
+    /**
+     * called in the thread of stub (UI thread usually)
+     */
+    protected void onDrawableChanged(Drawable drawable){
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Local HTTP server standing in for the image server (JDK's com.sun.net.httpserver, loopback, random port).
+ * Every path responds the same image data after a delay (simulated round trip), the body can be throttled
+ * (simulated bandwidth).</p>
+ *
+ * <p>HTTP revalidation: if validators are set ({@link #setValidators}), they are sent with the image data, and a
+ * conditional request matching them (If-None-Match/If-Modified-Since) is responded 304 without body.</p>
+ */
+public class LocalHttpServer {
+
+    private static final int THROTTLE_CHUNK = 4 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile byte[] body = new byte[16 * 1024];
+    private volatile long delay = 0;
+    private volatile long throttle = 0;
+    private volatile String eTag;
+    private volatile String lastModified;
+    private volatile String cacheControl;
+
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+    private final AtomicInteger inFlightCount = new AtomicInteger(0);
+    private final AtomicInteger maxInFlightCount = new AtomicInteger(0);
+    private final AtomicInteger okCount = new AtomicInteger(0);
+    private final AtomicInteger notModifiedCount = new AtomicInteger(0);
+    private final AtomicLong bodyBytes = new AtomicLong(0);
+
+    public LocalHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        //one thread per connection, the server side never limits the parallel downloads
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                int inFlight = inFlightCount.incrementAndGet();
+                while (true) {
+                    int max = maxInFlightCount.get();
+                    if (inFlight <= max || maxInFlightCount.compareAndSet(max, inFlight)) {
+                        break;
+                    }
+                }
+                try {
+                    respond(exchange);
+                } finally {
+                    inFlightCount.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new IOException("[LocalHttpServer]interrupted", e);
+            }
+        }
+        String eTag = this.eTag;
+        String lastModified = this.lastModified;
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+        }
+        if (lastModified != null) {
+            exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        }
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        }
+        if (isNotModified(exchange, eTag, lastModified)) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        okCount.incrementAndGet();
+        byte[] body = this.body;
+        bodyBytes.addAndGet(body.length);
+        exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        if (throttle <= 0) {
+            outputStream.write(body);
+            outputStream.flush();
+            return;
+        }
+        //write by chunk, keep the average rate
+        long startTime = System.nanoTime();
+        for (int offset = 0 ; offset < body.length ; offset += THROTTLE_CHUNK) {
+            int length = Math.min(THROTTLE_CHUNK, body.length - offset);
+            outputStream.write(body, offset, length);
+            outputStream.flush();
+            long wait = (offset + length) * 1000L / throttle - (System.nanoTime() - startTime) / 1000000L;
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    throw new IOException("[LocalHttpServer]interrupted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since (RFC 7232)
+     */
+    private boolean isNotModified(HttpExchange exchange, String eTag, String lastModified){
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return eTag != null && eTag.equals(ifNoneMatch);
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        return ifModifiedSince != null && lastModified != null && lastModified.equals(ifModifiedSince);
+    }
+
+    /**
+     * @param path path, starts with "/"
+     */
+    public String url(String path){
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @param body image data of all paths
+     */
+    public LocalHttpServer setBody(byte[] body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * @param delay delay before responding, millis
+     */
+    public LocalHttpServer setDelay(long delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * @param throttle bytes per second of body, 0 for unlimited
+     */
+    public LocalHttpServer setThrottle(long throttle) {
+        this.throttle = throttle;
+        return this;
+    }
+
+    /**
+     * @param eTag ETag of the image data, nullable
+     * @param lastModified Last-Modified of the image data, nullable
+     * @param cacheControl Cache-Control header, nullable
+     */
+    public LocalHttpServer setValidators(String eTag, String lastModified, String cacheControl) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.cacheControl = cacheControl;
+        return this;
+    }
+
+    public int getRequestCount(){
+        return requestCount.get();
+    }
+
+    /**
+     * @return count of 200 responses (with body)
+     */
+    public int getOkCount(){
+        return okCount.get();
+    }
+
+    /**
+     * @return count of 304 responses (without body)
+     */
+    public int getNotModifiedCount(){
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return bytes of response bodies
+     */
+    public long getBodyBytes(){
+        return bodyBytes.get();
+    }
+
+    /**
+     * @return max number of requests handled at the same time
+     */
+    public int getMaxInFlightCount(){
+        return maxInFlightCount.get();
+    }
+
+    public void resetCounts(){
+        requestCount.set(0);
+        maxInFlightCount.set(0);
+        okCount.set(0);
+        notModifiedCount.set(0);
+        bodyBytes.set(0);
+    }
+
+    public void stop(){
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+}
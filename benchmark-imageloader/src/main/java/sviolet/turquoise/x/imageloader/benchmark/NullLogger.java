@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.benchmark;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+
+/**
+ * <p>Logger prints nothing, avoid measuring console output in JVM test/benchmark.</p>
+ */
+public class NullLogger extends TLogger {
+
+    public static final NullLogger INSTANCE = new NullLogger();
+
+    @Override
+    public void e(Object msg) {
+    }
+
+    @Override
+    public void e(Object msg, Throwable t) {
+    }
+
+    @Override
+    public void e(Throwable t) {
+    }
+
+    @Override
+    public void w(Object msg) {
+    }
+
+    @Override
+    public void w(Object msg, Throwable t) {
+    }
+
+    @Override
+    public void w(Throwable t) {
+    }
+
+    @Override
+    public void i(Object msg) {
+    }
+
+    @Override
+    public void d(Object msg) {
+    }
+
+    @Override
+    public boolean checkEnable(int level) {
+        return false;
+    }
+
+}
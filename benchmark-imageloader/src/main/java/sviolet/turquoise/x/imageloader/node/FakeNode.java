@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import android.content.Context;
+import android.view.View;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import sviolet.turquoise.x.imageloader.entity.NodeSettings;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.node.queue.RequestQueue;
+import sviolet.turquoise.x.imageloader.server.Server;
+
+/**
+ * <p>Node without Context/View, tasks are pulled from the given queue, for JVM test/benchmark.</p>
+ */
+public class FakeNode extends Node {
+
+    private final String id;
+    private final RequestQueue queue;
+
+    public FakeNode(String id, RequestQueue queue) {
+        this.id = id;
+        this.queue = queue;
+    }
+
+    /**
+     * put node into {@link NodeManager} without Context (NodeManager#fetchNode needs Activity)
+     */
+    @SuppressWarnings("unchecked")
+    public static void attach(NodeManager nodeManager, Node node){
+        try {
+            Field field = NodeManager.class.getDeclaredField("nodes");
+            field.setAccessible(true);
+            ((Map<String, Node>) field.get(nodeManager)).put(node.getId(), node);
+        } catch (Exception e) {
+            throw new RuntimeException("[FakeNode]attach failed", e);
+        }
+    }
+
+    public RequestQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public void load(String url, View view) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void load(String url, Params params, View view) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void loadBackground(String url, View view) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void loadBackground(String url, Params params, View view) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean setting(NodeSettings settings) {
+        return false;
+    }
+
+    @Override
+    String getId() {
+        return id;
+    }
+
+    @Override
+    Task pullTask(Server.Type type) {
+        return queue.get();
+    }
+
+    @Override
+    void response(Task task) {
+    }
+
+    @Override
+    protected void attachLifeCycle(Context context) {
+    }
+
+    @Override
+    public NodeRemoter newNodeRemoter() {
+        throw new UnsupportedOperationException();
+    }
+
+}
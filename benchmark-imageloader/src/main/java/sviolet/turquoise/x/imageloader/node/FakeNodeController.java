@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import android.content.Context;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.drawable.BackgroundDrawableFactory;
+import sviolet.turquoise.x.imageloader.drawable.FailedDrawableFactory;
+import sviolet.turquoise.x.imageloader.drawable.LoadingDrawableFactory;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
+import sviolet.turquoise.x.imageloader.entity.NodeSettings;
+import sviolet.turquoise.x.imageloader.entity.ServerSettings;
+import sviolet.turquoise.x.imageloader.server.Engine;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+
+/**
+ * <p>NodeController without ComponentManager/Looper, only keeps the pause count and the loading level limits
+ * set by {@link NodeRemoter}, for JVM test/benchmark. It has no stubs and no tasks.</p>
+ */
+public class FakeNodeController extends NodeController {
+
+    private final String nodeId;
+
+    private final AtomicInteger nodePauseCount = new AtomicInteger(0);
+    private final AtomicInteger memoryOnlyLimitCount = new AtomicInteger(0);
+    private final AtomicInteger diskLimitCount = new AtomicInteger(0);
+    private final AtomicInteger igniteCount = new AtomicInteger(0);
+
+    public FakeNodeController(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * @return the loading level of node, like NodeControllerImpl.pullTask (the lowest level of all remoters)
+     */
+    public LoadLevel getLoadLevel(){
+        if (nodePauseCount.get() > 0){
+            return null;
+        }
+        if (memoryOnlyLimitCount.get() > 0){
+            return LoadLevel.MEMORY_ONLY;
+        }
+        if (diskLimitCount.get() > 0){
+            return LoadLevel.DISK;
+        }
+        return LoadLevel.NETWORK;
+    }
+
+    public boolean isPaused(){
+        return nodePauseCount.get() > 0;
+    }
+
+    /**
+     * @return times of re-igniting engines (paused node resumed / loading level raised)
+     */
+    public int getIgniteCount(){
+        return igniteCount.get();
+    }
+
+    @Override
+    public NodeRemoter newNodeRemoter() {
+        return new NodeRemoter(this);
+    }
+
+    @Override
+    AtomicInteger getNodePauseCount() {
+        return nodePauseCount;
+    }
+
+    @Override
+    AtomicInteger getNodeLevelLimitCount(LoadLevel level) {
+        switch (level){
+            case MEMORY_ONLY:
+                return memoryOnlyLimitCount;
+            case DISK:
+                return diskLimitCount;
+            default:
+                throw new RuntimeException("[FakeNodeController]no limit count for load level:" + level);
+        }
+    }
+
+    @Override
+    void postIgnite() {
+        igniteCount.incrementAndGet();
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public TLogger getLogger() {
+        return NullLogger.INSTANCE;
+    }
+
+    /*********************************************************************
+     * not supported
+     */
+
+    @Override
+    void waitingForInitialized() {
+    }
+
+    @Override
+    public void execute(Stub stub) {
+        throw new UnsupportedOperationException("[FakeNodeController]no stubs");
+    }
+
+    @Override
+    public ImageResource getMemoryCachedResource(Stub stub) {
+        return null;
+    }
+
+    @Override
+    public void onPriorityChanged(Stub stub) {
+    }
+
+    @Override
+    public void acquireResource(Stub stub, ImageResource resource) {
+    }
+
+    @Override
+    public void releaseResource(Stub stub, ImageResource resource) {
+    }
+
+    @Override
+    Task pullTask(Engine.Type type) {
+        return null;
+    }
+
+    @Override
+    void response(Task task) {
+    }
+
+    @Override
+    boolean settingNode(NodeSettings settings) {
+        return false;
+    }
+
+    @Override
+    public void postDispatch() {
+    }
+
+    @Override
+    public NodeSettings getNodeSettings() {
+        return null;
+    }
+
+    @Override
+    public ServerSettings getServerSettings() {
+        return null;
+    }
+
+    @Override
+    public Context getApplicationContextImage() {
+        return null;
+    }
+
+    @Override
+    public Context getContextImage() {
+        return null;
+    }
+
+    @Override
+    public LoadingDrawableFactory getLoadingDrawableFactory(int extensionIndex) {
+        return null;
+    }
+
+    @Override
+    public FailedDrawableFactory getFailedDrawableFactory(int extensionIndex) {
+        return null;
+    }
+
+    @Override
+    public BackgroundDrawableFactory getBackgroundDrawableFactory(int extensionIndex) {
+        return null;
+    }
+
+    @Override
+    public int getReloadTimes() {
+        return 0;
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return false;
+    }
+
+    @Override
+    public void onCreate() {
+    }
+
+    @Override
+    public void onStart() {
+    }
+
+    @Override
+    public void onResume() {
+    }
+
+    @Override
+    public void onPause() {
+    }
+
+    @Override
+    public void onStop() {
+    }
+
+    @Override
+    public void onDestroy() {
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import sviolet.turquoise.x.imageloader.ComponentManager;
+
+/**
+ * <p>Create real {@link Node}s without Activity, for JVM test/benchmark.</p>
+ */
+public class NodeFixtures {
+
+    /**
+     * LoadNode put into {@link NodeManager} (engines pull tasks from it), not attached to any life cycle
+     * @param manager ComponentManager started by JvmLoader
+     * @param nodeId id of node
+     */
+    public static Node newLoadNode(ComponentManager manager, String nodeId){
+        LoadNode node = new LoadNode(manager, nodeId);
+        FakeNode.attach(manager.getNodeManager(), node);
+        return node;
+    }
+
+}
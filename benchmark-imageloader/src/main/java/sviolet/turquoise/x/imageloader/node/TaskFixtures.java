@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import sviolet.turquoise.x.imageloader.entity.IndispensableState;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.LoadProgress;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PriorityState;
+import sviolet.turquoise.x.imageloader.stub.ResourceKeys;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+
+/**
+ * <p>Create {@link Task} without Stub/NodeController, for JVM test/benchmark.</p>
+ */
+public class TaskFixtures {
+
+    private static final Params PARAMS = new Params.Builder().build();
+
+    /**
+     * @param nodeId id of node
+     * @param url url, the key is derived from it
+     * @param priority initial priority, it can be changed by the returned state
+     */
+    public static Task newTask(String nodeId, String url, PriorityState priority){
+        return newTask(nodeId, url, PARAMS, priority);
+    }
+
+    /**
+     * @param params params of task (e.g. required size), the key is derived from url and params
+     */
+    public static Task newTask(String nodeId, String url, Params params, PriorityState priority){
+        String resourceKey = ResourceKeys.digest(url);
+        return new Task(nodeId, Stub.Type.LOAD, url, params, resourceKey + params.getKeySuffix(), resourceKey,
+                new LoadProgress(), new IndispensableState(), priority);
+    }
+
+    public static Task newTask(String nodeId, String url, LoadPriority priority){
+        return newTask(nodeId, url, PARAMS, priority);
+    }
+
+    public static Task newTask(String nodeId, String url, Params params, LoadPriority priority){
+        PriorityState state = new PriorityState();
+        state.setPriority(priority);
+        return newTask(nodeId, url, params, state);
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.server.module.ActiveResourceModule;
+import sviolet.turquoise.x.imageloader.server.module.ImageResourceCache;
+import sviolet.turquoise.x.imageloader.server.module.ImageResourceCacheModule;
+import sviolet.turquoise.x.imageloader.server.module.SegmentedImageResourceCacheModule;
+
+/**
+ * <p>MemoryTrimPolicy driven by simulated trim levels and clock.</p>
+ */
+public class MemoryTrimPolicyTest {
+
+    private static final long INTERVAL = 30000L;
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void stageOfLevel(){
+        Assert.assertEquals(MemoryTrimPolicy.Stage.NONE, MemoryTrimPolicy.stageOf(0));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.EVICT_INVISIBLE, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_MODERATE));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.SHRINK, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_LOW));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.DROP_ALL, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_CRITICAL));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.EVICT_INVISIBLE, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_UI_HIDDEN));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.SHRINK, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_BACKGROUND));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.DROP_ALL, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_MODERATE));
+        Assert.assertEquals(MemoryTrimPolicy.Stage.DROP_ALL, MemoryTrimPolicy.stageOf(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void escalateAndRecover(){
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(INTERVAL);
+        Assert.assertEquals(1f, policy.getLimitFactor(0), DELTA);
+
+        Assert.assertEquals(MemoryTrimPolicy.Stage.NONE, policy.onTrimMemory(0, 0));
+        Assert.assertEquals(1f, policy.getLimitFactor(0), DELTA);
+
+        //escalate: EVICT_INVISIBLE -> SHRINK -> DROP_ALL
+        Assert.assertEquals(MemoryTrimPolicy.Stage.EVICT_INVISIBLE, policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_UI_HIDDEN, 0));
+        Assert.assertEquals(0.5f, policy.getLimitFactor(0), DELTA);
+        Assert.assertEquals(MemoryTrimPolicy.Stage.SHRINK, policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_BACKGROUND, 1000));
+        Assert.assertEquals(0.25f, policy.getLimitFactor(1000), DELTA);
+        Assert.assertEquals(MemoryTrimPolicy.Stage.DROP_ALL, policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE, 2000));
+        Assert.assertEquals(0.125f, policy.getLimitFactor(2000), DELTA);
+
+        //a lower stage never raises the limit
+        Assert.assertEquals(MemoryTrimPolicy.Stage.EVICT_INVISIBLE, policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_UI_HIDDEN, 3000));
+        Assert.assertEquals(0.125f, policy.getLimitFactor(3000), DELTA);
+
+        //stays until one interval passed since the last trim (3000), then doubles every interval
+        Assert.assertEquals(0.125f, policy.getLimitFactor(3000 + INTERVAL - 1), DELTA);
+        Assert.assertEquals(0.25f, policy.getLimitFactor(3000 + INTERVAL), DELTA);
+        Assert.assertEquals(0.5f, policy.getLimitFactor(3000 + INTERVAL * 2), DELTA);
+        Assert.assertEquals(1f, policy.getLimitFactor(3000 + INTERVAL * 3), DELTA);
+        Assert.assertEquals(1f, policy.getLimitFactor(3000 + INTERVAL * 100), DELTA);
+    }
+
+    @Test
+    public void trimDuringRecovery(){
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(INTERVAL);
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE, 0);
+        //recovered to 0.5, then EVICT_INVISIBLE (0.5) keeps 0.5 and restarts the recovery
+        Assert.assertEquals(0.5f, policy.getLimitFactor(INTERVAL * 2), DELTA);
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_MODERATE, INTERVAL * 2);
+        Assert.assertEquals(0.5f, policy.getLimitFactor(INTERVAL * 3 - 1), DELTA);
+        Assert.assertEquals(1f, policy.getLimitFactor(INTERVAL * 3), DELTA);
+        //recovered to 0.25, SHRINK (0.25) keeps 0.25
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE, INTERVAL * 10);
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_LOW, INTERVAL * 11);
+        Assert.assertEquals(0.25f, policy.getLimitFactor(INTERVAL * 11), DELTA);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void illegalInterval(){
+        new MemoryTrimPolicy(0);
+    }
+
+    /**
+     * the limit of memory cache follows the policy, like MemoryCacheServer does
+     */
+    @Test
+    public void memoryCacheLimit(){
+        memoryCacheLimit(false);
+    }
+
+    @Test
+    public void segmentedMemoryCacheLimit(){
+        memoryCacheLimit(true);
+    }
+
+    private void memoryCacheLimit(boolean segmented){
+        int entrySize = 1024;
+        int maxSize = entrySize * 16;
+        FakeImageResourceHandler handler = new FakeImageResourceHandler();
+        ActiveResourceModule activeResources = new ActiveResourceModule(handler, null, NullLogger.INSTANCE);
+        ImageResourceCache cache = segmented ?
+                new SegmentedImageResourceCacheModule(maxSize, handler, activeResources, NullLogger.INSTANCE) :
+                new ImageResourceCacheModule(maxSize, handler, activeResources, NullLogger.INSTANCE);
+        Object holder = new Object();
+        ImageResource[] displayed = new ImageResource[2];
+        for (int i = 0 ; i < 16 ; i++){
+            ImageResource resource = FakeImageResourceHandler.newResource(entrySize);
+            cache.put("key" + i, resource);
+            //the first 2 entries are displayed
+            if (i < displayed.length) {
+                displayed[i] = resource;
+                activeResources.acquire(holder, "key" + i, resource);
+            }
+        }
+        Assert.assertEquals(maxSize, cache.size());
+
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(INTERVAL);
+
+        //EVICT_INVISIBLE: only the entries not displayed are evicted
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_UI_HIDDEN, 0);
+        int limit = (int) (maxSize * policy.getLimitFactor(0));
+        cache.setLimit(limit);
+        cache.trimInvisible(limit);
+        Assert.assertEquals(limit, cache.size());
+        Assert.assertNotNull(cache.get("key0"));
+        Assert.assertNotNull(cache.get("key1"));
+        Assert.assertEquals(8, handler.getRecycledCount());
+
+        //DROP_ALL: two entries left at most
+        policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE, 1000);
+        limit = (int) (maxSize * policy.getLimitFactor(1000));
+        cache.setLimit(limit);
+        cache.trimToSize(limit);
+        Assert.assertTrue(cache.size() <= limit);
+        //the displayed resources are kept by views, not recycled
+        Assert.assertTrue(handler.isValid(displayed[0]));
+        Assert.assertTrue(handler.isValid(displayed[1]));
+        Assert.assertEquals(16 - displayed.length - (cache.quantity() - countCached(cache, displayed.length)), handler.getRecycledCount());
+
+        //grows back: the cache accepts max size again
+        limit = (int) (maxSize * policy.getLimitFactor(1000 + INTERVAL * 3));
+        Assert.assertEquals(maxSize, limit);
+        cache.setLimit(limit);
+        for (int i = 0 ; i < 16 ; i++){
+            cache.put("new" + i, FakeImageResourceHandler.newResource(entrySize));
+        }
+        Assert.assertEquals(maxSize, cache.size());
+        Assert.assertEquals(maxSize, cache.limit());
+    }
+
+    private int countCached(ImageResourceCache cache, int num){
+        int count = 0;
+        for (int i = 0 ; i < num ; i++){
+            if (cache.get("key" + i) != null){
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
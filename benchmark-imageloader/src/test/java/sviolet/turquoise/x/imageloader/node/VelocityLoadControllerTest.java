@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
+
+/**
+ * <p>Scroll scenario on the JVM: a recorded sequence of flings and drags over a long list, the loading level of the
+ * node is decided by the real {@link VelocityLoadController} (or pause-on-fling NodeRemoter, or nothing), the
+ * engines are simulated by frames (disk and network loadings take fixed frames, bounded concurrency, LIFO queue).</p>
+ *
+ * <p>wasted: network loadings finished after the item left the screen. blank: visible items without image,
+ * summed over frames (blankIdle: only the frames after the list stopped, what the user looks at).</p>
+ *
+ * <p>Dropped frames can not be measured on the JVM (no Choreographer / drawing), they are measured by
+ * ScrollBenchmarkActivity of demoa-imageloader on device. Prefetching is not simulated (TILoader.preload
+ * needs an initialized TILoader).</p>
+ */
+public class VelocityLoadControllerTest {
+
+    private static final long SEED = 20171127L;
+    private static final int GESTURES = 60;
+
+    private static final int TOTAL = 3000;//items of list
+    private static final int VISIBLE = 8;//visible items
+    private static final long FRAME = 16L;//millis
+
+    private static final int MEMORY_CACHE = VISIBLE * 6;//items
+    private static final float DISK_CACHED = 0.5f;//part of items in disk cache
+    private static final int QUEUE_SIZE = VISIBLE * 2;
+    private static final int DISK_FRAMES = 3;
+    private static final int DISK_CONCURRENCY = 2;
+    private static final int NETWORK_FRAMES = 25;//400ms
+    private static final int NETWORK_CONCURRENCY = 3;
+
+    @Test
+    public void flingScenario(){
+        List<Frame> trace = recordTrace(SEED);
+        Result none = new Simulator(Policy.NONE, SEED).run(trace);
+        Result pause = new Simulator(Policy.PAUSE_ON_FLING, SEED).run(trace);
+        Result velocity = new Simulator(Policy.VELOCITY, SEED).run(trace);
+
+        System.out.println("[VelocityLoadControllerTest]scroll trace, frames:" + trace.size()
+                + "\n  none           " + none
+                + "\n  pause on fling " + pause
+                + "\n  velocity       " + velocity);
+
+        //the controller limits loading during fast fling
+        Assert.assertTrue(velocity.levelFrames[LoadLevel.MEMORY_ONLY.ordinal()] > 0);
+        Assert.assertTrue(velocity.levelFrames[LoadLevel.DISK.ordinal()] > 0);
+        //less wasted network loadings than loading everything (pausing wastes the least, but leaves the list blank)
+        Assert.assertTrue(velocity.wasted + " vs " + none.wasted, velocity.wasted < none.wasted * 3 / 4);
+        //less blank than pausing on fling, the disk cache is used at medium speed and the tail of fling loads from network
+        Assert.assertTrue(velocity.blank + " vs " + pause.blank, velocity.blank < pause.blank * 3 / 4);
+        Assert.assertTrue(velocity.blankIdle + " vs " + pause.blankIdle, velocity.blankIdle < pause.blankIdle / 4);
+    }
+
+    @Test
+    public void levelOfVelocity(){
+        FakeNodeController node = new FakeNodeController("velocity");
+        VelocityLoadController controller = new VelocityLoadController(null, node.newNodeRemoter());
+        long time = 1000L;
+        float progress = 0;
+
+        //fast fling: 40 items per second
+        controller.onScrollStateChanged(VelocityLoadController.STATE_FLING, 0, VISIBLE);
+        for (int i = 0 ; i < 10 ; i++) {
+            controller.onScrolled(progress, VISIBLE, TOTAL, time);
+            progress += 40f * FRAME / 1000f;
+            time += FRAME;
+        }
+        Assert.assertEquals(LoadLevel.MEMORY_ONLY, node.getLoadLevel());
+        //medium: 10 items per second
+        for (int i = 0 ; i < 10 ; i++) {
+            controller.onScrolled(progress, VISIBLE, TOTAL, time);
+            progress += 10f * FRAME / 1000f;
+            time += FRAME;
+        }
+        Assert.assertEquals(LoadLevel.DISK, node.getLoadLevel());
+        //slow: 2 items per second
+        for (int i = 0 ; i < 10 ; i++) {
+            controller.onScrolled(progress, VISIBLE, TOTAL, time);
+            progress += 2f * FRAME / 1000f;
+            time += FRAME;
+        }
+        Assert.assertEquals(LoadLevel.NETWORK, node.getLoadLevel());
+        //fast again, then idle
+        for (int i = 0 ; i < 10 ; i++) {
+            controller.onScrolled(progress, VISIBLE, TOTAL, time);
+            progress -= 40f * FRAME / 1000f;
+            time += FRAME;
+        }
+        Assert.assertEquals(LoadLevel.MEMORY_ONLY, node.getLoadLevel());
+        Assert.assertTrue(controller.getVelocity() < 0);
+        int igniteCount = node.getIgniteCount();
+        controller.onScrollStateChanged(VelocityLoadController.STATE_IDLE, (int) progress, VISIBLE);
+        Assert.assertEquals(LoadLevel.NETWORK, node.getLoadLevel());
+        //level raised, engines re-ignited
+        Assert.assertEquals(igniteCount + 1, node.getIgniteCount());
+    }
+
+    /**
+     * flings (exponential decay, like the scroller of list) and slow drags, the list stops between them
+     */
+    private List<Frame> recordTrace(long seed){
+        Random random = new Random(seed);
+        List<Frame> trace = new ArrayList<>();
+        float progress = 0;
+        for (int g = 0 ; g < GESTURES ; g++) {
+            if (random.nextFloat() < 0.7f) {
+                float velocity = (5f + random.nextFloat() * 75f) * (random.nextFloat() < 0.85f ? 1 : -1);
+                while (Math.abs(velocity) >= 1f) {
+                    progress = clamp(progress + velocity * FRAME / 1000f);
+                    trace.add(new Frame(VelocityLoadController.STATE_FLING, progress));
+                    velocity *= (float) Math.exp(-FRAME / 400.0);
+                }
+            } else {
+                float velocity = 1f + random.nextFloat() * 4f;
+                int frames = 40 + random.nextInt(60);
+                for (int i = 0 ; i < frames ; i++) {
+                    progress = clamp(progress + velocity * FRAME / 1000f);
+                    trace.add(new Frame(VelocityLoadController.STATE_TOUCH_SCROLL, progress));
+                }
+            }
+            int idleFrames = 30 + random.nextInt(60);
+            for (int i = 0 ; i < idleFrames ; i++) {
+                trace.add(new Frame(VelocityLoadController.STATE_IDLE, progress));
+            }
+        }
+        return trace;
+    }
+
+    private static float clamp(float progress){
+        return Math.max(0, Math.min(TOTAL - VISIBLE, progress));
+    }
+
+    private enum Policy {
+        NONE,
+        PAUSE_ON_FLING,
+        VELOCITY
+    }
+
+    private static class Frame {
+
+        private final int state;
+        private final float progress;
+
+        private Frame(int state, float progress) {
+            this.state = state;
+            this.progress = progress;
+        }
+    }
+
+    private static class Load {
+
+        private final int item;
+        private final boolean network;
+        private final int finishFrame;
+
+        private Load(int item, boolean network, int finishFrame) {
+            this.item = item;
+            this.network = network;
+            this.finishFrame = finishFrame;
+        }
+    }
+
+    private static class Simulator {
+
+        private final Policy policy;
+        private final boolean[] diskCached = new boolean[TOTAL];
+        private final LinkedHashMap<Integer, Boolean> memoryCache = new LinkedHashMap<Integer, Boolean>(0, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > MEMORY_CACHE;
+            }
+        };
+        private final LinkedList<Integer> queue = new LinkedList<>();
+        private final Map<Integer, Load> loading = new HashMap<>();
+
+        private final FakeNodeController node = new FakeNodeController("scroll");
+        private final NodeRemoter remoter = node.newNodeRemoter();
+        private final VelocityLoadController controller = new VelocityLoadController(null, remoter);
+
+        private Simulator(Policy policy, long seed) {
+            this.policy = policy;
+            Random random = new Random(seed + 1);
+            for (int i = 0 ; i < TOTAL ; i++) {
+                diskCached[i] = random.nextFloat() < DISK_CACHED;
+            }
+        }
+
+        private Result run(List<Frame> trace){
+            Result result = new Result();
+            int state = VelocityLoadController.STATE_IDLE;
+            for (int f = 0 ; f < trace.size() ; f++) {
+                Frame frame = trace.get(f);
+                int first = (int) frame.progress;
+                //scroll events
+                if (frame.state != state) {
+                    state = frame.state;
+                    onScrollStateChanged(state, first);
+                }
+                if (policy == Policy.VELOCITY && state != VelocityLoadController.STATE_IDLE) {
+                    controller.onScrolled(frame.progress, VISIBLE, TOTAL, 1000L + f * FRAME);
+                }
+                LoadLevel level = node.getLoadLevel();
+                if (level == null) {
+                    //paused node, memory cache is still checked when the stub is loaded
+                    level = LoadLevel.MEMORY_ONLY;
+                }
+                result.levelFrames[level.ordinal()]++;
+
+                //finish loadings
+                Iterator<Load> iterator = loading.values().iterator();
+                while (iterator.hasNext()) {
+                    Load load = iterator.next();
+                    if (load.finishFrame > f) {
+                        continue;
+                    }
+                    iterator.remove();
+                    memoryCache.put(load.item, true);
+                    if (load.network) {
+                        diskCached[load.item] = true;
+                        if (!isVisible(load.item, first)) {
+                            result.wasted++;
+                        }
+                    }
+                }
+
+                //bind visible items, request the missed
+                for (int item = first ; item <= Math.min(TOTAL - 1, first + VISIBLE) ; item++) {
+                    if (memoryCache.get(item) != null) {
+                        continue;
+                    }
+                    result.blank++;
+                    if (state == VelocityLoadController.STATE_IDLE) {
+                        result.blankIdle++;
+                    }
+                    if (!loading.containsKey(item) && !queue.contains(item)) {
+                        queue.addFirst(item);
+                        if (queue.size() > QUEUE_SIZE) {
+                            queue.removeLast();
+                        }
+                    }
+                }
+
+                //engines pull the newest tasks they are allowed to execute, tasks of invisible items are canceled
+                int diskRunning = 0;
+                int networkRunning = 0;
+                for (Load load : loading.values()) {
+                    if (load.network) {
+                        networkRunning++;
+                    } else {
+                        diskRunning++;
+                    }
+                }
+                Iterator<Integer> queueIterator = queue.iterator();
+                while (queueIterator.hasNext()) {
+                    int item = queueIterator.next();
+                    if (!isVisible(item, first)) {
+                        queueIterator.remove();
+                        continue;
+                    }
+                    if (diskCached[item]) {
+                        if (level.ordinal() >= LoadLevel.DISK.ordinal() && diskRunning < DISK_CONCURRENCY) {
+                            queueIterator.remove();
+                            loading.put(item, new Load(item, false, f + DISK_FRAMES));
+                            diskRunning++;
+                            result.diskLoads++;
+                        }
+                    } else {
+                        if (level == LoadLevel.NETWORK && networkRunning < NETWORK_CONCURRENCY) {
+                            queueIterator.remove();
+                            loading.put(item, new Load(item, true, f + NETWORK_FRAMES));
+                            networkRunning++;
+                            result.networkLoads++;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void onScrollStateChanged(int state, int first){
+            switch (policy) {
+                case PAUSE_ON_FLING:
+                    if (state == VelocityLoadController.STATE_FLING) {
+                        remoter.pause();
+                    } else {
+                        remoter.resume();
+                    }
+                    break;
+                case VELOCITY:
+                    controller.onScrollStateChanged(state, first, VISIBLE);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private boolean isVisible(int item, int first){
+            return item >= first && item <= first + VISIBLE;
+        }
+    }
+
+    private static class Result {
+
+        private int networkLoads;
+        private int diskLoads;
+        private int wasted;
+        private int blank;
+        private int blankIdle;
+        private final int[] levelFrames = new int[LoadLevel.values().length];
+
+        @Override
+        public String toString() {
+            return "networkLoads:" + networkLoads + " wasted:" + wasted + " diskLoads:" + diskLoads + " blank:" + blank
+                    + " blankIdle:" + blankIdle + " framesOfLevel(memory/disk/network):" + levelFrames[0] + "/" + levelFrames[1] + "/" + levelFrames[2];
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.PriorityState;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>PriorityRequestQueue: ordering / eviction, and a scroll trace compared with LossyRequestQueue.</p>
+ */
+public class PriorityRequestQueueTest {
+
+    @Test
+    public void priorityOrder(){
+        PriorityRequestQueue queue = new PriorityRequestQueue(10, NullLogger.INSTANCE);
+        Task prefetch = newTask("prefetch", LoadPriority.PREFETCH);
+        Task onScreen = newTask("onScreen", LoadPriority.ON_SCREEN);
+        Task nearScreen = newTask("nearScreen", LoadPriority.NEAR_SCREEN);
+        Task offScreen = newTask("offScreen", LoadPriority.OFF_SCREEN);
+        queue.put(prefetch);
+        queue.put(onScreen);
+        queue.put(nearScreen);
+        queue.put(offScreen);
+        Assert.assertSame(onScreen, queue.get());
+        Assert.assertSame(nearScreen, queue.get());
+        Assert.assertSame(offScreen, queue.get());
+        Assert.assertSame(prefetch, queue.get());
+        Assert.assertNull(queue.get());
+    }
+
+    @Test
+    public void lastInFirstOutWithinPriority(){
+        PriorityRequestQueue queue = new PriorityRequestQueue(10, NullLogger.INSTANCE);
+        Task task1 = newTask("1", LoadPriority.ON_SCREEN);
+        Task task2 = newTask("2", LoadPriority.ON_SCREEN);
+        Task task3 = newTask("3", LoadPriority.ON_SCREEN);
+        Task off = newTask("off", LoadPriority.OFF_SCREEN);
+        queue.put(task1);
+        queue.put(off);
+        queue.put(task2);
+        queue.put(task3);
+        Assert.assertSame(task3, queue.get());
+        Assert.assertSame(task2, queue.get());
+        Assert.assertSame(task1, queue.get());
+        Assert.assertSame(off, queue.get());
+    }
+
+    @Test
+    public void evictLowestPriority(){
+        PriorityRequestQueue queue = new PriorityRequestQueue(3, NullLogger.INSTANCE);
+        Task onScreen = newTask("onScreen", LoadPriority.ON_SCREEN);
+        Task prefetch1 = newTask("prefetch1", LoadPriority.PREFETCH);
+        Task prefetch2 = newTask("prefetch2", LoadPriority.PREFETCH);
+        Assert.assertNull(queue.put(onScreen));
+        Assert.assertNull(queue.put(prefetch1));
+        Assert.assertNull(queue.put(prefetch2));
+        //the earliest task with the lowest priority is dropped
+        Task nearScreen = newTask("nearScreen", LoadPriority.NEAR_SCREEN);
+        Assert.assertSame(prefetch1, queue.put(nearScreen));
+        Task offScreen = newTask("offScreen", LoadPriority.OFF_SCREEN);
+        Assert.assertSame(prefetch2, queue.put(offScreen));
+        //the new task has the lowest priority, drop itself
+        Task prefetch3 = newTask("prefetch3", LoadPriority.PREFETCH);
+        Assert.assertSame(prefetch3, queue.put(prefetch3));
+        //same priority, the earlier one is dropped
+        Task offScreen2 = newTask("offScreen2", LoadPriority.OFF_SCREEN);
+        Assert.assertSame(offScreen, queue.put(offScreen2));
+
+        Assert.assertSame(onScreen, queue.get());
+        Assert.assertSame(nearScreen, queue.get());
+        Assert.assertSame(offScreen2, queue.get());
+        Assert.assertNull(queue.get());
+    }
+
+    @Test
+    public void priorityChangedWhileWaiting(){
+        PriorityRequestQueue queue = new PriorityRequestQueue(2, NullLogger.INSTANCE);
+        PriorityState state = new PriorityState();
+        state.setPriority(LoadPriority.ON_SCREEN);
+        Task scrolledOff = TaskFixtures.newTask("node", "http://benchmark.turquoise/image/scrolledOff", state);
+        Task onScreen = newTask("onScreen", LoadPriority.ON_SCREEN);
+        queue.put(scrolledOff);
+        queue.put(onScreen);
+        //the view scrolled off the screen, the task becomes the victim
+        state.setPriority(LoadPriority.OFF_SCREEN);
+        Task newOnScreen = newTask("newOnScreen", LoadPriority.ON_SCREEN);
+        Assert.assertSame(scrolledOff, queue.put(newOnScreen));
+    }
+
+    @Test
+    public void shrink(){
+        PriorityRequestQueue queue = new PriorityRequestQueue(4, NullLogger.INSTANCE);
+        Task onScreen = newTask("onScreen", LoadPriority.ON_SCREEN);
+        queue.put(newTask("prefetch", LoadPriority.PREFETCH));
+        queue.put(onScreen);
+        queue.put(newTask("offScreen", LoadPriority.OFF_SCREEN));
+        queue.setSize(1);
+        Assert.assertSame(onScreen, queue.get());
+        Assert.assertNull(queue.get());
+    }
+
+    /**
+     * <p>Replay the same scroll trace with both queues, count the network loads started for the items out of the
+     * screen (wasted), the views scrolled off without image, and the frames from an item appearing to loaded.</p>
+     */
+    @Test
+    public void scrollTrace(){
+        int[] trace = scrollTrace(new Random(20171120L));
+        TraceResult lossy = new ScrollSimulator(new LossyRequestQueue(QUEUE_SIZE, NullLogger.INSTANCE), false).replay(trace);
+        TraceResult priority = new ScrollSimulator(new PriorityRequestQueue(QUEUE_SIZE, NullLogger.INSTANCE), true).replay(trace);
+
+        System.out.println("[PriorityRequestQueueTest]scroll trace, frames:" + trace.length
+                + "\n  lossy    " + lossy
+                + "\n  priority " + priority
+                + "\n  wasted network loads avoided:" + (lossy.wasted - priority.wasted));
+
+        //same work, fewer loads for the items scrolled off, no more blank views
+        Assert.assertEquals(lossy.loads, priority.loads);
+        Assert.assertTrue(priority.wasted < lossy.wasted);
+        Assert.assertTrue(priority.missed <= lossy.missed);
+        Assert.assertTrue(priority.blankAtEnd <= lossy.blankAtEnd);
+    }
+
+    /*************************************************************************************
+     * scroll simulation
+     */
+
+    private static final int ITEM_NUM = 2000;
+    private static final int SCREEN_ITEMS = 8;
+    private static final int NEAR_ITEMS = 4;//items beyond the screen edge marked NEAR_SCREEN
+    private static final int QUEUE_SIZE = 12;//default net queue size
+    private static final int CONCURRENCY = 3;
+    private static final int LOAD_FRAMES = 8;//~130ms per image at 60fps
+
+    /**
+     * @return first visible item of each frame: flings, slow drags, pauses, scrolling back
+     */
+    private static int[] scrollTrace(Random random){
+        List<Integer> positions = new ArrayList<>();
+        double position = 0;
+        while (positions.size() < 3000) {
+            int action = random.nextInt(4);
+            double velocity;
+            int frames;
+            switch (action) {
+                case 0://fling
+                    velocity = 1.5 + random.nextDouble() * 2;
+                    frames = 40 + random.nextInt(60);
+                    break;
+                case 1://drag
+                    velocity = 0.1 + random.nextDouble() * 0.3;
+                    frames = 30 + random.nextInt(60);
+                    break;
+                case 2://back
+                    velocity = -(0.3 + random.nextDouble());
+                    frames = 20 + random.nextInt(40);
+                    break;
+                default://pause, reading
+                    velocity = 0;
+                    frames = 30 + random.nextInt(90);
+                    break;
+            }
+            for (int i = 0 ; i < frames ; i++){
+                //fling decelerates
+                double v = action == 0 ? velocity * (1 - (double) i / frames) : velocity;
+                position = Math.max(0, Math.min(ITEM_NUM - SCREEN_ITEMS, position + v));
+                positions.add((int) position);
+            }
+        }
+        int[] trace = new int[positions.size()];
+        for (int i = 0 ; i < trace.length ; i++){
+            trace[i] = positions.get(i);
+        }
+        return trace;
+    }
+
+    private static class ScrollSimulator {
+
+        private final RequestQueue queue;
+        private final boolean updatePriority;
+
+        private final PriorityState[] states = new PriorityState[ITEM_NUM];//non-null: waiting in queue or loading
+        private final int[] appearFrame = new int[ITEM_NUM];
+        private final boolean[] loaded = new boolean[ITEM_NUM];
+        private final List<int[]> loadings = new ArrayList<>();//item, finish frame
+
+        private ScrollSimulator(RequestQueue queue, boolean updatePriority) {
+            this.queue = queue;
+            this.updatePriority = updatePriority;
+        }
+
+        private TraceResult replay(int[] trace){
+            TraceResult result = new TraceResult();
+            int lastFirst = -1;
+            for (int frame = 0 ; frame < trace.length ; frame++){
+                int first = trace[frame];
+                //views bound
+                if (first != lastFirst) {
+                    //views scrolled off the screen without image
+                    for (int i = Math.max(0, lastFirst) ; lastFirst >= 0 && i < lastFirst + SCREEN_ITEMS ; i++){
+                        if (!isVisible(i, first) && !loaded[i]) {
+                            result.missed++;
+                        }
+                    }
+                    for (int i = first ; i < first + SCREEN_ITEMS ; i++){
+                        if (lastFirst < 0 || i < lastFirst || i >= lastFirst + SCREEN_ITEMS) {
+                            appearFrame[i] = frame;
+                            if (!loaded[i] && states[i] == null) {
+                                request(i);
+                            }
+                        }
+                    }
+                    if (updatePriority) {
+                        updatePriority(first);
+                    }
+                    lastFirst = first;
+                }
+                //loadings finished
+                for (int i = loadings.size() - 1 ; i >= 0 ; i--){
+                    int[] loading = loadings.get(i);
+                    if (loading[1] <= frame) {
+                        loadings.remove(i);
+                        loaded[loading[0]] = true;
+                        states[loading[0]] = null;
+                        if (isVisible(loading[0], first)) {
+                            result.visibleLoaded++;
+                            result.visibleLatency += frame - appearFrame[loading[0]];
+                        }
+                    }
+                }
+                //network engine pulls tasks
+                while (loadings.size() < CONCURRENCY) {
+                    Task task = queue.get();
+                    if (task == null) {
+                        break;
+                    }
+                    int item = itemOf(task);
+                    result.loads++;
+                    if (!isVisible(item, first)) {
+                        result.wasted++;
+                    }
+                    loadings.add(new int[]{item, frame + LOAD_FRAMES});
+                }
+            }
+            int first = trace[trace.length - 1];
+            for (int i = first ; i < first + SCREEN_ITEMS ; i++){
+                if (!loaded[i]) {
+                    result.blankAtEnd++;
+                }
+            }
+            return result;
+        }
+
+        private void request(int item){
+            PriorityState state = new PriorityState();
+            state.setPriority(LoadPriority.ON_SCREEN);
+            states[item] = state;
+            Task dropped = queue.put(TaskFixtures.newTask("node", String.valueOf(item), state));
+            if (dropped != null) {
+                //canceled, it will be requested again when it appears next time
+                states[itemOf(dropped)] = null;
+            }
+        }
+
+        /**
+         * like StubRemoter#setPriority invoked by OnScrollListener
+         */
+        private void updatePriority(int first){
+            for (int i = Math.max(0, first - 64) ; i < Math.min(ITEM_NUM, first + SCREEN_ITEMS + 64) ; i++){
+                if (states[i] == null) {
+                    continue;
+                }
+                if (isVisible(i, first)) {
+                    states[i].setPriority(LoadPriority.ON_SCREEN);
+                } else if (i >= first - NEAR_ITEMS && i < first + SCREEN_ITEMS + NEAR_ITEMS) {
+                    states[i].setPriority(LoadPriority.NEAR_SCREEN);
+                } else {
+                    states[i].setPriority(LoadPriority.OFF_SCREEN);
+                }
+            }
+        }
+
+        private static boolean isVisible(int item, int first){
+            return item >= first && item < first + SCREEN_ITEMS;
+        }
+
+        private static int itemOf(Task task){
+            return Integer.parseInt(task.getUrl());
+        }
+
+    }
+
+    private static class TraceResult {
+
+        private int loads = 0;
+        private int wasted = 0;
+        private int visibleLoaded = 0;
+        private long visibleLatency = 0;
+        private int missed = 0;
+        private int blankAtEnd = 0;
+
+        private double averageVisibleLatency(){
+            return visibleLoaded <= 0 ? 0 : (double) visibleLatency / visibleLoaded;
+        }
+
+        @Override
+        public String toString() {
+            return "network loads:" + loads + " wasted(off screen when started):" + wasted
+                    + " scrolled off without image:" + missed + " loaded on screen:" + visibleLoaded + " avg frames to load:" + String.format("%.1f", averageVisibleLatency())
+                    + " blank at end:" + blankAtEnd;
+        }
+
+    }
+
+    private static Task newTask(String name, LoadPriority priority){
+        return TaskFixtures.newTask("node", "http://benchmark.turquoise/image/" + name, priority);
+    }
+
+}
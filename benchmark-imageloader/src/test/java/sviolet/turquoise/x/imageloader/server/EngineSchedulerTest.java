@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>Slot accounting of EngineScheduler: memory/disk lanes borrow idle slots of network lane,
+ * the network lane never runs more than its cap (running + lent).</p>
+ */
+public class EngineSchedulerTest {
+
+    @Test
+    public void borrowThenFillNetworkLane(){
+        EngineScheduler scheduler = new EngineScheduler();
+        scheduler.init(new FixedEngine(Server.Type.MEMORY_ENGINE, 1), new FixedEngine(Server.Type.DISK_ENGINE, 1), new FixedEngine(Server.Type.NETWORK_ENGINE, 3), NullLogger.INSTANCE);
+
+        //memory lane: one own slot, then borrows two slots of network lane
+        Assert.assertTrue(scheduler.tryAcquire(Server.Type.MEMORY_ENGINE));
+        Assert.assertTrue(scheduler.tryAcquire(Server.Type.MEMORY_ENGINE));
+        Assert.assertTrue(scheduler.tryAcquire(Server.Type.MEMORY_ENGINE));
+        Assert.assertEquals(2, scheduler.getLaneInfo(Server.Type.MEMORY_ENGINE).getBorrowed());
+        Assert.assertEquals(2, scheduler.getLaneInfo(Server.Type.NETWORK_ENGINE).getLent());
+
+        //network lane: only one slot left
+        Assert.assertTrue(scheduler.tryAcquire(Server.Type.NETWORK_ENGINE));
+        Assert.assertFalse(scheduler.tryAcquire(Server.Type.NETWORK_ENGINE));
+        //nothing left to borrow either
+        Assert.assertTrue(scheduler.tryAcquire(Server.Type.DISK_ENGINE));
+        Assert.assertFalse(scheduler.tryAcquire(Server.Type.DISK_ENGINE));
+
+        EngineScheduler.LaneInfo net = scheduler.getLaneInfo(Server.Type.NETWORK_ENGINE);
+        Assert.assertEquals(1, net.getRunning());
+        Assert.assertEquals(net.getCap(), net.getRunning() + net.getLent());
+    }
+
+    private static class FixedEngine extends Engine {
+
+        private final Type type;
+        private final int maxThread;
+
+        private FixedEngine(Type type, int maxThread) {
+            this.type = type;
+            this.maxThread = maxThread;
+        }
+
+        @Override
+        protected void executeNewTask(Task task) {
+        }
+
+        @Override
+        protected int getMaxThread() {
+            return maxThread;
+        }
+
+        @Override
+        public Type getServerType() {
+            return type;
+        }
+
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import sviolet.turquoise.x.imageloader.benchmark.LocalHttpServer;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.handler.common.OkHttpNetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>Parallel downloads from a local HTTP server (each response is delayed), with OkHttpNetworkLoadHandler.</p>
+ *
+ * <p>completion mode: one engine worker starts all the downloads (it returns at once), the result listener hands
+ * the body to the I/O executor of NetEngine ({@link NetEngine#newResultExecutor(int)}), like NetEngine.loadByHandlerAsync.</p>
+ *
+ * <p>blocking mode: each engine worker starts one download and waits in {@link EngineCallback#getResult()}.</p>
+ *
+ * <p>The threads of TILoader (named "TLoader-") are sampled during the downloads. The threads of OkHttp's dispatcher
+ * are not counted, they are owned by the OkHttpClient of app.</p>
+ */
+public class NetEngineCompletionModeTest {
+
+    private static final long DELAY = 300L;
+    private static final int MAX_THREAD = 4;//max thread of network lane
+    private static final long TIMEOUT = 10000L;
+
+    private static LocalHttpServer server;
+    private static OkHttpNetworkLoadHandler handler;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer().setDelay(DELAY).setBody(new byte[32 * 1024]);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(64);
+        dispatcher.setMaxRequestsPerHost(64);
+        handler = new OkHttpNetworkLoadHandler(new OkHttpClient.Builder().dispatcher(dispatcher).build());
+    }
+
+    @AfterClass
+    public static void stopServer(){
+        server.stop();
+    }
+
+    @Test
+    public void threadsIndependentOfInFlight() throws Exception {
+        Run completion10 = runCompletion(10);
+        Run completion50 = runCompletion(50);
+        Run blocking50 = runBlocking(50);
+
+        System.out.println("[NetEngineCompletionModeTest]parallel downloads, delay:" + DELAY + "ms"
+                + "\n  completion 10 " + completion10
+                + "\n  completion 50 " + completion50
+                + "\n  blocking   50 " + blocking50);
+
+        Assert.assertEquals(10, completion10.succeed);
+        Assert.assertEquals(50, completion50.succeed);
+        Assert.assertEquals(50, blocking50.succeed);
+        //the downloads are in flight at the same time in both modes
+        Assert.assertTrue("in flight:" + completion50.serverInFlight, completion50.serverInFlight >= 40);
+        Assert.assertTrue("in flight:" + blocking50.serverInFlight, blocking50.serverInFlight >= 40);
+        Assert.assertTrue("elapse:" + completion50.elapse, completion50.elapse < DELAY * 5);
+        //completion mode: 1 worker + bounded I/O threads, whatever the number of downloads
+        Assert.assertTrue("threads:" + completion10.maxThreads, completion10.maxThreads <= 1 + MAX_THREAD);
+        Assert.assertTrue("threads:" + completion50.maxThreads, completion50.maxThreads <= 1 + MAX_THREAD);
+        //the worker doesn't wait for responses (count * DELAY if it does)
+        Assert.assertTrue("worker blocked:" + completion50.startElapse, completion50.startElapse < DELAY * 2);
+        //blocking mode: one waiting worker per download
+        Assert.assertTrue("threads:" + blocking50.maxThreads, blocking50.maxThreads >= 40);
+    }
+
+    private Run runCompletion(final int count) throws Exception {
+        server.resetCounts();
+        final Run run = new Run();
+        final CountDownLatch latch = new CountDownLatch(count);
+        final ThreadPoolExecutor resultExecutor = NetEngine.newResultExecutor(MAX_THREAD);
+        ExecutorService worker = Executors.newSingleThreadExecutor(new WorkerThreadFactory());
+        Sampler sampler = new Sampler();
+        sampler.start();
+        long startTime = System.currentTimeMillis();
+        worker.submit(new Runnable() {
+            @Override
+            public void run() {
+                long workerStartTime = System.currentTimeMillis();
+                for (int i = 0 ; i < count ; i++) {
+                    final EngineCallback<NetworkLoadHandler.Result> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+                    callback.setOnResultListener(new EngineCallback.OnResultListener() {
+                        @Override
+                        public void onResult(final int result) {
+                            Runnable process = new Runnable() {
+                                @Override
+                                public void run() {
+                                    run.finish(result, callback.getData());
+                                    latch.countDown();
+                                }
+                            };
+                            try {
+                                resultExecutor.execute(process);
+                            } catch (RejectedExecutionException e) {
+                                process.run();
+                            }
+                        }
+                    });
+                    handler.onHandle(null, null, newTaskInfo("completion", count, i), callback, TIMEOUT, TIMEOUT, NullLogger.INSTANCE);
+                }
+                run.startElapse = System.currentTimeMillis() - workerStartTime;
+            }
+        });
+        Assert.assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        run.elapse = System.currentTimeMillis() - startTime;
+        run.maxThreads = sampler.finish();
+        run.serverInFlight = server.getMaxInFlightCount();
+        worker.shutdownNow();
+        resultExecutor.shutdownNow();
+        return run;
+    }
+
+    private Run runBlocking(final int count) throws Exception {
+        server.resetCounts();
+        final Run run = new Run();
+        final CountDownLatch latch = new CountDownLatch(count);
+        ExecutorService workers = Executors.newFixedThreadPool(count, new WorkerThreadFactory());
+        Sampler sampler = new Sampler();
+        sampler.start();
+        long startTime = System.currentTimeMillis();
+        for (int i = 0 ; i < count ; i++) {
+            final int index = i;
+            workers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    EngineCallback<NetworkLoadHandler.Result> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+                    handler.onHandle(null, null, newTaskInfo("blocking", count, index), callback, TIMEOUT, TIMEOUT, NullLogger.INSTANCE);
+                    run.finish(callback.getResult(), callback.getData());
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        run.elapse = System.currentTimeMillis() - startTime;
+        run.maxThreads = sampler.finish();
+        run.serverInFlight = server.getMaxInFlightCount();
+        workers.shutdownNow();
+        return run;
+    }
+
+    private Task.Info newTaskInfo(String mode, int count, int index){
+        return TaskFixtures.newTask("stress", server.url("/" + mode + "/" + count + "/" + index), LoadPriority.ON_SCREEN).getTaskInfo();
+    }
+
+    private static class Run {
+
+        private final AtomicInteger succeedCounter = new AtomicInteger(0);
+        private int succeed;
+        private long elapse;
+        private long startElapse;
+        private int maxThreads;
+        private int serverInFlight;
+
+        private void finish(int result, NetworkLoadHandler.Result data){
+            if (result != EngineCallback.RESULT_SUCCEED || data == null || data.getInputStream() == null){
+                return;
+            }
+            //read body, like writing disk cache
+            long length = 0;
+            InputStream inputStream = data.getInputStream();
+            try {
+                byte[] buffer = new byte[4096];
+                int readLength;
+                while ((readLength = inputStream.read(buffer)) >= 0) {
+                    length += readLength;
+                }
+            } catch (IOException e) {
+                return;
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (length == 32 * 1024) {
+                succeed = succeedCounter.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "succeed:" + succeed + " elapse:" + elapse + "ms workerStartElapse:" + startElapse
+                    + "ms maxLoaderThreads:" + maxThreads + " serverMaxInFlight:" + serverInFlight;
+        }
+    }
+
+    /**
+     * samples the number of live threads of TILoader
+     */
+    private static class Sampler extends Thread {
+
+        private volatile boolean running = true;
+        private int max = 0;
+
+        private Sampler() {
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                int count = 0;
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.isAlive() && thread.getName().startsWith("TLoader-")) {
+                        count++;
+                    }
+                }
+                max = Math.max(max, count);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private int finish() throws InterruptedException {
+            running = false;
+            join();
+            return max;
+        }
+    }
+
+    /**
+     * same name as the workers of EngineScheduler
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "TLoader-Engine-worker-" + count.getAndIncrement());
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+
+/**
+ * <p>NetworkConcurrencyController driven by a simulated link (simulated clock, no threads): the latency of a loading
+ * is round trip time + size * running loadings / bandwidth, the loadings exceeding the timeout are congested.
+ * The lane always has tasks waiting (scrolling a long list).</p>
+ */
+public class NetworkConcurrencyControllerTest {
+
+    private static final long SIZE = 20000L;//bytes of image
+    private static final long TIMEOUT = 400L;//congested if latency exceeds, millis
+
+    private static final int MIN = 1;
+    private static final int MAX = 16;
+
+    @Test
+    public void convergeOnFastLink(){
+        NetworkConcurrencyController controller = new NetworkConcurrencyController(MIN, MAX, 2);
+        Simulator simulator = new Simulator(controller);
+
+        Phase warm = simulator.run(50, 500, 20000);
+        Phase stable = simulator.run(50, 500, 40000);
+        Phase fixed = new Simulator(new NetworkConcurrencyController(2, 2, 2)).run(50, 500, 40000);
+
+        Assert.assertTrue(warm.maxConcurrency > 2);
+        //keep the latency near the minimum (5~6 loadings), the periodic probing of min latency causes few congestion
+        Assert.assertTrue("congested:" + stable.congested + "/" + stable.samples, stable.congested < stable.samples * 0.05);
+        Assert.assertTrue("in band:" + stable.samplesBetween(4, 7) + "/" + stable.samples, stable.samplesBetween(4, 7) > stable.samples * 0.8);
+        //more throughput than fixed concurrency, most of the bandwidth is used
+        Assert.assertTrue(stable.throughput() + " vs " + fixed.throughput(), stable.throughput() > fixed.throughput() * 1.2);
+        Assert.assertTrue(String.valueOf(stable.throughput()), stable.throughput() > 500 * 0.7);
+    }
+
+    @Test
+    public void decreaseOnCongestionAndRecover(){
+        NetworkConcurrencyController controller = new NetworkConcurrencyController(MIN, MAX, 8);
+        Simulator simulator = new Simulator(controller);
+
+        simulator.run(50, 500, 20000);
+        //link degraded: only one loading at a time can finish in time
+        Phase congested = simulator.run(50, 100, 30000);
+        //stays at min, probes 2 occasionally
+        Assert.assertTrue("in band:" + congested.samplesBetween(MIN, 2) + "/" + congested.samples, congested.samplesBetween(MIN, 2) > congested.samples * 0.8);
+        Assert.assertTrue("reach min after:" + congested.reachMinTime, congested.reachMinTime >= 0 && congested.reachMinTime <= 10000);
+        //fixed concurrency keeps timing out
+        Simulator fixedSimulator = new Simulator(new NetworkConcurrencyController(8, 8, 8));
+        fixedSimulator.run(50, 500, 20000);
+        Phase fixed = fixedSimulator.run(50, 100, 30000);
+        Assert.assertTrue("congested:" + fixed.congested + "/" + fixed.samples, fixed.congested > fixed.samples * 0.9);
+        //the controller probes 2 (latency of 1 loading is close to the min latency of fast link) and halves back
+        Assert.assertTrue("congested:" + congested.congested + "/" + congested.samples, congested.congested < congested.samples * 0.6);
+        Assert.assertTrue(congested.throughput() + " vs " + fixed.throughput(), congested.throughput() > fixed.throughput() * 3);
+
+        //link recovered
+        Phase recovered = simulator.run(50, 500, 30000);
+        Assert.assertTrue("concurrency:" + recovered.maxConcurrency, recovered.maxConcurrency >= 5);
+        Assert.assertTrue("congested:" + recovered.congested + "/" + recovered.samples, recovered.congested < recovered.samples * 0.1);
+        Assert.assertTrue(String.valueOf(recovered.throughput()), recovered.throughput() > 500 * 0.7);
+    }
+
+    @Test
+    public void bounds(){
+        NetworkConcurrencyController controller = new NetworkConcurrencyController(2, 3, 10);
+        Assert.assertEquals(3, controller.getConcurrency());
+        Simulator simulator = new Simulator(controller);
+        Phase fast = simulator.run(50, 5000, 30000);
+        Assert.assertEquals(3, fast.maxConcurrency);
+        Phase slow = simulator.run(50, 20, 30000);
+        Assert.assertEquals(2, slow.minConcurrency);
+        Assert.assertTrue(controller.getHistory().size() > 1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void illegalBounds(){
+        new NetworkConcurrencyController(2, 1, 1);
+    }
+
+    /**
+     * discrete-event simulation of network lane
+     */
+    private static class Simulator {
+
+        private final NetworkConcurrencyController controller;
+        private final PriorityQueue<long[]> running = new PriorityQueue<>(16, new java.util.Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return Long.compare(o1[0], o2[0]);
+            }
+        });
+        private long time = System.currentTimeMillis();
+
+        private Simulator(NetworkConcurrencyController controller) {
+            this.controller = controller;
+        }
+
+        /**
+         * @param rtt round trip time, millis
+         * @param bandwidth bytes per millis, shared by running loadings
+         * @param duration millis
+         */
+        private Phase run(long rtt, double bandwidth, long duration){
+            Phase phase = new Phase();
+            long start = time;
+            long end = time + duration;
+            while (time < end) {
+                //dispatch
+                while (running.size() < controller.getConcurrency()) {
+                    long latency = rtt + (long) (SIZE * (running.size() + 1) / bandwidth);
+                    running.add(new long[]{time + latency, latency});
+                }
+                //the earliest loading finished
+                long[] loading = running.poll();
+                time = Math.max(time, loading[0]);
+                boolean saturated = running.size() + 1 >= controller.getConcurrency();
+                boolean congested = loading[1] > TIMEOUT;
+                controller.onSample(congested ? 0 : SIZE, loading[1], congested, saturated, time);
+                phase.onSample(congested, controller.getConcurrency(), time - start);
+            }
+            phase.duration = time - start;
+            return phase;
+        }
+
+    }
+
+    private static class Phase {
+
+        private long loaded = 0;
+        private int samples = 0;
+        private int congested = 0;
+        private final int[] concurrencySamples = new int[MAX + 1];
+        private long duration = 0;
+        private int minConcurrency = Integer.MAX_VALUE;
+        private int maxConcurrency = 0;
+        private long reachMinTime = -1;
+
+        private void onSample(boolean congested, int concurrency, long elapse){
+            samples++;
+            concurrencySamples[concurrency]++;
+            if (congested) {
+                this.congested++;
+            } else {
+                loaded += SIZE;
+            }
+            minConcurrency = Math.min(minConcurrency, concurrency);
+            maxConcurrency = Math.max(maxConcurrency, concurrency);
+            if (concurrency == MIN && reachMinTime < 0) {
+                reachMinTime = elapse;
+            }
+        }
+
+        private int samplesBetween(int min, int max){
+            int count = 0;
+            for (int i = min ; i <= max ; i++){
+                count += concurrencySamples[i];
+            }
+            return count;
+        }
+
+        /**
+         * @return bytes per millis
+         */
+        private double throughput(){
+            return (double) loaded / Math.max(1, duration);
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
+
+/**
+ * <p>Partial downloads kept for resuming, and discarded if they can't be resumed: longer than the resource,
+ * or the resource changed (validator of the partial content response mismatch).</p>
+ */
+public class PartialDownloadStoreTest {
+
+    private static final String KEY = "partial_key";
+    private static final long TOTAL = 1024;
+    private static final CacheValidator VALIDATOR = new CacheValidator("\"v1\"", "Mon, 11 Dec 2017 08:00:00 GMT", 60);
+
+    private File cacheDir;
+    private PartialDownloadStore store;
+
+    @Before
+    public void setup() throws IOException {
+        cacheDir = File.createTempFile("partial-download", "");
+        Assert.assertTrue(cacheDir.delete() && cacheDir.mkdirs());
+        store = new PartialDownloadStore(cacheDir, TOTAL * 16);
+    }
+
+    @After
+    public void clean(){
+        store.remove(KEY);
+        File directory = new File(cacheDir, "partial");
+        Assert.assertTrue(!directory.exists() || directory.delete());
+        Assert.assertTrue(cacheDir.delete());
+    }
+
+    @Test
+    public void keepAndTake() throws IOException {
+        write(TOTAL / 2);
+        store.keep(KEY, TOTAL, VALIDATOR, 0);
+        ResumeInfo resumeInfo = store.take(KEY);
+        Assert.assertNotNull(resumeInfo);
+        Assert.assertEquals(TOTAL / 2, resumeInfo.getOffset());
+        Assert.assertEquals(TOTAL, resumeInfo.getTotal());
+        Assert.assertEquals(VALIDATOR.getETag(), resumeInfo.getCacheValidator().getETag());
+    }
+
+    @Test
+    public void discardLongerThanTotal() throws IOException {
+        File dataFile = write(TOTAL + 1);
+        store.keep(KEY, TOTAL, VALIDATOR, 0);
+        Assert.assertFalse(dataFile.exists());
+        Assert.assertNull(store.take(KEY));
+
+        //completed but failed to be copied, nothing to resume
+        dataFile = write(TOTAL);
+        store.keep(KEY, TOTAL, VALIDATOR, 0);
+        Assert.assertFalse(dataFile.exists());
+        Assert.assertNull(store.take(KEY));
+    }
+
+    @Test
+    public void sameResource(){
+        //no validator in response, trust If-Range
+        Assert.assertTrue(PartialDownloadStore.isSameResource(VALIDATOR, null));
+        Assert.assertTrue(PartialDownloadStore.isSameResource(VALIDATOR, new CacheValidator(null, null, 60)));
+        //ETag first
+        Assert.assertTrue(PartialDownloadStore.isSameResource(VALIDATOR, new CacheValidator("\"v1\"", "Tue, 12 Dec 2017 08:00:00 GMT", 60)));
+        Assert.assertFalse(PartialDownloadStore.isSameResource(VALIDATOR, new CacheValidator("\"v2\"", VALIDATOR.getLastModified(), 60)));
+        //Last-Modified
+        CacheValidator lastModifiedOnly = new CacheValidator(null, VALIDATOR.getLastModified(), 60);
+        Assert.assertTrue(PartialDownloadStore.isSameResource(lastModifiedOnly, new CacheValidator("\"v1\"", VALIDATOR.getLastModified(), 60)));
+        Assert.assertFalse(PartialDownloadStore.isSameResource(lastModifiedOnly, new CacheValidator(null, "Tue, 12 Dec 2017 08:00:00 GMT", 60)));
+        //can't be compared
+        Assert.assertFalse(PartialDownloadStore.isSameResource(new CacheValidator("\"v1\"", null, 60), new CacheValidator(null, VALIDATOR.getLastModified(), 60)));
+    }
+
+    private File write(long length) throws IOException {
+        File dataFile = store.prepareDataFile(KEY);
+        OutputStream outputStream = new FileOutputStream(dataFile);
+        try {
+            outputStream.write(new byte[(int) length]);
+        } finally {
+            outputStream.close();
+        }
+        return dataFile;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import sviolet.turquoise.x.imageloader.benchmark.LocalHttpServer;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.handler.common.CommonNetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.handler.common.OkHttpNetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>HTTP revalidation of expired disk cache entries by {@link CommonNetworkLoadHandler} and
+ * {@link OkHttpNetworkLoadHandler}, against a local HTTP server counting 200 vs 304 responses.</p>
+ *
+ * <p>one download, then the entry is revalidated several times (304, no body), then the image is modified on
+ * the server (200 with the new validator). The result is read like NetEngine does (EngineCallback).</p>
+ */
+public class RevalidationTest {
+
+    private static final int LENGTH = 64 * 1024;
+    private static final int REVALIDATE_TIMES = 10;
+    private static final long TIMEOUT = 5000L;
+    private static final String LAST_MODIFIED = "Mon, 11 Dec 2017 08:00:00 GMT";
+
+    private static LocalHttpServer server;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer().setBody(new byte[LENGTH]);
+    }
+
+    @AfterClass
+    public static void stopServer(){
+        server.stop();
+    }
+
+    @Test
+    public void common() throws Exception {
+        revalidate("common", new CommonNetworkLoadHandler());
+    }
+
+    @Test
+    public void okHttp() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectTimeout(TIMEOUT, TimeUnit.MILLISECONDS)
+                .readTimeout(TIMEOUT, TimeUnit.MILLISECONDS)
+                .build();
+        revalidate("okhttp", new OkHttpNetworkLoadHandler(client));
+    }
+
+    private void revalidate(String mode, NetworkLoadHandler handler) throws Exception {
+        server.resetCounts();
+        server.setValidators("\"v1\"", LAST_MODIFIED, "max-age=60");
+        String url = server.url("/" + mode);
+
+        //first download, the validator is stored alongside the disk cache entry
+        NetworkLoadHandler.Result result = load(handler, url, null);
+        Assert.assertEquals(NetworkLoadHandler.ResultType.INPUTSTREAM, result.getType());
+        Assert.assertEquals(LENGTH, readAll(result.getInputStream()));
+        CacheValidator validator = result.getCacheValidator();
+        Assert.assertEquals("\"v1\"", validator.getETag());
+        Assert.assertEquals(LAST_MODIFIED, validator.getLastModified());
+        Assert.assertEquals(60, validator.getMaxAge());
+
+        //expired entry is revalidated, not modified
+        for (int i = 0 ; i < REVALIDATE_TIMES ; i++) {
+            result = load(handler, url, validator);
+            Assert.assertEquals(NetworkLoadHandler.ResultType.NOT_MODIFIED, result.getType());
+            Assert.assertNull(result.getInputStream());
+            validator = validator.merge(result.getCacheValidator());
+            Assert.assertEquals("\"v1\"", validator.getETag());
+        }
+
+        //Last-Modified only (server without ETag)
+        result = load(handler, url, new CacheValidator(null, LAST_MODIFIED, CacheValidator.UNKNOWN_MAX_AGE));
+        Assert.assertEquals(NetworkLoadHandler.ResultType.NOT_MODIFIED, result.getType());
+
+        //modified on server, downloaded again with the new validator
+        server.setValidators("\"v2\"", null, "max-age=60");
+        result = load(handler, url, validator);
+        Assert.assertEquals(NetworkLoadHandler.ResultType.INPUTSTREAM, result.getType());
+        Assert.assertEquals(LENGTH, readAll(result.getInputStream()));
+        Assert.assertEquals("\"v2\"", result.getCacheValidator().getETag());
+
+        System.out.println("[RevalidationTest]" + mode + ", " + (LENGTH / 1024) + "KB image, revalidated " + (REVALIDATE_TIMES + 1) + " times then modified"
+                + "\n  200:" + server.getOkCount() + " 304:" + server.getNotModifiedCount() + " body bytes:" + server.getBodyBytes()
+                + " (without revalidation:" + (long) (REVALIDATE_TIMES + 3) * LENGTH + ")");
+
+        Assert.assertEquals(2, server.getOkCount());
+        Assert.assertEquals(REVALIDATE_TIMES + 1, server.getNotModifiedCount());
+        Assert.assertEquals(2L * LENGTH, server.getBodyBytes());
+    }
+
+    private NetworkLoadHandler.Result load(NetworkLoadHandler handler, String url, CacheValidator validator) throws Exception {
+        Task task = TaskFixtures.newTask("revalidation", url, LoadPriority.ON_SCREEN);
+        task.setCacheValidator(validator);
+        EngineCallback<NetworkLoadHandler.Result> callback = new EngineCallback<>(TIMEOUT, NullLogger.INSTANCE);
+        handler.onHandle(null, null, task.getTaskInfo(), callback, TIMEOUT, TIMEOUT, NullLogger.INSTANCE);
+        Assert.assertEquals(EngineCallback.RESULT_SUCCEED, callback.getResult());
+        return callback.getData();
+    }
+
+    private int readAll(InputStream inputStream) throws IOException {
+        int length = 0;
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0) {
+                length += readLength;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sviolet.turquoise.x.imageloader.benchmark.FakeDecodeHandler;
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.LocalHttpServer;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>Decode while downloading ({@link StreamingDecoder}) vs decode after downloaded, from a throttled local HTTP server.</p>
+ *
+ * <p>All the times are measured by System.nanoTime from the start of the same task. time to download: the body is
+ * downloaded and written into the cache file (like DiskCacheServer.write). time to first pixel: the decoded image is
+ * ready to display. time to complete: both of them are done, the task finishes.</p>
+ *
+ * <p>BitmapFactory is native in android-all, {@link FakeDecodeHandler} simulates the decoding cost (in proportion to
+ * data length), so only the overlapping of download and decode is measured, not the real decoder.</p>
+ */
+public class StreamingDecoderTest {
+
+    private static final int LENGTH = 256 * 1024;
+    private static final long THROTTLE = 512 * 1024;//bytes per second, 500ms per image
+    private static final long DECODE_NANOS_PER_KB = 1000000L;//256ms per image
+    private static final int TIMES = 3;
+
+    private static LocalHttpServer server;
+    private static File cacheDir;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer().setThrottle(THROTTLE).setBody(new byte[LENGTH]);
+        cacheDir = File.createTempFile("streaming-decode", "");
+        Assert.assertTrue(cacheDir.delete() && cacheDir.mkdirs());
+    }
+
+    @AfterClass
+    public static void stopServer(){
+        server.stop();
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Assert.assertTrue(file.delete());
+            }
+        }
+        Assert.assertTrue(cacheDir.delete());
+    }
+
+    @Test
+    public void firstPixelAndComplete() throws Exception {
+        FakeDecodeHandler decodeHandler = new FakeDecodeHandler(DECODE_NANOS_PER_KB);
+        ExecutorService decodeExecutor = Executors.newCachedThreadPool();
+        Timing sequential = new Timing();
+        Timing streaming = new Timing();
+        try {
+            //warm up
+            loadSequential(decodeHandler, 0);
+            for (int i = 1 ; i <= TIMES ; i++) {
+                sequential.add(loadSequential(decodeHandler, i));
+                streaming.add(loadStreaming(decodeHandler, decodeExecutor, i));
+            }
+        } finally {
+            decodeExecutor.shutdownNow();
+        }
+
+        System.out.println("[StreamingDecoderTest]" + (LENGTH / 1024) + "KB at " + (THROTTLE / 1024) + "KB/s, decode "
+                + (LENGTH / 1024 * DECODE_NANOS_PER_KB / 1000000L) + "ms, average of " + TIMES
+                + "\n  decode after downloaded " + sequential
+                + "\n  decode while downloading " + streaming);
+
+        Assert.assertEquals(TIMES, decodeHandler.getStreamDecodeCount());
+        //downloading is not slowed down by the tee
+        Assert.assertTrue(streaming.downloaded() + " vs " + sequential.downloaded(), streaming.downloaded() < sequential.downloaded() * 1.2);
+        //the decoding is overlapped with downloading, most of the decoding time is saved
+        long decodeTime = LENGTH / 1024 * DECODE_NANOS_PER_KB / 1000000L;
+        Assert.assertTrue(streaming.firstPixel() + " vs " + sequential.firstPixel(), streaming.firstPixel() < sequential.firstPixel() - decodeTime / 2);
+    }
+
+    /**
+     * download into cache file, then decode from file
+     */
+    private long[] loadSequential(FakeDecodeHandler decodeHandler, int index) throws IOException {
+        Task task = newTask("sequential", index);
+        long startTime = System.nanoTime();
+        File file = download(task, null);
+        long downloaded = System.nanoTime() - startTime;
+        ImageResource resource = decodeHandler.decode(null, null, task, file, NullLogger.INSTANCE);
+        long firstPixel = System.nanoTime() - startTime;
+        Assert.assertEquals(LENGTH, new FakeImageResourceHandler().byteCountOf(resource));
+        long complete = System.nanoTime() - startTime;
+        return checkTiming(downloaded, firstPixel, complete);
+    }
+
+    /**
+     * StreamingDecoder decodes the teed stream, while it's written into cache file
+     */
+    private long[] loadStreaming(FakeDecodeHandler decodeHandler, ExecutorService decodeExecutor, int index) throws IOException {
+        Task task = newTask("streaming", index);
+        FakeImageResourceHandler imageResourceHandler = new FakeImageResourceHandler();
+        StreamingDecoder streamingDecoder = new StreamingDecoder(null, null, imageResourceHandler, NullLogger.INSTANCE, task, decodeHandler);
+        long startTime = System.nanoTime();
+        Assert.assertTrue(streamingDecoder.start(decodeExecutor));
+        download(task, streamingDecoder);
+        long downloaded = System.nanoTime() - startTime;
+        streamingDecoder.finish();
+        ImageResource resource = streamingDecoder.await(10000L);
+        long firstPixel = System.nanoTime() - startTime;
+        Assert.assertEquals(LENGTH, imageResourceHandler.byteCountOf(resource));
+        long complete = System.nanoTime() - startTime;
+        return checkTiming(downloaded, firstPixel, complete);
+    }
+
+    /**
+     * the task completes after the first pixel and the download
+     */
+    private long[] checkTiming(long downloaded, long firstPixel, long complete){
+        Assert.assertTrue(firstPixel + " vs " + complete, firstPixel <= complete);
+        Assert.assertTrue(downloaded + " vs " + complete, downloaded <= complete);
+        return new long[]{downloaded, firstPixel, complete};
+    }
+
+    private File download(Task task, StreamingDecoder streamingDecoder) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(task.getUrl()).openConnection();
+        File file = new File(cacheDir, task.getResourceKey());
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        try {
+            inputStream = connection.getInputStream();
+            if (streamingDecoder != null) {
+                inputStream = streamingDecoder.tee(inputStream);
+            }
+            outputStream = new FileOutputStream(file);
+            byte[] buffer = new byte[8 * 1024];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, readLength);
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (outputStream != null) {
+                outputStream.close();
+            }
+            connection.disconnect();
+        }
+        return file;
+    }
+
+    private Task newTask(String mode, int index){
+        return TaskFixtures.newTask("streaming", server.url("/" + mode + "/" + index), LoadPriority.ON_SCREEN);
+    }
+
+    /**
+     * average of nanos, in ms
+     */
+    private static class Timing {
+
+        private long downloaded;
+        private long firstPixel;
+        private long complete;
+        private int count;
+
+        private void add(long[] timing){
+            downloaded += timing[0];
+            firstPixel += timing[1];
+            complete += timing[2];
+            count++;
+        }
+
+        private long downloaded(){
+            return downloaded / count / 1000000L;
+        }
+
+        private long firstPixel(){
+            return firstPixel / count / 1000000L;
+        }
+
+        private long complete(){
+            return complete / count / 1000000L;
+        }
+
+        @Override
+        public String toString() {
+            return "timeToDownload:" + downloaded() + "ms timeToFirstPixel:" + firstPixel() + "ms timeToComplete:" + complete() + "ms";
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sviolet.turquoise.x.imageloader.benchmark.FakeDecodeHandler;
+import sviolet.turquoise.x.imageloader.benchmark.FakeImageResourceHandler;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>One url requested with several sizes (e.g. thumbnail in list, large image in detail page), decoded after downloaded.</p>
+ *
+ * <p>decode each task in turn (before {@link VariantPlan}) vs decode the largest variant and derive the others from it,
+ * each variant in its own job on the decode pool (like NetEngine.dispatchDecode/dispatchDerive). time to display of
+ * the last variant is measured.</p>
+ *
+ * <p>BitmapFactory is native in android-all, {@link FakeDecodeHandler} simulates the decoding and deriving cost by
+ * sleeping, so the parallel part of the gain needs spare cores on device, the deduplicating and deriving part doesn't.</p>
+ */
+public class VariantPlanTest {
+
+    private static final int[] SIZES = {1080, 540, 270, 135};
+    private static final int TASKS_PER_SIZE = 2;//e.g. the same image in two lists
+    private static final int LENGTH = 256 * 1024;
+    private static final long DECODE_NANOS_PER_KB = 200000L;//51ms per decoding
+    private static final long DERIVE_NANOS = 5000000L;//5ms per deriving
+    private static final int DECODE_THREADS = 3;
+    private static final int TIMES = 3;
+
+    @Test
+    public void plan(){
+        List<Task> tasks = new ArrayList<>();
+        Task large1 = newTask(800, 800, 0);
+        Task large2 = newTask(800, 800, 1);
+        Task small1 = newTask(400, 400, 2);
+        Task small2 = newTask(400, 400, 3);
+        Task thumbnail = newTask(100, 100, 4);
+        Task banner = newTask(1000, 100, 5);
+        tasks.add(small1);
+        tasks.add(large1);
+        tasks.add(banner);
+        tasks.add(small2);
+        tasks.add(large2);
+        tasks.add(thumbnail);
+
+        VariantPlan plan = VariantPlan.of(tasks, null);
+        Assert.assertEquals(0, plan.getPreloadDiskTasks().size());
+        Assert.assertNull(plan.getStreamedVariant());
+        //the tasks with same key are decoded once
+        Assert.assertEquals(2, plan.getLargest().size());
+        Assert.assertTrue(plan.getLargest().contains(large1) && plan.getLargest().contains(large2));
+        Assert.assertEquals(2, plan.getDerivedVariants().size());
+        Assert.assertEquals(2, plan.getDerivedVariants().get(0).size());
+        Assert.assertTrue(plan.getDerivedVariants().get(0).contains(small1) && plan.getDerivedVariants().get(0).contains(small2));
+        Assert.assertEquals(1, plan.getDerivedVariants().get(1).size());
+        Assert.assertTrue(plan.getDerivedVariants().get(1).contains(thumbnail));
+        //wider than the largest one, can't be derived
+        Assert.assertEquals(1, plan.getDecodedVariants().size());
+        Assert.assertTrue(plan.getDecodedVariants().get(0).contains(banner));
+
+        //the variant decoded while downloading is excluded, the largest one of the others is the source
+        plan = VariantPlan.of(tasks, large2);
+        Assert.assertEquals(2, plan.getStreamedVariant().size());
+        Assert.assertEquals(small1.getKey(), plan.getLargest().get(0).getKey());
+        Assert.assertEquals(1, plan.getDerivedVariants().size());
+        Assert.assertTrue(plan.getDerivedVariants().get(0).contains(thumbnail));
+        Assert.assertEquals(1, plan.getDecodedVariants().size());
+        Assert.assertTrue(plan.getDecodedVariants().get(0).contains(banner));
+    }
+
+    @Test
+    public void lastVariantTimeToDisplay() throws Exception {
+        FakeDecodeHandler sequentialHandler = new FakeDecodeHandler(DECODE_NANOS_PER_KB).setDeriveCost(DERIVE_NANOS);
+        FakeDecodeHandler fanOutHandler = new FakeDecodeHandler(DECODE_NANOS_PER_KB).setDeriveCost(DERIVE_NANOS);
+        ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+        byte[] data = new byte[LENGTH];
+        Timing sequential = new Timing();
+        Timing fanOut = new Timing();
+        try {
+            //warm up
+            loadFanOut(fanOutHandler, decodeExecutor, data, 0);
+            fanOutHandler = new FakeDecodeHandler(DECODE_NANOS_PER_KB).setDeriveCost(DERIVE_NANOS);
+            for (int i = 1 ; i <= TIMES ; i++) {
+                sequential.add(loadSequential(sequentialHandler, data, i));
+                fanOut.add(loadFanOut(fanOutHandler, decodeExecutor, data, i));
+            }
+        } finally {
+            decodeExecutor.shutdownNow();
+        }
+
+        System.out.println("[VariantPlanTest]" + SIZES.length + " sizes x " + TASKS_PER_SIZE + " tasks, decode "
+                + (LENGTH / 1024 * DECODE_NANOS_PER_KB / 1000000L) + "ms, derive " + (DERIVE_NANOS / 1000000L) + "ms, average of " + TIMES
+                + "\n  decode each task " + sequential + " decodes:" + sequentialHandler.getBytesDecodeCount()
+                + "\n  plan (dedup+derive+fan-out) " + fanOut + " decodes:" + fanOutHandler.getBytesDecodeCount() + " derives:" + fanOutHandler.getDeriveCount());
+
+        Assert.assertEquals(SIZES.length * TASKS_PER_SIZE * TIMES, sequentialHandler.getBytesDecodeCount());
+        Assert.assertEquals(TIMES, fanOutHandler.getBytesDecodeCount());
+        Assert.assertEquals((SIZES.length - 1) * TIMES, fanOutHandler.getDeriveCount());
+        //the first variant waits for one decoding in both modes
+        Assert.assertTrue(fanOut.first() + " vs " + sequential.first(), fanOut.first() < sequential.first() * 2);
+        //the last variant waits for one decoding and one deriving, instead of all decodings
+        Assert.assertTrue(fanOut.last() + " vs " + sequential.last(), fanOut.last() < sequential.last() / 3);
+    }
+
+    /**
+     * decode each task in turn on the network thread
+     */
+    private long[] loadSequential(FakeDecodeHandler decodeHandler, byte[] data, int index){
+        List<Task> tasks = newTasks("sequential", index);
+        long startTime = System.nanoTime();
+        long first = -1;
+        for (Task task : tasks) {
+            ImageResource resource = decodeHandler.decode(null, null, task, data, NullLogger.INSTANCE);
+            Assert.assertNotNull(resource);
+            if (first < 0){
+                first = System.nanoTime() - startTime;
+            }
+        }
+        return new long[]{first, System.nanoTime() - startTime};
+    }
+
+    /**
+     * decode by VariantPlan, the same job structure as NetEngine.dispatchDecode/dispatchDerive
+     */
+    private long[] loadFanOut(final FakeDecodeHandler decodeHandler, final ExecutorService decodeExecutor, final byte[] data, int index) throws InterruptedException {
+        VariantPlan plan = VariantPlan.of(newTasks("fan-out", index), null);
+        Assert.assertEquals(0, plan.getDecodedVariants().size());
+        final long startTime = System.nanoTime();
+        final AtomicLong first = new AtomicLong(-1);
+        final CountDownLatch latch = new CountDownLatch(1 + plan.getDerivedVariants().size());
+        final List<Task> largest = plan.getLargest();
+        final List<List<Task>> derivedVariants = plan.getDerivedVariants();
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Task source = largest.get(0);
+                final ImageResource sourceResource = decodeHandler.decode(null, null, source, data, NullLogger.INSTANCE);
+                onDisplay(sourceResource, startTime, first, latch);
+                for (final List<Task> derivedVariant : derivedVariants) {
+                    decodeExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            ImageResource resource = decodeHandler.derive(null, null, derivedVariant.get(0), source, sourceResource, NullLogger.INSTANCE);
+                            onDisplay(resource, startTime, first, latch);
+                        }
+                    });
+                }
+            }
+        });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return new long[]{first.get(), System.nanoTime() - startTime};
+    }
+
+    private void onDisplay(ImageResource resource, long startTime, AtomicLong first, CountDownLatch latch){
+        Assert.assertTrue(new FakeImageResourceHandler().byteCountOf(resource) > 0);
+        first.compareAndSet(-1, System.nanoTime() - startTime);
+        latch.countDown();
+    }
+
+    private List<Task> newTasks(String mode, int index){
+        List<Task> tasks = new ArrayList<>();
+        //small ones first, like a list page displayed before the detail page
+        for (int i = SIZES.length - 1 ; i >= 0 ; i--) {
+            for (int j = 0 ; j < TASKS_PER_SIZE ; j++) {
+                tasks.add(TaskFixtures.newTask(mode + j, "http://127.0.0.1/" + mode + "/" + index,
+                        new Params.Builder().setReqSize(SIZES[i], SIZES[i]).build(), LoadPriority.ON_SCREEN));
+            }
+        }
+        return tasks;
+    }
+
+    private Task newTask(int reqWidth, int reqHeight, int nodeIndex){
+        return TaskFixtures.newTask("node" + nodeIndex, "http://127.0.0.1/variant",
+                new Params.Builder().setReqSize(reqWidth, reqHeight).build(), LoadPriority.ON_SCREEN);
+    }
+
+    private static class Timing {
+
+        private long first;
+        private long last;
+        private int count;
+
+        private void add(long[] timing){
+            first += timing[0];
+            last += timing[1];
+            count++;
+        }
+
+        private long first(){
+            return first / count / 1000000L;
+        }
+
+        private long last(){
+            return last / count / 1000000L;
+        }
+
+        @Override
+        public String toString() {
+            return "firstVariant:" + first() + "ms lastVariant:" + last() + "ms";
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server.module;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import sviolet.thistle.model.cache.DiskLruCache;
+import sviolet.turquoise.x.imageloader.benchmark.FailingExceptionHandler;
+import sviolet.turquoise.x.imageloader.benchmark.NullLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.TaskFixtures;
+
+/**
+ * <p>Wiping disk cache: the open caches of all shards are closed before deleting, and reopened lazily,
+ * so that the journals are not written to deleted files.</p>
+ */
+public class DiskCacheModuleTest {
+
+    @Test
+    public void wipeAndReopen() throws IOException {
+        File path = Files.createTempDirectory("tiloader-wipe").toFile();
+        try {
+            DiskCacheModule module = new DiskCacheModule();
+            module.init(path, 1024 * 1024, 4, true, FailingExceptionHandler.INSTANCE, NullLogger.INSTANCE);
+            Task[] tasks = new Task[8];
+            for (int i = 0 ; i < tasks.length ; i++){
+                tasks[i] = TaskFixtures.newTask("wipe", "http://127.0.0.1/wipe/" + i, LoadPriority.ON_SCREEN);
+                write(module, tasks[i]);
+            }
+
+            module.wipe(path);
+            Assert.assertEquals(0, countFiles(path));
+
+            //reopened when used, the entries written after wiping are kept with their journals
+            for (Task task : tasks){
+                Assert.assertNull(module.get(task));
+                module.release(task, false);
+                write(module, task);
+            }
+            for (Task task : tasks){
+                Assert.assertNotNull(module.get(task));
+                module.release(task, false);
+            }
+            for (File shard : path.listFiles()){
+                Assert.assertTrue(shard.toString(), new File(shard, "journal").exists());
+            }
+            Assert.assertTrue(module.getDiskReport(), module.getDiskReport().contains(" close:4 "));
+        } finally {
+            DiskLruCache.deleteContents(path);
+            path.delete();
+        }
+    }
+
+    private void write(DiskCacheModule module, Task task) throws IOException {
+        DiskLruCache.Editor editor = module.edit(task);
+        Assert.assertNotNull(editor);
+        OutputStream outputStream = editor.newOutputStream(DiskCacheModule.INDEX_DATA);
+        outputStream.write(new byte[]{1, 2, 3});
+        outputStream.close();
+        editor.commit();
+        module.release(task, true);
+    }
+
+    private int countFiles(File dir){
+        int count = 0;
+        File[] files = dir.listFiles();
+        if (files != null){
+            for (File file : files){
+                count += file.isDirectory() ? countFiles(file) : 1;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.stub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sviolet.thistle.util.conversion.ByteUtils;
+
+/**
+ * <p>ResourceKeys.murmur3x64_128 against the reference MurmurHash3_x64_128 (seed 0), the vectors are h1 and h2
+ * in hex (big-endian), covering the empty input, every tail branch and multiple blocks.</p>
+ */
+public class ResourceKeysTest {
+
+    private static final String[][] VECTORS = {
+            {"", "00000000000000000000000000000000"},
+            {"a", "85555565f6597889e6b53a48510e895a"},
+            {"hello", "cbd8a7b341bd9b025b1e906a48ae1d19"},
+            {"123456789", "3c84645edb66cca499f8fac73a1ea105"},
+            {"hello, world", "342fac623a5ebc8e4cdcbc079642414d"},
+            {"0123456789abcde", "a62dd5f6c0bf23514fccf50c7c544cf0"},
+            {"0123456789abcdef", "4be06d94cf4ad1a787c35b5c63a708da"},
+            {"0123456789abcdefg", "8e32612daa45f9de0800f4c206c372ee"},
+            {"The quick brown fox jumps over the lazy dog", "e34bbc7bbc071b6c7a433ca9c49a9347"},
+            {"https://www.example.com/images/photo_001.jpg?w=256&h=256", "6e81f4ea9d34ba5a7c35ca345d76083d"},
+    };
+
+    @Test
+    public void referenceVectors() throws Exception {
+        for (String[] vector : VECTORS) {
+            String hash = ByteUtils.bytesToHex(ResourceKeys.murmur3x64_128(vector[0].getBytes("UTF-8")));
+            Assert.assertEquals("input:\"" + vector[0] + "\"", vector[1], hash.toLowerCase());
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ import sviolet.demoaimageloader.demos.GifActivity;
 import sviolet.demoaimageloader.demos.ListViewActivity;
 import sviolet.demoaimageloader.demos.RecyclerViewActivity;
 import sviolet.demoaimageloader.demos.RoundedListActivity;
+import sviolet.demoaimageloader.demos.ScrollBenchmarkActivity;
 import sviolet.turquoise.enhance.app.TActivity;
 import sviolet.turquoise.enhance.app.annotation.inject.ResourceId;
 import sviolet.turquoise.enhance.app.annotation.setting.ActivitySettings;
@@ -63,7 +64,8 @@ import sviolet.turquoise.x.imageloader.TILoaderUtils;
         GifActivity.class,
         ListViewActivity.class,
         RoundedListActivity.class,
-        RecyclerViewActivity.class
+        RecyclerViewActivity.class,
+        ScrollBenchmarkActivity.class
 })
 
 /**************************************************************
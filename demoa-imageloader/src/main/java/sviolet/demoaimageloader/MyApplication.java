@@ -73,6 +73,7 @@ public class MyApplication extends TApplication {
 //                .setConfigure(LowNetworkSpeedStrategy.Type.HIGH_SPEED_MOBILE_NETWORK, 10000, 30000, 20 * 1024)
 //                .setConfigure(LowNetworkSpeedStrategy.Type.WIFI_NETWORK, 10000, 30000, 20 * 1024)
 //                .setConfigure(LowNetworkSpeedStrategy.Type.INDISPENSABLE_TASK, 40000, 120000, 256)
+//                .setMode(LowNetworkSpeedStrategy.Mode.MEASURED_BANDWIDTH)//根据实测带宽计算配置(EWMA), 代替按网络类型选择
 //                .build();
 
         TILoader.setting(new ServerSettings.Builder()
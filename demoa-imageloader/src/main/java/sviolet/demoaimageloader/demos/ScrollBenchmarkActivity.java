@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.demoaimageloader.demos;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Message;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.Button;
+import android.widget.TextView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sviolet.demoaimageloader.R;
+import sviolet.demoaimageloader.common.DemoDescription;
+import sviolet.demoaimageloader.custom.MyNetworkLoadHandler;
+import sviolet.demoaimageloader.demos.extra.AsyncImageItem;
+import sviolet.demoaimageloader.demos.extra.RecyclerViewAdapter;
+import sviolet.turquoise.enhance.app.TAppCompatActivity;
+import sviolet.turquoise.enhance.app.annotation.inject.ResourceId;
+import sviolet.turquoise.enhance.app.annotation.setting.ActivitySettings;
+import sviolet.turquoise.enhance.common.WeakHandler;
+import sviolet.turquoise.util.droid.DeviceUtils;
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.TILoader;
+import sviolet.turquoise.x.imageloader.TILoaderUtils;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
+import sviolet.turquoise.x.imageloader.entity.NodeSettings;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.node.NodeRemoter;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.node.VelocityLoadController;
+import sviolet.turquoise.x.imageloader.node.VelocityOnRecyclerViewScrollListener;
+import sviolet.turquoise.x.imageloader.server.EngineCallback;
+
+@DemoDescription(
+        title = "Scroll Benchmark",
+        type = "",
+        info = "Dropped frames and wasted loads, pause on fling vs velocity-aware loading"
+)
+
+/**
+ * 滑动加载测试: 自动执行多次快慢不同的fling, 统计掉帧数和无效加载数(加载完成前已滑出屏幕的网络加载),
+ * 对比"fling时暂停"和"根据滑动速度控制加载(VelocityLoadController)"两种方式.
+ * 每次测试使用不同的URL, 避免缓存影响测试结果.
+ *
+ * Created by S.Violet on 2017/11/27.
+ */
+@ResourceId(R.layout.scroll_benchmark_main)
+@ActivitySettings(
+        statusBarColor = 0xFF30C0C0,
+        navigationBarColor = 0xFF30C0C0
+)
+public class ScrollBenchmarkActivity extends TAppCompatActivity {
+
+    private static final int ITEM_COUNT = 300;
+    private static final float[] FLING_VELOCITY_PERCENTS = {1.0f, 0.2f, 0.6f, 0.1f, 1.0f, 0.4f, 0.8f, 0.15f};//最大fling速度的百分比
+    private static final long FLING_INTERVAL = 2000L;//ms
+    private static final long FRAME_INTERVAL_NANOS = 16666667L;
+
+    private static final String MODE_PAUSE = "pause";
+    private static final String MODE_VELOCITY = "velocity";
+
+    @ResourceId(R.id.scroll_benchmark_main_recyclerView)
+    private RecyclerView recyclerView;
+    @ResourceId(R.id.scroll_benchmark_main_pause)
+    private Button pauseButton;
+    @ResourceId(R.id.scroll_benchmark_main_velocity)
+    private Button velocityButton;
+    @ResourceId(R.id.scroll_benchmark_main_report)
+    private TextView reportView;
+
+    private CountingNetworkLoadHandler networkLoadHandler;
+    private NodeSettings nodeSettings;
+    private FrameMonitor frameMonitor;
+
+    //当前测试
+    private int run = 0;
+    private String mode;
+    private List<String> urls;
+    private int flingIndex;
+    private NodeRemoter nodeRemoter;
+    private VelocityLoadController velocityLoadController;
+    private RecyclerView.OnScrollListener loadListener;
+
+    //统计
+    private int networkLoadCount;
+    private int wastedLoadCount;
+
+    @Override
+    protected void onInitViews(Bundle savedInstanceState) {
+        networkLoadHandler = new CountingNetworkLoadHandler(new MyNetworkLoadHandler(30f, new int[]{R.mipmap.rounded_list_image1, R.mipmap.rounded_list_image2, R.mipmap.rounded_list_image3, R.mipmap.rounded_list_image4, R.mipmap.rounded_list_image5}));
+        nodeSettings = new NodeSettings.Builder()
+                .setNetworkLoadHandler(networkLoadHandler)
+                .setBackgroundColor(0xFFF0F0F0)
+                .setRequestQueueSize(10)
+                .build();
+        TILoader.node(this).setting(nodeSettings);
+
+        if (DeviceUtils.getVersionSDK() >= 16) {
+            frameMonitor = new FrameMonitor();
+        }
+
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        //统计无效加载: 每次停止滑动时, 检查期间发起的网络加载是否在屏幕内
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE && mode != null) {
+                    countLoads();
+                }
+            }
+        });
+
+        pauseButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startRun(MODE_PAUSE);
+            }
+        });
+        velocityButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startRun(MODE_VELOCITY);
+            }
+        });
+    }
+
+    @Override
+    protected void afterDestroy() {
+        myHandler.removeCallbacksAndMessages(null);
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+    }
+
+    /****************************************************
+     * 测试流程
+     */
+
+    private void startRun(String mode) {
+        myHandler.removeCallbacksAndMessages(null);
+        recyclerView.stopScroll();
+
+        //移除上次测试的监听器, 恢复加载
+        if (loadListener != null) {
+            recyclerView.removeOnScrollListener(loadListener);
+        }
+        if (nodeRemoter != null) {
+            nodeRemoter.resume();
+            nodeRemoter.setLoadLevel(LoadLevel.NETWORK);
+        }
+        TILoaderUtils.wipeMemoryCache();
+
+        //每次测试使用新的URL, 避免磁盘缓存影响结果
+        this.mode = mode;
+        run++;
+        urls = makeUrls(run);
+        recyclerView.setAdapter(new RecyclerViewAdapter(this, makeItemList(urls)));
+
+        nodeRemoter = TILoader.node(this).newNodeRemoter();
+        velocityLoadController = null;
+        if (MODE_PAUSE.equals(mode)) {
+            loadListener = new PauseOnRecyclerViewScrollListener(nodeRemoter);
+        } else {
+            velocityLoadController = new VelocityLoadController(this, nodeRemoter)
+                    .setPrefetchNodeSettings(nodeSettings)
+                    .setPrefetchProvider(new VelocityLoadController.PrefetchProvider() {
+                        @Override
+                        public List<String> getUrls(int fromPosition, int toPosition) {
+                            return urls.subList(fromPosition, toPosition);
+                        }
+
+                        @Override
+                        public Params getParams() {
+                            return null;
+                        }
+                    });
+            loadListener = new VelocityOnRecyclerViewScrollListener(velocityLoadController);
+        }
+        recyclerView.addOnScrollListener(loadListener);
+
+        //重置统计
+        networkLoadHandler.drainUrls();
+        networkLoadCount = 0;
+        wastedLoadCount = 0;
+        flingIndex = 0;
+        if (frameMonitor != null) {
+            frameMonitor.start();
+        }
+        refreshReport(false);
+
+        myHandler.sendEmptyMessageDelayed(MyHandler.HANDLER_FLING, FLING_INTERVAL);
+    }
+
+    private void fling() {
+        if (flingIndex >= FLING_VELOCITY_PERCENTS.length) {
+            //等待最后一次加载完成后输出报告
+            countLoads();
+            if (frameMonitor != null) {
+                frameMonitor.stop();
+            }
+            refreshReport(true);
+            return;
+        }
+        int maxVelocity = ViewConfiguration.get(this).getScaledMaximumFlingVelocity();
+        recyclerView.fling(0, (int) (maxVelocity * FLING_VELOCITY_PERCENTS[flingIndex]));
+        flingIndex++;
+        refreshReport(false);
+        myHandler.sendEmptyMessageDelayed(MyHandler.HANDLER_FLING, FLING_INTERVAL);
+    }
+
+    /**
+     * 停止滑动时, 滑动期间发起的网络加载, 若对应的item已不在屏幕内(前后各留一屏余量), 视为无效加载
+     */
+    private void countLoads() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        int margin = last - first + 1;
+        for (String url : networkLoadHandler.drainUrls()) {
+            int position = urls.indexOf(url);
+            if (position < 0) {
+                continue;
+            }
+            networkLoadCount++;
+            if (position < first - margin || position > last + margin) {
+                wastedLoadCount++;
+            }
+        }
+    }
+
+    private void refreshReport(boolean finished) {
+        StringBuilder report = new StringBuilder();
+        report.append("run:").append(run).append(" mode:").append(mode);
+        report.append(finished ? " finished" : " fling:" + flingIndex + "/" + FLING_VELOCITY_PERCENTS.length);
+        if (frameMonitor != null) {
+            report.append("\nframes:").append(frameMonitor.frames).append(" dropped:").append(frameMonitor.droppedFrames);
+        } else {
+            report.append("\nframes: n/a (api < 16)");
+        }
+        report.append("\nnetwork loads:").append(networkLoadCount).append(" wasted:").append(wastedLoadCount);
+        if (velocityLoadController != null) {
+            report.append(" prefetched:").append(velocityLoadController.getPrefetchRequestCount());
+        }
+        reportView.setText(report.toString());
+        if (finished) {
+            TLogger.get(this).i("[ScrollBenchmark]" + toJson());
+        }
+    }
+
+    /**
+     * 测试结果(JSON), 便于不同版本间对比
+     */
+    private String toJson() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("run", run);
+            json.put("mode", mode);
+            json.put("frames", frameMonitor != null ? frameMonitor.frames : -1);
+            json.put("droppedFrames", frameMonitor != null ? frameMonitor.droppedFrames : -1);
+            json.put("networkLoads", networkLoadCount);
+            json.put("wastedLoads", wastedLoadCount);
+            json.put("prefetched", velocityLoadController != null ? velocityLoadController.getPrefetchRequestCount() : 0);
+            return json.toString();
+        } catch (JSONException e) {
+            return "error while building json:" + e.getMessage();
+        }
+    }
+
+    /****************************************************
+     * 模拟数据生成
+     */
+
+    private List<String> makeUrls(int run) {
+        List<String> urls = new ArrayList<>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            urls.add("http://benchmark" + String.valueOf(run) + "-" + String.valueOf(i));
+        }
+        return urls;
+    }
+
+    private List<AsyncImageItem> makeItemList(List<String> urls) {
+        List<AsyncImageItem> list = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            AsyncImageItem item = new AsyncImageItem();
+            item.setUrl(0, urls.get(i));
+            item.setTitle("Benchmark Title " + String.valueOf(i));
+            item.setContent("Benchmark content");
+            list.add(item);
+        }
+        return list;
+    }
+
+    /****************************************************
+     * 统计
+     */
+
+    /**
+     * 记录网络加载的URL
+     */
+    private static class CountingNetworkLoadHandler implements NetworkLoadHandler {
+
+        private final NetworkLoadHandler provider;
+        private final List<String> urls = new ArrayList<>();
+
+        private CountingNetworkLoadHandler(NetworkLoadHandler provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void onHandle(Context applicationContext, Context context, Task.Info taskInfo, EngineCallback<Result> callback, long connectTimeout, long readTimeout, TLogger logger) {
+            synchronized (urls) {
+                urls.add(taskInfo.getUrl());
+            }
+            provider.onHandle(applicationContext, context, taskInfo, callback, connectTimeout, readTimeout, logger);
+        }
+
+        private List<String> drainUrls() {
+            synchronized (urls) {
+                List<String> result = new ArrayList<>(urls);
+                urls.clear();
+                return result;
+            }
+        }
+
+    }
+
+    /**
+     * 统计掉帧: 相邻两帧间隔超过1.5倍帧间隔视为掉帧
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameMonitor implements Choreographer.FrameCallback {
+
+        private boolean running = false;
+        private long lastFrameNanos;
+        private int frames;
+        private int droppedFrames;
+
+        private void start() {
+            frames = 0;
+            droppedFrames = 0;
+            lastFrameNanos = 0;
+            if (!running) {
+                running = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        private void stop() {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) {
+                return;
+            }
+            if (lastFrameNanos > 0) {
+                long interval = frameTimeNanos - lastFrameNanos;
+                if (interval > FRAME_INTERVAL_NANOS * 3 / 2) {
+                    droppedFrames += (int) (interval / FRAME_INTERVAL_NANOS) - 1;
+                }
+            }
+            frames++;
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+    }
+
+    /****************************************************
+     * fling时暂停(对照组)
+     */
+
+    private static class PauseOnRecyclerViewScrollListener extends RecyclerView.OnScrollListener {
+
+        private NodeRemoter nodeRemoter;
+
+        private PauseOnRecyclerViewScrollListener(NodeRemoter nodeRemoter) {
+            this.nodeRemoter = nodeRemoter;
+        }
+
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            switch (newState) {
+                case RecyclerView.SCROLL_STATE_IDLE:
+                case RecyclerView.SCROLL_STATE_DRAGGING:
+                    nodeRemoter.resume();
+                    break;
+                case RecyclerView.SCROLL_STATE_SETTLING:
+                    nodeRemoter.pause();
+                    break;
+            }
+        }
+
+    }
+
+    private MyHandler myHandler = new MyHandler(this);
+
+    private static class MyHandler extends WeakHandler<ScrollBenchmarkActivity> {
+
+        private static final int HANDLER_FLING = 0;//自动fling
+
+        public MyHandler(ScrollBenchmarkActivity host) {
+            super(host);
+        }
+
+        @Override
+        protected void handleMessageWithHost(Message msg, ScrollBenchmarkActivity host) {
+            switch (msg.what) {
+                case HANDLER_FLING:
+                    host.fling();
+                    break;
+            }
+        }
+    }
+
+}
@@ -30,9 +30,12 @@ import sviolet.turquoise.x.imageloader.entity.ServerSettings;
 import sviolet.turquoise.x.imageloader.node.NodeFactory;
 import sviolet.turquoise.x.imageloader.node.NodeFactoryImpl;
 import sviolet.turquoise.x.imageloader.node.NodeManager;
+import sviolet.turquoise.x.imageloader.server.DecodeServer;
+import sviolet.turquoise.x.imageloader.server.DecodedDiskCacheServer;
 import sviolet.turquoise.x.imageloader.server.DiskCacheServer;
 import sviolet.turquoise.x.imageloader.server.DiskEngine;
 import sviolet.turquoise.x.imageloader.server.Engine;
+import sviolet.turquoise.x.imageloader.server.EngineScheduler;
 import sviolet.turquoise.x.imageloader.server.MemoryCacheServer;
 import sviolet.turquoise.x.imageloader.server.MemoryEngine;
 import sviolet.turquoise.x.imageloader.server.NetEngine;
@@ -81,9 +84,12 @@ public class ComponentManager {
 
     private MemoryCacheServer memoryCacheServer;
     private DiskCacheServer diskCacheServer;
+    private DecodedDiskCacheServer decodedDiskCacheServer;
+    private DecodeServer decodeServer;
     private Engine memoryEngine;
     private Engine diskEngine;
     private Engine netEngine;
+    private EngineScheduler engineScheduler;
 
     private ServerSettings serverSettings;
 
@@ -110,6 +116,14 @@ public class ComponentManager {
         return diskCacheServer;
     }
 
+    public DecodedDiskCacheServer getDecodedDiskCacheServer() {
+        return decodedDiskCacheServer;
+    }
+
+    public DecodeServer getDecodeServer() {
+        return decodeServer;
+    }
+
     public Engine getMemoryEngine(){
         return memoryEngine;
     }
@@ -122,6 +136,10 @@ public class ComponentManager {
         return netEngine;
     }
 
+    public EngineScheduler getEngineScheduler() {
+        return engineScheduler;
+    }
+
     /**
      * component must be initialized before get ServerSettings
      * @return get ServerSettings
@@ -197,17 +215,23 @@ public class ComponentManager {
         //instance components
         memoryCacheServer = new MemoryCacheServer();
         diskCacheServer = new DiskCacheServer();
+        decodedDiskCacheServer = new DecodedDiskCacheServer();
+        decodeServer = new DecodeServer();
         memoryEngine = new MemoryEngine();
         diskEngine = new DiskEngine();
         netEngine = new NetEngine();
+        engineScheduler = new EngineScheduler();
 
         //init components
         serverSettings.init(ComponentManager.getInstance());
         memoryCacheServer.init(ComponentManager.getInstance());
         diskCacheServer.init(ComponentManager.getInstance());
+        decodedDiskCacheServer.init(ComponentManager.getInstance());
+        decodeServer.init(ComponentManager.getInstance());
         memoryEngine.init(ComponentManager.getInstance());
         diskEngine.init(ComponentManager.getInstance());
         netEngine.init(ComponentManager.getInstance());
+        engineScheduler.init(ComponentManager.getInstance());
         getLogger().i("[ComponentManager]TILoader initialized");
     }
 
@@ -27,11 +27,16 @@ import android.os.Build;
 import android.support.annotation.RequiresPermission;
 
 import java.lang.ref.WeakReference;
+import java.util.List;
 
+import sviolet.turquoise.x.imageloader.entity.NodeSettings;
 import sviolet.turquoise.x.imageloader.entity.OnLoadedListener;
 import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
 import sviolet.turquoise.x.imageloader.entity.ServerSettings;
 import sviolet.turquoise.x.imageloader.node.Node;
+import sviolet.turquoise.x.imageloader.node.PreloadNode;
+import sviolet.turquoise.x.imageloader.node.PreloadRemoter;
 import sviolet.turquoise.x.imageloader.stub.StubRemoter;
 
 /**
@@ -115,6 +120,58 @@ public class TILoader {
         return ComponentManager.getInstance().getNodeManager().fetchExtractNode(context).extract(url, params, listener);
     }
 
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     *
+     * <p>Preload images into cache without view, e.g. warm the cache for the next page of a feed. Preload tasks are
+     * executed in low priority, only when the engines have no visible loading task waiting, so they never starve
+     * visible loads. Preload tasks are not affected by lifecycle of context, cancel them by {@link PreloadRemoter#cancel()}.</p>
+     *
+     * <p>{@link PreloadTarget#DISK}: download to disk cache only, no decoding.<br/>
+     * {@link PreloadTarget#DISK_AND_MEMORY}: load into memory cache, the params should be the same as the params of
+     * displaying (reqWidth/reqHeight...), otherwise the memory cache can not be hit.</p>
+     *
+     * <p>Preloading follows LowNetworkSpeedStrategy (as a dispensable task), and doesn't download on metered network
+     * by default (ServerSettings->setPreloadOnMeteredNetwork).</p>
+     *
+     * <pre>{@code
+     *      PreloadRemoter remoter = TILoader.preload(this, nextPageUrls, params, PreloadTarget.DISK_AND_MEMORY);
+     *      //cancel if the page is closed
+     *      remoter.cancel();
+     * }</pre>
+     *
+     * @param context applicationContext or activity/fragment context
+     * @param urls URLs
+     * @param params loading params, nullable
+     * @param target disk or disk+memory
+     * @return {@link PreloadRemoter}, cancel the preload group
+     */
+    @RequiresPermission(allOf = {"android.permission.INTERNET", "android.permission.ACCESS_NETWORK_STATE"})
+    public static PreloadRemoter preload(Context context, List<String> urls, Params params, PreloadTarget target) {
+        return preload(context, urls, params, target, null);
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * Preload images into cache without view, with settings of preload node (e.g. custom NetworkLoadHandler).<br/>
+     * @see #preload(Context, List, Params, PreloadTarget)
+     * @param context applicationContext or activity/fragment context
+     * @param urls URLs
+     * @param params loading params, nullable
+     * @param target disk or disk+memory
+     * @param settings settings of preload node, nullable
+     * @return {@link PreloadRemoter}, cancel the preload group
+     */
+    @RequiresPermission(allOf = {"android.permission.INTERNET", "android.permission.ACCESS_NETWORK_STATE"})
+    public static PreloadRemoter preload(Context context, List<String> urls, Params params, PreloadTarget target, NodeSettings settings) {
+        checkContext(context);
+        PreloadNode node = ComponentManager.getInstance().getNodeManager().newPreloadNode(context);
+        if (settings != null){
+            node.setting(settings);
+        }
+        return node.preload(urls, params, target);
+    }
+
     /**
      * [Initialize TILoader]this method will initialize TILoader<br/>
      * Server Setting, you should setting before TILoader initialized (invoke TILoader.setting() or TILoader.node().load() will initialize TILoader).<br/>
@@ -34,7 +34,10 @@ import sviolet.turquoise.util.droid.DirectoryUtils;
 import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
 import sviolet.turquoise.x.imageloader.entity.ServerSettings;
+import sviolet.turquoise.x.imageloader.handler.MetricsCollector;
 import sviolet.turquoise.x.imageloader.node.Node;
+import sviolet.turquoise.x.imageloader.server.Engine;
+import sviolet.turquoise.x.imageloader.server.NetEngine;
 import sviolet.turquoise.x.imageloader.stub.Stub;
 import sviolet.turquoise.x.imageloader.stub.StubRemoter;
 
@@ -177,7 +180,7 @@ public class TILoaderUtils {
 
     /**
      * [Initialize TILoader]this method will initialize TILoader<br/>
-     * wipe TILoader's memory cache, all images will be recycled
+     * wipe TILoader's memory cache, all images will be recycled, except the images displayed by views
      */
     public static void wipeMemoryCache(){
         ComponentManager.getInstance().waitingForInitialized();
@@ -194,6 +197,64 @@ public class TILoaderUtils {
         return ComponentManager.getInstance().getMemoryCacheServer().getMemoryReport();
     }
 
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * release memory of TILoader on memory pressure (memory cache and bitmap pool), see MemoryTrimPolicy.
+     * TILoader has registered to ComponentCallbacks2 of application (API >= 14), invoke it manually if needed
+     * @param level level of ComponentCallbacks2.onTrimMemory
+     */
+    public static void trimMemory(int level){
+        ComponentManager.getInstance().waitingForInitialized();
+        ComponentManager.getInstance().getMemoryCacheServer().trimMemory(level);
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * get report of disk cache io (open/close/flush times and flush time), and decoded disk cache (hit rate)
+     */
+    public static String getDiskCacheReport(){
+        ComponentManager.getInstance().waitingForInitialized();
+        return ComponentManager.getInstance().getDiskCacheServer().getDiskReport()
+                + ComponentManager.getInstance().getDecodedDiskCacheServer().getDecodedDiskReport();
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * get report of network loading, e.g. how many network fetches saved by download history
+     */
+    public static String getNetworkReport(){
+        ComponentManager.getInstance().waitingForInitialized();
+        Engine netEngine = ComponentManager.getInstance().getNetEngine();
+        if (netEngine instanceof NetEngine){
+            return ((NetEngine) netEngine).getNetworkReport();
+        }
+        return "";
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * get report of engine scheduler, including lane occupancy, utilization and waiting time of MemoryEngine/DiskEngine/NetEngine,
+     * and the decode stage, helps to tune ServerSettings (xxxLoadMaxThread / decodeMaxThread)
+     */
+    public static String getEngineSchedulerReport(){
+        ComponentManager.getInstance().waitingForInitialized();
+        return ComponentManager.getInstance().getEngineScheduler().getSchedulerReport()
+                + ComponentManager.getInstance().getDecodeServer().getDecodeReport();
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * get report of metrics collector (ServerSettings->setMetricsCollector), empty if disabled
+     */
+    public static String getMetricsReport(){
+        ComponentManager.getInstance().waitingForInitialized();
+        MetricsCollector metricsCollector = ComponentManager.getInstance().getServerSettings().getMetricsCollector();
+        if (metricsCollector != null){
+            return metricsCollector.getReport();
+        }
+        return "";
+    }
+
     /***********************************************************************
      * other
      */
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.entity;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>EWMA (exponentially weighted moving average) estimator of download bandwidth (bytes/s), fed by the downloads
+ * (data transferring time, exclude connecting), used by {@link LowNetworkSpeedStrategy.Mode#MEASURED_BANDWIDTH}.</p>
+ *
+ * <p>The small downloads are dominated by latency rather than bandwidth, so that the weight of sample is scaled
+ * by its length (full weight from {@value REFERENCE_LENGTH} bytes), and the samples less than {@value MIN_SAMPLE_LENGTH}
+ * bytes are ignored.</p>
+ *
+ * Created by S.Violet on 2017/12/8.
+ */
+public class BandwidthEstimator {
+
+    private static final float ALPHA = 0.25f;
+    private static final long MIN_SAMPLE_LENGTH = 8 * 1024;//8K
+    private static final long REFERENCE_LENGTH = 64 * 1024;//64K
+    private static final long MIN_SAMPLE_ELAPSE = 50;//ms
+    private static final int MIN_SAMPLES = 3;
+
+    private double estimate = 0;//bytes/s
+    private volatile int sampleCount = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param length bytes transferred
+     * @param elapse time of transferring, millis
+     */
+    public void addSample(long length, long elapse){
+        if (length < MIN_SAMPLE_LENGTH || elapse < MIN_SAMPLE_ELAPSE){
+            return;
+        }
+        double speed = (double) length * 1000 / elapse;
+        double alpha = ALPHA * Math.min(1d, (double) length / REFERENCE_LENGTH);
+        try {
+            lock.lock();
+            if (sampleCount <= 0){
+                estimate = speed;
+            } else {
+                estimate = estimate + alpha * (speed - estimate);
+            }
+            sampleCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if there are enough samples to estimate
+     */
+    public boolean isReady(){
+        return sampleCount >= MIN_SAMPLES;
+    }
+
+    /**
+     * @return estimated bandwidth, bytes/s, 0 if no sample
+     */
+    public long getEstimate(){
+        try {
+            lock.lock();
+            return (long) estimate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSampleCount(){
+        return sampleCount;
+    }
+
+}
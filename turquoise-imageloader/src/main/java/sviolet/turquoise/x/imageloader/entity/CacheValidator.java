@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * <p>HTTP cache validators (ETag / Last-Modified) and freshness (Cache-Control: max-age) of a resource,
+ * stored alongside the disk cache entry.</p>
+ *
+ * <p>If HTTP revalidation enabled (ServerSettings->setHttpRevalidation), the expired disk cache entry is revalidated
+ * by conditional request (If-None-Match / If-Modified-Since), a 304 response refreshes the entry without transferring
+ * the body.</p>
+ *
+ * <p>NetworkLoadHandler: parse validator from response headers by {@link #parse(String, String, String)}, and set it to
+ * Result. Add conditional headers to request if Task.Info->getCacheValidator() is not null.</p>
+ *
+ * Created by S.Violet on 2017/12/6.
+ */
+public class CacheValidator {
+
+    public static final long UNKNOWN_MAX_AGE = -1;
+
+    private static final String CHARSET = "UTF-8";
+    private static final String SEPARATOR = "\n";
+    private static final String VERSION = "v1";
+
+    private final String eTag;
+    private final String lastModified;
+    private final long maxAge;
+    private long expiresAt = 0;
+    private long storedAt = 0;
+
+    /**
+     * @param eTag ETag header, nullable
+     * @param lastModified Last-Modified header, nullable
+     * @param maxAge max-age of Cache-Control (second), {@link #UNKNOWN_MAX_AGE} if absent
+     */
+    public CacheValidator(String eTag, String lastModified, long maxAge) {
+        this.eTag = isEmpty(eTag) ? null : eTag;
+        this.lastModified = isEmpty(lastModified) ? null : lastModified;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * parse from response headers
+     * @param eTag ETag header, nullable
+     * @param lastModified Last-Modified header, nullable
+     * @param cacheControl Cache-Control header, nullable
+     */
+    public static CacheValidator parse(String eTag, String lastModified, String cacheControl){
+        return new CacheValidator(eTag, lastModified, parseMaxAge(cacheControl));
+    }
+
+    private static long parseMaxAge(String cacheControl){
+        if (isEmpty(cacheControl)){
+            return UNKNOWN_MAX_AGE;
+        }
+        long maxAge = UNKNOWN_MAX_AGE;
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim().toLowerCase();
+            if ("no-cache".equals(directive) || "no-store".equals(directive)){
+                //revalidate every time
+                return 0;
+            }
+            if (directive.startsWith("max-age=")){
+                try {
+                    maxAge = Long.parseLong(directive.substring(8).trim().replace("\"", ""));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    /**
+     * merge validator of 304 response into the stored one, the new values take precedence,
+     * the storing time of data is kept (the data is not modified)
+     */
+    public CacheValidator merge(CacheValidator newValidator){
+        if (newValidator == null){
+            return new CacheValidator(eTag, lastModified, maxAge).setStoredAt(storedAt);
+        }
+        return new CacheValidator(
+                newValidator.eTag != null ? newValidator.eTag : eTag,
+                newValidator.lastModified != null ? newValidator.lastModified : lastModified,
+                newValidator.maxAge != UNKNOWN_MAX_AGE ? newValidator.maxAge : maxAge).setStoredAt(storedAt);
+    }
+
+    /**
+     * @return true if it has ETag or Last-Modified, the conditional request is available
+     */
+    public boolean hasValidator(){
+        return eTag != null || lastModified != null;
+    }
+
+    /**
+     * @param currentTime current time, millis
+     * @return true if the entry is expired
+     */
+    public boolean isExpired(long currentTime){
+        return expiresAt > 0 && currentTime >= expiresAt;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return max-age (second), {@link #UNKNOWN_MAX_AGE} if absent
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return expiring time (millis), 0 if unknown
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * set by disk cache while writing, according to max-age (or default max-age)
+     */
+    public CacheValidator setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+        return this;
+    }
+
+    /**
+     * @return the time (millis) when the data was stored into disk cache, 0 if unknown.
+     * the decoded images cached before it are outdated.
+     */
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    /**
+     * set by disk cache while writing data
+     */
+    public CacheValidator setStoredAt(long storedAt) {
+        this.storedAt = storedAt;
+        return this;
+    }
+
+    /**
+     * @return encoded data of disk cache
+     */
+    public byte[] encode(){
+        String str = VERSION + SEPARATOR +
+                (eTag != null ? eTag : "") + SEPARATOR +
+                (lastModified != null ? lastModified : "") + SEPARATOR +
+                maxAge + SEPARATOR +
+                expiresAt + SEPARATOR +
+                storedAt;
+        try {
+            return str.getBytes(CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("[CacheValidator]unsupported charset:" + CHARSET, e);
+        }
+    }
+
+    /**
+     * @param data encoded data of disk cache
+     * @return null if data is empty or illegal
+     */
+    public static CacheValidator decode(byte[] data){
+        if (data == null || data.length <= 0){
+            return null;
+        }
+        try {
+            String[] values = new String(data, CHARSET).split(SEPARATOR, -1);
+            if (values.length < 6 || !VERSION.equals(values[0])){
+                return null;
+            }
+            return new CacheValidator(values[1], values[2], Long.parseLong(values[3]))
+                    .setExpiresAt(Long.parseLong(values[4]))
+                    .setStoredAt(Long.parseLong(values[5]));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean isEmpty(String str){
+        return str == null || str.length() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheValidator{eTag=" + eTag + ", lastModified=" + lastModified + ", maxAge=" + maxAge + ", expiresAt=" + expiresAt + ", storedAt=" + storedAt + "}";
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Loading level of Node, set by NodeRemoter (e.g. according to the scroll velocity of list).</p>
+ *
+ * <p>MEMORY_ONLY: only memory cache is used, tasks missed memory cache will wait (fast fling).</p>
+ *
+ * <p>DISK: memory cache and disk cache are used, tasks missed disk cache will wait (medium speed).</p>
+ *
+ * <p>NETWORK: full loading (idle / slow scroll), the same as a resumed Node.</p>
+ *
+ * Created by S.Violet on 2017/11/27.
+ */
+public enum LoadLevel {
+    MEMORY_ONLY,
+    DISK,
+    NETWORK
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Priority of loading task, used by {@link NodeSettings.RequestQueueType#PRIORITY} request queue.</p>
+ *
+ * <p>Tasks with higher priority will be executed first, and the lowest priority task will be dropped
+ * first when the queue is full. You can update the priority of a loading View by
+ * {@link sviolet.turquoise.x.imageloader.stub.StubRemoter#setPriority(LoadPriority)}.</p>
+ *
+ * Created by S.Violet on 2017/11/20.
+ */
+public enum LoadPriority {
+
+    /**
+     * prefetch task, not displayed yet
+     */
+    PREFETCH,
+
+    /**
+     * View has been scrolled off the screen
+     */
+    OFF_SCREEN,
+
+    /**
+     * View is close to the screen, will be displayed soon
+     */
+    NEAR_SCREEN,
+
+    /**
+     * View is displaying on the screen (default)
+     */
+    ON_SCREEN
+
+}
@@ -27,6 +27,7 @@ package sviolet.turquoise.x.imageloader.entity;
 public class LoadProgress {
 
     private Info info = new Info();
+    private volatile long startTime = 0;
 
     public void setLoaded(long loaded){
         info.loaded = loaded;
@@ -40,12 +41,23 @@ public class LoadProgress {
         info.total = total;
     }
 
+    /**
+     * reset progress before network loading, and record the start time of loading
+     */
     public LoadProgress reset(){
         setLoaded(Info.UNKNOWN);
         setTotal(Info.UNKNOWN);
+        startTime = System.currentTimeMillis();
         return this;
     }
 
+    /**
+     * @return elapsed time since network loading started (reset), millis, 0 if not started
+     */
+    public long elapse(){
+        return startTime > 0 ? System.currentTimeMillis() - startTime : 0;
+    }
+
     /**
      * @return loaded data count (network load), return {@value Info#UNKNOWN} before network load
      */
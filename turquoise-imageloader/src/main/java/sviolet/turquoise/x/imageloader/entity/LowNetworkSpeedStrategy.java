@@ -24,6 +24,7 @@ import android.content.Context;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import sviolet.turquoise.util.droid.NetStateUtils;
 import sviolet.turquoise.x.imageloader.handler.ExceptionHandler;
@@ -54,6 +55,12 @@ import sviolet.turquoise.x.imageloader.handler.ExceptionHandler;
  * and loading with {@link LowNetworkSpeedStrategy.Type#INDISPENSABLE_TASK} strategy. Generally, it is used for
  * loading large image and gif.</p></p>
  *
+ * <p>In {@link Mode#MEASURED_BANDWIDTH} mode (Builder->setMode), the configure is calculated from the bandwidth measured
+ * by recent downloads ({@link BandwidthEstimator}) and the data length of image, instead of network type.
+ * See {@link Mode}.</p>
+ *
+ * <p>The decisions (aborted by deadline / threshold speed / progress) can be got by {@link #getReport()}.</p>
+ *
  * <p>***************************************************************************************************</p>
  *
  * <p>Example & Default value::</p>
@@ -87,17 +94,49 @@ public class LowNetworkSpeedStrategy {
     public static final long DEADLINE_HIGH_INDISPENSABLE = 120 * 1000;//120s
     public static final int THRESHOLD_SPEED_INDISPENSABLE = 256;//256byte/s
 
+    //measured bandwidth mode
+    private static final long MIN_WINDOW_PERIOD_MEASURED = 2 * 1000;//2s
+    private static final long MAX_WINDOW_PERIOD_MEASURED = 20 * 1000;//20s
+    private static final long MIN_DEADLINE_EXTRA_MEASURED = 5 * 1000;//deadline >= windowPeriod + 5s
+    private static final long MAX_DEADLINE_MEASURED = 60 * 1000;//60s
+    private static final int MIN_THRESHOLD_SPEED_MEASURED = 1024;//1k/s
+    private static final int MAX_THRESHOLD_SPEED_MEASURED = 64 * 1024;//64k/s
+    private static final float WINDOW_FACTOR_MEASURED = 2f;//windowPeriod = expected time * 2
+    private static final float DEADLINE_FACTOR_MEASURED = 4f;//deadline = windowPeriod + expected time * 4
+    private static final float THRESHOLD_RATIO_MEASURED = 0.1f;//thresholdSpeed = estimated bandwidth * 0.1
+
     private Map<Type, Configure> configures;
+    private Mode mode;
+    private BandwidthEstimator bandwidthEstimator = new BandwidthEstimator();
+
+    //statistic of decisions
+    private AtomicInteger deadlineAbortCount = new AtomicInteger(0);
+    private AtomicInteger thresholdAbortCount = new AtomicInteger(0);
+    private AtomicInteger progressAbortCount = new AtomicInteger(0);
+    private AtomicInteger measuredConfigureCount = new AtomicInteger(0);
+    private volatile String lastAbort = "none";
 
-    private LowNetworkSpeedStrategy(Map<Type, Configure> configures){
+    private LowNetworkSpeedStrategy(Map<Type, Configure> configures, Mode mode){
         this.configures = configures;
+        this.mode = mode;
     }
 
-    @SuppressLint("MissingPermission")
     public Configure getConfigure(Context context, IndispensableState indispensableState){
+        return getConfigure(context, indispensableState, LoadProgress.Info.UNKNOWN);
+    }
+
+    /**
+     * @param dataLength data length of image, {@value LoadProgress.Info#UNKNOWN} if unknown
+     */
+    @SuppressLint("MissingPermission")
+    public Configure getConfigure(Context context, IndispensableState indispensableState, long dataLength){
         if (indispensableState.isIndispensable()){
             return configures.get(Type.INDISPENSABLE_TASK);
         }
+        if (mode == Mode.MEASURED_BANDWIDTH && bandwidthEstimator.isReady()){
+            measuredConfigureCount.incrementAndGet();
+            return calculateConfigure(bandwidthEstimator.getEstimate(), dataLength);
+        }
         NetStateUtils.NetworkType type = NetStateUtils.getNetworkType(context);
         switch (type){
             case MOBILE_2G:
@@ -109,18 +148,111 @@ public class LowNetworkSpeedStrategy {
         }
     }
 
+    /**
+     * window period and deadline scale with the expected transferring time (data length / bandwidth),
+     * threshold speed scales with bandwidth
+     */
+    private Configure calculateConfigure(long bandwidth, long dataLength){
+        bandwidth = Math.max(1, bandwidth);
+        long expectedTime = dataLength > 0 ? dataLength * 1000 / bandwidth : 0;
+        long windowPeriod = clamp((long) (expectedTime * WINDOW_FACTOR_MEASURED), MIN_WINDOW_PERIOD_MEASURED, MAX_WINDOW_PERIOD_MEASURED);
+        long deadline = clamp(windowPeriod + (long) (expectedTime * DEADLINE_FACTOR_MEASURED), windowPeriod + MIN_DEADLINE_EXTRA_MEASURED, MAX_DEADLINE_MEASURED);
+        int thresholdSpeed = (int) clamp((long) (bandwidth * THRESHOLD_RATIO_MEASURED), MIN_THRESHOLD_SPEED_MEASURED, MAX_THRESHOLD_SPEED_MEASURED);
+        return new Configure(Type.MEASURED_BANDWIDTH, windowPeriod, deadline, thresholdSpeed, bandwidth);
+    }
+
+    private static long clamp(long value, long min, long max){
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * feed bandwidth estimator, invoked when download finished (or aborted for low speed)
+     * @param length bytes transferred
+     * @param elapse time of transferring, millis
+     */
+    public void onTransferred(long length, long elapse){
+        bandwidthEstimator.addSample(length, elapse);
+    }
+
+    /**
+     * record the decision of aborting
+     * @param configure configure of the loading
+     * @param reason reason of aborting
+     * @param elapse elapse time of transferring, millis
+     * @param speed speed of transferring, bytes/s
+     */
+    public void onAborted(Configure configure, AbortReason reason, long elapse, int speed){
+        switch (reason){
+            case DEADLINE:
+                deadlineAbortCount.incrementAndGet();
+                break;
+            case THRESHOLD_SPEED:
+                thresholdAbortCount.incrementAndGet();
+                break;
+            case PROGRESS:
+            default:
+                progressAbortCount.incrementAndGet();
+                break;
+        }
+        lastAbort = reason + "(" + configure.getType() + ", " + elapse + "ms, " + speed / 1024 + "k/s, threshold:" + configure.getThresholdSpeed() / 1024 +
+                "k/s, window:" + configure.getWindowPeriod() + "ms, deadline:" + configure.getDeadline() + "ms)";
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public BandwidthEstimator getBandwidthEstimator() {
+        return bandwidthEstimator;
+    }
+
+    /**
+     * @return report of strategy: mode, estimated bandwidth, count of aborting decisions
+     */
+    public String getReport(){
+        return "[LowNetworkSpeedStrategy]mode:" + mode +
+                " bandwidth:" + bandwidthEstimator.getEstimate() / 1024 + "k/s samples:" + bandwidthEstimator.getSampleCount() +
+                " measuredConfigure:" + measuredConfigureCount.get() +
+                " abort(deadline:" + deadlineAbortCount.get() + " threshold:" + thresholdAbortCount.get() + " progress:" + progressAbortCount.get() + ")" +
+                " lastAbort:" + lastAbort + " ";
+    }
+
+    /**
+     * <p>Mode::</p>
+     * <p>NETWORK_TYPE:: The configure is chosen by network type (2G / WIFI / others), see {@link Type}. Default.</p>
+     * <p>MEASURED_BANDWIDTH:: The configure is calculated from the bandwidth measured by recent downloads (EWMA), and the
+     * data length of image (if known): window period and deadline scale with the expected transferring time, threshold speed
+     * scales with bandwidth. The configure of network type is used until enough downloads measured. Indispensable task
+     * still uses {@link Type#INDISPENSABLE_TASK}.</p>
+     */
+    public enum Mode{
+        NETWORK_TYPE,
+        MEASURED_BANDWIDTH
+    }
+
+    /**
+     * reason of aborting
+     */
+    public enum AbortReason{
+        DEADLINE,//reach the deadline
+        THRESHOLD_SPEED,//slower than threshold speed after window period
+        PROGRESS//too slow to finish before deadline (calculated by data length)
+    }
+
     /**
      * <p>Strategy Type::</p>
      * <p>LOW_SPEED_MOBILE_NETWORK:: Strategy for 2G network.</p>
      * <p>HIGH_SPEED_MOBILE_NETWORK:: Strategy for 3G, 4G, and unknown network.</p>
      * <p>WIFI_NETWORK:: Strategy for WIFI network. </p>
      * <p>INDISPENSABLE_TASK:: Strategy for indispensable task. (As far as possible to complete the task)</p>
+     * <p>MEASURED_BANDWIDTH:: Calculated by measured bandwidth, {@link Mode#MEASURED_BANDWIDTH} only, can not be set.</p>
      */
     public enum Type{
         LOW_SPEED_MOBILE_NETWORK,
         HIGH_SPEED_MOBILE_NETWORK,
         WIFI_NETWORK,
-        INDISPENSABLE_TASK
+        INDISPENSABLE_TASK,
+        MEASURED_BANDWIDTH
     }
 
     public static class Configure{
@@ -129,12 +261,18 @@ public class LowNetworkSpeedStrategy {
         private long windowPeriod;//ms
         private long deadline;//ms
         private int thresholdSpeed;//bytes/s
+        private long estimatedBandwidth;//bytes/s
 
         private Configure(Type type, long windowPeriod, long deadline, int thresholdSpeed){
+            this(type, windowPeriod, deadline, thresholdSpeed, 0);
+        }
+
+        private Configure(Type type, long windowPeriod, long deadline, int thresholdSpeed, long estimatedBandwidth){
             this.type = type;
             this.windowPeriod = windowPeriod;
             this.deadline = deadline;
             this.thresholdSpeed = thresholdSpeed;
+            this.estimatedBandwidth = estimatedBandwidth;
         }
 
         public Type getType() {
@@ -152,11 +290,19 @@ public class LowNetworkSpeedStrategy {
         public int getThresholdSpeed() {
             return thresholdSpeed;
         }
+
+        /**
+         * @return estimated bandwidth (bytes/s) which the configure calculated from, 0 if not {@link Type#MEASURED_BANDWIDTH}
+         */
+        public long getEstimatedBandwidth() {
+            return estimatedBandwidth;
+        }
     }
 
     public static class Builder{
 
         private Map<Type, Configure> configures = new HashMap<>();
+        private Mode mode = Mode.NETWORK_TYPE;
 
         public Builder(){
             configures.put(Type.LOW_SPEED_MOBILE_NETWORK, new Configure(Type.LOW_SPEED_MOBILE_NETWORK, WINDOW_PERIOD_LOW_SPEED, DEADLINE_LOW_SPEED, THRESHOLD_SPEED_LOW_SPEED));
@@ -199,6 +345,9 @@ public class LowNetworkSpeedStrategy {
             if (type == null){
                 throw new RuntimeException("[LowNetworkSpeedStrategy]type must not be null");
             }
+            if (type == Type.MEASURED_BANDWIDTH){
+                throw new RuntimeException("[LowNetworkSpeedStrategy]configure of MEASURED_BANDWIDTH is calculated, can not be set");
+            }
             if (windowPeriod < 0){
                 throw new RuntimeException("[LowNetworkSpeedStrategy]windowPeriod must >= 0");
             }
@@ -212,8 +361,20 @@ public class LowNetworkSpeedStrategy {
             return this;
         }
 
+        /**
+         * set mode of strategy, {@link Mode#NETWORK_TYPE} by default. See {@link Mode}.
+         * @param mode mode, nonnull
+         */
+        public Builder setMode(Mode mode){
+            if (mode == null){
+                throw new RuntimeException("[LowNetworkSpeedStrategy]mode must not be null");
+            }
+            this.mode = mode;
+            return this;
+        }
+
         public LowNetworkSpeedStrategy build(){
-            return new LowNetworkSpeedStrategy(configures);
+            return new LowNetworkSpeedStrategy(configures, mode);
         }
 
     }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Graduated response of memory cache to memory pressure (ComponentCallbacks2.onTrimMemory).</p>
+ *
+ * <p>The level of trim is mapped to {@link Stage}, each stage has a limit factor (limit of memory cache = max size * factor):
+ * evict the entries which are not displayed first ({@link Stage#EVICT_INVISIBLE}), then shrink the memory cache to a fraction
+ * ({@link Stage#SHRINK}), and finally drop everything ({@link Stage#DROP_ALL}). A lower stage never raises the limit
+ * lowered by a higher stage.</p>
+ *
+ * <p>The limit grows back when the pressure ends: the factor doubles every recover interval since the last trim,
+ * until the memory cache is fully recovered.</p>
+ *
+ * <p>The policy depends on nothing but the level and time, it can be verified by simulated trim levels:</p>
+ *
+ * <pre>{@code
+ *      MemoryTrimPolicy policy = new MemoryTrimPolicy(30000);
+ *      policy.onTrimMemory(MemoryTrimPolicy.TRIM_MEMORY_RUNNING_LOW, 0);//SHRINK
+ *      policy.getLimitFactor(0);//0.25
+ *      policy.getLimitFactor(60000);//1.0
+ * }</pre>
+ *
+ * Created by S.Violet on 2017/12/4.
+ */
+public class MemoryTrimPolicy {
+
+    //levels of ComponentCallbacks2.onTrimMemory
+    public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+    public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+    public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+    public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+    public static final int TRIM_MEMORY_BACKGROUND = 40;
+    public static final int TRIM_MEMORY_MODERATE = 60;
+    public static final int TRIM_MEMORY_COMPLETE = 80;
+
+    public static final long DEFAULT_RECOVER_INTERVAL = 30 * 1000L;//30s
+
+    private final long recoverInterval;
+
+    private volatile float trimFactor = 1f;
+    private volatile long trimTime = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public MemoryTrimPolicy() {
+        this(DEFAULT_RECOVER_INTERVAL);
+    }
+
+    /**
+     * @param recoverInterval the limit factor doubles every interval since the last trim, millis, > 0
+     */
+    public MemoryTrimPolicy(long recoverInterval) {
+        if (recoverInterval <= 0){
+            throw new RuntimeException("[MemoryTrimPolicy]recoverInterval must > 0");
+        }
+        this.recoverInterval = recoverInterval;
+    }
+
+    /**
+     * @param level level of ComponentCallbacks2.onTrimMemory
+     * @param currentTime current time, millis
+     * @return stage of the level, the limit factor has been lowered
+     */
+    public Stage onTrimMemory(int level, long currentTime){
+        Stage stage = stageOf(level);
+        if (stage == Stage.NONE){
+            return stage;
+        }
+        try {
+            lock.lock();
+            //never raise the limit lowered by a higher stage
+            trimFactor = Math.min(getLimitFactor(currentTime), stage.getFactor());
+            trimTime = currentTime;
+        } finally {
+            lock.unlock();
+        }
+        return stage;
+    }
+
+    /**
+     * @param currentTime current time, millis
+     * @return limit factor of memory cache (0, 1], 1 if not trimmed or fully recovered
+     */
+    public float getLimitFactor(long currentTime){
+        float factor = trimFactor;
+        if (factor >= 1f){
+            return 1f;
+        }
+        long elapse = currentTime - trimTime;
+        if (elapse < recoverInterval){
+            return factor;
+        }
+        //doubles every interval
+        long intervals = elapse / recoverInterval;
+        if (intervals >= 30){
+            return 1f;
+        }
+        return Math.min(1f, factor * (1 << intervals));
+    }
+
+    /**
+     * @param level level of ComponentCallbacks2.onTrimMemory
+     * @return stage of level
+     */
+    public static Stage stageOf(int level){
+        if (level >= TRIM_MEMORY_MODERATE){
+            //the process is likely to be killed
+            return Stage.DROP_ALL;
+        } else if (level >= TRIM_MEMORY_BACKGROUND){
+            return Stage.SHRINK;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN){
+            return Stage.EVICT_INVISIBLE;
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL){
+            return Stage.DROP_ALL;
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW){
+            return Stage.SHRINK;
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE){
+            return Stage.EVICT_INVISIBLE;
+        }
+        return Stage.NONE;
+    }
+
+    public enum Stage {
+
+        /**
+         * no pressure
+         */
+        NONE(1f),
+
+        /**
+         * limit to half, evict the entries not displayed (displayed entries hold no extra memory)
+         */
+        EVICT_INVISIBLE(0.5f),
+
+        /**
+         * limit to quarter, evict the entries not displayed first, then the least recently used
+         */
+        SHRINK(0.25f),
+
+        /**
+         * limit to eighth, remove all entries (the displayed resources are kept by views until released)
+         */
+        DROP_ALL(0.125f);
+
+        private final float factor;
+
+        Stage(float factor) {
+            this.factor = factor;
+        }
+
+        public float getFactor() {
+            return factor;
+        }
+
+    }
+
+}
@@ -46,6 +46,7 @@ public class NodeSettings implements Destroyable {
         private long networkConnectTimeout = DEFAULT_NETWORK_CONNECT_TIMEOUT;
         private long networkReadTimeout = DEFAULT_NETWORK_READ_TIMEOUT;
         private int imageAppearDuration = DEFAULT_IMAGE_APPEAR_DURATION;
+        private RequestQueueType requestQueueType = DEFAULT_REQUEST_QUEUE_TYPE;
 
         //handler////////////////////////////////////////////////////////////////////////////
 
@@ -149,6 +150,30 @@ public class NodeSettings implements Destroyable {
             return this;
         }
 
+        /**
+         * <p>set type of request queue, {@link RequestQueueType#LOSSY} by default.</p>
+         *
+         * <p>{@link RequestQueueType#PRIORITY}: tasks are ordered by {@link LoadPriority}, which can be updated
+         * by {@link sviolet.turquoise.x.imageloader.stub.StubRemoter#setPriority(LoadPriority)}, the task with
+         * lowest priority will be dropped first when the queue is full. It helps Engines to skip the Views
+         * which have been scrolled off the screen.</p>
+         *
+         * <pre>{@code
+         *      TILoader.node(this).setting(new NodeSettings.Builder()
+         *          .setRequestQueueType(NodeSettings.RequestQueueType.PRIORITY)
+         *          .build());
+         * }</pre>
+         *
+         * @param requestQueueType type of request queue
+         */
+        public Builder setRequestQueueType(RequestQueueType requestQueueType){
+            if (requestQueueType == null){
+                throw new RuntimeException("[NodeSettings]requestQueueType must not be null");
+            }
+            values.requestQueueType = requestQueueType;
+            return this;
+        }
+
         /**
          * @param reloadTimes reload times (reload when load failed), {@value DEFAULT_RELOAD_TIMES} by default
          */
@@ -348,6 +373,7 @@ public class NodeSettings implements Destroyable {
     private static final int DEFAULT_NET_QUEUE_SIZE = 12;
     private static final int DEFAULT_RELOAD_TIMES = -1;
     private static final int DEFAULT_IMAGE_APPEAR_DURATION = 400;
+    private static final RequestQueueType DEFAULT_REQUEST_QUEUE_TYPE = RequestQueueType.LOSSY;
     public static final long DEFAULT_NETWORK_CONNECT_TIMEOUT = -1;//ms
     public static final long DEFAULT_NETWORK_READ_TIMEOUT = -1;//ms
 
@@ -412,6 +438,10 @@ public class NodeSettings implements Destroyable {
         return values.reloadTimes;
     }
 
+    public RequestQueueType getRequestQueueType(){
+        return values.requestQueueType;
+    }
+
     /**
      * @return milli second
      */
@@ -459,4 +489,19 @@ public class NodeSettings implements Destroyable {
         return values.extensionBackgroundDrawableFactoryList.get(extensionIndex);
     }
 
+    /*************************************************************
+     * enum
+     */
+
+    public enum RequestQueueType{
+        /**
+         * last in first out, drop earliest task when queue is full
+         */
+        LOSSY,
+        /**
+         * highest priority first, drop lowest priority task when queue is full
+         */
+        PRIORITY
+    }
+
 }
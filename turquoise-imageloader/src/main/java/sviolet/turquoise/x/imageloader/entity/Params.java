@@ -163,7 +163,7 @@ public class Params {
          * SCALE_FIT_WIDTH:scale image's width to reqWidth, keep aspect ratio<br/>
          * SCALE_FIT_HEIGHT:scale image's height to reqHeight, keep aspect ratio<br/>
          *
-         * @param decodeInSampleQuality BitmapUtils.InSampleQuality.MEDIUM by default
+         * @param decodeInSampleQuality BitmapUtils.InSampleQuality.MEDIUM by default, applied to both bytes and disk cache file
          */
         public Builder setDecodeInSampleQuality(BitmapUtils.InSampleQuality decodeInSampleQuality){
             values.decodeInSampleQuality = decodeInSampleQuality;
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Target of preloading (TILoader.preload)</p>
+ *
+ * <p>DISK: download resource to disk cache only, no decoding, cheapest.</p>
+ *
+ * <p>DISK_AND_MEMORY: load image into memory cache (and disk cache), the params of preloading should be the same
+ * as the params of displaying (reqWidth/reqHeight, decodeInterceptor...), otherwise the memory cache can not be hit.</p>
+ *
+ * Created by S.Violet on 2017/11/23.
+ */
+public enum PreloadTarget {
+    DISK,
+    DISK_AND_MEMORY
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Priority state of a group of stubs, shared with the loading task. The priority of a group is the
+ * highest priority of its stubs, it can be updated while the task is waiting in request queue.</p>
+ *
+ * <p>Created by S.Violet on 2017/11/20.</p>
+ *
+ * @see LoadPriority
+ */
+public class PriorityState {
+
+    //same as the default priority of stub
+    private volatile LoadPriority priority = LoadPriority.ON_SCREEN;
+
+    public LoadPriority getPriority(){
+        return priority;
+    }
+
+    public void setPriority(LoadPriority priority){
+        if (priority == null){
+            return;
+        }
+        this.priority = priority;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Scheme of resource key (the key of disk cache, calculated from url)</p>
+ *
+ * <p>SHA1: 40 hex chars, compatible with the disk cache created by earlier versions.</p>
+ *
+ * <p>MURMUR3_128: non-cryptographic 128-bit hash, much faster than SHA1, the key is versioned ("v2_" + 32 hex chars),
+ * so it never collides with SHA1 keys. The disk cache written by SHA1 scheme will not be hit after switching,
+ * the old entries are evicted by LRU gradually.</p>
+ *
+ * Created by S.Violet on 2017/12/4.
+ */
+public enum ResourceKeyScheme {
+
+    SHA1(""),
+    MURMUR3_128("v2_");
+
+    private final String prefix;
+
+    ResourceKeyScheme(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return version prefix of key
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+}
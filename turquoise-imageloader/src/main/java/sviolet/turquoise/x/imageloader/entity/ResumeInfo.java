@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.entity;
+
+/**
+ * <p>Partial download of a resource, kept after the loading canceled (e.g. low network speed) or failed,
+ * if resumable download enabled (ServerSettings->setResumableDownload).</p>
+ *
+ * <p>NetworkLoadHandler: if Task.Info->getResumeInfo() is not null, add headers "Range: bytes={offset}-" and
+ * "If-Range: {ETag or Last-Modified}" to request. If the response is 206 (Partial Content), set the start position
+ * of Content-Range to Result (Result->setResumeOffset), the data will be appended to the partial download.
+ * If the server ignores the range (200), the partial download is discarded.</p>
+ *
+ * Created by S.Violet on 2017/12/9.
+ */
+public class ResumeInfo {
+
+    private final long offset;
+    private final long total;
+    private final CacheValidator cacheValidator;
+    private final int attempts;
+
+    /**
+     * @param offset length of partial data
+     * @param total length of whole resource
+     * @param cacheValidator validator of the partial data, nonnull
+     * @param attempts times of resuming failed
+     */
+    public ResumeInfo(long offset, long total, CacheValidator cacheValidator, int attempts) {
+        this.offset = offset;
+        this.total = total;
+        this.cacheValidator = cacheValidator;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return length of partial data, the start position of range
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return length of whole resource
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return validator of the partial data
+     */
+    public CacheValidator getCacheValidator() {
+        return cacheValidator;
+    }
+
+    /**
+     * @return value of If-Range header, ETag first, Last-Modified if ETag absent
+     */
+    public String getIfRange() {
+        return cacheValidator.getETag() != null ? cacheValidator.getETag() : cacheValidator.getLastModified();
+    }
+
+    /**
+     * @return value of Range header
+     */
+    public String getRange() {
+        return "bytes=" + offset + "-";
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @param contentRange Content-Range header of 206 response, e.g. "bytes 1024-4095/4096"
+     * @return start position of range, -1 if illegal
+     */
+    public static long parseContentRangeStart(String contentRange){
+        if (contentRange == null){
+            return -1;
+        }
+        contentRange = contentRange.trim();
+        if (!contentRange.startsWith("bytes")){
+            return -1;
+        }
+        int end = contentRange.indexOf('-');
+        if (end < 0){
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(5, end).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResumeInfo{offset=" + offset + ", total=" + total + ", attempts=" + attempts + ", " + cacheValidator + "}";
+    }
+
+}
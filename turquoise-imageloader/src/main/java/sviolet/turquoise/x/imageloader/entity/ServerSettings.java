@@ -37,6 +37,7 @@ import sviolet.turquoise.x.imageloader.drawable.common.CommonLoadingDrawableFact
 import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
 import sviolet.turquoise.x.imageloader.handler.ExceptionHandler;
 import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
+import sviolet.turquoise.x.imageloader.handler.MetricsCollector;
 import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
 import sviolet.turquoise.x.imageloader.handler.common.CommonDecodeHandler;
 import sviolet.turquoise.x.imageloader.handler.common.CommonExceptionHandler;
@@ -46,6 +47,7 @@ import sviolet.turquoise.x.imageloader.node.TaskFactory;
 import sviolet.turquoise.x.imageloader.node.TaskFactoryImpl;
 import sviolet.turquoise.x.imageloader.server.MemoryCacheServer;
 import sviolet.turquoise.x.imageloader.stub.StubFactory;
+import sviolet.turquoise.x.imageloader.stub.ResourceKeys;
 import sviolet.turquoise.x.imageloader.stub.support.StubFactoryImpl;
 
 /**
@@ -62,10 +64,28 @@ public class ServerSettings implements ComponentManager.Component{
         private boolean logEnabled = DEFAULT_LOG_ENABLED;
         private boolean wipeDiskCacheWhenUpdate = DEFAULT_WIPE_DISK_CACHE_WHEN_UPDATE;
         private int memoryCacheSize = DEFAULT_MEMORY_CACHE_SIZE;
+        private int bitmapPoolSize = DEFAULT_BITMAP_POOL_SIZE;
+        private boolean memoryCacheSegmented = DEFAULT_MEMORY_CACHE_SEGMENTED;
         private int diskCacheSize = DEFAULT_DISK_CACHE_SIZE;
+        private boolean diskCachePersistent = DEFAULT_DISK_CACHE_PERSISTENT;
+        private int diskCacheShards = DEFAULT_DISK_CACHE_SHARDS;
+        private int decodedDiskCacheSize = DEFAULT_DECODED_DISK_CACHE_SIZE;
+        private boolean streamingDecodeEnabled = DEFAULT_STREAMING_DECODE_ENABLED;
+        private int downloadHistoryCapacity = DEFAULT_DOWNLOAD_HISTORY_CAPACITY;
+        private long downloadHistoryTtl = DEFAULT_DOWNLOAD_HISTORY_TTL;
+        private boolean preloadOnMeteredNetwork = DEFAULT_PRELOAD_ON_METERED_NETWORK;
+        private ResourceKeyScheme resourceKeyScheme = DEFAULT_RESOURCE_KEY_SCHEME;
+        private boolean httpRevalidationEnabled = DEFAULT_HTTP_REVALIDATION_ENABLED;
+        private long httpRevalidationDefaultMaxAge = DEFAULT_HTTP_REVALIDATION_DEFAULT_MAX_AGE;
+        private boolean resumableDownloadEnabled = DEFAULT_RESUMABLE_DOWNLOAD_ENABLED;
+        private long resumableDownloadMinLength = DEFAULT_RESUMABLE_DOWNLOAD_MIN_LENGTH;
         private int memoryLoadMaxThread = DEFAULT_MEMORY_LOAD_MAX_THREAD;
         private int diskLoadMaxThread = DEFAULT_DISK_LOAD_MAX_THREAD;
         private int networkLoadMaxThread = DEFAULT_NETWORK_LOAD_MAX_THREAD;
+        private boolean networkLoadAdaptive = DEFAULT_NETWORK_LOAD_ADAPTIVE;
+        private int networkLoadAdaptiveMinThread = DEFAULT_NETWORK_LOAD_ADAPTIVE_MIN_THREAD;
+        private int networkLoadAdaptiveMaxThread = DEFAULT_NETWORK_LOAD_ADAPTIVE_MAX_THREAD;
+        private int decodeMaxThread = DEFAULT_DECODE_MAX_THREAD;
         private long networkConnectTimeout = DEFAULT_NETWORK_CONNECT_TIMEOUT;
         private long networkReadTimeout = DEFAULT_NETWORK_READ_TIMEOUT;
         private int reloadTimes = DEFAULT_RELOAD_TIMES;
@@ -84,6 +104,7 @@ public class ServerSettings implements ComponentManager.Component{
 
         private NetworkLoadHandler networkLoadHandler = new CommonNetworkLoadHandler();
         private ExceptionHandler exceptionHandler = new CommonExceptionHandler();
+        private MetricsCollector metricsCollector;
 
         //configurable factory////////////////////////////////////////////////////////////////////////////
 
@@ -150,6 +171,47 @@ public class ServerSettings implements ComponentManager.Component{
             return this;
         }
 
+        /**
+         * <p>set the bitmap pool size by percent of app's MemoryClass, the bitmaps evicted from memory cache will be
+         * put into the pool, and reused while decoding (BitmapFactory.Options.inBitmap), reduces GC churn. API >= 19 only.</p>
+         *
+         * <p>The bitmaps still displayed by views (LoadStub) will not be put into the pool until released.
+         * CAUTION:: the bitmaps you get by TILoader.extract() are not tracked, don't put them back to memory cache.</p>
+         *
+         * @param context context
+         * @param percent percent of app's MemoryClass (0f-0.2f), default:0 (disabled)
+         */
+        public Builder setBitmapPoolPercent(Context context, float percent){
+            if (context == null){
+                throw new RuntimeException("[ServerSettings]setBitmapPoolPercent:　context is null!");
+            }
+            if (percent < 0){
+                percent = 0;
+            }else if (percent > 0.2f){
+                percent = 0.2f;
+            }
+            //app memory class
+            final int memoryClass = DeviceUtils.getMemoryClass(context);
+            //calculate
+            values.bitmapPoolSize = (int) (1024 * 1024 * memoryClass * percent);
+            return this;
+        }
+
+        /**
+         * <p>set if the memory cache is lock-striped (SegmentedImageResourceCacheModule), false by default
+         * (ImageResourceCacheModule, one LRU guarded by one monitor).</p>
+         *
+         * <p>The segmented cache doesn't block the threads accessing different segments, it helps when many threads
+         * (UI thread and engines) access memory cache at the same time, but a single thread access is slower, and its
+         * LRU is approximate (second chance in each segment).</p>
+         *
+         * @param segmented true: lock-striped memory cache
+         */
+        public Builder setMemoryCacheSegmented(boolean segmented){
+            values.memoryCacheSegmented = segmented;
+            return this;
+        }
+
         /**
          * set the disk cache size
          * @param sizeMb mb, > 0
@@ -163,6 +225,160 @@ public class ServerSettings implements ComponentManager.Component{
             return this;
         }
 
+        /**
+         * <p>set if disk cache keeps open for the whole process lifetime.</p>
+         *
+         * <p>false (default): disk cache will be closed if idle for a while, and the journal is flushed after every writing.<br/>
+         * true: disk cache keeps open, the journal writes are coalesced into batches, reduces disk io while scrolling.
+         * The latest writings (in a few seconds) might be lost if the process killed.</p>
+         *
+         * @param persistent true: keep open
+         */
+        public Builder setDiskCachePersistent(boolean persistent){
+            values.diskCachePersistent = persistent;
+            return this;
+        }
+
+        /**
+         * <p>split the disk cache into shards, 1 by default (not sharded).</p>
+         *
+         * <p>Each shard has its own directory, journal and lock, the size of each shard is diskCacheSize / shards, the
+         * resource is routed to shard by hash of resource key. It reduces the contention of disk cache while many threads
+         * reading and writing (e.g. diskLoadMaxThread / networkLoadMaxThread raised). The disk cache of previous
+         * setting is deleted if the shards changed.</p>
+         *
+         * @param shards shards num, [1, {@value MAX_DISK_CACHE_SHARDS}], {@value DEFAULT_DISK_CACHE_SHARDS} by default
+         */
+        public Builder setDiskCacheShards(int shards){
+            if (shards < 1 || shards > MAX_DISK_CACHE_SHARDS){
+                throw new RuntimeException("[ServerSettings]setDiskCacheShards: shards must be in [1, " + MAX_DISK_CACHE_SHARDS + "]");
+            }
+            values.diskCacheShards = shards;
+            return this;
+        }
+
+        /**
+         * <p>set the size of decoded disk cache (the second disk tier), 0 by default (disabled).</p>
+         *
+         * <p>Decoded disk cache stores the decoded (scaled) bitmap per stub's key (url + reqWidth/reqHeight) in raw pixel format,
+         * disk hits of thumbnails skip decoding and scaling entirely. Only the image with required size is cached (Params->setReqDimension).
+         * Raw pixels are larger than jpeg/png data, it's suitable for small images (e.g. thumbnails in list).</p>
+         *
+         * @param sizeMb mb, >= 0, 0 means disabled
+         */
+        public Builder setDecodedDiskCacheSize(float sizeMb){
+            if (sizeMb < 0){
+                throw new RuntimeException("[ServerSettings]setDecodedDiskCacheSize: size must be >=0");
+            }
+            values.decodedDiskCacheSize = (int) (sizeMb * 1024 * 1024);
+            return this;
+        }
+
+        /**
+         * <p>set if decode image while downloading, false by default.</p>
+         *
+         * <p>true: the downloading data is written to disk cache and decoded at the same time (by an extra decoder thread),
+         * decoding latency is overlapped with downloading latency, helps for large image on slow network.
+         * Only supported by DecodeHandler which implements the streaming decode (CommonDecodeHandler supports bitmap, not gif),
+         * otherwise the image will be decoded from file after downloaded as usual.</p>
+         *
+         * @param enabled true: enabled
+         */
+        public Builder setStreamingDecodeEnabled(boolean enabled){
+            values.streamingDecodeEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * <p>set the download history of network loading engine.</p>
+         *
+         * <p>NetEngine records the resource keys which downloaded recently, if a task with the same resource key arrives
+         * (the resource has been written to disk cache just now), it will be returned to DiskEngine once, instead of downloading again.
+         * Set larger capacity for the screens with hundreds of images.</p>
+         *
+         * @param capacity max number of resource keys, >=1, {@value DEFAULT_DOWNLOAD_HISTORY_CAPACITY} by default
+         * @param ttl time to live of the records, millis, >0, {@value DEFAULT_DOWNLOAD_HISTORY_TTL} by default
+         */
+        public Builder setDownloadHistory(int capacity, long ttl){
+            if (capacity < 1){
+                throw new RuntimeException("[ServerSettings]setDownloadHistory: capacity must >= 1");
+            }
+            if (ttl <= 0){
+                throw new RuntimeException("[ServerSettings]setDownloadHistory: ttl must > 0");
+            }
+            values.downloadHistoryCapacity = capacity;
+            values.downloadHistoryTtl = ttl;
+            return this;
+        }
+
+        /**
+         * <p>set if preloading (TILoader.preload) downloads images on metered network (mobile network), false by default.</p>
+         *
+         * <p>false: on metered network, preloading only warms the cache from disk, the tasks which need downloading are canceled.</p>
+         *
+         * @param enabled true: download on metered network
+         */
+        public Builder setPreloadOnMeteredNetwork(boolean enabled){
+            values.preloadOnMeteredNetwork = enabled;
+            return this;
+        }
+
+        /**
+         * <p>set the scheme of resource key (disk cache key calculated from url), {@link ResourceKeyScheme#SHA1} by default.</p>
+         *
+         * <p>{@link ResourceKeyScheme#MURMUR3_128} is faster, but the disk cache written by SHA1 scheme will not be hit
+         * (keys are versioned, no collision), the old entries are evicted by LRU gradually.</p>
+         *
+         * @param scheme scheme of resource key
+         */
+        public Builder setResourceKeyScheme(ResourceKeyScheme scheme){
+            if (scheme == null){
+                throw new RuntimeException("[ServerSettings]setResourceKeyScheme: scheme must not be null");
+            }
+            values.resourceKeyScheme = scheme;
+            return this;
+        }
+
+        /**
+         * <p>set HTTP revalidation of disk cache, disabled by default (the disk cache entry never expires).</p>
+         *
+         * <p>If enabled, the disk cache entry expires according to Cache-Control: max-age of response (or default max-age
+         * if absent). The expired entry is revalidated by conditional request (If-None-Match / If-Modified-Since, supported
+         * by CommonNetworkLoadHandler and OkHttpNetworkLoadHandler), the 304 response refreshes the entry without
+         * transferring the body. The expired entry is still displayed if revalidation failed.</p>
+         *
+         * @param enabled true: enabled
+         * @param defaultMaxAge max-age if the response has no Cache-Control: max-age, millis, >=0, {@value DEFAULT_HTTP_REVALIDATION_DEFAULT_MAX_AGE} by default
+         */
+        public Builder setHttpRevalidation(boolean enabled, long defaultMaxAge){
+            if (defaultMaxAge < 0){
+                throw new RuntimeException("[ServerSettings]setHttpRevalidation: defaultMaxAge must >= 0");
+            }
+            values.httpRevalidationEnabled = enabled;
+            values.httpRevalidationDefaultMaxAge = defaultMaxAge;
+            return this;
+        }
+
+        /**
+         * <p>set resumable download of large image, disabled by default.</p>
+         *
+         * <p>If enabled, the resource (length >= minLength) with validator (ETag / Last-Modified) is downloaded into the
+         * side area of disk cache first, the partial download is kept if loading canceled (e.g. low network speed) or
+         * failed, the next loading resumes it by range request (Range / If-Range, supported by CommonNetworkLoadHandler
+         * and OkHttpNetworkLoadHandler). The partial download is discarded if the resource has been modified.</p>
+         *
+         * @param enabled true: enabled
+         * @param minLength min length of resumable resource, bytes, >=0, {@value DEFAULT_RESUMABLE_DOWNLOAD_MIN_LENGTH} by default
+         */
+        public Builder setResumableDownload(boolean enabled, long minLength){
+            if (minLength < 0){
+                throw new RuntimeException("[ServerSettings]setResumableDownload: minLength must >= 0");
+            }
+            values.resumableDownloadEnabled = enabled;
+            values.resumableDownloadMinLength = minLength;
+            return this;
+        }
+
         /**
          * set the max thread of network loading engine
          * @param maxThread max thread num, >=1, {@value DEFAULT_NETWORK_LOAD_MAX_THREAD} by default
@@ -175,6 +391,30 @@ public class ServerSettings implements ComponentManager.Component{
             return this;
         }
 
+        /**
+         * <p>set adaptive concurrency of network loading engine, disabled by default.</p>
+         *
+         * <p>If enabled, the concurrency of network loading starts from networkLoadMaxThread (limited by minThread/maxThread),
+         * and it's adjusted by the measured throughput and latency (AIMD), more concurrency on fast network (e.g. Wi-Fi),
+         * less concurrency on congested network (instead of many slow loadings canceled by LowNetworkSpeedStrategy).
+         * The chosen concurrency can be got by TILoaderUtils.getNetworkReport().</p>
+         *
+         * @param minThread min thread num, >=1, {@value DEFAULT_NETWORK_LOAD_ADAPTIVE_MIN_THREAD} by default
+         * @param maxThread max thread num, >=minThread, {@value DEFAULT_NETWORK_LOAD_ADAPTIVE_MAX_THREAD} by default
+         */
+        public Builder setNetworkLoadAdaptive(int minThread, int maxThread){
+            if (minThread < 1){
+                throw new RuntimeException("[ServerSettings]setNetworkLoadAdaptive: minThread must >= 1");
+            }
+            if (maxThread < minThread){
+                throw new RuntimeException("[ServerSettings]setNetworkLoadAdaptive: maxThread must >= minThread");
+            }
+            values.networkLoadAdaptive = true;
+            values.networkLoadAdaptiveMinThread = minThread;
+            values.networkLoadAdaptiveMaxThread = maxThread;
+            return this;
+        }
+
         /**
          * set timeout of network connect
          * @param timeout timeout milli second
@@ -252,6 +492,22 @@ public class ServerSettings implements ComponentManager.Component{
             return this;
         }
 
+        /**
+         * <p>[Senior Setting]set the max thread of decode stage. Decoding is CPU-bound, DiskEngine and NetEngine hand off
+         * the file/bytes to decode stage, and take the next task immediately.</p>
+         *
+         * <p>by default (0), it's sized from available cores: cores - 1, 1 ~ {@value MAX_AUTO_DECODE_MAX_THREAD}.</p>
+         *
+         * @param maxThread max thread num, >=1
+         */
+        public Builder setDecodeMaxThread(int maxThread){
+            if (maxThread < 1){
+                throw new RuntimeException("[ServerSettings]decodeMaxThread must >= 1");
+            }
+            values.decodeMaxThread = maxThread;
+            return this;
+        }
+
         /**
          * <p>[Senior Setting]set image data length limit by percent of app's memoryClass</p>
          *
@@ -364,6 +620,29 @@ public class ServerSettings implements ComponentManager.Component{
             return this;
         }
 
+        /**
+         * <p>Collect per task metrics: queue waiting time of each engine, cache hit (memory/disk/network), bytes
+         * transferred, decoding time, bitmap bytes and cancel/drop reasons. Disabled (null) by default, no cost
+         * when disabled.</p>
+         *
+         * <pre>{@code
+         *      CommonMetricsCollector metricsCollector = new CommonMetricsCollector();
+         *      TILoader.setting(new ServerSettings.Builder()
+         *          .setMetricsCollector(metricsCollector)
+         *          .build());
+         *      //poll
+         *      metricsCollector.getHistogram(CommonMetricsCollector.Metric.DECODE_TIME).getSnapshot().getPercentile(0.9f);
+         *      //dump
+         *      TILoaderUtils.getMetricsReport();
+         * }</pre>
+         *
+         * @param metricsCollector metrics collector, null to disable
+         */
+        public Builder setMetricsCollector(MetricsCollector metricsCollector){
+            values.metricsCollector = metricsCollector;
+            return this;
+        }
+
         //configurable factory////////////////////////////////////////////////////////////////////////////
 
         /**
@@ -459,10 +738,30 @@ public class ServerSettings implements ComponentManager.Component{
     public static final boolean DEFAULT_LOG_ENABLED = true;
     public static final boolean DEFAULT_WIPE_DISK_CACHE_WHEN_UPDATE = false;
     public static final int DEFAULT_MEMORY_CACHE_SIZE = 0;
+    public static final int DEFAULT_BITMAP_POOL_SIZE = 0;
+    public static final boolean DEFAULT_MEMORY_CACHE_SEGMENTED = false;
     public static final int DEFAULT_DISK_CACHE_SIZE = 30 * 1024 * 1024;
+    public static final boolean DEFAULT_DISK_CACHE_PERSISTENT = false;
+    public static final int DEFAULT_DISK_CACHE_SHARDS = 1;
+    public static final int MAX_DISK_CACHE_SHARDS = 16;
+    public static final int DEFAULT_DECODED_DISK_CACHE_SIZE = 0;
+    public static final boolean DEFAULT_STREAMING_DECODE_ENABLED = false;
+    public static final int DEFAULT_DOWNLOAD_HISTORY_CAPACITY = 512;
+    public static final long DEFAULT_DOWNLOAD_HISTORY_TTL = 10 * 60 * 1000L;//10min
+    public static final boolean DEFAULT_PRELOAD_ON_METERED_NETWORK = false;
+    public static final ResourceKeyScheme DEFAULT_RESOURCE_KEY_SCHEME = ResourceKeyScheme.SHA1;
+    public static final boolean DEFAULT_HTTP_REVALIDATION_ENABLED = false;
+    public static final long DEFAULT_HTTP_REVALIDATION_DEFAULT_MAX_AGE = 24 * 60 * 60 * 1000L;//24h
+    public static final boolean DEFAULT_RESUMABLE_DOWNLOAD_ENABLED = false;
+    public static final long DEFAULT_RESUMABLE_DOWNLOAD_MIN_LENGTH = 256 * 1024L;//256K
     public static final int DEFAULT_MEMORY_LOAD_MAX_THREAD = 1;
     public static final int DEFAULT_DISK_LOAD_MAX_THREAD = 2;
     public static final int DEFAULT_NETWORK_LOAD_MAX_THREAD = 3;
+    public static final boolean DEFAULT_NETWORK_LOAD_ADAPTIVE = false;
+    public static final int DEFAULT_NETWORK_LOAD_ADAPTIVE_MIN_THREAD = 1;
+    public static final int DEFAULT_NETWORK_LOAD_ADAPTIVE_MAX_THREAD = 6;
+    private static final int DEFAULT_DECODE_MAX_THREAD = 0;//auto
+    private static final int MAX_AUTO_DECODE_MAX_THREAD = 4;
     public static final long DEFAULT_NETWORK_CONNECT_TIMEOUT = 3000;//ms
     public static final long DEFAULT_NETWORK_READ_TIMEOUT = 5000;//ms
     private static final int DEFAULT_RELOAD_TIMES = 1;
@@ -492,7 +791,9 @@ public class ServerSettings implements ComponentManager.Component{
         this.manager = manager;
 
         //instance
-        values.imageResourceHandler = new CommonImageResourceHandler();
+        if (values.imageResourceHandler == null) {
+            values.imageResourceHandler = new CommonImageResourceHandler();
+        }
         values.decodeHandler = new CommonDecodeHandler();
 
         if (values.loadingDrawableFactory == null) {
@@ -503,6 +804,7 @@ public class ServerSettings implements ComponentManager.Component{
         }
 
         //init
+        ResourceKeys.setScheme(values.resourceKeyScheme);
         values.taskFactory.init(manager);
     }
 
@@ -520,10 +822,78 @@ public class ServerSettings implements ComponentManager.Component{
         return values.memoryCacheSize;
     }
 
+    /**
+     * @return byte budget of bitmap pool, <= 0 if disabled
+     */
+    public int getBitmapPoolSize(){
+        return values.bitmapPoolSize;
+    }
+
+    public boolean isMemoryCacheSegmented(){
+        return values.memoryCacheSegmented;
+    }
+
     public int getDiskCacheSize(){
         return values.diskCacheSize;
     }
 
+    public boolean isDiskCachePersistent(){
+        return values.diskCachePersistent;
+    }
+
+    public int getDiskCacheShards(){
+        return values.diskCacheShards;
+    }
+
+    public int getDecodedDiskCacheSize(){
+        return values.decodedDiskCacheSize;
+    }
+
+    public boolean isStreamingDecodeEnabled(){
+        return values.streamingDecodeEnabled;
+    }
+
+    public int getDownloadHistoryCapacity(){
+        return values.downloadHistoryCapacity;
+    }
+
+    /**
+     * @return milli second
+     */
+    public long getDownloadHistoryTtl(){
+        return values.downloadHistoryTtl;
+    }
+
+    public boolean isPreloadOnMeteredNetwork(){
+        return values.preloadOnMeteredNetwork;
+    }
+
+    public ResourceKeyScheme getResourceKeyScheme(){
+        return values.resourceKeyScheme;
+    }
+
+    public boolean isHttpRevalidationEnabled(){
+        return values.httpRevalidationEnabled;
+    }
+
+    /**
+     * @return milli second
+     */
+    public long getHttpRevalidationDefaultMaxAge(){
+        return values.httpRevalidationDefaultMaxAge;
+    }
+
+    public boolean isResumableDownloadEnabled(){
+        return values.resumableDownloadEnabled;
+    }
+
+    /**
+     * @return bytes
+     */
+    public long getResumableDownloadMinLength(){
+        return values.resumableDownloadMinLength;
+    }
+
     public int getMemoryLoadMaxThread(){
         return values.memoryLoadMaxThread;
     }
@@ -532,10 +902,32 @@ public class ServerSettings implements ComponentManager.Component{
         return values.networkLoadMaxThread;
     }
 
+    public boolean isNetworkLoadAdaptive(){
+        return values.networkLoadAdaptive;
+    }
+
+    public int getNetworkLoadAdaptiveMinThread(){
+        return values.networkLoadAdaptiveMinThread;
+    }
+
+    public int getNetworkLoadAdaptiveMaxThread(){
+        return values.networkLoadAdaptiveMaxThread;
+    }
+
     public int getDiskLoadMaxThread(){
         return values.diskLoadMaxThread;
     }
 
+    public int getDecodeMaxThread(){
+        if (values.decodeMaxThread > 0){
+            return values.decodeMaxThread;
+        }
+        //sized from available cores, one core left for UI thread
+        int cores = Runtime.getRuntime().availableProcessors();
+        values.decodeMaxThread = Math.max(1, Math.min(cores - 1, MAX_AUTO_DECODE_MAX_THREAD));
+        return values.decodeMaxThread;
+    }
+
     /**
      * @return milli second
      */
@@ -617,6 +1009,13 @@ public class ServerSettings implements ComponentManager.Component{
         return values.exceptionHandler;
     }
 
+    /**
+     * @return metrics collector, null if disabled
+     */
+    public MetricsCollector getMetricsCollector(){
+        return values.metricsCollector;
+    }
+
     //configurable factory////////////////////////////////////////////////////////////////////////////
 
     public StubFactory getStubFactory(){
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.entity;
+
+import sviolet.turquoise.x.imageloader.server.Server;
+
+/**
+ * <p>Metrics of a loading task, only created when metrics collector is enabled (ServerSettings->setMetricsCollector),
+ * reported by {@link sviolet.turquoise.x.imageloader.handler.MetricsCollector#onTaskFinished} when the task finished.</p>
+ *
+ * <p>Times are in milli second except decoding time (nano second), -1 means the stage is not reached.</p>
+ *
+ * Created by S.Violet on 2017/11/28.
+ */
+public class TaskMetrics {
+
+    private final long createTime = System.currentTimeMillis();
+    private volatile long finishTime = -1;
+
+    private volatile long memoryQueueWait = -1;
+    private volatile long diskQueueWait = -1;
+    private volatile long networkQueueWait = -1;
+
+    private volatile Source source = Source.NONE;
+    private volatile Reason reason = Reason.NONE;
+
+    private volatile long networkStartTime = -1;
+    private volatile long networkTime = -1;
+    private volatile long networkBytes = 0;
+
+    private volatile long decodeTime = -1;
+    private volatile int bitmapBytes = 0;
+
+    /**
+     * @param type engine type
+     * @param wait waiting time in request queue of engine
+     */
+    public void recordQueueWait(Server.Type type, long wait){
+        switch (type){
+            case MEMORY_ENGINE:
+                memoryQueueWait = wait;
+                break;
+            case DISK_ENGINE:
+                diskQueueWait = wait;
+                break;
+            case NETWORK_ENGINE:
+                networkQueueWait = wait;
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * the first reason is kept
+     */
+    public void setReason(Reason reason) {
+        if (this.reason == Reason.NONE) {
+            this.reason = reason;
+        }
+    }
+
+    public void markNetworkStart(){
+        networkStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param bytes bytes transferred
+     */
+    public void markNetworkFinish(long bytes){
+        if (networkStartTime > 0) {
+            networkTime = System.currentTimeMillis() - networkStartTime;
+        }
+        networkBytes = bytes;
+    }
+
+    /**
+     * @param decodeTime decoding time, nano second (accumulated if decoded more than once)
+     */
+    public void recordDecodeTime(long decodeTime) {
+        this.decodeTime = this.decodeTime < 0 ? decodeTime : this.decodeTime + decodeTime;
+    }
+
+    public void setBitmapBytes(int bitmapBytes) {
+        this.bitmapBytes = bitmapBytes;
+    }
+
+    public void markFinish(){
+        finishTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return total time from task created to finished, milli second, -1 if not finished
+     */
+    public long getTotalTime(){
+        return finishTime > 0 ? finishTime - createTime : -1;
+    }
+
+    public long getMemoryQueueWait() {
+        return memoryQueueWait;
+    }
+
+    public long getDiskQueueWait() {
+        return diskQueueWait;
+    }
+
+    public long getNetworkQueueWait() {
+        return networkQueueWait;
+    }
+
+    /**
+     * @return where the image loaded from
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return why the task failed/canceled
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getNetworkTime() {
+        return networkTime;
+    }
+
+    public long getNetworkBytes() {
+        return networkBytes;
+    }
+
+    /**
+     * @return decoding time, nano second
+     */
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    public int getBitmapBytes() {
+        return bitmapBytes;
+    }
+
+    /**
+     * where the image loaded from
+     */
+    public enum Source {
+        NONE,
+        MEMORY,
+        DECODED_DISK,
+        DISK,
+        NETWORK
+    }
+
+    /**
+     * why the task failed/canceled
+     */
+    public enum Reason {
+        NONE,
+        QUEUE_OVERFLOW,//dropped from request queue (obsolete)
+        METERED_NETWORK,//preload task skipped on metered network
+        SCHEDULE_FAILED,//rejected by thread pool
+        DISK_FAILED,//disk cache read/write failed
+        NETWORK_FAILED,//network loading failed
+        NETWORK_CANCELED,//network loading canceled (e.g. low network speed)
+        DATA_LENGTH_LIMIT,//image data out of limit
+        DECODE_FAILED
+    }
+
+}
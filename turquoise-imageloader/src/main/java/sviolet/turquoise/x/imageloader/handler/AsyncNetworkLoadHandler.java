@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.handler;
+
+/**
+ * <p>NetworkLoadHandler which loads asynchronously, returns immediately from onHandle, and sets result
+ * by EngineCallback in its own thread (e.g. OkHttp's enqueue).</p>
+ *
+ * <p>NetEngine will not park a thread to wait for the result of this kind of handler, the subsequent
+ * process (disk cache writing, decoding, response) is continued in the thread which sets the result.
+ * So, don't set result in UI thread.</p>
+ *
+ * <p>The handler which implements {@link NetworkLoadHandler} only is handled in blocking mode.</p>
+ *
+ * <p>see:{@link sviolet.turquoise.x.imageloader.handler.common.OkHttpNetworkLoadHandler}</p>
+ *
+ * Created by S.Violet on 2017/11/23.
+ */
+public interface AsyncNetworkLoadHandler extends NetworkLoadHandler {
+
+}
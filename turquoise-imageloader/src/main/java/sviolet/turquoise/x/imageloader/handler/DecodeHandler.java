@@ -22,7 +22,9 @@ package sviolet.turquoise.x.imageloader.handler;
 import android.content.Context;
 
 import java.io.File;
+import java.io.InputStream;
 
+import sviolet.turquoise.util.bitmap.BitmapUtils;
 import sviolet.turquoise.util.common.DateTimeUtilsForAndroid;
 import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.TILoaderUtils;
@@ -54,6 +56,8 @@ public abstract class DecodeHandler {
     public static final String CUSTOM_REQ_WIDTH = "DecodeHandler_custom_req_width";
     public static final String CUSTOM_REQ_HEIGHT = "DecodeHandler_custom_req_height";
 
+    private BitmapUtils.InBitmapProvider inBitmapProvider;
+
     /**
      * decode image from bytes
      * @param applicationContext applicationContext
@@ -76,18 +80,100 @@ public abstract class DecodeHandler {
      */
     public abstract ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, File file, TLogger logger);
 
+    /**
+     * <p>decode image from the stream which is downloading (ServerSettings->setStreamingDecodeEnabled), the data arrives
+     * while decoding. The stream can only be read once.</p>
+     *
+     * <p>Not supported by default (return null), the image will be decoded from file/bytes after downloaded.</p>
+     *
+     * @param applicationContext applicationContext
+     * @param context activity context, might be null
+     * @param taskInfo task info
+     * @param inputStream stream of image, blocks until data arrives
+     * @param logger logger
+     * @return ImageResource, null if streaming decode is not supported for this image
+     */
+    public ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, InputStream inputStream, TLogger logger) throws Exception {
+        return null;
+    }
+
+    /**
+     * <p>derive the image from a decoded image of the same resource (larger size) by downscaling, instead of decoding
+     * from file/bytes again. Used when several tasks request the same url with different size (NetEngine).</p>
+     *
+     * <p>Not supported by default (return null), the image will be decoded from file/bytes.</p>
+     *
+     * @param applicationContext applicationContext
+     * @param context activity context, might be null
+     * @param taskInfo task info
+     * @param sourceInfo task info of the source image
+     * @param source decoded source image (larger), read only, do not recycle or modify it
+     * @param logger logger
+     * @return ImageResource, null if it can't be derived from source
+     */
+    public ImageResource onDerive(Context applicationContext, Context context, Task.Info taskInfo, Task.Info sourceInfo, ImageResource source, TLogger logger){
+        return null;
+    }
+
     public final ImageResource decode(Context applicationContext, Context context, Task task, byte[] data, TLogger logger){
+        long startTime = task.getMetrics() != null ? System.nanoTime() : 0;
         ImageResource imageResource = onDecode(applicationContext, context, task.getTaskInfo(), data, logger);
         imageResource = intercept(applicationContext, context, task, logger, imageResource);
+        recordDecodeTime(task, startTime);
         return imageResource;
     }
 
     public final ImageResource decode(Context applicationContext, Context context, Task task, File file, TLogger logger){
+        long startTime = task.getMetrics() != null ? System.nanoTime() : 0;
         ImageResource imageResource = onDecode(applicationContext, context, task.getTaskInfo(), file, logger);
         imageResource = intercept(applicationContext, context, task, logger, imageResource);
+        recordDecodeTime(task, startTime);
         return imageResource;
     }
 
+    public final ImageResource decode(Context applicationContext, Context context, Task task, InputStream inputStream, TLogger logger) throws Exception {
+        long startTime = task.getMetrics() != null ? System.nanoTime() : 0;
+        ImageResource imageResource = onDecode(applicationContext, context, task.getTaskInfo(), inputStream, logger);
+        if (imageResource == null){
+            return null;
+        }
+        imageResource = intercept(applicationContext, context, task, logger, imageResource);
+        //streaming decode, including the time waiting for network data
+        recordDecodeTime(task, startTime);
+        return imageResource;
+    }
+
+    public final ImageResource derive(Context applicationContext, Context context, Task task, Task sourceTask, ImageResource source, TLogger logger){
+        long startTime = task.getMetrics() != null ? System.nanoTime() : 0;
+        ImageResource imageResource = onDerive(applicationContext, context, task.getTaskInfo(), sourceTask.getTaskInfo(), source, logger);
+        if (imageResource == null){
+            return null;
+        }
+        imageResource = intercept(applicationContext, context, task, logger, imageResource);
+        recordDecodeTime(task, startTime);
+        return imageResource;
+    }
+
+    private void recordDecodeTime(Task task, long startTime){
+        if (task.getMetrics() != null){
+            task.getMetrics().recordDecodeTime(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * set by TILoader if bitmap pool enabled (ServerSettings->setBitmapPoolPercent)
+     */
+    public void setInBitmapProvider(BitmapUtils.InBitmapProvider inBitmapProvider){
+        this.inBitmapProvider = inBitmapProvider;
+    }
+
+    /**
+     * @return provides reusable bitmaps for decoding (BitmapFactory.Options.inBitmap), null if bitmap pool disabled
+     */
+    protected BitmapUtils.InBitmapProvider getInBitmapProvider(){
+        return inBitmapProvider;
+    }
+
     /**
      * intercept process
      */
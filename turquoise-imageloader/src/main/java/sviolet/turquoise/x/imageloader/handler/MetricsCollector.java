@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.handler;
+
+import sviolet.turquoise.x.imageloader.entity.MemoryTrimPolicy;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>implement metrics collecting (ServerSettings->setMetricsCollector)</p>
+ *
+ * <p>Methods are invoked in loading threads (hot path), avoid blocking and allocation.</p>
+ *
+ * Created by S.Violet on 2017/11/28.
+ */
+public interface MetricsCollector {
+
+    /**
+     * memory cache hit in UI thread directly (fast path), no task created
+     * @param url URL
+     */
+    void onFastMemoryHit(String url);
+
+    /**
+     * task finished (succeed / failed / canceled)
+     * @param taskInfo task info, state is final
+     * @param metrics metrics of task
+     */
+    void onTaskFinished(Task.Info taskInfo, TaskMetrics metrics);
+
+    /**
+     * memory cache trimmed on memory pressure (ComponentCallbacks2.onTrimMemory)
+     * @param level level of trim
+     * @param stage stage of level, see {@link MemoryTrimPolicy}
+     * @param limit limit of memory cache after trimming, bytes
+     * @param releasedBytes bytes removed from memory cache
+     */
+    void onMemoryTrimmed(int level, MemoryTrimPolicy.Stage stage, int limit, int releasedBytes);
+
+    /**
+     * limit of memory cache grows back after memory pressure
+     * @param limit limit of memory cache, bytes
+     */
+    void onMemoryRecovered(int limit);
+
+    /**
+     * @return report of metrics, for TILoaderUtils.getMetricsReport()
+     */
+    String getReport();
+
+}
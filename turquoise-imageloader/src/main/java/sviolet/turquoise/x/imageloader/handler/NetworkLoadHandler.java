@@ -26,6 +26,7 @@ import java.io.InputStream;
 
 import sviolet.thistle.entity.Destroyable;
 import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.server.EngineCallback;
 
@@ -34,6 +35,9 @@ import sviolet.turquoise.x.imageloader.server.EngineCallback;
  *
  * <p>see:{@link sviolet.turquoise.x.imageloader.handler.common.CommonNetworkLoadHandler}</p>
  *
+ * <p>implement {@link AsyncNetworkLoadHandler} if the handler loads asynchronously, NetEngine will not block thread
+ * to wait for result.</p>
+ *
  * Created by S.Violet on 2016/2/19.
  */
 public interface NetworkLoadHandler {
@@ -83,6 +87,10 @@ public interface NetworkLoadHandler {
      * <p>network loading result (on succeed)</p>
      *
      * <p>you can return InputStream or bytes</p>
+     *
+     * <p>HTTP revalidation: set validator parsed from response headers by {@link #setCacheValidator}, it will be stored
+     * alongside the disk cache entry. If Task.Info->getCacheValidator() is not null, issue conditional request,
+     * return {@link #notModified(CacheValidator)} on 304.</p>
      */
     class Result implements Destroyable{
 
@@ -92,6 +100,8 @@ public interface NetworkLoadHandler {
         private byte[] bytes;
         private InputStream inputStream;
         private int length = UNKNOWN_LENGTH;
+        private CacheValidator cacheValidator;
+        private long resumeOffset = 0;
 
         public Result(InputStream inputStream){
             if (inputStream == null){
@@ -116,6 +126,17 @@ public interface NetworkLoadHandler {
             this.length = bytes.length;
         }
 
+        /**
+         * @param cacheValidator validator of 304 response (may update ETag or max-age), nullable
+         * @return result of 304 (not modified), the disk cache entry will be refreshed without transferring the body
+         */
+        public static Result notModified(CacheValidator cacheValidator){
+            Result result = new Result((InputStream) null);
+            result.type = ResultType.NOT_MODIFIED;
+            result.cacheValidator = cacheValidator;
+            return result;
+        }
+
         public ResultType getType() {
             return type;
         }
@@ -139,6 +160,32 @@ public interface NetworkLoadHandler {
             return this;
         }
 
+        public CacheValidator getCacheValidator() {
+            return cacheValidator;
+        }
+
+        /**
+         * @param cacheValidator validator parsed from response headers, see {@link CacheValidator#parse}
+         */
+        public Result setCacheValidator(CacheValidator cacheValidator) {
+            this.cacheValidator = cacheValidator;
+            return this;
+        }
+
+        public long getResumeOffset() {
+            return resumeOffset;
+        }
+
+        /**
+         * set if the response is 206 (Partial Content) of range request (Task.Info->getResumeInfo()),
+         * the inputStream will be appended to the partial download, length is the length of this part
+         * @param resumeOffset start position of Content-Range
+         */
+        public Result setResumeOffset(long resumeOffset) {
+            this.resumeOffset = resumeOffset;
+            return this;
+        }
+
         @Override
         public void onDestroy() {
             type = ResultType.NULL;
@@ -160,7 +207,8 @@ public interface NetworkLoadHandler {
     enum ResultType{
         NULL,
         BYTES,
-        INPUTSTREAM
+        INPUTSTREAM,
+        NOT_MODIFIED
     }
 
 }
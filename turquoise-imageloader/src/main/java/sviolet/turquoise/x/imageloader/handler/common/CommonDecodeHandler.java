@@ -22,15 +22,17 @@ package sviolet.turquoise.x.imageloader.handler.common;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 
 import pl.droidsonroids.gif.EnhancedGifDrawable;
 import sviolet.thistle.util.conversion.ByteUtils;
 import sviolet.turquoise.util.bitmap.BitmapUtils;
 import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.Params;
 import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
 
@@ -43,6 +45,8 @@ public class CommonDecodeHandler extends DecodeHandler {
 
     private static final byte[] GIF_HEADER = ByteUtils.hexToBytes("47494638");
 
+    private static final int STREAM_BOUNDS_MARK_LIMIT = 64 * 1024;//image header should be in it while streaming decoding
+
     private static final int GIF_DRAWABLE_REFERENCE_STATE_UNKNOWN = 0;
     private static final int GIF_DRAWABLE_REFERENCE_STATE_MISSING = -1;
     private static final int GIF_DRAWABLE_REFERENCE_STATE_EXISTS = 1;
@@ -70,7 +74,7 @@ public class CommonDecodeHandler extends DecodeHandler {
 
     private ImageResource onDecodeBitmap(Context applicationContext, Context context, Task.Info taskInfo, byte[] data, TLogger logger, int reqWidth, int reqHeight) {
         //decoding
-        Bitmap bitmap = BitmapUtils.decodeFromByteArray(data, reqWidth, reqHeight, taskInfo.getParams().getBitmapConfig(), taskInfo.getParams().getDecodeInSampleQuality());
+        Bitmap bitmap = BitmapUtils.decodeFromByteArray(data, reqWidth, reqHeight, taskInfo.getParams().getBitmapConfig(), taskInfo.getParams().getDecodeInSampleQuality(), getInBitmapProvider());
         if (bitmap == null) {
             throw new RuntimeException("[TILoader:CommonDecodeHandler]decoding failed, illegal image data");
         }
@@ -114,17 +118,25 @@ public class CommonDecodeHandler extends DecodeHandler {
         return onDecodeInner(applicationContext, context, taskInfo, file, logger, reqWidth, reqHeight);
     }
 
+    /**
+     * the file is opened once for bitmap: sniffing header, decoding bounds and decoding share one file handle
+     */
     protected ImageResource onDecodeInner(Context applicationContext, Context context, Task.Info taskInfo, File file, TLogger logger, int reqWidth, int reqHeight){
-        if (!isGif(file, logger)) {
-            return onDecodeBitmap(applicationContext, context, taskInfo, file, logger, reqWidth, reqHeight);
-        } else {
+        GifHeaderFilter gifHeaderFilter = isGifSupported(logger) ? new GifHeaderFilter() : null;
+        //decoding
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapUtils.decodeFromFile(file, reqWidth, reqHeight, taskInfo.getParams().getBitmapConfig(), taskInfo.getParams().getDecodeInSampleQuality(), getInBitmapProvider(), gifHeaderFilter);
+        } catch (IOException e) {
+            throw new RuntimeException("[TILoader:CommonDecodeHandler]error while decoding bitmap from file", e);
+        }
+        if (gifHeaderFilter != null && gifHeaderFilter.isGif) {
             return onDecodeGif(applicationContext, context, taskInfo, file, logger, reqWidth, reqHeight);
         }
+        return onDecodeBitmap(taskInfo, bitmap, logger, reqWidth, reqHeight);
     }
 
-    private ImageResource onDecodeBitmap(Context applicationContext, Context context, Task.Info taskInfo, File file, TLogger logger, int reqWidth, int reqHeight){
-        //decoding
-        Bitmap bitmap = BitmapUtils.decodeFromFile(file.getAbsolutePath(), reqWidth, reqHeight, taskInfo.getParams().getBitmapConfig(), BitmapUtils.InSampleQuality.MEDIUM);
+    private ImageResource onDecodeBitmap(Task.Info taskInfo, Bitmap bitmap, TLogger logger, int reqWidth, int reqHeight){
         if (bitmap == null) {
             throw new RuntimeException("[TILoader:CommonDecodeHandler]decoding failed, illegal image data");
         }
@@ -159,21 +171,123 @@ public class CommonDecodeHandler extends DecodeHandler {
         }
     }
 
-    private boolean isGif(byte[] data, TLogger logger){
-        if (gifDrawableReferenceState == GIF_DRAWABLE_REFERENCE_STATE_UNKNOWN) {
-            try {
-                Class.forName("pl.droidsonroids.gif.GifDrawable");
-                gifDrawableReferenceState = GIF_DRAWABLE_REFERENCE_STATE_EXISTS;
-            } catch (ClassNotFoundException e) {
-                gifDrawableReferenceState = GIF_DRAWABLE_REFERENCE_STATE_MISSING;
-                logger.e("[TILoader:EnhancedDecodeHandler]Your project lacks a dependency of pl.droidsonroids.gif:android-gif-drawable:?.?.?, can not display GIF", e);
-            }
+    /**
+     * streaming decode, bitmap only, gif will be decoded from file/bytes after downloaded
+     */
+    @Override
+    public ImageResource onDecode(Context applicationContext, Context context, Task.Info taskInfo, InputStream inputStream, TLogger logger) throws Exception {
+        Integer customReqWidth = taskInfo.getParams().getExtraInteger(DecodeHandler.CUSTOM_REQ_WIDTH);
+        Integer customReqHeight = taskInfo.getParams().getExtraInteger(DecodeHandler.CUSTOM_REQ_HEIGHT);
+        int reqWidth = customReqWidth == null ? taskInfo.getParams().getReqWidth() : customReqWidth;
+        int reqHeight = customReqHeight == null ? taskInfo.getParams().getReqHeight() : customReqHeight;
+        return onDecodeInner(applicationContext, context, taskInfo, inputStream, logger, reqWidth, reqHeight);
+    }
+
+    protected ImageResource onDecodeInner(Context applicationContext, Context context, Task.Info taskInfo, InputStream inputStream, TLogger logger, int reqWidth, int reqHeight) throws Exception {
+        if (!inputStream.markSupported()){
+            inputStream = new BufferedInputStream(inputStream);
         }
-        if (gifDrawableReferenceState == GIF_DRAWABLE_REFERENCE_STATE_MISSING) {
-            //no class def found : GifDrawable
-            return false;
+        //peek header
+        byte[] header = new byte[GIF_HEADER.length];
+        inputStream.mark(GIF_HEADER.length);
+        int length = 0;
+        int readLength;
+        while (length < header.length && (readLength = inputStream.read(header, length, header.length - length)) >= 0){
+            length += readLength;
         }
+        inputStream.reset();
+        if (length < header.length || isGif(header, logger)){
+            return null;
+        }
+        //decoding
+        Bitmap bitmap = BitmapUtils.decodeFromStream(inputStream, STREAM_BOUNDS_MARK_LIMIT, reqWidth, reqHeight, taskInfo.getParams().getBitmapConfig(), taskInfo.getParams().getDecodeInSampleQuality(), getInBitmapProvider());
+        if (bitmap == null) {
+            //header out of mark limit, or inBitmap failed
+            return null;
+        }
+        //scale
+        switch (taskInfo.getParams().getDecodeScaleStrategy()){
+            case SCALE_FIT_WIDTH_HEIGHT:
+                bitmap = BitmapUtils.scaleTo(bitmap, reqWidth, reqHeight, true);
+                break;
+            case SCALE_FIT_WIDTH:
+                bitmap = BitmapUtils.scaleTo(bitmap, reqWidth, 0, true);
+                break;
+            case SCALE_FIT_HEIGHT:
+                bitmap = BitmapUtils.scaleTo(bitmap, 0, reqHeight, true);
+                break;
+            default:
+                break;
+        }
+        if (bitmap == null) {
+            throw new RuntimeException("[TILoader:CommonDecodeHandler]scale: scale failed");
+        }
+        if (logger.checkEnable(TLogger.DEBUG)) {
+            logger.d("[CommonDecodeHandler]streaming decoded size:" + bitmap.getWidth() + "*" + bitmap.getHeight() + " task:" + taskInfo);
+        }
+        return new ImageResource(ImageResource.Type.BITMAP, bitmap);
+    }
 
+    /**
+     * bitmap only, the source image is regarded as the origin image, the derived image is sampled in the same way as decoding
+     */
+    @Override
+    public ImageResource onDerive(Context applicationContext, Context context, Task.Info taskInfo, Task.Info sourceInfo, ImageResource source, TLogger logger) {
+        if (source == null || source.getType() != ImageResource.Type.BITMAP || !(source.getResource() instanceof Bitmap)){
+            return null;
+        }
+        //the source must not be scaled or intercepted, and has the same config
+        Params sourceParams = sourceInfo.getParams();
+        if (sourceParams.getDecodeScaleStrategy() != DecodeScaleStrategy.NO_SCALE
+                || sourceParams.getDecodeInterceptor() != null
+                || sourceParams.getBitmapConfig() != taskInfo.getParams().getBitmapConfig()){
+            return null;
+        }
+        Bitmap sourceBitmap = (Bitmap) source.getResource();
+        if (sourceBitmap.isRecycled()){
+            return null;
+        }
+        Integer customReqWidth = taskInfo.getParams().getExtraInteger(DecodeHandler.CUSTOM_REQ_WIDTH);
+        Integer customReqHeight = taskInfo.getParams().getExtraInteger(DecodeHandler.CUSTOM_REQ_HEIGHT);
+        int reqWidth = customReqWidth == null ? taskInfo.getParams().getReqWidth() : customReqWidth;
+        int reqHeight = customReqHeight == null ? taskInfo.getParams().getReqHeight() : customReqHeight;
+        if (reqWidth <= 0 || reqHeight <= 0){
+            return null;
+        }
+        //not smaller than source, decode from file/bytes
+        int inSampleSize = BitmapUtils.calculateInSampleSize(sourceBitmap.getWidth(), sourceBitmap.getHeight(), reqWidth, reqHeight, taskInfo.getParams().getDecodeInSampleQuality());
+        if (inSampleSize <= 1){
+            return null;
+        }
+        //downscale, keep source
+        Bitmap bitmap = BitmapUtils.scale(sourceBitmap, 1f / inSampleSize, false);
+        //scale
+        switch (taskInfo.getParams().getDecodeScaleStrategy()){
+            case SCALE_FIT_WIDTH_HEIGHT:
+                bitmap = BitmapUtils.scaleTo(bitmap, reqWidth, reqHeight, true);
+                break;
+            case SCALE_FIT_WIDTH:
+                bitmap = BitmapUtils.scaleTo(bitmap, reqWidth, 0, true);
+                break;
+            case SCALE_FIT_HEIGHT:
+                bitmap = BitmapUtils.scaleTo(bitmap, 0, reqHeight, true);
+                break;
+            default:
+                break;
+        }
+        if (bitmap == null) {
+            throw new RuntimeException("[TILoader:CommonDecodeHandler]scale: scale failed");
+        }
+        if (logger.checkEnable(TLogger.DEBUG)) {
+            logger.d("[CommonDecodeHandler]derived size:" + bitmap.getWidth() + "*" + bitmap.getHeight() + " from:" + sourceBitmap.getWidth() + "*" + sourceBitmap.getHeight() + " task:" + taskInfo);
+        }
+        return new ImageResource(ImageResource.Type.BITMAP, bitmap);
+    }
+
+    private boolean isGif(byte[] data, TLogger logger){
+        if (!isGifSupported(logger)) {
+            return false;
+        }
         if (data == null || data.length < GIF_HEADER.length){
             return false;
         }
@@ -185,7 +299,7 @@ public class CommonDecodeHandler extends DecodeHandler {
         return true;
     }
 
-    private boolean isGif(File file, TLogger logger){
+    private boolean isGifSupported(TLogger logger){
         if (gifDrawableReferenceState == GIF_DRAWABLE_REFERENCE_STATE_UNKNOWN) {
             try {
                 Class.forName("pl.droidsonroids.gif.GifDrawable");
@@ -195,39 +309,36 @@ public class CommonDecodeHandler extends DecodeHandler {
                 logger.e("[TILoader:EnhancedDecodeHandler]Your project lacks a dependency of pl.droidsonroids.gif:android-gif-drawable:?.?.?, can not display GIF", e);
             }
         }
-        if (gifDrawableReferenceState == GIF_DRAWABLE_REFERENCE_STATE_MISSING) {
-            //no class def found : GifDrawable
-            return false;
-        }
+        //no class def found : GifDrawable
+        return gifDrawableReferenceState != GIF_DRAWABLE_REFERENCE_STATE_MISSING;
+    }
 
-        if (file == null || !file.exists()){
-            return false;
+    /**
+     * sniff gif header while decoding bitmap from file, the gif is rejected (decoded by gif decoder)
+     */
+    private static class GifHeaderFilter implements BitmapUtils.HeaderFilter {
+
+        private boolean isGif = false;
+
+        @Override
+        public int getHeaderLength() {
+            return GIF_HEADER.length;
         }
-        RandomAccessFile randomAccessFile = null;
-        try{
-            randomAccessFile = new RandomAccessFile(file, "r");
-            randomAccessFile.seek(0);
-            byte[] buffer = new byte[GIF_HEADER.length];
-            long length = randomAccessFile.read(buffer);
+
+        @Override
+        public boolean accept(byte[] header, int length) {
             if (length < GIF_HEADER.length){
-                return false;
+                return true;
             }
             for (int i = 0 ; i < GIF_HEADER.length ; i++){
-                if (buffer[i] != GIF_HEADER[i]){
-                    return false;
+                if (header[i] != GIF_HEADER[i]){
+                    return true;
                 }
             }
-            return true;
-        }catch (Exception e){
+            isGif = true;
             return false;
-        }finally {
-            if (randomAccessFile != null){
-                try {
-                    randomAccessFile.close();
-                } catch (IOException ignored) {
-                }
-            }
         }
+
     }
 
 }
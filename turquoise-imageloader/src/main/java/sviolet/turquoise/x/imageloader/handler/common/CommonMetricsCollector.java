@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.handler.common;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sviolet.turquoise.x.imageloader.entity.MemoryTrimPolicy;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
+import sviolet.turquoise.x.imageloader.handler.MetricsCollector;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>Common implementation of {@link MetricsCollector}, counts cache hit / finish state / cancel reasons / memory trim stages, and keeps
+ * rolling histograms (log2 buckets) of queue waiting time, network time, bytes, decoding time and bitmap bytes.
+ * Recording is lock free and allocation free.</p>
+ *
+ * <pre>{@code
+ *      //poll
+ *      long p90 = metricsCollector.getHistogram(CommonMetricsCollector.Metric.DECODE_TIME).getSnapshot().getPercentile(0.9f);
+ *      long networkHit = metricsCollector.getSourceCount(TaskMetrics.Source.NETWORK);
+ *      //dump
+ *      String report = metricsCollector.getReport();
+ *      //json, for tracking regressions between releases
+ *      String json = metricsCollector.getReportJson();
+ * }</pre>
+ *
+ * Created by S.Violet on 2017/11/28.
+ */
+public class CommonMetricsCollector implements MetricsCollector {
+
+    private static final long DEFAULT_WINDOW = 60 * 1000L;
+
+    private final RollingHistogram[] histograms;
+    private final AtomicLong fastMemoryHitCount = new AtomicLong(0);
+    private final AtomicLongArray sourceCounts = new AtomicLongArray(TaskMetrics.Source.values().length);
+    private final AtomicLongArray stateCounts = new AtomicLongArray(Task.State.values().length);
+    private final AtomicLongArray reasonCounts = new AtomicLongArray(TaskMetrics.Reason.values().length);
+    private final AtomicLongArray trimCounts = new AtomicLongArray(MemoryTrimPolicy.Stage.values().length);
+    private final AtomicLong trimReleasedBytes = new AtomicLong(0);
+    private final AtomicLong recoverCount = new AtomicLong(0);
+    private final AtomicInteger memoryLimit = new AtomicInteger(-1);
+
+    public CommonMetricsCollector() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param windowMillis window of rolling histograms, the histograms hold the data of current and previous window
+     */
+    public CommonMetricsCollector(long windowMillis) {
+        if (windowMillis <= 0){
+            throw new RuntimeException("[CommonMetricsCollector]windowMillis must > 0");
+        }
+        histograms = new RollingHistogram[Metric.values().length];
+        for (int i = 0 ; i < histograms.length ; i++){
+            histograms[i] = new RollingHistogram(windowMillis);
+        }
+    }
+
+    @Override
+    public void onFastMemoryHit(String url) {
+        fastMemoryHitCount.incrementAndGet();
+    }
+
+    @Override
+    public void onTaskFinished(Task.Info taskInfo, TaskMetrics metrics) {
+        stateCounts.incrementAndGet(taskInfo.getState().ordinal());
+        if (taskInfo.getState() == Task.State.SUCCEED) {
+            sourceCounts.incrementAndGet(metrics.getSource().ordinal());
+        }
+        if (metrics.getReason() != TaskMetrics.Reason.NONE) {
+            reasonCounts.incrementAndGet(metrics.getReason().ordinal());
+        }
+        record(Metric.MEMORY_QUEUE_WAIT, metrics.getMemoryQueueWait());
+        record(Metric.DISK_QUEUE_WAIT, metrics.getDiskQueueWait());
+        record(Metric.NETWORK_QUEUE_WAIT, metrics.getNetworkQueueWait());
+        record(Metric.NETWORK_TIME, metrics.getNetworkTime());
+        if (metrics.getNetworkBytes() > 0) {
+            record(Metric.NETWORK_BYTES, metrics.getNetworkBytes());
+        }
+        if (metrics.getDecodeTime() >= 0) {
+            record(Metric.DECODE_TIME, metrics.getDecodeTime() / 1000L);
+        }
+        if (metrics.getBitmapBytes() > 0) {
+            record(Metric.BITMAP_BYTES, metrics.getBitmapBytes());
+        }
+        record(Metric.TOTAL_TIME, metrics.getTotalTime());
+    }
+
+    @Override
+    public void onMemoryTrimmed(int level, MemoryTrimPolicy.Stage stage, int limit, int releasedBytes) {
+        trimCounts.incrementAndGet(stage.ordinal());
+        trimReleasedBytes.addAndGet(releasedBytes);
+        memoryLimit.set(limit);
+    }
+
+    @Override
+    public void onMemoryRecovered(int limit) {
+        recoverCount.incrementAndGet();
+        memoryLimit.set(limit);
+    }
+
+    private void record(Metric metric, long value){
+        if (value >= 0) {
+            histograms[metric.ordinal()].record(value);
+        }
+    }
+
+    /**
+     * @return rolling histogram of metric
+     */
+    public RollingHistogram getHistogram(Metric metric){
+        return histograms[metric.ordinal()];
+    }
+
+    /**
+     * @return count of memory cache hit in UI thread directly (no task created)
+     */
+    public long getFastMemoryHitCount(){
+        return fastMemoryHitCount.get();
+    }
+
+    /**
+     * @return count of succeed tasks loaded from the source
+     */
+    public long getSourceCount(TaskMetrics.Source source){
+        return sourceCounts.get(source.ordinal());
+    }
+
+    /**
+     * @return count of finished tasks in the state
+     */
+    public long getStateCount(Task.State state){
+        return stateCounts.get(state.ordinal());
+    }
+
+    /**
+     * @return count of failed/canceled tasks for the reason
+     */
+    public long getReasonCount(TaskMetrics.Reason reason){
+        return reasonCounts.get(reason.ordinal());
+    }
+
+    /**
+     * @return count of memory cache trimmed in the stage
+     */
+    public long getTrimCount(MemoryTrimPolicy.Stage stage){
+        return trimCounts.get(stage.ordinal());
+    }
+
+    /**
+     * @return bytes removed from memory cache by trimming
+     */
+    public long getTrimReleasedBytes(){
+        return trimReleasedBytes.get();
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[CommonMetricsCollector]MetricsReport: ");
+        stringBuilder.append("hit:(fastMemory:");
+        stringBuilder.append(fastMemoryHitCount.get());
+        for (TaskMetrics.Source source : TaskMetrics.Source.values()){
+            if (source == TaskMetrics.Source.NONE){
+                continue;
+            }
+            stringBuilder.append(" ");
+            stringBuilder.append(source);
+            stringBuilder.append(":");
+            stringBuilder.append(sourceCounts.get(source.ordinal()));
+        }
+        stringBuilder.append(") state:(");
+        for (Task.State state : Task.State.values()){
+            if (state == Task.State.STAND_BY){
+                continue;
+            }
+            stringBuilder.append(state);
+            stringBuilder.append(":");
+            stringBuilder.append(stateCounts.get(state.ordinal()));
+            stringBuilder.append(" ");
+        }
+        stringBuilder.append(") reason:(");
+        for (TaskMetrics.Reason reason : TaskMetrics.Reason.values()){
+            long count = reasonCounts.get(reason.ordinal());
+            if (count > 0) {
+                stringBuilder.append(reason);
+                stringBuilder.append(":");
+                stringBuilder.append(count);
+                stringBuilder.append(" ");
+            }
+        }
+        stringBuilder.append(") trim:(");
+        for (MemoryTrimPolicy.Stage stage : MemoryTrimPolicy.Stage.values()){
+            long count = trimCounts.get(stage.ordinal());
+            if (count > 0) {
+                stringBuilder.append(stage);
+                stringBuilder.append(":");
+                stringBuilder.append(count);
+                stringBuilder.append(" ");
+            }
+        }
+        stringBuilder.append("released:");
+        stringBuilder.append(trimReleasedBytes.get() / 1024);
+        stringBuilder.append("K recovered:");
+        stringBuilder.append(recoverCount.get());
+        stringBuilder.append(" limit:");
+        stringBuilder.append(memoryLimit.get() / 1024);
+        stringBuilder.append("K) ");
+        for (Metric metric : Metric.values()){
+            RollingHistogram.Snapshot snapshot = histograms[metric.ordinal()].getSnapshot();
+            stringBuilder.append(metric);
+            stringBuilder.append(":(n:");
+            stringBuilder.append(snapshot.getCount());
+            stringBuilder.append(" avg:");
+            stringBuilder.append(snapshot.getAverage());
+            stringBuilder.append(" p50:");
+            stringBuilder.append(snapshot.getPercentile(0.5f));
+            stringBuilder.append(" p90:");
+            stringBuilder.append(snapshot.getPercentile(0.9f));
+            stringBuilder.append(" p99:");
+            stringBuilder.append(snapshot.getPercentile(0.99f));
+            stringBuilder.append(" max:");
+            stringBuilder.append(snapshot.getMax());
+            stringBuilder.append(") ");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @return metrics in JSON format (counters and histogram snapshots), for tracking regressions between releases
+     */
+    public String getReportJson() {
+        try {
+            JSONObject root = new JSONObject();
+            root.put("timestamp", System.currentTimeMillis());
+            JSONObject hit = new JSONObject();
+            hit.put("FAST_MEMORY", fastMemoryHitCount.get());
+            for (TaskMetrics.Source source : TaskMetrics.Source.values()){
+                if (source != TaskMetrics.Source.NONE) {
+                    hit.put(source.name(), sourceCounts.get(source.ordinal()));
+                }
+            }
+            root.put("hit", hit);
+            JSONObject state = new JSONObject();
+            for (Task.State taskState : Task.State.values()){
+                if (taskState != Task.State.STAND_BY) {
+                    state.put(taskState.name(), stateCounts.get(taskState.ordinal()));
+                }
+            }
+            root.put("state", state);
+            JSONObject reason = new JSONObject();
+            for (TaskMetrics.Reason taskReason : TaskMetrics.Reason.values()){
+                if (taskReason != TaskMetrics.Reason.NONE) {
+                    reason.put(taskReason.name(), reasonCounts.get(taskReason.ordinal()));
+                }
+            }
+            root.put("reason", reason);
+            JSONObject trim = new JSONObject();
+            for (MemoryTrimPolicy.Stage stage : MemoryTrimPolicy.Stage.values()){
+                if (stage != MemoryTrimPolicy.Stage.NONE) {
+                    trim.put(stage.name(), trimCounts.get(stage.ordinal()));
+                }
+            }
+            trim.put("RELEASED_BYTES", trimReleasedBytes.get());
+            trim.put("RECOVERED", recoverCount.get());
+            trim.put("LIMIT", memoryLimit.get());
+            root.put("trim", trim);
+            JSONObject histogram = new JSONObject();
+            for (Metric metric : Metric.values()){
+                RollingHistogram.Snapshot snapshot = histograms[metric.ordinal()].getSnapshot();
+                JSONObject item = new JSONObject();
+                item.put("count", snapshot.getCount());
+                item.put("avg", snapshot.getAverage());
+                item.put("p50", snapshot.getPercentile(0.5f));
+                item.put("p90", snapshot.getPercentile(0.9f));
+                item.put("p99", snapshot.getPercentile(0.99f));
+                item.put("max", snapshot.getMax());
+                histogram.put(metric.name(), item);
+            }
+            root.put("histogram", histogram);
+            return root.toString();
+        } catch (JSONException e) {
+            throw new RuntimeException("[CommonMetricsCollector]error while building json report", e);
+        }
+    }
+
+    /**
+     * metrics with histogram
+     */
+    public enum Metric {
+        MEMORY_QUEUE_WAIT,//ms
+        DISK_QUEUE_WAIT,//ms
+        NETWORK_QUEUE_WAIT,//ms
+        NETWORK_TIME,//ms
+        NETWORK_BYTES,//bytes
+        DECODE_TIME,//us
+        BITMAP_BYTES,//bytes
+        TOTAL_TIME//ms
+    }
+
+    /**
+     * <p>Rolling histogram with log2 buckets (bucket i holds [2^(i-1), 2^i - 1]), holds the data of current
+     * and previous window. Percentiles are the upper bound of the bucket (max at most).</p>
+     */
+    public static class RollingHistogram {
+
+        private static final int BUCKETS = 48;
+        private static final int INDEX_SUM = BUCKETS;
+        private static final int INDEX_MAX = BUCKETS + 1;
+
+        private final long windowMillis;
+        private final AtomicLongArray[] slots = {new AtomicLongArray(BUCKETS + 2), new AtomicLongArray(BUCKETS + 2)};
+        private final AtomicLongArray windowIds = new AtomicLongArray(2);
+
+        private RollingHistogram(long windowMillis) {
+            this.windowMillis = windowMillis;
+            windowIds.set(0, -1);
+            windowIds.set(1, -1);
+        }
+
+        /**
+         * @param value value >= 0
+         */
+        public void record(long value){
+            long windowId = System.currentTimeMillis() / windowMillis;
+            int index = (int) (windowId & 1);
+            AtomicLongArray slot = slots[index];
+            long previousId = windowIds.get(index);
+            //new window, reset slot (few records may be lost on racing, acceptable for metrics)
+            if (previousId != windowId && windowIds.compareAndSet(index, previousId, windowId)){
+                for (int i = 0 ; i < BUCKETS + 2 ; i++){
+                    slot.set(i, 0);
+                }
+            }
+            slot.incrementAndGet(bucketOf(value));
+            slot.addAndGet(INDEX_SUM, value);
+            long max;
+            while ((max = slot.get(INDEX_MAX)) < value){
+                if (slot.compareAndSet(INDEX_MAX, max, value)){
+                    break;
+                }
+            }
+        }
+
+        /**
+         * @return snapshot of current and previous window
+         */
+        public Snapshot getSnapshot(){
+            long windowId = System.currentTimeMillis() / windowMillis;
+            long[] buckets = new long[BUCKETS];
+            long sum = 0;
+            long max = 0;
+            for (int index = 0 ; index < 2 ; index++){
+                long id = windowIds.get(index);
+                if (id != windowId && id != windowId - 1){
+                    continue;
+                }
+                AtomicLongArray slot = slots[index];
+                for (int i = 0 ; i < BUCKETS ; i++){
+                    buckets[i] += slot.get(i);
+                }
+                sum += slot.get(INDEX_SUM);
+                max = Math.max(max, slot.get(INDEX_MAX));
+            }
+            return new Snapshot(buckets, sum, max);
+        }
+
+        private static int bucketOf(long value){
+            if (value <= 0){
+                return 0;
+            }
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        }
+
+        public static class Snapshot {
+
+            private final long[] buckets;
+            private final long count;
+            private final long sum;
+            private final long max;
+
+            private Snapshot(long[] buckets, long sum, long max) {
+                this.buckets = buckets;
+                long count = 0;
+                for (long bucket : buckets) {
+                    count += bucket;
+                }
+                this.count = count;
+                this.sum = sum;
+                this.max = max;
+            }
+
+            public long getCount() {
+                return count;
+            }
+
+            public long getAverage() {
+                return count > 0 ? sum / count : 0;
+            }
+
+            public long getMax() {
+                return max;
+            }
+
+            /**
+             * @param percent 0~1, e.g. 0.9f
+             * @return upper bound of the bucket which the percentile locates in (max at most)
+             */
+            public long getPercentile(float percent){
+                if (count <= 0){
+                    return 0;
+                }
+                long target = (long) Math.ceil(count * percent);
+                long accumulated = 0;
+                for (int i = 0 ; i < buckets.length ; i++){
+                    accumulated += buckets[i];
+                    if (accumulated >= target){
+                        return Math.min(max, (1L << i) - 1);
+                    }
+                }
+                return max;
+            }
+
+        }
+
+    }
+
+}
@@ -29,6 +29,8 @@ import java.util.Map;
 
 import sviolet.thistle.util.common.CheckUtils;
 import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
 import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.server.EngineCallback;
@@ -55,7 +57,7 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
     public void onHandle(Context applicationContext, Context context, Task.Info taskInfo, EngineCallback<Result> callback, long connectTimeout, long readTimeout, TLogger logger) {
         try{
             //load
-            Result result = load(new URL(taskInfo.getUrl()), null, 0, callback, connectTimeout, readTimeout);
+            Result result = load(new URL(taskInfo.getUrl()), null, 0, taskInfo.getCacheValidator(), taskInfo.getResumeInfo(), callback, connectTimeout, readTimeout);
             if (result == null){
                 throw new Exception("[CommonNetworkLoadHandler]get a null inputStream");
             }
@@ -75,10 +77,12 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
      * @param url current url
      * @param prevUrl last url
      * @param redirectTimes redirect times
+     * @param cacheValidator validator of expired disk cache entry, issue conditional request if not null
+     * @param resumeInfo partial download, issue range request if not null
      * @param callback callback
      * @return Result
      */
-    private Result load(URL url, URL prevUrl, int redirectTimes, EngineCallback<Result> callback, long connectTimeout, long readTimeout) throws Exception {
+    private Result load(URL url, URL prevUrl, int redirectTimes, CacheValidator cacheValidator, ResumeInfo resumeInfo, EngineCallback<Result> callback, long connectTimeout, long readTimeout) throws Exception {
         //skip when redirect too many times
         if (redirectTimes >= MAXIMUM_REDIRECT_TIMES) {
             throw new Exception("[CommonNetworkLoadHandler]redirect times > maximum(" + MAXIMUM_REDIRECT_TIMES + ")");
@@ -102,6 +106,20 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
                     connection.addRequestProperty(headerEntry.getKey(), headerEntry.getValue());
                 }
             }
+            //conditional request
+            if (cacheValidator != null) {
+                if (cacheValidator.getETag() != null) {
+                    connection.setRequestProperty("If-None-Match", cacheValidator.getETag());
+                }
+                if (cacheValidator.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", cacheValidator.getLastModified());
+                }
+            }
+            //range request, the server responds whole resource if the partial download is outdated
+            if (resumeInfo != null) {
+                connection.setRequestProperty("Range", resumeInfo.getRange());
+                connection.setRequestProperty("If-Range", resumeInfo.getIfRange());
+            }
             //setting
             connection.setConnectTimeout((int) connectTimeout);
             connection.setReadTimeout((int) readTimeout);
@@ -124,6 +142,16 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
                 if (CheckUtils.isEmpty(connection.getContentEncoding())){
                     result.setLength(connection.getContentLength());
                 }
+                result.setCacheValidator(parseCacheValidator(connection));
+                if (statusCode == HttpURLConnection.HTTP_PARTIAL) {
+                    //partial content, append to partial download
+                    result.setResumeOffset(ResumeInfo.parseContentRangeStart(connection.getHeaderField("Content-Range")));
+                }
+                return result;
+            } else if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                //not modified, no body
+                Result result = Result.notModified(parseCacheValidator(connection));
+                connection.disconnect();
                 return result;
             } else if (statusCode / 100 == 3) {
                 //redirect
@@ -131,7 +159,7 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
                 if (CheckUtils.isEmpty(redirectUrl)) {
                     throw new Exception("[CommonNetworkLoadHandler]redirect url is null");
                 }
-                return load(new URL(url, redirectUrl), url, redirectTimes + 1, callback, connectTimeout, readTimeout);
+                return load(new URL(url, redirectUrl), url, redirectTimes + 1, cacheValidator, resumeInfo, callback, connectTimeout, readTimeout);
             } else if (statusCode == -1) {
                 //failed
                 throw new Exception("[CommonNetworkLoadHandler]connect failed, statusCode:" + statusCode);
@@ -147,6 +175,10 @@ public class CommonNetworkLoadHandler implements NetworkLoadHandler {
         }
     }
 
+    private CacheValidator parseCacheValidator(HttpURLConnection connection){
+        return CacheValidator.parse(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), connection.getHeaderField("Cache-Control"));
+    }
+
     /**
      * add header of http
      * @param key header key
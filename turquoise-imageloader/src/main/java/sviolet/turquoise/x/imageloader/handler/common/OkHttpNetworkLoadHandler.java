@@ -31,7 +31,9 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import sviolet.turquoise.utilx.tlogger.TLogger;
-import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
+import sviolet.turquoise.x.imageloader.handler.AsyncNetworkLoadHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.server.EngineCallback;
 
@@ -40,9 +42,12 @@ import sviolet.turquoise.x.imageloader.server.EngineCallback;
  *
  * <p>dependency::com.squareup.okhttp3:okhttp:3.3.1</p>
  *
+ * <p>Asynchronous handler, NetEngine won't block thread to wait for result, the response body is read (and written
+ * into disk cache) in NetEngine's I/O threads, OkHttp's dispatcher thread returns once the result set.</p>
+ *
  * Created by S.Violet on 2016/6/15.
  */
-public class OkHttpNetworkLoadHandler implements NetworkLoadHandler {
+public class OkHttpNetworkLoadHandler implements AsyncNetworkLoadHandler {
 
     private OkHttpClient okHttpClient;
 
@@ -59,8 +64,7 @@ public class OkHttpNetworkLoadHandler implements NetworkLoadHandler {
      * <p>CAUTION:</p>
      *
      * <p>You should call "callback.setResultSucceed()"/"callback.setResultFailed()"/"callback.setResultCanceled()"
-     * when process finished, whether loading succeed or failed. if not, NetEngine's thread will be block for a long time,
-     * until EngineCallback timeout.Because NetEngine will invoke callback.getResult, this method will block thread util you setResult.</p>
+     * when process finished, whether loading succeed or failed. if not, the task will not be finished until EngineCallback timeout.</p>
      */
     @Override
     public void onHandle(Context applicationContext, Context context, Task.Info taskInfo, final EngineCallback<Result> callback, long connectTimeout, long readTimeout, TLogger logger) {
@@ -70,6 +74,22 @@ public class OkHttpNetworkLoadHandler implements NetworkLoadHandler {
                 requestBuilder.addHeader(entry.getKey(), entry.getValue());
             }
         }
+        //conditional request
+        CacheValidator cacheValidator = taskInfo.getCacheValidator();
+        if (cacheValidator != null) {
+            if (cacheValidator.getETag() != null) {
+                requestBuilder.header("If-None-Match", cacheValidator.getETag());
+            }
+            if (cacheValidator.getLastModified() != null) {
+                requestBuilder.header("If-Modified-Since", cacheValidator.getLastModified());
+            }
+        }
+        //range request, the server responds whole resource if the partial download is outdated
+        ResumeInfo resumeInfo = taskInfo.getResumeInfo();
+        if (resumeInfo != null) {
+            requestBuilder.header("Range", resumeInfo.getRange());
+            requestBuilder.header("If-Range", resumeInfo.getIfRange());
+        }
 //        requestBuilder.post(RequestBody.create(MediaType.parse("application/json; charset=utf-8"), ""));//post报文体
         Request request = requestBuilder.build();
 
@@ -82,7 +102,18 @@ public class OkHttpNetworkLoadHandler implements NetworkLoadHandler {
                         callback.setResultFailed(new Exception("[OkHttpNetworkLoadHandler] error, no response body"));
                         return;
                     }
-                    callback.setResultSucceed(new Result(body.byteStream()).setLength((int) body.contentLength()));
+                    Result result = new Result(body.byteStream()).setLength((int) body.contentLength()).setCacheValidator(parseCacheValidator(response));
+                    if (response.code() == 206) {
+                        //partial content, append to partial download
+                        result.setResumeOffset(ResumeInfo.parseContentRangeStart(response.header("Content-Range")));
+                    }
+                    callback.setResultSucceed(result);
+                } else if (response.code() == 304) {
+                    //not modified, no body
+                    if (response.body() != null) {
+                        response.body().close();
+                    }
+                    callback.setResultSucceed(Result.notModified(parseCacheValidator(response)));
                 } else {
                     callback.setResultFailed(new Exception("[OkHttpNetworkLoadHandler] error code:" + response.code() + ", error message:" + response.message()));
                 }
@@ -98,6 +129,10 @@ public class OkHttpNetworkLoadHandler implements NetworkLoadHandler {
         });
     }
 
+    private CacheValidator parseCacheValidator(Response response){
+        return CacheValidator.parse(response.header("ETag"), response.header("Last-Modified"), response.header("Cache-Control"));
+    }
+
     /**
      * add header of http
      * @param key header key
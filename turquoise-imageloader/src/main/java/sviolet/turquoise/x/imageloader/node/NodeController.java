@@ -28,6 +28,8 @@ import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.drawable.BackgroundDrawableFactory;
 import sviolet.turquoise.x.imageloader.drawable.FailedDrawableFactory;
 import sviolet.turquoise.x.imageloader.drawable.LoadingDrawableFactory;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
 import sviolet.turquoise.x.imageloader.entity.NodeSettings;
 import sviolet.turquoise.x.imageloader.entity.ServerSettings;
 import sviolet.turquoise.x.imageloader.server.Engine;
@@ -55,6 +57,9 @@ import sviolet.turquoise.x.imageloader.stub.Stub;
  * to stub, skip handle response from Engine). Node will pause util all NodeRemotes are resumed(not pause).
  * As long as there is a paused NodeRemoter, Node will keep pause status.</p>
  *
+ * <p>Load level:: NodeRemoter can limit the loading level of Node (memory only / disk / network) instead of
+ * pausing it, Engine will not execute the tasks beyond the level. The lowest level of all NodeRemoters takes effect.</p>
+ *
  * <p>Frozen:: Engine will not execute tasks of this Node, and node will skip dispatch (skip callback to stub,
  * skip handle response from Engine). Node will frozen when Context->OnStop(), and unfreeze when
  * Context->OnStart().</p>
@@ -82,6 +87,34 @@ public abstract class NodeController implements LifeCycle {
      */
     public abstract void execute(Stub stub);
 
+    /**
+     * get the image of stub from memory cache synchronously, invoked when the load method called (not when drawing),
+     * the stub binds it directly if hit.
+     * @param stub stub
+     * @return null if missed, or not invoked in UI thread
+     */
+    public abstract ImageResource getMemoryCachedResource(Stub stub);
+
+    /**
+     * notify that the priority of stub changed
+     * @param stub stub
+     */
+    public abstract void onPriorityChanged(Stub stub);
+
+    /**
+     * the resource is displayed by stub, it will not be recycled until released (or the stub collected by GC)
+     * @param stub stub which displays the resource
+     * @param resource resource
+     */
+    public abstract void acquireResource(Stub stub, ImageResource resource);
+
+    /**
+     * the resource is no longer displayed by stub
+     * @param stub stub which displayed the resource
+     * @param resource resource
+     */
+    public abstract void releaseResource(Stub stub, ImageResource resource);
+
     /***********************************************************
      * control
      */
@@ -154,6 +187,12 @@ public abstract class NodeController implements LifeCycle {
 
     abstract AtomicInteger getNodePauseCount();
 
+    /**
+     * @param level MEMORY_ONLY or DISK
+     * @return count of NodeRemoters which limit the Node to the level
+     */
+    abstract AtomicInteger getNodeLevelLimitCount(LoadLevel level);
+
     /**
      * @see NodeRemoter
      */
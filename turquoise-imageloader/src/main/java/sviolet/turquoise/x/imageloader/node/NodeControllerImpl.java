@@ -23,7 +23,10 @@ import android.content.Context;
 import android.os.Looper;
 import android.os.Message;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,11 +41,15 @@ import sviolet.turquoise.x.imageloader.drawable.BackgroundDrawableFactory;
 import sviolet.turquoise.x.imageloader.drawable.FailedDrawableFactory;
 import sviolet.turquoise.x.imageloader.drawable.LoadingDrawableFactory;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
 import sviolet.turquoise.x.imageloader.entity.NodeSettings;
 import sviolet.turquoise.x.imageloader.entity.ServerSettings;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
+import sviolet.turquoise.x.imageloader.handler.MetricsCollector;
 import sviolet.turquoise.x.imageloader.node.queue.InfiniteRequestQueue;
 import sviolet.turquoise.x.imageloader.node.queue.InfiniteResponseQueue;
 import sviolet.turquoise.x.imageloader.node.queue.LossyRequestQueue;
+import sviolet.turquoise.x.imageloader.node.queue.PriorityRequestQueue;
 import sviolet.turquoise.x.imageloader.node.queue.RequestQueue;
 import sviolet.turquoise.x.imageloader.node.queue.ResponseQueue;
 import sviolet.turquoise.x.imageloader.server.Engine;
@@ -94,6 +101,8 @@ public class NodeControllerImpl extends NodeController {
 
     private Map<String, StubGroup> stubPool = new ConcurrentHashMap<>();
     private final ReentrantLock stubPoolLock = new ReentrantLock();
+    //stubs displaying resource (held weakly), destroyed with node to release the resources
+    private final Set<Stub> displayingStubs = Collections.newSetFromMap(new WeakHashMap<Stub, Boolean>());
 
     private final ReentrantLock initializeLock = new ReentrantLock();
     private final AtomicInteger status = new AtomicInteger(INITIAL);
@@ -105,6 +114,13 @@ public class NodeControllerImpl extends NodeController {
      */
     private AtomicInteger nodePauseCount = new AtomicInteger(0);
 
+    /**
+     * <p>Load level:: count of NodeRemoters which limit the Node to MEMORY_ONLY / DISK level, Engine will not
+     * execute the tasks beyond the lowest level.</p>
+     */
+    private AtomicInteger memoryOnlyLimitCount = new AtomicInteger(0);
+    private AtomicInteger diskLimitCount = new AtomicInteger(0);
+
     NodeControllerImpl(ComponentManager manager, Node node, String nodeId, boolean infiniteRequestQueue){
         this.manager = manager;
         this.node = node;
@@ -140,6 +156,10 @@ public class NodeControllerImpl extends NodeController {
             memoryRequestQueue = new InfiniteRequestQueue();
             diskRequestQueue = new InfiniteRequestQueue();
             netRequestQueue = new InfiniteRequestQueue();
+        }else if (settings.getRequestQueueType() == NodeSettings.RequestQueueType.PRIORITY){
+            memoryRequestQueue = new PriorityRequestQueue(settings.getMemoryQueueSize(), manager.getLogger());
+            diskRequestQueue = new PriorityRequestQueue(settings.getDiskQueueSize(), manager.getLogger());
+            netRequestQueue = new PriorityRequestQueue(settings.getNetQueueSize(), manager.getLogger());
         }else {
             memoryRequestQueue = new LossyRequestQueue(settings.getMemoryQueueSize(), manager.getLogger());
             diskRequestQueue = new LossyRequestQueue(settings.getDiskQueueSize(), manager.getLogger());
@@ -160,6 +180,7 @@ public class NodeControllerImpl extends NodeController {
 
         //stub key
         String key = stub.getKey();
+
         //get stubGroup
         boolean newStubGroup = false;
         StubGroup stubGroup = null;
@@ -171,20 +192,76 @@ public class NodeControllerImpl extends NodeController {
                 stubPool.put(key, stubGroup);
                 newStubGroup = true;
             }
+            //add into group, priority of group is calculated with the lock, see onPriorityChanged
+            stubGroup.add(stub);
         } finally {
             stubPoolLock.unlock();
         }
-        //add into group
-        stubGroup.add(stub);
 
         //execute if new
         if (newStubGroup) {
             Task task = manager.getServerSettings().getTaskFactory().newTask(this, stub, stubGroup);
             task.setNodeSettings(settings);
+            if (stub.getType() == Stub.Type.PRELOAD_DISK){
+                //skip MemoryEngine, no need to check memory cache
+                task.setServerType(Server.Type.DISK_ENGINE);
+            }else if (stub.getType() == Stub.Type.LOAD && Looper.myLooper() == Looper.getMainLooper()
+                    && !TILoaderUtils.isImageResourceValid(manager.getMemoryCacheServer().get(key))){
+                //skip MemoryEngine if memory cache missed, the stub is not bound here (we may be in draw)
+                task.setServerType(Server.Type.DISK_ENGINE);
+            }
             executeTask(task);
         }
     }
 
+    @Override
+    public ImageResource getMemoryCachedResource(Stub stub) {
+        if (status.get() <= INITIAL || stub.getType() != Stub.Type.LOAD || Looper.myLooper() != Looper.getMainLooper()){
+            return null;
+        }
+        ImageResource resource = manager.getMemoryCacheServer().get(stub.getKey());
+        if (!TILoaderUtils.isImageResourceValid(resource)){
+            return null;
+        }
+        if (manager.getLogger().checkEnable(TLogger.DEBUG)) {
+            manager.getLogger().d("[NodeControllerImpl]memory cache hit, bind to stub directly, key:" + stub.getKey());
+        }
+        MetricsCollector metricsCollector = manager.getServerSettings().getMetricsCollector();
+        if (metricsCollector != null){
+            metricsCollector.onFastMemoryHit(stub.getUrl());
+        }
+        return resource;
+    }
+
+    @Override
+    public void onPriorityChanged(Stub stub) {
+        if (status.get() <= INITIAL){
+            return;
+        }
+        try {
+            stubPoolLock.lock();
+            StubGroup stubGroup = stubPool.get(stub.getKey());
+            if (stubGroup != null){
+                stubGroup.refreshPriority();
+            }
+        } finally {
+            stubPoolLock.unlock();
+        }
+    }
+
+    @Override
+    public void acquireResource(Stub stub, ImageResource resource) {
+        manager.getMemoryCacheServer().acquire(stub, stub.getKey(), resource);
+        synchronized (displayingStubs) {
+            displayingStubs.add(stub);
+        }
+    }
+
+    @Override
+    public void releaseResource(Stub stub, ImageResource resource) {
+        manager.getMemoryCacheServer().release(stub, resource);
+    }
+
     @Override
     Task pullTask(Server.Type type) {
         if (nodePauseCount.get() > 0 || status.get() < NORMAL){
@@ -196,8 +273,16 @@ public class NodeControllerImpl extends NodeController {
             case MEMORY_ENGINE:
                 return memoryRequestQueue.get();
             case DISK_ENGINE:
+                //limited to memory only, tasks wait in queue
+                if (memoryOnlyLimitCount.get() > 0){
+                    return null;
+                }
                 return diskRequestQueue.get();
             case NETWORK_ENGINE:
+                //limited to memory only or disk, tasks wait in queue
+                if (memoryOnlyLimitCount.get() > 0 || diskLimitCount.get() > 0){
+                    return null;
+                }
                 return netRequestQueue.get();
             default:
                 manager.getLogger().e("NodeControllerImpl:pullTask illegal Server.Type:<" + type.toString() + ">");
@@ -253,6 +338,7 @@ public class NodeControllerImpl extends NodeController {
 
     private void executeTaskToMemory(Task task){
         if (task.getState() == Task.State.STAND_BY) {
+            task.setEnqueueTime(System.currentTimeMillis());
             Task obsoleteTask = memoryRequestQueue.put(task);
             manager.getMemoryEngine().ignite();
             callbackToObsolete(obsoleteTask);
@@ -265,6 +351,7 @@ public class NodeControllerImpl extends NodeController {
 
     private void executeTaskToDisk(Task task){
         if (task.getState() == Task.State.STAND_BY){
+            task.setEnqueueTime(System.currentTimeMillis());
             Task obsoleteTask = diskRequestQueue.put(task);
             manager.getDiskEngine().ignite();
             callbackToObsolete(obsoleteTask);
@@ -277,6 +364,7 @@ public class NodeControllerImpl extends NodeController {
 
     private void executeTaskToNet(Task task){
         if (task.getState() == Task.State.STAND_BY){
+            task.setEnqueueTime(System.currentTimeMillis());
             Task obsoleteTask = netRequestQueue.put(task);
             manager.getNetEngine().ignite();
             callbackToObsolete(obsoleteTask);
@@ -293,6 +381,19 @@ public class NodeControllerImpl extends NodeController {
         if (manager.getLogger().checkEnable(TLogger.DEBUG)) {
             manager.getLogger().d("[NodeControllerImpl]task finish, callback to stub, task:" + task.getTaskInfo());
         }
+        //metrics
+        TaskMetrics metrics = task.getMetrics();
+        if (metrics != null){
+            metrics.markFinish();
+            MetricsCollector metricsCollector = manager.getServerSettings().getMetricsCollector();
+            if (metricsCollector != null) {
+                try {
+                    metricsCollector.onTaskFinished(task.getTaskInfo(), metrics);
+                } catch (Exception e) {
+                    manager.getLogger().e("[NodeControllerImpl]exception in MetricsCollector", e);
+                }
+            }
+        }
         Message msg = myHandler.obtainMessage(MyHandler.HANDLER_CALLBACK);
         msg.obj = task;
         msg.sendToTarget();
@@ -303,6 +404,9 @@ public class NodeControllerImpl extends NodeController {
             return;
         }
         obsoleteTask.setState(Task.State.CANCELED);
+        if (obsoleteTask.getMetrics() != null){
+            obsoleteTask.getMetrics().setReason(TaskMetrics.Reason.QUEUE_OVERFLOW);
+        }
         callback(obsoleteTask);
     }
 
@@ -320,7 +424,11 @@ public class NodeControllerImpl extends NodeController {
         switch (task.getState()){
             case SUCCEED:
                 ImageResource resource;
-                if (task.getType() == Stub.Type.EXTRACT){
+                if (task.getType() == Stub.Type.PRELOAD_DISK){
+                    //no resource, data has been written to disk
+                    stubGroup.onLoadSucceed(null);
+                    break;
+                } else if (task.getType() == Stub.Type.EXTRACT){
                     //image will remove from memory cache
                     resource = manager.getMemoryCacheServer().extract(task.getKey());
                 }else{
@@ -446,6 +554,18 @@ public class NodeControllerImpl extends NodeController {
         return nodePauseCount;
     }
 
+    @Override
+    AtomicInteger getNodeLevelLimitCount(LoadLevel level) {
+        switch (level){
+            case MEMORY_ONLY:
+                return memoryOnlyLimitCount;
+            case DISK:
+                return diskLimitCount;
+            default:
+                throw new RuntimeException("[NodeControllerImpl]no limit count for load level:" + level);
+        }
+    }
+
     /**
      * @see NodeRemoter
      */
@@ -565,6 +685,15 @@ public class NodeControllerImpl extends NodeController {
             }catch (Exception ignored){
             }
             stubPool.clear();
+            //destroy displaying stubs, release the resources referenced by them
+            Stub[] stubs;
+            synchronized (displayingStubs) {
+                stubs = displayingStubs.toArray(new Stub[displayingStubs.size()]);
+                displayingStubs.clear();
+            }
+            for (Stub stub : stubs) {
+                stub.onDestroy();
+            }
             //destroy settings
             if (settings != null) {
                 settings.onDestroy();
@@ -573,12 +702,6 @@ public class NodeControllerImpl extends NodeController {
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        onDestroy();
-    }
-
     /******************************************************************
      * Main Thread Handler
      */
@@ -30,4 +30,6 @@ public interface NodeFactory {
 
     Node newExtractNode(String nodeId);
 
+    Node newPreloadNode(String nodeId);
+
 }
@@ -43,4 +43,9 @@ public class NodeFactoryImpl implements NodeFactory {
     public Node newExtractNode(String nodeId) {
         return new ExtractNode(manager, nodeId);
     }
+
+    @Override
+    public Node newPreloadNode(String nodeId) {
+        return new PreloadNode(manager, nodeId);
+    }
 }
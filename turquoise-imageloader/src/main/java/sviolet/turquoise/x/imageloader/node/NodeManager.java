@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import sviolet.turquoise.x.imageloader.ComponentManager;
@@ -38,10 +39,14 @@ import sviolet.turquoise.x.imageloader.server.Server;
 public class NodeManager {
 
     private static final String EXTRACT_NODE_ID = "###ExtractNode###";
+    private static final String PRELOAD_NODE_ID_PREFIX = "###PreloadNode###";
 
     private ComponentManager manager;
 
     private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    //preload nodes, the tasks are pulled in low priority lane
+    private final Map<String, Node> preloadNodes = new ConcurrentHashMap<>();
+    private final AtomicInteger preloadNodeCounter = new AtomicInteger(0);
     private final ReentrantLock nodesLock = new ReentrantLock();
 
     public NodeManager(ComponentManager manager){
@@ -119,6 +124,27 @@ public class NodeManager {
         }
     }
 
+    /**
+     * create a new Preload Node, one node per preload group
+     * @param context context
+     */
+    public PreloadNode newPreloadNode(Context context) {
+        if (context == null){
+            throw new RuntimeException("[NodeManager]can not create preload Node with out Context");
+        }
+        manager.setApplicationContextImage(context.getApplicationContext());
+        Node node = manager.getNodeFactory().newPreloadNode(PRELOAD_NODE_ID_PREFIX + preloadNodeCounter.getAndIncrement());
+        if (node instanceof PreloadNode) {
+            preloadNodes.put(node.getId(), node);
+            return (PreloadNode)node;
+        }else{
+            throw new RuntimeException("[TILoader:NodeManager]newPreloadNode: can't convert Node to PreloadNode");
+        }
+    }
+
+    /**
+     * pull tasks of normal nodes (not including preload nodes)
+     */
     public List<Task> pullTasks(Server.Type type){
         List<Task> taskList = new ArrayList<>(1);
 
@@ -132,9 +158,25 @@ public class NodeManager {
         return taskList;
     }
 
+    /**
+     * pull one task of preload nodes (low priority lane)
+     */
+    public Task pullPreloadTask(Server.Type type){
+        for (Map.Entry<String, Node> entry : preloadNodes.entrySet()) {
+            Task task = entry.getValue().pullTask(type);
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
     public void response(Task task){
         String nodeId = task.getNodeId();
         Node node = nodes.get(nodeId);
+        if (node == null){
+            node = preloadNodes.get(nodeId);
+        }
 
         if (node != null){
             node.response(task);
@@ -146,6 +188,7 @@ public class NodeManager {
             return;
         }
         nodes.remove(node.getId());
+        preloadNodes.remove(node.getId());
     }
 
     private String parseNodeId(Context context){
@@ -25,8 +25,10 @@ import android.widget.ListView;
 
 import java.lang.ref.WeakReference;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import sviolet.turquoise.util.droid.DeviceUtils;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
 
 /**
  * <p>Remoter of Node, helps smooth slide, for {@link ListView} / {@link GridView} / RecyclerView,
@@ -80,11 +82,22 @@ import sviolet.turquoise.util.droid.DeviceUtils;
  *      }
  * }</pre>
  *
+ * <p>Pausing is all-or-nothing, {@link VelocityLoadController} limits the loading level according to the
+ * scroll velocity instead (memory only on fast fling, disk on medium speed, network on idle):</p>
+ *
+ * <pre>{@code
+ *      VelocityLoadController controller = new VelocityLoadController(this, TILoader.node(this).newNodeRemoter());
+ *      listView.setOnScrollListener(controller.newListViewScrollListener());
+ *      //or
+ *      recyclerView.addOnScrollListener(new VelocityOnRecyclerViewScrollListener(controller));
+ * }</pre>
+ *
  * Created by S.Violet on 2016/4/28.
  */
 public class NodeRemoter {
 
     private AtomicBoolean pause = new AtomicBoolean(false);
+    private AtomicReference<LoadLevel> loadLevel = new AtomicReference<>(LoadLevel.NETWORK);
     private WeakReference<NodeController> controller;
 
     NodeRemoter(NodeController controller){
@@ -129,6 +142,47 @@ public class NodeRemoter {
         }
     }
 
+    /**
+     * <p>limit the loading level of Node, Engine will not execute the tasks beyond the level (they wait in queue).
+     * The lowest level of all NodeRemoters takes effect. {@link LoadLevel#NETWORK} means no limit.</p>
+     *
+     * @param level MEMORY_ONLY / DISK / NETWORK
+     */
+    public void setLoadLevel(LoadLevel level){
+        if (level == null){
+            throw new RuntimeException("[NodeRemoter]load level is null");
+        }
+        final NodeController controller = this.controller.get();
+        if (controller == null) {
+            return;
+        }
+        LoadLevel previous = loadLevel.getAndSet(level);
+        if (previous == level){
+            return;
+        }
+        /*
+         * move the limit count from previous level to new level,
+         * if the level raised, notify Engine.
+         */
+        if (previous != LoadLevel.NETWORK){
+            controller.getNodeLevelLimitCount(previous).decrementAndGet();
+        }
+        if (level != LoadLevel.NETWORK){
+            controller.getNodeLevelLimitCount(level).incrementAndGet();
+        }
+        if (level.ordinal() > previous.ordinal()){
+            controller.postIgnite();
+        }
+        controller.getLogger().d("[NodeRemoter]load level " + previous + " -> " + level + ", nodeId:" + controller.getNodeId());
+    }
+
+    /**
+     * @return loading level limited by this NodeRemoter
+     */
+    public LoadLevel getLoadLevel(){
+        return loadLevel.get();
+    }
+
     /**
      * destroy Node, this method only for api < 11, do not call if min api 11+
      * @deprecated this method only for api < 11, do not call if min api 11+
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.node;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.OnLoadedListener;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+
+/**
+ * <p>Node for preload, one node per preload group (TILoader.preload).</p>
+ *
+ * <p>The tasks of preload nodes are executed in low priority lane of EngineScheduler, only when the engine has
+ * no visible loading task and has idle slot. The node will be destroyed when all tasks finished, or canceled
+ * by {@link PreloadRemoter#cancel()}.</p>
+ *
+ * Created by S.Violet on 2017/11/23.
+ */
+public class PreloadNode extends LoadNode {
+
+    private final AtomicInteger total = new AtomicInteger(0);
+    private final AtomicInteger remaining = new AtomicInteger(0);
+    private final AtomicInteger succeedCount = new AtomicInteger(0);
+    private final AtomicInteger canceledCount = new AtomicInteger(0);
+
+    PreloadNode(ComponentManager manager, String nodeId) {
+        super(manager, nodeId, true);
+    }
+
+    /**
+     * [Initialize TILoader]this method will initialize TILoader<br/>
+     * [Initialize Node]this method will initialize Node<br/>
+     * preload images into cache, without view<br/>
+     * @param urls URLs
+     * @param params loading params
+     * @param target disk or disk+memory
+     * @return {@link PreloadRemoter}
+     */
+    public PreloadRemoter preload(List<String> urls, Params params, PreloadTarget target) {
+        getManager().waitingForInitialized();
+        getController().waitingForInitialized();
+        PreloadRemoter remoter = new PreloadRemoter(this);
+        if (urls == null || urls.size() <= 0){
+            cancel();
+            return remoter;
+        }
+        //set before launching, the stub may finish immediately (memory cache hit)
+        total.set(urls.size());
+        remaining.set(urls.size());
+        for (String url : urls) {
+            try{
+                Stub stub = getManager().getServerSettings().getStubFactory().newPreloadStub(url, params, target, listener);
+                stub.initialize(getController());
+            } catch (Exception e){
+                getManager().getLogger().e("[PreloadNode]error while creating or initializing PreloadStub, url:" + url, e);
+                canceledCount.incrementAndGet();
+                onStubFinished();
+            }
+        }
+        return remoter;
+    }
+
+    /**
+     * cancel all the tasks (not finished) of node, destroy node
+     */
+    void cancel(){
+        getController().onDestroy();
+    }
+
+    boolean isFinished(){
+        return getController().isDestroyed();
+    }
+
+    int getTotal(){
+        return total.get();
+    }
+
+    int getSucceedCount(){
+        return succeedCount.get();
+    }
+
+    int getCanceledCount(){
+        return canceledCount.get();
+    }
+
+    private void onStubFinished(){
+        if (remaining.decrementAndGet() <= 0){
+            cancel();
+        }
+    }
+
+    private final OnLoadedListener<Void> listener = new OnLoadedListener<Void>() {
+        @Override
+        public void onLoadSucceed(String url, Params params, ImageResource resource) {
+            succeedCount.incrementAndGet();
+            onStubFinished();
+        }
+
+        @Override
+        public void onLoadCanceled(String url, Params params) {
+            canceledCount.incrementAndGet();
+            onStubFinished();
+        }
+    };
+
+    @Override
+    protected void attachLifeCycle(Context context) {
+        //do nothing
+    }
+}
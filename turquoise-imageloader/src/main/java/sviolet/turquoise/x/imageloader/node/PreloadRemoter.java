@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.node;
+
+/**
+ * <p>Remoter of preload group (TILoader.preload), used to cancel preloading, or get the progress.</p>
+ *
+ * Created by S.Violet on 2017/11/23.
+ */
+public class PreloadRemoter {
+
+    private final PreloadNode node;
+
+    PreloadRemoter(PreloadNode node) {
+        this.node = node;
+    }
+
+    /**
+     * cancel all the preloading tasks (not finished) of group
+     */
+    public void cancel(){
+        node.cancel();
+    }
+
+    /**
+     * @return true if all tasks finished, or canceled
+     */
+    public boolean isFinished(){
+        return node.isFinished();
+    }
+
+    /**
+     * @return number of preloading tasks
+     */
+    public int getTotal(){
+        return node.getTotal();
+    }
+
+    /**
+     * @return number of tasks succeed
+     */
+    public int getSucceedCount(){
+        return node.getSucceedCount();
+    }
+
+    /**
+     * @return number of tasks failed/canceled (including the tasks skipped on metered network)
+     */
+    public int getCanceledCount(){
+        return node.getCanceledCount();
+    }
+
+}
@@ -19,10 +19,15 @@
 
 package sviolet.turquoise.x.imageloader.node;
 
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
 import sviolet.turquoise.x.imageloader.entity.IndispensableState;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
 import sviolet.turquoise.x.imageloader.entity.LoadProgress;
 import sviolet.turquoise.x.imageloader.entity.NodeSettings;
 import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PriorityState;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
 import sviolet.turquoise.x.imageloader.server.Server;
 import sviolet.turquoise.x.imageloader.stub.Stub;
 
@@ -38,8 +43,8 @@ public class Task {
 
     private Info values;
 
-    Task(String nodeId, Stub.Type type, String url, Params params, String key, String resourceKey, LoadProgress loadProgress, IndispensableState indispensableState) {
-        this.values = new Info(nodeId, type, url, params, key, resourceKey, loadProgress, indispensableState);
+    Task(String nodeId, Stub.Type type, String url, Params params, String key, String resourceKey, LoadProgress loadProgress, IndispensableState indispensableState, PriorityState priorityState) {
+        this.values = new Info(nodeId, type, url, params, key, resourceKey, loadProgress, indispensableState, priorityState);
     }
 
     @Override
@@ -95,6 +100,10 @@ public class Task {
         return values.isIndispensable();
     }
 
+    public LoadPriority getPriority(){
+        return values.getPriority();
+    }
+
     public NodeSettings getNodeSettings() {
         return values.nodeSettings;
     }
@@ -107,10 +116,65 @@ public class Task {
         return values.hasReturnedFromNetEngine();
     }
 
+    /**
+     * @return time when task entered request queue (milli second), 0 if not enqueued
+     */
+    public long getEnqueueTime(){
+        return values.enqueueTime;
+    }
+
+    void setEnqueueTime(long enqueueTime){
+        values.enqueueTime = enqueueTime;
+    }
+
     public void setHasReturnedFromNetEngine(boolean value){
         this.values.hasReturnedFromNetEngine = value;
     }
 
+    /**
+     * @return validator of the expired disk cache entry, NetworkLoadHandler issues conditional request if not null
+     */
+    public CacheValidator getCacheValidator(){
+        return values.cacheValidator;
+    }
+
+    public void setCacheValidator(CacheValidator cacheValidator){
+        values.cacheValidator = cacheValidator;
+    }
+
+    /**
+     * @return true if the task has been revalidated (or revalidation failed), the disk cache entry will be used even if expired
+     */
+    public boolean isRevalidated(){
+        return values.revalidated;
+    }
+
+    public void setRevalidated(boolean revalidated){
+        values.revalidated = revalidated;
+    }
+
+    /**
+     * @return partial download of the resource, NetworkLoadHandler issues range request if not null
+     */
+    public ResumeInfo getResumeInfo(){
+        return values.resumeInfo;
+    }
+
+    public void setResumeInfo(ResumeInfo resumeInfo){
+        values.resumeInfo = resumeInfo;
+    }
+
+    /**
+     * @return metrics of task, null if metrics collector disabled (ServerSettings->setMetricsCollector)
+     */
+    public TaskMetrics getMetrics(){
+        return values.metrics;
+    }
+
+    void setMetrics(TaskMetrics metrics){
+        values.metrics = metrics;
+    }
+
     public Info getTaskInfo(){
         return values;
     }
@@ -130,7 +194,13 @@ public class Task {
         private volatile State state = State.STAND_BY;
         private LoadProgress loadProgress;
         private IndispensableState indispensableState;
+        private PriorityState priorityState;
         private boolean hasReturnedFromNetEngine = false;
+        private volatile long enqueueTime = 0;
+        private TaskMetrics metrics;
+        private volatile CacheValidator cacheValidator;
+        private volatile boolean revalidated = false;
+        private volatile ResumeInfo resumeInfo;
 
         //node//////////////////////////
         private String nodeId;
@@ -142,7 +212,7 @@ public class Task {
         private String key;
         private String resourceKey;
 
-        Info(String nodeId, Stub.Type type, String url, Params params, String key, String resourceKey, LoadProgress loadProgress, IndispensableState indispensableState) {
+        Info(String nodeId, Stub.Type type, String url, Params params, String key, String resourceKey, LoadProgress loadProgress, IndispensableState indispensableState, PriorityState priorityState) {
             this.nodeId = nodeId;
             this.type = type;
             this.url = url;
@@ -151,6 +221,7 @@ public class Task {
             this.resourceKey = resourceKey;
             this.loadProgress = loadProgress;
             this.indispensableState = indispensableState;
+            this.priorityState = priorityState;
         }
 
         private static final String STRING_HEADER = "[Task]<";
@@ -222,9 +293,29 @@ public class Task {
             return indispensableState.isIndispensable();
         }
 
+        public LoadPriority getPriority(){
+            return priorityState.getPriority();
+        }
+
         public boolean hasReturnedFromNetEngine(){
             return hasReturnedFromNetEngine;
         }
+
+        /**
+         * @return validator of the expired disk cache entry, issue conditional request (If-None-Match / If-Modified-Since)
+         * if not null, return {@link sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler.Result#notModified} on 304
+         */
+        public CacheValidator getCacheValidator(){
+            return cacheValidator;
+        }
+
+        /**
+         * @return partial download of the resource, issue range request (Range / If-Range) if not null,
+         * set start position of Content-Range by {@link sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler.Result#setResumeOffset} on 206
+         */
+        public ResumeInfo getResumeInfo(){
+            return resumeInfo;
+        }
     }
 
 }
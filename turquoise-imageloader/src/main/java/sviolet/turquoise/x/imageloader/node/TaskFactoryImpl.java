@@ -20,6 +20,7 @@
 package sviolet.turquoise.x.imageloader.node;
 
 import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
 import sviolet.turquoise.x.imageloader.stub.Stub;
 import sviolet.turquoise.x.imageloader.stub.StubGroup;
 
@@ -39,7 +40,12 @@ public class TaskFactoryImpl implements TaskFactory {
 
     @Override
     public Task newTask(NodeController controller, Stub stub, StubGroup stubGroup) {
-        return new Task(controller.getNodeId(), stub.getType(), stub.getUrl(), stub.getParams(), stub.getKey(), stub.getResourceKey(), stub.getLoadProgress().reset(), stubGroup.getIndispensableState());
+        Task task = new Task(controller.getNodeId(), stub.getType(), stub.getUrl(), stub.getParams(), stub.getKey(), stub.getResourceKey(), stub.getLoadProgress().reset(), stubGroup.getIndispensableState(), stubGroup.getPriorityState());
+        //metrics, only if collector enabled
+        if (manager.getServerSettings().getMetricsCollector() != null){
+            task.setMetrics(new TaskMetrics());
+        }
+        return task;
     }
 
 }
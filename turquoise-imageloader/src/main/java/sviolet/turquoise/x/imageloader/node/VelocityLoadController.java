@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.GridView;
+import android.widget.ListView;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import sviolet.turquoise.x.imageloader.TILoader;
+import sviolet.turquoise.x.imageloader.entity.LoadLevel;
+import sviolet.turquoise.x.imageloader.entity.NodeSettings;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
+
+/**
+ * <p>Scroll-velocity-aware loading controller, for {@link ListView} / {@link GridView} / RecyclerView.</p>
+ *
+ * <p>Tracks the scroll velocity (items per second) of list, and limits the loading level of Node by {@link NodeRemoter}:
+ * memory cache only during fast fling, disk cache allowed at medium speed, full network loading when idle (or slow).
+ * If {@link PrefetchProvider} is set, the stop position of fling will be predicted, and the items around the stop
+ * position will be prefetched in low priority lane (TILoader.preload).</p>
+ *
+ * <pre>{@code
+ *      //You should new different NodeRemoter/VelocityLoadController for each list, Do not re-use.
+ *      VelocityLoadController controller = new VelocityLoadController(this, TILoader.node(this).newNodeRemoter())
+ *              .setPrefetchProvider(new VelocityLoadController.PrefetchProvider() {
+ *                  public List<String> getUrls(int fromPosition, int toPosition) {
+ *                      return urls.subList(fromPosition, toPosition);
+ *                  }
+ *                  public Params getParams() {
+ *                      return null;
+ *                  }
+ *              });
+ *      //ListView / GridView
+ *      listView.setOnScrollListener(controller.newListViewScrollListener());
+ *      //RecyclerView (LinearLayoutManager / GridLayoutManager)
+ *      recyclerView.addOnScrollListener(new VelocityOnRecyclerViewScrollListener(controller));
+ * }</pre>
+ *
+ * Created by S.Violet on 2017/11/27.
+ */
+public class VelocityLoadController {
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_TOUCH_SCROLL = 1;
+    public static final int STATE_FLING = 2;
+
+    private static final float DEFAULT_FAST_VELOCITY = 20f;//items per second
+    private static final float DEFAULT_MEDIUM_VELOCITY = 6f;//items per second
+    private static final float DEFAULT_FLING_DECAY = 0.4f;//seconds, used if deceleration is unknown
+    private static final int DEFAULT_PREFETCH_MAX_COUNT = 10;
+    private static final float SMOOTHING = 0.5f;
+
+    private final NodeRemoter nodeRemoter;
+    private final WeakReference<Context> context;
+
+    private float fastVelocity = DEFAULT_FAST_VELOCITY;
+    private float mediumVelocity = DEFAULT_MEDIUM_VELOCITY;
+    private PrefetchProvider prefetchProvider;
+    private PreloadTarget prefetchTarget = PreloadTarget.DISK;
+    private int prefetchMaxCount = DEFAULT_PREFETCH_MAX_COUNT;
+    private NodeSettings prefetchNodeSettings;
+
+    //scroll state, only accessed in UI thread
+    private int state = STATE_IDLE;
+    private float lastProgress;
+    private long lastTime;
+    private float velocity;//items per second, negative if scroll to start
+    private float deceleration;//items per second^2
+
+    //prefetch state
+    private PreloadRemoter prefetchRemoter;
+    private int prefetchFrom = -1;
+    private int prefetchTo = -1;
+    private int prefetchRequestCount = 0;
+
+    /**
+     * @param context activity/fragment context, for prefetching
+     * @param nodeRemoter new NodeRemoter for each list, Do not re-use
+     */
+    public VelocityLoadController(Context context, NodeRemoter nodeRemoter) {
+        if (nodeRemoter == null){
+            throw new RuntimeException("[VelocityLoadController]nodeRemoter is null");
+        }
+        this.context = new WeakReference<>(context);
+        this.nodeRemoter = nodeRemoter;
+    }
+
+    /**
+     * @param fastVelocity memory cache only if the velocity (items per second) above it, default 20
+     * @param mediumVelocity disk cache allowed if the velocity (items per second) above it, default 6
+     */
+    public VelocityLoadController setVelocityThreshold(float fastVelocity, float mediumVelocity){
+        if (fastVelocity < mediumVelocity){
+            throw new RuntimeException("[VelocityLoadController]fastVelocity must >= mediumVelocity");
+        }
+        this.fastVelocity = fastVelocity;
+        this.mediumVelocity = mediumVelocity;
+        return this;
+    }
+
+    /**
+     * @param prefetchProvider provide URLs of items, prefetching is disabled if null
+     */
+    public VelocityLoadController setPrefetchProvider(PrefetchProvider prefetchProvider){
+        this.prefetchProvider = prefetchProvider;
+        return this;
+    }
+
+    /**
+     * @param prefetchTarget DISK (default) or DISK_AND_MEMORY (the params should be the same as displaying)
+     * @param prefetchMaxCount max items of one prefetching, default 10
+     */
+    public VelocityLoadController setPrefetch(PreloadTarget prefetchTarget, int prefetchMaxCount){
+        if (prefetchTarget == null){
+            throw new RuntimeException("[VelocityLoadController]prefetchTarget is null");
+        }
+        this.prefetchTarget = prefetchTarget;
+        this.prefetchMaxCount = prefetchMaxCount;
+        return this;
+    }
+
+    /**
+     * @param prefetchNodeSettings settings of prefetching Node (e.g. custom NetworkLoadHandler), nullable
+     */
+    public VelocityLoadController setPrefetchNodeSettings(NodeSettings prefetchNodeSettings){
+        this.prefetchNodeSettings = prefetchNodeSettings;
+        return this;
+    }
+
+    /**
+     * @return OnScrollListener for ListView / GridView
+     */
+    public VelocityOnListViewScrollListener newListViewScrollListener(){
+        return new VelocityOnListViewScrollListener(this);
+    }
+
+    /**
+     * @return current scroll velocity, items per second, negative if scroll to start
+     */
+    public float getVelocity(){
+        return velocity;
+    }
+
+    /**
+     * @return loading level set by this controller
+     */
+    public LoadLevel getLoadLevel(){
+        return nodeRemoter.getLoadLevel();
+    }
+
+    /**
+     * @return total items requested by prefetching
+     */
+    public int getPrefetchRequestCount(){
+        return prefetchRequestCount;
+    }
+
+    /*********************************************************************
+     * scroll events (UI thread)
+     */
+
+    /**
+     * @param state STATE_IDLE / STATE_TOUCH_SCROLL / STATE_FLING
+     * @param firstVisiblePosition first visible position of list
+     * @param visibleCount count of visible items
+     */
+    void onScrollStateChanged(int state, int firstVisiblePosition, int visibleCount){
+        this.state = state;
+        if (state != STATE_IDLE){
+            return;
+        }
+        //idle: full loading
+        lastTime = 0;
+        velocity = 0;
+        deceleration = 0;
+        nodeRemoter.setLoadLevel(LoadLevel.NETWORK);
+        //cancel prefetching if the list stopped somewhere else
+        if (prefetchRemoter != null && (prefetchTo <= firstVisiblePosition - visibleCount || prefetchFrom >= firstVisiblePosition + visibleCount * 2)){
+            prefetchRemoter.cancel();
+        }
+        prefetchRemoter = null;
+        prefetchFrom = -1;
+        prefetchTo = -1;
+    }
+
+    /**
+     * @param progress scroll progress in items, e.g. 3.5 means the list scrolled three and a half items from start
+     * @param visibleCount count of visible items
+     * @param totalCount count of all items
+     */
+    void onScrolled(float progress, int visibleCount, int totalCount){
+        onScrolled(progress, visibleCount, totalCount, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * @param time uptime millis of the scroll event
+     */
+    void onScrolled(float progress, int visibleCount, int totalCount, long time){
+        if (state == STATE_IDLE){
+            //layout changed, not scrolling
+            lastProgress = progress;
+            return;
+        }
+        if (lastTime <= 0){
+            lastTime = time;
+            lastProgress = progress;
+            return;
+        }
+        long elapse = time - lastTime;
+        if (elapse <= 0){
+            return;
+        }
+
+        //smoothed velocity/deceleration
+        float instantVelocity = (progress - lastProgress) * 1000f / elapse;
+        float previousVelocity = velocity;
+        velocity = velocity * (1 - SMOOTHING) + instantVelocity * SMOOTHING;
+        if (state == STATE_FLING && Math.abs(velocity) < Math.abs(previousVelocity)){
+            float instantDeceleration = (Math.abs(previousVelocity) - Math.abs(velocity)) * 1000f / elapse;
+            deceleration = deceleration <= 0 ? instantDeceleration : deceleration * (1 - SMOOTHING) + instantDeceleration * SMOOTHING;
+        }
+        lastTime = time;
+        lastProgress = progress;
+
+        //limit loading level
+        float speed = Math.abs(velocity);
+        if (speed >= fastVelocity){
+            nodeRemoter.setLoadLevel(LoadLevel.MEMORY_ONLY);
+        } else if (speed >= mediumVelocity){
+            nodeRemoter.setLoadLevel(LoadLevel.DISK);
+        } else {
+            nodeRemoter.setLoadLevel(LoadLevel.NETWORK);
+        }
+
+        //prefetch in scroll direction
+        if (state == STATE_FLING && speed >= mediumVelocity){
+            prefetch(progress, visibleCount, totalCount);
+        }
+    }
+
+    /**
+     * predict the stop position of fling, prefetch the items which will be visible
+     */
+    private void prefetch(float progress, int visibleCount, int totalCount){
+        if (prefetchProvider == null || prefetchMaxCount <= 0 || visibleCount <= 0 || totalCount <= 0){
+            return;
+        }
+        //constant deceleration (measured) or exponential decay (default)
+        float distance = deceleration > 0 ? velocity * Math.abs(velocity) / (2 * deceleration) : velocity * DEFAULT_FLING_DECAY;
+        int stopPosition = (int) (progress + distance);
+        int from = Math.max(0, Math.min(stopPosition, totalCount - visibleCount));
+        int to = Math.min(totalCount, from + Math.min(visibleCount + 1, prefetchMaxCount));
+        //skip items already visible
+        int firstVisible = (int) progress;
+        if (from < firstVisible + visibleCount && to > firstVisible){
+            if (velocity > 0){
+                from = Math.min(to, firstVisible + visibleCount);
+            } else {
+                to = Math.max(from, firstVisible);
+            }
+        }
+        if (from >= to){
+            return;
+        }
+        //skip if the prediction is not moved obviously
+        if (prefetchRemoter != null && Math.abs(from - prefetchFrom) <= visibleCount / 2 && Math.abs(to - prefetchTo) <= visibleCount / 2){
+            return;
+        }
+        Context context = this.context.get();
+        if (context == null){
+            return;
+        }
+        List<String> urls = prefetchProvider.getUrls(from, to);
+        if (urls == null || urls.size() <= 0){
+            return;
+        }
+        if (prefetchRemoter != null){
+            prefetchRemoter.cancel();
+        }
+        prefetchRemoter = TILoader.preload(context, urls, prefetchProvider.getParams(), prefetchTarget, prefetchNodeSettings);
+        prefetchFrom = from;
+        prefetchTo = to;
+        prefetchRequestCount += urls.size();
+    }
+
+    /**
+     * provide URLs for prefetching
+     */
+    public interface PrefetchProvider {
+
+        /**
+         * @param fromPosition start position (inclusive)
+         * @param toPosition end position (exclusive)
+         * @return URLs of items, nullable
+         */
+        List<String> getUrls(int fromPosition, int toPosition);
+
+        /**
+         * @return params of prefetching, nullable
+         */
+        Params getParams();
+
+    }
+
+    /**
+     * Helper for ListView / GridView
+     */
+    public static class VelocityOnListViewScrollListener implements AbsListView.OnScrollListener {
+
+        private VelocityLoadController controller;
+
+        private AbsListView.OnScrollListener customOnScrollListener;
+
+        private VelocityOnListViewScrollListener(VelocityLoadController controller){
+            this.controller = controller;
+        }
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            switch (scrollState) {
+                case AbsListView.OnScrollListener.SCROLL_STATE_IDLE:
+                    controller.onScrollStateChanged(STATE_IDLE, view.getFirstVisiblePosition(), view.getChildCount());
+                    break;
+                case AbsListView.OnScrollListener.SCROLL_STATE_TOUCH_SCROLL:
+                    controller.onScrollStateChanged(STATE_TOUCH_SCROLL, view.getFirstVisiblePosition(), view.getChildCount());
+                    break;
+                case AbsListView.OnScrollListener.SCROLL_STATE_FLING:
+                    controller.onScrollStateChanged(STATE_FLING, view.getFirstVisiblePosition(), view.getChildCount());
+                    break;
+            }
+
+            if (customOnScrollListener != null) {
+                customOnScrollListener.onScrollStateChanged(view, scrollState);
+            }
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            if (view.getChildCount() > 0) {
+                View child = view.getChildAt(0);
+                float progress = child.getHeight() > 0 ? firstVisibleItem - (float) child.getTop() / (float) child.getHeight() : firstVisibleItem;
+                controller.onScrolled(progress, visibleItemCount, totalItemCount);
+            }
+
+            if (customOnScrollListener != null){
+                customOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+            }
+        }
+
+        public void setCustomOnScrollListener(AbsListView.OnScrollListener customOnScrollListener){
+            this.customOnScrollListener = customOnScrollListener;
+        }
+
+    }
+
+}
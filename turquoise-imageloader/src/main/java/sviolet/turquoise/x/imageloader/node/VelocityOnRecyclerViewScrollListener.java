@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.node;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import sviolet.turquoise.ui.util.RecyclerViewUtils;
+
+/**
+ * <p>Helper of {@link VelocityLoadController} for RecyclerView (LinearLayoutManager / GridLayoutManager).</p>
+ *
+ * <p>Dependency:com.android.support:recyclerview-v7</p>
+ *
+ * <pre>{@code
+ *      recyclerView.addOnScrollListener(new VelocityOnRecyclerViewScrollListener(
+ *              new VelocityLoadController(this, TILoader.node(this).newNodeRemoter())));
+ * }</pre>
+ *
+ * Created by S.Violet on 2017/11/27.
+ */
+public class VelocityOnRecyclerViewScrollListener extends RecyclerView.OnScrollListener {
+
+    private VelocityLoadController controller;
+
+    private RecyclerView.OnScrollListener customOnScrollListener;
+
+    public VelocityOnRecyclerViewScrollListener(VelocityLoadController controller) {
+        if (controller == null){
+            throw new RuntimeException("[VelocityOnRecyclerViewScrollListener]controller is null");
+        }
+        this.controller = controller;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        LinearLayoutManager layoutManager = getLayoutManager(recyclerView);
+        if (layoutManager != null) {
+            int firstVisiblePosition = layoutManager.findFirstVisibleItemPosition();
+            int visibleCount = layoutManager.getChildCount();
+            switch (newState) {
+                case RecyclerView.SCROLL_STATE_IDLE:
+                    controller.onScrollStateChanged(VelocityLoadController.STATE_IDLE, firstVisiblePosition, visibleCount);
+                    break;
+                case RecyclerView.SCROLL_STATE_DRAGGING:
+                    controller.onScrollStateChanged(VelocityLoadController.STATE_TOUCH_SCROLL, firstVisiblePosition, visibleCount);
+                    break;
+                case RecyclerView.SCROLL_STATE_SETTLING:
+                    controller.onScrollStateChanged(VelocityLoadController.STATE_FLING, firstVisiblePosition, visibleCount);
+                    break;
+            }
+        }
+
+        if (customOnScrollListener != null) {
+            customOnScrollListener.onScrollStateChanged(recyclerView, newState);
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = getLayoutManager(recyclerView);
+        //dx == dy == 0 when layout changed
+        if (layoutManager != null && (dx != 0 || dy != 0)) {
+            controller.onScrolled(RecyclerViewUtils.scrollProgressFromStart(layoutManager), layoutManager.getChildCount(), layoutManager.getItemCount());
+        }
+
+        if (customOnScrollListener != null) {
+            customOnScrollListener.onScrolled(recyclerView, dx, dy);
+        }
+    }
+
+    public void setCustomOnScrollListener(RecyclerView.OnScrollListener customOnScrollListener){
+        this.customOnScrollListener = customOnScrollListener;
+    }
+
+    private LinearLayoutManager getLayoutManager(RecyclerView recyclerView){
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager){
+            return (LinearLayoutManager) layoutManager;
+        }
+        //velocity can not be measured without LinearLayoutManager
+        return null;
+    }
+
+}
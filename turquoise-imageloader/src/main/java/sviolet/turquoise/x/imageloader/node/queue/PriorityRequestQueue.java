@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.node.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>Priority Request Queue</p>
+ *
+ * <p>A fixed size Queue, the task with highest priority will be taken first (last in first out with the
+ * same priority), and the task with lowest priority will be dropped first when queue is full (earliest
+ * first with the same priority).</p>
+ *
+ * <p>The priority of task can be updated by stub while the task is waiting in queue, so the order is
+ * evaluated when get/put, instead of being maintained by a heap. The queue is small (a few times of
+ * screen pictures), linear scanning is cheap enough.</p>
+ *
+ * Created by S.Violet on 2017/11/20.
+ */
+public class PriorityRequestQueue implements RequestQueue {
+
+    private int size;
+
+    private List<Task> tasks;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private TLogger logger;
+
+    public PriorityRequestQueue(int size, TLogger logger){
+        this.logger = logger;
+        setSize(size);
+    }
+
+    @Override
+    public Task put(Task task) {
+        if (task == null){
+            return null;
+        }
+        Task oldTask = null;
+        try{
+            lock.lock();
+            if (tasks.size() >= size){
+                int index = lowestIndex();
+                if (index >= 0 && tasks.get(index).getPriority().ordinal() <= task.getPriority().ordinal()){
+                    oldTask = tasks.remove(index);
+                }else{
+                    //the new task has the lowest priority, drop it
+                    oldTask = task;
+                }
+            }
+            if (oldTask != task){
+                tasks.add(task);
+            }
+        }finally {
+            lock.unlock();
+        }
+        if (oldTask != null){
+            logger.d("[PriorityRequestQueue]put: drop task, task:" + oldTask.getTaskInfo());
+        }
+        return oldTask;
+    }
+
+    @Override
+    public Task get() {
+        try{
+            lock.lock();
+            int index = highestIndex();
+            if (index < 0){
+                return null;
+            }
+            return tasks.remove(index);
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear(){
+        try{
+            lock.lock();
+            tasks.clear();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setSize(int size){
+        if (size < 1){
+            throw new RuntimeException("[PriorityRequestQueue]queue size must >= 1");
+        }
+        if (this.size == size){
+            return;
+        }
+        try{
+            lock.lock();
+            if (tasks == null){
+                tasks = new ArrayList<>(size);
+            }
+            //drop tasks with lowest priority
+            while (tasks.size() > size){
+                tasks.remove(lowestIndex());
+            }
+            this.size = size;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return index of the task with highest priority, the latest one if priorities are equal, -1 if empty
+     */
+    private int highestIndex(){
+        int index = -1;
+        int highest = -1;
+        for (int i = tasks.size() - 1 ; i >= 0 ; i--){
+            int priority = tasks.get(i).getPriority().ordinal();
+            if (priority > highest){
+                highest = priority;
+                index = i;
+                if (priority == LoadPriority.ON_SCREEN.ordinal()){
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return index of the task with lowest priority, the earliest one if priorities are equal, -1 if empty
+     */
+    private int lowestIndex(){
+        int index = -1;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0 ; i < tasks.size() ; i++){
+            int priority = tasks.get(i).getPriority().ordinal();
+            if (priority < lowest){
+                lowest = priority;
+                index = i;
+                if (priority == LoadPriority.PREFETCH.ordinal()){
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+}
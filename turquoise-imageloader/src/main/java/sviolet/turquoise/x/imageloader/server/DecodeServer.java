@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sviolet.turquoise.x.imageloader.ComponentManager;
+
+/**
+ * <p>Decode stage, CPU-bound decoding is executed in its own executor, sized from available cores
+ * (ServerSettings->setDecodeMaxThread).</p>
+ *
+ * <p>{@link DiskEngine} and {@link NetEngine} hand off the file or bytes to the decode stage and release their
+ * lane slot immediately, so that the I/O threads can take the next task, instead of waiting for decoding.</p>
+ *
+ * <p>Occupancy, waiting time and utilization can be got by {@link #getDecodeReport()}, to see decode saturation
+ * separately from disk/network.</p>
+ *
+ * Created by S.Violet on 2017/12/5.
+ */
+public class DecodeServer implements ComponentManager.Component, Server {
+
+    private ComponentManager manager;
+    private ThreadPoolExecutor decodeThreadPool;
+    private int maxThread;
+    private long startTime;
+
+    //statistic
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger queued = new AtomicInteger(0);
+    private final AtomicInteger executedCount = new AtomicInteger(0);
+    private final AtomicLong totalWait = new AtomicLong(0);
+    private final AtomicLong maxWait = new AtomicLong(0);
+    private final AtomicLong busyTimeNanos = new AtomicLong(0);
+
+    @Override
+    public void init(ComponentManager manager) {
+        this.manager = manager;
+        this.maxThread = manager.getServerSettings().getDecodeMaxThread();
+        this.startTime = System.nanoTime();
+        decodeThreadPool = new ThreadPoolExecutor(maxThread, maxThread, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "TLoader-Decoder-" + counter.getAndIncrement());
+            }
+        });
+        decodeThreadPool.allowCoreThreadTimeOut(true);
+        manager.getLogger().i("[DecodeServer]initial, decode max thread:" + maxThread);
+    }
+
+    /**
+     * execute decoding job in decode stage, the job must response the task(s) itself.
+     * the job is executed in current thread if the executor rejected.
+     * @param job decoding job
+     */
+    public void execute(final Runnable job){
+        final long enqueueTime = System.currentTimeMillis();
+        queued.incrementAndGet();
+        try {
+            decodeThreadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    queued.decrementAndGet();
+                    running.incrementAndGet();
+                    recordWait(System.currentTimeMillis() - enqueueTime);
+                    long start = System.nanoTime();
+                    try {
+                        job.run();
+                    } finally {
+                        busyTimeNanos.addAndGet(System.nanoTime() - start);
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            queued.decrementAndGet();
+            manager.getLogger().e("[DecodeServer]execute decoding job failed, decode in current thread", e);
+            job.run();
+        }
+    }
+
+    private void recordWait(long wait){
+        executedCount.incrementAndGet();
+        totalWait.addAndGet(wait);
+        long max;
+        while ((max = maxWait.get()) < wait){
+            if (maxWait.compareAndSet(max, wait)){
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return utilization of decoder threads since initialized (0f-1f)
+     */
+    public float getUtilization(){
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed <= 0 || maxThread <= 0){
+            return 0f;
+        }
+        return Math.min(1f, (float) busyTimeNanos.get() / ((float) elapsed * maxThread));
+    }
+
+    /**
+     * @return report of decode stage: running/queued jobs, waiting time and utilization
+     */
+    public String getDecodeReport(){
+        int executed = executedCount.get();
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[DecodeServer]DecodeReport: ");
+        stringBuilder.append(running.get());
+        stringBuilder.append("/");
+        stringBuilder.append(maxThread);
+        stringBuilder.append(" queued:");
+        stringBuilder.append(queued.get());
+        stringBuilder.append(" executed:");
+        stringBuilder.append(executed);
+        stringBuilder.append(" avgWait:");
+        stringBuilder.append(executed > 0 ? totalWait.get() / executed : 0);
+        stringBuilder.append("ms maxWait:");
+        stringBuilder.append(maxWait.get());
+        stringBuilder.append("ms util:");
+        stringBuilder.append((int) (getUtilization() * 100));
+        stringBuilder.append("% ");
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public Type getServerType() {
+        return Type.DECODE;
+    }
+
+}
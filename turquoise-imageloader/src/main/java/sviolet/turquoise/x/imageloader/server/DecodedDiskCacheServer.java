@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server;
+
+import android.graphics.Bitmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.thistle.model.cache.DiskLruCache;
+import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.stub.ResourceKeys;
+
+/**
+ * <p>Disk cache of decoded image (the second disk tier)</p>
+ *
+ * <p>DiskCacheServer stores the original data of resource (keyed by resource key), every disk hit has to decode
+ * and scale again. This server stores the decoded (scaled) bitmap per Stub's key (resource key + Params->keySuffix),
+ * in raw pixel format (config of bitmap, RGB_565 by default), so that disk hits of thumbnails skip decoding entirely.</p>
+ *
+ * <p>Enabled by ServerSettings->setDecodedDiskCacheSize. It has its own size budget, LRU eviction, located in
+ * the sub directory of disk cache path (wiped with disk cache). Only the bitmap with required size
+ * (reqWidth/reqHeight) will be cached, the original size image is cached by DiskCacheServer only.</p>
+ *
+ * <p>The engines write decoded images by {@link #writeAsync}, on a background thread, the loading task is responded
+ * without waiting for the writing. The bitmap is referenced (pinned) through MemoryCacheServer until written, so that
+ * it will not be recycled or reused (inBitmap) meanwhile.</p>
+ *
+ * Created by S.Violet on 2017/11/20.
+ */
+public class DecodedDiskCacheServer implements ComponentManager.Component, Server {
+
+    private static final String SUB_PATH = "decoded";
+    private static final int DEFAULT_APP_VERSION = 1;
+    private static final int MAGIC = 0x54494443;//TIDC
+    private static final int MAX_ITEM_SIZE_DIVISOR = 16;//max size of item = cache size / 16
+    private static final int FLUSH_THRESHOLD = 8;//flush journal every 8 writing
+    private static final long FAILED_REOPEN_INTERVAL = 10 * 1000L;//10s, reopen if open failed before
+    private static final int MAX_PENDING_WRITES = 8;//skip writing if too many bitmaps pinned for writing
+
+    private ComponentManager manager;
+
+    private int cacheSize;
+    private volatile DiskLruCache diskLruCache;
+    private long lastOpenFailedTime = 0;
+    private ReentrantLock openLock = new ReentrantLock();
+    private AtomicInteger pendingModifications = new AtomicInteger(0);
+    private AtomicInteger pendingWrites = new AtomicInteger(0);
+    private ThreadPoolExecutor writeThreadPool;
+
+    //statistic
+    private AtomicInteger hitCount = new AtomicInteger(0);
+    private AtomicInteger missCount = new AtomicInteger(0);
+    private AtomicInteger writeCount = new AtomicInteger(0);
+
+    @Override
+    public void init(ComponentManager manager) {
+        this.manager = manager;
+        this.cacheSize = manager.getServerSettings().getDecodedDiskCacheSize();
+        this.writeThreadPool = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "TLoader-DecodedDiskCache-writer");
+            }
+        });
+        this.writeThreadPool.allowCoreThreadTimeOut(true);
+        manager.getLogger().i("[DecodedDiskCacheServer]initial, size:" + (cacheSize / 1024) + "K");
+    }
+
+    public boolean isEnabled(){
+        return cacheSize > 0;
+    }
+
+    /**
+     * read decoded image from disk cache, no decoding
+     * @param task task
+     * @return ImageResource, null if missing
+     */
+    public ImageResource read(Task task){
+        return read(task, 0);
+    }
+
+    /**
+     * read decoded image from disk cache, no decoding
+     * @param task task
+     * @param notBefore the decoded image cached before this time (millis) is outdated (original data has been modified), 0 if unknown
+     * @return ImageResource, null if missing or outdated
+     */
+    public ImageResource read(Task task, long notBefore){
+        if (!isCacheable(task)){
+            return null;
+        }
+        DiskLruCache cache = openCache();
+        if (cache == null){
+            return null;
+        }
+        DataInputStream inputStream = null;
+        try {
+            File file = cache.getFile(getCacheKey(task), 0);
+            if (file == null || !file.exists()){
+                missCount.incrementAndGet();
+                return null;
+            }
+            //precision of last modified time might be second
+            if (file.lastModified() < notBefore / 1000 * 1000){
+                missCount.incrementAndGet();
+                remove(cache, task);
+                return null;
+            }
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), DiskCacheServer.BUFFER_SIZE));
+            if (inputStream.readInt() != MAGIC){
+                throw new IOException("[TILoader:DecodedDiskCacheServer]invalid cache file, magic mismatch");
+            }
+            int width = inputStream.readInt();
+            int height = inputStream.readInt();
+            Bitmap.Config config = Bitmap.Config.valueOf(inputStream.readUTF());
+            byte[] pixels = new byte[inputStream.readInt()];
+            inputStream.readFully(pixels);
+            Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+            hitCount.incrementAndGet();
+            return new ImageResource(ImageResource.Type.BITMAP, bitmap);
+        } catch (Exception e) {
+            missCount.incrementAndGet();
+            remove(cache, task);
+            manager.getServerSettings().getExceptionHandler().onDiskCacheReadException(manager.getApplicationContextImage(), manager.getContextImage(), task.getTaskInfo(), e, manager.getLogger());
+        } finally {
+            if (inputStream != null){
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * write decoded image to disk cache on background thread, invoke before putting the image into memory cache.
+     * The image is pinned (referenced through MemoryCacheServer) until written, because the bitmap in memory cache
+     * may be recycled or reused (inBitmap) at any time. Skipped if too many writes pending.
+     * @param task task
+     * @param imageResource decoded image, only bitmap is acceptable
+     */
+    public void writeAsync(final Task task, final ImageResource imageResource){
+        if (!isWritable(task, imageResource)){
+            return;
+        }
+        if (pendingWrites.incrementAndGet() > MAX_PENDING_WRITES){
+            pendingWrites.decrementAndGet();
+            return;
+        }
+        final Object pin = new Object();
+        manager.getMemoryCacheServer().acquire(pin, task.getKey(), imageResource);
+        try {
+            writeThreadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(task, imageResource);
+                    } finally {
+                        pendingWrites.decrementAndGet();
+                        manager.getMemoryCacheServer().release(pin, imageResource);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            pendingWrites.decrementAndGet();
+            manager.getMemoryCacheServer().release(pin, imageResource);
+            manager.getLogger().e("[DecodedDiskCacheServer]execute writing failed, task:" + task, e);
+        }
+    }
+
+    /**
+     * write decoded image to disk cache, the bitmap must not be recycled or reused (inBitmap) during writing
+     * @param task task
+     * @param imageResource decoded image, only bitmap is acceptable
+     */
+    public void write(Task task, ImageResource imageResource){
+        if (!isWritable(task, imageResource)){
+            return;
+        }
+        Bitmap bitmap = (Bitmap) imageResource.getResource();
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getConfig() == null){
+            return;
+        }
+        int byteCount = bitmap.getRowBytes() * bitmap.getHeight();
+        if (byteCount > cacheSize / MAX_ITEM_SIZE_DIVISOR){
+            return;
+        }
+        DiskLruCache cache = openCache();
+        if (cache == null){
+            return;
+        }
+        DiskLruCache.Editor editor = null;
+        DataOutputStream outputStream = null;
+        try {
+            editor = cache.edit(getCacheKey(task));
+            if (editor == null){
+                //being edited by another thread
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+            bitmap.copyPixelsToBuffer(buffer);
+            outputStream = new DataOutputStream(new BufferedOutputStream(editor.newOutputStream(0), DiskCacheServer.BUFFER_SIZE));
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(bitmap.getWidth());
+            outputStream.writeInt(bitmap.getHeight());
+            outputStream.writeUTF(bitmap.getConfig().name());
+            outputStream.writeInt(byteCount);
+            outputStream.write(buffer.array(), 0, byteCount);
+            outputStream.close();
+            outputStream = null;
+            editor.commit();
+            editor = null;
+            writeCount.incrementAndGet();
+            if (pendingModifications.incrementAndGet() >= FLUSH_THRESHOLD){
+                pendingModifications.set(0);
+                cache.flush();
+            }
+        } catch (Exception e) {
+            manager.getServerSettings().getExceptionHandler().onDiskCacheWriteException(manager.getApplicationContextImage(), manager.getContextImage(), task.getTaskInfo(), e, manager.getLogger());
+        } finally {
+            if (outputStream != null){
+                try {
+                    outputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (editor != null){
+                try {
+                    editor.abort();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private boolean isWritable(Task task, ImageResource imageResource){
+        return isCacheable(task) && imageResource != null && imageResource.getType() == ImageResource.Type.BITMAP;
+    }
+
+    /**
+     * only the image with required size is cacheable, the origin size image decodes from original data directly
+     */
+    private boolean isCacheable(Task task){
+        if (!isEnabled()){
+            return false;
+        }
+        Params params = task.getParams();
+        return params != null && params.getReqWidth() > Params.SIZE_MATCH_RESOURCE && params.getReqHeight() > Params.SIZE_MATCH_RESOURCE;
+    }
+
+    /**
+     * key of DiskLruCache is limited ([a-z0-9_-]), so the Stub's key (resource key + Params->keySuffix) is digested
+     */
+    private String getCacheKey(Task task){
+        return ResourceKeys.digest(task.getKey());
+    }
+
+    private void remove(DiskLruCache cache, Task task){
+        try {
+            cache.remove(getCacheKey(task));
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * decoded disk cache keeps open for the whole process lifetime
+     * @return null if open failed
+     */
+    private DiskLruCache openCache(){
+        DiskLruCache cache = this.diskLruCache;
+        if (cache != null){
+            return cache;
+        }
+        IOException openException = null;
+        try {
+            openLock.lock();
+            if (this.diskLruCache != null){
+                return this.diskLruCache;
+            }
+            if ((System.currentTimeMillis() - lastOpenFailedTime) < FAILED_REOPEN_INTERVAL){
+                return null;
+            }
+            try {
+                this.diskLruCache = DiskLruCache.open(new File(manager.getServerSettings().getDiskCachePath(), SUB_PATH), DEFAULT_APP_VERSION, 1, cacheSize);
+                manager.getLogger().d("[DecodedDiskCacheServer]ready");
+                return this.diskLruCache;
+            } catch (IOException e) {
+                lastOpenFailedTime = System.currentTimeMillis();
+                openException = e;
+            }
+        } finally {
+            openLock.unlock();
+        }
+        manager.getServerSettings().getExceptionHandler().onDiskCacheOpenException(manager.getApplicationContextImage(), manager.getContextImage(), openException, manager.getLogger());
+        return null;
+    }
+
+    /**
+     * close decoded disk cache before wiping disk cache, it will be reopened lazily when used
+     */
+    public void close(){
+        DiskLruCache cache;
+        try {
+            openLock.lock();
+            cache = this.diskLruCache;
+            this.diskLruCache = null;
+            pendingModifications.set(0);
+        } finally {
+            openLock.unlock();
+        }
+        if (cache == null){
+            return;
+        }
+        try {
+            cache.close();
+            manager.getLogger().d("[DecodedDiskCacheServer]closed");
+        } catch (IOException e) {
+            manager.getServerSettings().getExceptionHandler().onDiskCacheCommonException(manager.getApplicationContextImage(), manager.getContextImage(), e, manager.getLogger());
+        }
+    }
+
+    /**
+     * @return report of decoded disk cache
+     */
+    public String getDecodedDiskReport(){
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[DecodedDiskCacheServer]DecodedDiskReport: ");
+        if (!isEnabled()){
+            stringBuilder.append("disabled ");
+            return stringBuilder.toString();
+        }
+        int hit = hitCount.get();
+        int miss = missCount.get();
+        stringBuilder.append("size:");
+        stringBuilder.append(cacheSize / 1024);
+        stringBuilder.append("K hit:");
+        stringBuilder.append(hit);
+        stringBuilder.append(" miss:");
+        stringBuilder.append(miss);
+        stringBuilder.append(" hitRate:");
+        stringBuilder.append(hit + miss > 0 ? hit * 100 / (hit + miss) : 0);
+        stringBuilder.append("% write:");
+        stringBuilder.append(writeCount.get());
+        stringBuilder.append(" ");
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public Type getServerType() {
+        return Type.DECODED_DISK_CACHE;
+    }
+
+}
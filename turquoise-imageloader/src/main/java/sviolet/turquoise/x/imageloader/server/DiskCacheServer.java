@@ -21,14 +21,19 @@ package sviolet.turquoise.x.imageloader.server;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import sviolet.thistle.model.cache.DiskLruCache;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
 import sviolet.turquoise.x.imageloader.entity.LowNetworkSpeedStrategy;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
 import sviolet.turquoise.x.imageloader.entity.ServerSettings;
+import sviolet.turquoise.x.imageloader.ComponentManager;
 import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.server.module.DiskCacheModule;
@@ -36,10 +41,42 @@ import sviolet.turquoise.x.imageloader.server.module.DiskCacheModule;
 /**
  * <p>manage disk cache</p>
  *
+ * <p>If http revalidation enabled (ServerSettings->setHttpRevalidation), the {@link CacheValidator} (ETag / Last-Modified /
+ * expiring time) of the resource is stored in a sidecar entry (resource key + "_meta"), written after the image data.
+ * Each entry keeps one value, the disk cache written by previous version is still valid. A 304 response rewrites the
+ * validator only ({@link #refresh}), the image data is kept.</p>
+ *
+ * <p>If resumable download enabled (ServerSettings->setResumableDownload), the large resource with validator is downloaded
+ * into the side area ({@link PartialDownloadStore}) first, and copied into disk cache when completed. The partial download
+ * is kept if loading canceled (e.g. low network speed) or failed, the next loading resumes it by range request.</p>
+ *
  * Created by S.Violet on 2016/4/5.
  */
 public class DiskCacheServer extends DiskCacheModule {
 
+    private static final int PARTIAL_SIZE_DIVISOR = 8;//max size of partial downloads = disk cache size / 8
+
+    private PartialDownloadStore partialDownloadStore;//null if resumable download disabled
+
+    @Override
+    public void init(ComponentManager manager) {
+        super.init(manager);
+        if (manager.getServerSettings().isResumableDownloadEnabled()){
+            partialDownloadStore = new PartialDownloadStore(manager.getServerSettings().getDiskCachePath(), manager.getServerSettings().getDiskCacheSize() / PARTIAL_SIZE_DIVISOR);
+        }
+    }
+
+    /**
+     * close the decoded disk cache (located in the sub directory of disk cache path) and the disk cache, then delete
+     * the contents of path, they will be reopened lazily.
+     * @param path directory to delete
+     */
+    @Override
+    public void wipe(File path) throws IOException {
+        getComponentManager().getDecodedDiskCacheServer().close();
+        super.wipe(path);
+    }
+
     /************************************************************************
      * read
      */
@@ -51,12 +88,36 @@ public class DiskCacheServer extends DiskCacheModule {
      * @return ImageResource, might be null
      */
     public ImageResource read(Task task, DecodeHandler decodeHandler){
-        //fetch cache file
+        File targetFile = readFile(task);
+        if (targetFile == null){
+            return null;
+        }
+        return decodeFile(task, targetFile, decodeHandler);
+    }
+
+    /**
+     * fetch cache file without decoding, the disk cache is held until {@link #decodeFile} finished,
+     * so that the file can be decoded in decode stage.
+     * @param task task
+     * @return cache file, null if not exists (holding released)
+     */
+    public File readFile(Task task){
         File targetFile = get(task);
         if (targetFile == null || !targetFile.exists()){
+            release(task, false);
             return null;
         }
-        //decode
+        return targetFile;
+    }
+
+    /**
+     * decode the file fetched by {@link #readFile}, and release the holding of disk cache
+     * @param task task
+     * @param targetFile file fetched by {@link #readFile}
+     * @param decodeHandler used to decode file
+     * @return ImageResource, might be null
+     */
+    public ImageResource decodeFile(Task task, File targetFile, DecodeHandler decodeHandler){
         ImageResource imageResource = null;
         try {
             imageResource = decodeHandler.decode(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
@@ -68,18 +129,92 @@ public class DiskCacheServer extends DiskCacheModule {
         }catch(Exception e){
             getComponentManager().getServerSettings().getExceptionHandler().onDecodeException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
         }
-        //release
-        release();
+        //release, reading doesn't need to flush journal
+        release(task, false);
         return imageResource;
     }
 
+    /**
+     * release the holding of disk cache, for the target file of {@link #write} result (decoded by invoker)
+     * @param task task
+     */
+    public void releaseFile(Task task){
+        release(task, false);
+    }
+
+    /**
+     * check if resource exists in disk cache, without decoding
+     * @param task task
+     * @return true if exists
+     */
+    public boolean exists(Task task){
+        File targetFile = get(task);
+        boolean exists = targetFile != null && targetFile.exists();
+        release(task, false);
+        return exists;
+    }
+
+    /**
+     * read the validator of disk cache entry
+     * @param task task
+     * @return validator, null if not exists
+     */
+    public CacheValidator readValidator(Task task){
+        InputStream inputStream = null;
+        try {
+            //the image data might be evicted, the validator is useless
+            if (!exists(task)){
+                return null;
+            }
+            File metaFile = getMeta(task);
+            if (metaFile == null || !metaFile.exists()){
+                return null;
+            }
+            inputStream = new FileInputStream(metaFile);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0){
+                outputStream.write(buffer, 0, readLength);
+            }
+            return CacheValidator.decode(outputStream.toByteArray());
+        } catch (Exception e) {
+            getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheReadException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+            return null;
+        } finally {
+            closeStream(inputStream);
+            release(task, false);
+        }
+    }
+
+    /**
+     * take the partial download of resource for resuming
+     * @param task task
+     * @return null if not exists or resumable download disabled
+     */
+    public ResumeInfo takePartial(Task task){
+        if (partialDownloadStore == null){
+            return null;
+        }
+        try {
+            return partialDownloadStore.take(task.getResourceKey());
+        } catch (Exception e) {
+            partialDownloadStore.remove(task.getResourceKey());
+            getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheReadException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+            return null;
+        }
+    }
+
     /************************************************************************
      * write
      */
 
     /**
      * ResultType.SUCCEED :<br/>
-     * use {@link Result#getTargetFile()} to get File of resource, and than decode from this file<br/>
+     * use {@link Result#getTargetFile()} to get File of resource, and than decode from this file.
+     * the disk cache is held until {@link #releaseFile} invoked<br/>
      * <br/>
      * ResultType.FAILED :<br/>
      * write failed and can't restore data, you have to return failed state<br/>
@@ -89,10 +224,44 @@ public class DiskCacheServer extends DiskCacheModule {
      *
      * @param task task
      * @param inputStream InputStream
+     * @param cacheValidator validator of response, nullable
+     * @param resumeOffset start position of partial content (206), 0 if whole resource
      * @param lowNetworkSpeedConfig lowNetworkSpeedConfig
      * @return Result
      */
-    public Result write(Task task, InputStream inputStream, LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig) {
+    public Result write(Task task, InputStream inputStream, CacheValidator cacheValidator, long resumeOffset, LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig) {
+        ResumeInfo resumeInfo = task.getResumeInfo();
+        if (resumeOffset != 0){
+            //partial content, append to partial download
+            if (partialDownloadStore == null || resumeInfo == null || resumeOffset != resumeInfo.getOffset()){
+                if (partialDownloadStore != null) {
+                    partialDownloadStore.remove(task.getResourceKey());
+                }
+                closeStream(inputStream);
+                getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(
+                        getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(),
+                        new Exception("[TILoader]partial content mismatch, offset:" + resumeOffset + ", expected:" + (resumeInfo != null ? resumeInfo.getOffset() : 0)), getComponentManager().getLogger());
+                return new Result();
+            }
+            if (!PartialDownloadStore.isSameResource(resumeInfo.getCacheValidator(), cacheValidator)){
+                //resource changed, the partial download can't be resumed
+                partialDownloadStore.remove(task.getResourceKey());
+                closeStream(inputStream);
+                getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(
+                        getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(),
+                        new Exception("[TILoader]partial content mismatch, validator changed, url:" + task.getUrl()), getComponentManager().getLogger());
+                return new Result();
+            }
+            return writePartial(task, inputStream, cacheValidator != null && cacheValidator.hasValidator() ? cacheValidator : resumeInfo.getCacheValidator(),
+                    resumeInfo, lowNetworkSpeedConfig);
+        }
+        if (resumeInfo != null && partialDownloadStore != null){
+            //the server ignores range, or the partial download is outdated
+            partialDownloadStore.remove(task.getResourceKey());
+        }
+        if (isResumable(task, cacheValidator)){
+            return writePartial(task, inputStream, cacheValidator, null, lowNetworkSpeedConfig);
+        }
         Result result = new Result();//result of write task
         DiskLruCache.Editor editor = null;
         OutputStream outputStream = null;
@@ -116,7 +285,7 @@ public class DiskCacheServer extends DiskCacheModule {
              */
             if (isHealthy()) {
                 //write to disk first, and return File
-                outputStream = editor.newOutputStream(0);
+                outputStream = editor.newOutputStream(INDEX_DATA);
                 //buffer, to save memory
                 long startTime = System.currentTimeMillis();
                 long imageDataLengthLimit = getComponentManager().getServerSettings().getImageDataLengthLimit();
@@ -145,7 +314,7 @@ public class DiskCacheServer extends DiskCacheModule {
                         return result;
                     }
                     //check if speed is low
-                    if (checkNetworkSpeed(startTime, loopCount, task, result, lowNetworkSpeedConfig)){
+                    if (checkNetworkSpeed(startTime, loopCount, task, result, lowNetworkSpeedConfig, 0)){
                         abortEditor(editor);
                         return result;
                     }
@@ -171,8 +340,10 @@ public class DiskCacheServer extends DiskCacheModule {
                 if (loopCount == 0){
                     throw new NetworkException(new Exception("[TILoader]network load failed, null content received (1)"));
                 }
+                recordTransferred(task, startTime, 0);
                 //succeed
                 editor.commit();
+                writeMeta(task, cacheValidator, true);
                 result.setType(ResultType.SUCCEED);
                 setHealthy(true);
             }else{
@@ -181,9 +352,10 @@ public class DiskCacheServer extends DiskCacheModule {
                 //trying to write to disk cache
                 if (result.getType() == ResultType.RETURN_MEMORY_BUFFER && result.getMemoryBuffer().length > 0) {
                     try {
-                        outputStream = editor.newOutputStream(0);
+                        outputStream = editor.newOutputStream(INDEX_DATA);
                         outputStream.write(result.getMemoryBuffer());
                         editor.commit();
+                        writeMeta(task, cacheValidator, true);
                         setHealthy(true);
                     }catch(Exception e){
                         setHealthy(false);
@@ -209,17 +381,160 @@ public class DiskCacheServer extends DiskCacheModule {
         }finally {
             closeStream(inputStream);
             closeStream(outputStream);
-            release();
+            release(task, true);
         }
         //fetch target file while succeed
         fetchTargetFile(task, result);
         return result;
     }
 
+    /**
+     * large resource with validator, the disk is healthy
+     */
+    private boolean isResumable(Task task, CacheValidator cacheValidator){
+        return partialDownloadStore != null &&
+                cacheValidator != null &&
+                cacheValidator.hasValidator() &&
+                task.getLoadProgress().total() >= getComponentManager().getServerSettings().getResumableDownloadMinLength() &&
+                isHealthy();
+    }
+
+    /**
+     * download into the side area, and copy into disk cache when completed. The partial download is kept if loading
+     * canceled by low network speed or network failed.
+     * @param cacheValidator validator of resource, nonnull
+     * @param resumeInfo partial download to append, null if download from the beginning
+     */
+    private Result writePartial(Task task, InputStream inputStream, CacheValidator cacheValidator, ResumeInfo resumeInfo, LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig){
+        Result result = new Result();//result of write task
+        String resourceKey = task.getResourceKey();
+        long offset = resumeInfo != null ? resumeInfo.getOffset() : 0;
+        long total = resumeInfo != null ? resumeInfo.getTotal() : task.getLoadProgress().total();
+        File dataFile = null;
+        OutputStream outputStream = null;
+        boolean keep = false;
+        try {
+            dataFile = partialDownloadStore.prepareDataFile(resourceKey);
+            outputStream = new FileOutputStream(dataFile, offset > 0);
+            long startTime = System.currentTimeMillis();
+            long imageDataLengthLimit = getComponentManager().getServerSettings().getImageDataLengthLimit();
+            byte[] buffer = new byte[DiskCacheServer.BUFFER_SIZE];
+            int readLength;
+            int loopCount = 0;
+            while (true) {
+                try {
+                    readLength = inputStream.read(buffer);
+                } catch (Exception e) {
+                    throw new NetworkException(e);
+                }
+                if (readLength < 0) {
+                    break;
+                }
+                task.getLoadProgress().increaseLoaded(readLength);
+                if (task.getLoadProgress().loaded() > imageDataLengthLimit){
+                    getComponentManager().getServerSettings().getExceptionHandler().onImageDataLengthOutOfLimitException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
+                            task.getTaskInfo(), task.getLoadProgress().loaded(), getComponentManager().getServerSettings().getImageDataLengthLimit(), getComponentManager().getLogger());
+                    result.setType(ResultType.CANCELED);
+                    return result;
+                }
+                if (checkNetworkSpeed(startTime, loopCount, task, result, lowNetworkSpeedConfig, offset)){
+                    //keep for resuming
+                    keep = true;
+                    return result;
+                }
+                outputStream.write(buffer, 0, readLength);
+                loopCount++;
+            }
+            outputStream.close();
+            outputStream = null;
+            if (loopCount == 0){
+                throw new NetworkException(new Exception("[TILoader]network load failed, null content received (4)"));
+            }
+            if (total > 0 && dataFile.length() != total){
+                throw new NetworkException(new Exception("[TILoader]network load failed, incomplete content, " + dataFile.length() + "/" + total));
+            }
+            recordTransferred(task, startTime, offset);
+            //completed, copy into disk cache
+            copyToCache(task, dataFile, cacheValidator);
+            result.setType(ResultType.SUCCEED);
+        }catch(NetworkException e){
+            //keep for resuming, unless it's longer than the resource
+            keep = total <= 0 || dataFile == null || dataFile.length() < total;
+            getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e.getCause(), getComponentManager().getLogger());
+        }catch(Exception e){
+            getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheWriteException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+        }finally {
+            closeStream(inputStream);
+            closeStream(outputStream);
+            keepPartial(task, dataFile, keep, total, cacheValidator, offset, resumeInfo);
+        }
+        //fetch target file while succeed
+        fetchTargetFile(task, result);
+        return result;
+    }
+
+    /**
+     * keep or discard partial download
+     */
+    private void keepPartial(Task task, File dataFile, boolean keep, long total, CacheValidator cacheValidator, long offset, ResumeInfo resumeInfo){
+        if (!keep || total <= 0 || dataFile == null){
+            partialDownloadStore.remove(task.getResourceKey());
+            return;
+        }
+        try {
+            //reset attempts if progressed
+            int attempts = resumeInfo != null && dataFile.length() <= offset ? resumeInfo.getAttempts() + 1 : 0;
+            partialDownloadStore.keep(task.getResourceKey(), total, cacheValidator, attempts);
+        } catch (Exception e) {
+            partialDownloadStore.remove(task.getResourceKey());
+            getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheWriteException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+        }
+    }
+
+    private void copyToCache(Task task, File dataFile, CacheValidator cacheValidator) throws Exception {
+        DiskLruCache.Editor editor = null;
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        try {
+            editor = edit(task);
+            if (editor == null) {
+                throw new Exception("[TILoader]diskLruCache.edit(cacheKey) return null, write disk cache failed (3)");
+            }
+            inputStream = new FileInputStream(dataFile);
+            outputStream = editor.newOutputStream(INDEX_DATA);
+            byte[] buffer = new byte[DiskCacheServer.BUFFER_SIZE];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, readLength);
+            }
+            outputStream.close();
+            outputStream = null;
+            editor.commit();
+            editor = null;
+            writeMeta(task, cacheValidator, true);
+            setHealthy(true);
+        } catch (Exception e) {
+            setHealthy(false);
+            throw e;
+        } finally {
+            closeStream(inputStream);
+            closeStream(outputStream);
+            abortEditor(editor);
+            release(task, true);
+        }
+    }
+
+    /**
+     * the disk cache is held if succeed, until {@link #releaseFile} invoked
+     */
     private void fetchTargetFile(Task task, Result result) {
         if (result.getType() == ResultType.SUCCEED){
             File targetFile = get(task);
             if (targetFile == null || !targetFile.exists()){
+                release(task, false);
                 setHealthy(false);
                 result.setType(ResultType.FAILED);
                 getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheReadException(
@@ -241,9 +556,10 @@ public class DiskCacheServer extends DiskCacheModule {
      *
      * @param task task
      * @param bytes bytes
+     * @param cacheValidator validator of response, nullable
      * @return true: write succeed
      */
-    public boolean write(Task task, byte[] bytes){
+    public boolean write(Task task, byte[] bytes, CacheValidator cacheValidator){
         DiskLruCache.Editor editor = null;
         OutputStream outputStream = null;
         try {
@@ -258,9 +574,10 @@ public class DiskCacheServer extends DiskCacheModule {
             //trying to write to disk cache
             if (bytes != null && bytes.length > 0) {
                 try {
-                    outputStream = editor.newOutputStream(0);
+                    outputStream = editor.newOutputStream(INDEX_DATA);
                     outputStream.write(bytes);
                     editor.commit();
+                    writeMeta(task, cacheValidator, true);
                     setHealthy(true);
                     return true;
                 } catch (Exception e) {
@@ -281,11 +598,68 @@ public class DiskCacheServer extends DiskCacheModule {
                     getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
         }finally {
             closeStream(outputStream);
-            release();
+            release(task, true);
         }
         return false;
     }
 
+    /**
+     * rewrite the validator of disk cache entry (304 Not Modified), the image data is kept
+     * @param task task
+     * @param cacheValidator validator merged with the response
+     * @return true: refresh succeed
+     */
+    public boolean refresh(Task task, CacheValidator cacheValidator){
+        //the image data has been evicted
+        if (!exists(task)){
+            return false;
+        }
+        return writeMeta(task, cacheValidator, false);
+    }
+
+    /**
+     * write validator with expiring time into sidecar entry, max-age of response or default max-age (ServerSettings->setHttpRevalidation),
+     * skipped if http revalidation disabled. The stale sidecar entry is removed if writing failed.
+     * @param dataModified true: image data is written before
+     * @return true: write succeed
+     */
+    private boolean writeMeta(Task task, CacheValidator cacheValidator, boolean dataModified) {
+        if (!getComponentManager().getServerSettings().isHttpRevalidationEnabled()){
+            return false;
+        }
+        long currentTime = System.currentTimeMillis();
+        CacheValidator meta = cacheValidator != null ? cacheValidator.merge(null) : new CacheValidator(null, null, CacheValidator.UNKNOWN_MAX_AGE);
+        if (dataModified){
+            meta.setStoredAt(currentTime);
+        }
+        long maxAge = meta.getMaxAge() >= 0 ? meta.getMaxAge() * 1000L : getComponentManager().getServerSettings().getHttpRevalidationDefaultMaxAge();
+        meta.setExpiresAt(currentTime + maxAge);
+        DiskLruCache.Editor editor = null;
+        OutputStream outputStream = null;
+        try {
+            editor = editMeta(task);
+            if (editor == null) {
+                throw new Exception("[TILoader]diskLruCache.edit(metaKey) return null, write validator failed");
+            }
+            outputStream = editor.newOutputStream(INDEX_DATA);
+            outputStream.write(meta.encode());
+            outputStream.close();
+            outputStream = null;
+            editor.commit();
+            return true;
+        } catch (Exception e) {
+            closeStream(outputStream);
+            abortEditor(editor);
+            //the validator of previous data is invalid
+            removeMeta(task);
+            getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheWriteException(
+                    getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+            return false;
+        } finally {
+            release(task, true);
+        }
+    }
+
     /**
      * data load from network write to full size memory buffer, in order to ensure pictures display normally.
      * @param task task
@@ -335,7 +709,7 @@ public class DiskCacheServer extends DiskCacheModule {
                 return;
             }
             //check if speed is low
-            if (checkNetworkSpeed(startTime, loopCount, task, result, lowNetworkSpeedConfig)){
+            if (checkNetworkSpeed(startTime, loopCount, task, result, lowNetworkSpeedConfig, 0)){
                 return;
             }
             outputStream.write(buffer, 0, readLength);
@@ -345,20 +719,24 @@ public class DiskCacheServer extends DiskCacheModule {
         if (outputStream.size() <= 0){
             throw new NetworkException(new Exception("[TILoader]network load failed, null content received (2)"));
         }
+        recordTransferred(task, startTime, 0);
         //return memory buffer
         result.setType(ResultType.RETURN_MEMORY_BUFFER);
         result.setMemoryBuffer(outputStream.toByteArray());
     }
 
-    private boolean checkNetworkSpeed(long startTime, int loopCount, Task task, Result result, LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig){
+    /**
+     * @param offset length of partial download (resuming), it's not transferred in this loading
+     */
+    private boolean checkNetworkSpeed(long startTime, int loopCount, Task task, Result result, LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig, long offset){
         //decrease check frequency
         if (loopCount << 30 != 0){
             return false;
         }
 
         final long elapseTime = System.currentTimeMillis() - startTime + 1;
-        final long loadedData = task.getLoadProgress().loaded();
-        final long totalData = task.getLoadProgress().total();
+        final long loadedData = task.getLoadProgress().loaded() - offset;
+        final long totalData = task.getLoadProgress().total() > 0 ? task.getLoadProgress().total() - offset : task.getLoadProgress().total();
 
         ServerSettings serverSettings = getComponentManager().getServerSettings();
         final long deadline = lowNetworkSpeedConfig.getDeadline();
@@ -368,6 +746,7 @@ public class DiskCacheServer extends DiskCacheModule {
         //dead line
         if (elapseTime > deadline){
             int speed = (int) ((float)loadedData / (elapseTime >> 10));
+            recordAborted(lowNetworkSpeedConfig, LowNetworkSpeedStrategy.AbortReason.DEADLINE, loadedData, elapseTime, speed);
             serverSettings.getExceptionHandler().handleLowNetworkSpeedEvent(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
                     task.getTaskInfo(), elapseTime, speed, getComponentManager().getLogger());
             result.setType(ResultType.CANCELED);
@@ -393,12 +772,30 @@ public class DiskCacheServer extends DiskCacheModule {
                 return false;
             }
         }
+        recordAborted(lowNetworkSpeedConfig, speed > thresholdSpeed ? LowNetworkSpeedStrategy.AbortReason.PROGRESS : LowNetworkSpeedStrategy.AbortReason.THRESHOLD_SPEED,
+                loadedData, elapseTime, speed);
         serverSettings.getExceptionHandler().handleLowNetworkSpeedEvent(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
                 task.getTaskInfo(), elapseTime, speed, getComponentManager().getLogger());
         result.setType(ResultType.CANCELED);
         return true;
     }
 
+    /**
+     * feed bandwidth estimator of LowNetworkSpeedStrategy, transferring time only (exclude connecting)
+     */
+    private void recordTransferred(Task task, long startTime, long offset){
+        getComponentManager().getServerSettings().getLowNetworkSpeedStrategy().onTransferred(task.getLoadProgress().loaded() - offset, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * the aborted loading is measured too, otherwise the estimated bandwidth keeps high while the network becomes slow
+     */
+    private void recordAborted(LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig, LowNetworkSpeedStrategy.AbortReason reason, long loadedData, long elapseTime, int speed){
+        LowNetworkSpeedStrategy strategy = getComponentManager().getServerSettings().getLowNetworkSpeedStrategy();
+        strategy.onAborted(lowNetworkSpeedConfig, reason, elapseTime, speed);
+        strategy.onTransferred(loadedData, elapseTime);
+    }
+
     /************************************************************************
      * function
      */
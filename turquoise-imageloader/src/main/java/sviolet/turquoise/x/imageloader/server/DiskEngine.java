@@ -19,38 +19,117 @@
 
 package sviolet.turquoise.x.imageloader.server;
 
+import java.io.File;
+
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.stub.Stub;
 
 /**
  * <p>Disk Load Engine</p>
  *
+ * <p>The cache file is fetched in I/O thread, and decoded in decode stage ({@link DecodeServer}).</p>
+ *
+ * <p>If HTTP revalidation enabled (ServerSettings->setHttpRevalidation), the task of expired entry turns to NetEngine
+ * with the validator (conditional request), and returns here after revalidated (or revalidation failed).</p>
+ *
  * Created by S.Violet on 2016/2/19.
  */
 public class DiskEngine extends Engine {
 
     @Override
-    protected void executeNewTask(Task task) {
-        ImageResource imageResource;
+    protected void executeNewTask(final Task task) {
+        //preload to disk only, no decoding, turn to NetEngine if not exists
+        if (task.getType() == Stub.Type.PRELOAD_DISK){
+            task.setState(getComponentManager().getDiskCacheServer().exists(task) ? Task.State.SUCCEED : Task.State.FAILED);
+            recordMetrics(task, TaskMetrics.Source.DISK, null);
+            response(task);
+            return;
+        }
+        //check if expired
+        long notBefore = 0;
+        if (getComponentManager().getServerSettings().isHttpRevalidationEnabled()){
+            CacheValidator cacheValidator = getComponentManager().getDiskCacheServer().readValidator(task);
+            if (cacheValidator != null){
+                //the revalidated task uses the entry even if expired (revalidation failed)
+                if (!task.isRevalidated() && cacheValidator.isExpired(System.currentTimeMillis())){
+                    //turn to NetEngine, revalidate
+                    task.setCacheValidator(cacheValidator);
+                    task.setState(Task.State.FAILED);
+                    response(task);
+                    return;
+                }
+                //the decoded images cached before the data stored are outdated
+                notBefore = cacheValidator.getStoredAt();
+            }
+        }
+        //decoded disk cache first, skip decoding
+        ImageResource imageResource = getComponentManager().getDecodedDiskCacheServer().read(task, notBefore);
+        if (imageResource != null && getComponentManager().getServerSettings().getImageResourceHandler().isValid(imageResource)){
+            getComponentManager().getMemoryCacheServer().put(task.getKey(), imageResource);
+            recordMetrics(task, TaskMetrics.Source.DECODED_DISK, imageResource);
+            task.setState(Task.State.SUCCEED);
+            response(task);
+            return;
+        }
+        //fetch file in I/O thread
+        final File file;
         try{
-            imageResource = getComponentManager().getDiskCacheServer().read(task, getDecodeHandler(task));
+            file = getComponentManager().getDiskCacheServer().readFile(task);
         } catch (Exception e){
             getComponentManager().getServerSettings().getExceptionHandler().onDiskCacheCommonException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), e, getComponentManager().getLogger());
+            if (task.getMetrics() != null){
+                task.getMetrics().setReason(TaskMetrics.Reason.DISK_FAILED);
+            }
             task.setState(Task.State.FAILED);
             response(task);
             return;
         }
+        if (file == null){
+            task.setState(Task.State.FAILED);
+            response(task);
+            return;
+        }
+        //hand off to decode stage, the I/O thread takes the next task
+        getComponentManager().getDecodeServer().execute(new Runnable() {
+            @Override
+            public void run() {
+                decode(task, file);
+            }
+        });
+    }
+
+    /**
+     * invoked in decode stage
+     */
+    private void decode(Task task, File file){
+        ImageResource imageResource = getComponentManager().getDiskCacheServer().decodeFile(task, file, getDecodeHandler(task));
         if (!getComponentManager().getServerSettings().getImageResourceHandler().isValid(imageResource)){
             task.setState(Task.State.FAILED);
             response(task);
             return;
         }
+        //cache decoded image in background, pinned before putting into memory cache, the bitmap may be recycled (or reused) after that
+        getComponentManager().getDecodedDiskCacheServer().writeAsync(task, imageResource);
         getComponentManager().getMemoryCacheServer().put(task.getKey(), imageResource);
+        recordMetrics(task, TaskMetrics.Source.DISK, imageResource);
         task.setState(Task.State.SUCCEED);
         response(task);
     }
 
+    private void recordMetrics(Task task, TaskMetrics.Source source, ImageResource imageResource){
+        TaskMetrics metrics = task.getMetrics();
+        if (metrics == null){
+            return;
+        }
+        metrics.setSource(source);
+        if (imageResource != null) {
+            metrics.setBitmapBytes(getComponentManager().getServerSettings().getImageResourceHandler().byteCountOf(imageResource));
+        }
+    }
+
     @Override
     protected int getMaxThread() {
         return getComponentManager().getServerSettings().getDiskLoadMaxThread();
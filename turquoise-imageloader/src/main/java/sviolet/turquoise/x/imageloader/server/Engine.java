@@ -19,12 +19,6 @@
 
 package sviolet.turquoise.x.imageloader.server;
 
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import sviolet.thistle.model.thread.LazySingleThreadPool;
-import sviolet.thistle.util.common.ThreadPoolExecutorUtils;
 import sviolet.turquoise.x.imageloader.ComponentManager;
 import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
 import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
@@ -32,7 +26,7 @@ import sviolet.turquoise.x.imageloader.node.Node;
 import sviolet.turquoise.x.imageloader.node.Task;
 
 /**
- * <p>Asynchronous task processor, with fixed thread pool.</p>
+ * <p>Asynchronous task processor, scheduled by the shared {@link EngineScheduler}.</p>
  *
  * <p>Pull tasks from {@link Node}, execute tasks, and callback to {@link Node}</p>
  *
@@ -42,24 +36,42 @@ public abstract class Engine implements ComponentManager.Component, Server {
 
     private ComponentManager manager;
 
-    private LazySingleThreadPool dispatchThreadPool = new LazySingleThreadPool("TLoader-Engine-dispatcher-%d");
-    private ExecutorService taskThreadPool = ThreadPoolExecutorUtils.newInstance(0, Integer.MAX_VALUE, 60L, "TLoader-Engine-worker-%d");
-
-    private AtomicInteger taskCount = new AtomicInteger(0);
-    private List<Task> cache;//single Thread to operate the cache!
-
     /***************************************************************************
      * abstract
      */
 
     /**
-     * the method invoked on single Thread, which "dispatch thread"
+     * the method invoked on worker Thread of {@link EngineScheduler}
      * @param task the task to execute
      */
     protected abstract void executeNewTask(Task task);
 
+    /**
+     * @return max concurrency of the engine's lane in {@link EngineScheduler}
+     */
     protected abstract int getMaxThread();
 
+    /**
+     * @return upper bound of {@link #getMaxThread()}, if the concurrency is adjusted at runtime, used to size the worker pool
+     */
+    protected int getMaxThreadLimit(){
+        return getMaxThread();
+    }
+
+    /**
+     * <p>invoked on worker Thread of {@link EngineScheduler}, the lane slot is released when ticket finished.</p>
+     *
+     * <p>the task is finished when {@link #executeNewTask(Task)} returned by default,
+     * override it if the task finishes asynchronously.</p>
+     */
+    void execute(Task task, EngineScheduler.Ticket ticket){
+        try {
+            executeNewTask(task);
+        } finally {
+            ticket.finish();
+        }
+    }
+
     /***************************************************************************
      * public
      */
@@ -77,53 +89,7 @@ public abstract class Engine implements ComponentManager.Component, Server {
      * notify engine to work
      */
     public void ignite(){
-        dispatchThreadPool.execute(dispatchRunnable);
-    }
-
-    private Runnable dispatchRunnable = new Runnable() {
-        @Override
-        public void run() {
-            while (taskCount.get() < getMaxThread()){
-                Task task = getTask();
-                if (task != null){
-                    executeTask(task);
-                }else{
-                    break;
-                }
-            }
-        }
-    };
-
-    /**
-     * single Thread to operate the method!
-     */
-    private Task getTask(){
-        if (cache == null || cache.size() <= 0){
-            cache = manager.getNodeManager().pullTasks(getServerType());
-//            manager.getLogger().d("[Engine:" + getServerType() + "]get task from nodeManager");
-        }
-        if (cache != null && cache.size() > 0){
-//            manager.getLogger().d("[Engine:" + getServerType() + "]get task from cache");
-            return cache.remove(0);
-        }
-//        manager.getLogger().d("[Engine:" + getServerType() + "]get task failed, nothing");
-        return null;
-    }
-
-    private void executeTask(final Task task) {
-        taskCount.incrementAndGet();
-        taskThreadPool.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    //EXECUTE
-                    executeNewTask(task);
-                } finally {
-                    taskCount.decrementAndGet();
-                    ignite();
-                }
-            }
-        });
+        manager.getEngineScheduler().ignite();
     }
 
     /***************************************************************************
@@ -49,6 +49,8 @@ public class EngineCallback <ResultDataType> {
     private ResultDataType data;//result data
     private Exception exception;//result exception
     private Runnable onCancelListener;
+    private OnResultListener onResultListener;//completion mode
+    private boolean resultNotified = false;
 
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
@@ -88,6 +90,7 @@ public class EngineCallback <ResultDataType> {
         }finally {
             lock.unlock();
         }
+        notifyResult();
     }
 
     /**
@@ -107,6 +110,7 @@ public class EngineCallback <ResultDataType> {
         }finally {
             lock.unlock();
         }
+        notifyResult();
     }
 
     /**
@@ -125,6 +129,7 @@ public class EngineCallback <ResultDataType> {
         }finally {
             lock.unlock();
         }
+        notifyResult();
     }
 
     /**
@@ -234,6 +239,55 @@ public class EngineCallback <ResultDataType> {
         } finally {
             lock.unlock();
         }
+        notifyResult();
+    }
+
+    /**
+     * <p>completion mode, the listener will be invoked once when result set (or timeout), in the thread which sets result.</p>
+     *
+     * <p>invoked immediately if the result has been set already.</p>
+     */
+    void setOnResultListener(OnResultListener onResultListener){
+        lock.lock();
+        try{
+            this.onResultListener = onResultListener;
+        } finally {
+            lock.unlock();
+        }
+        notifyResult();
+    }
+
+    /**
+     * <p>completion mode, set result to RESULT_INTERRUPTED if no result yet, and notify listener.</p>
+     */
+    void timeout(){
+        lock.lock();
+        try{
+            if (result == RESULT_NULL) {
+                result = RESULT_INTERRUPTED;
+                logger.e("[EngineCallback]waiting for result timeout! Make sure that NetworkLoadHandler correctly use EngineCallback to return result, whether load succeed or failed");
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyResult();
+    }
+
+    private void notifyResult(){
+        OnResultListener listener;
+        int result;
+        lock.lock();
+        try{
+            if (resultNotified || onResultListener == null || this.result == RESULT_NULL) {
+                return;
+            }
+            resultNotified = true;
+            listener = onResultListener;
+            result = this.result;
+        } finally {
+            lock.unlock();
+        }
+        listener.onResult(result == RESULT_INTERRUPTED ? RESULT_CANCELED : result);
     }
 
     /**
@@ -244,10 +298,20 @@ public class EngineCallback <ResultDataType> {
         try{
             this.data = null;
             this.onCancelListener = null;
+            this.onResultListener = null;
         } finally {
             lock.unlock();
         }
     }
 
+    interface OnResultListener {
+
+        /**
+         * @param result RESULT_SUCCEED / RESULT_FAILED / RESULT_CANCELED
+         */
+        void onResult(int result);
+
+    }
+
 }
 
@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.thistle.model.thread.LazySingleThreadPool;
+import sviolet.turquoise.util.droid.NetStateUtils;
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>Shared scheduler of {@link MemoryEngine} / {@link DiskEngine} / {@link NetEngine}.</p>
+ *
+ * <p>All engines share one dispatch thread and one bounded worker pool. Each engine has its own lane
+ * with a hard concurrency cap ({@link Engine#getMaxThread()}). Memory and disk lanes can borrow idle slots
+ * of network lane when their own slots are exhausted (work stealing), network lane never borrows, because
+ * network tasks occupy the slot for a long time. The worker pool size is the sum of all lane caps (upper bounds if adjusted at runtime),
+ * so the thread count will never burst during fast scrolling.</p>
+ *
+ * <p>A slot is held by {@link Ticket} until the task finished, which may happen after the worker thread returned
+ * (NetEngine with {@link sviolet.turquoise.x.imageloader.handler.AsyncNetworkLoadHandler}).</p>
+ *
+ * <p>The tasks of preload nodes (TILoader.preload) are dispatched in low priority: only when the lane has no
+ * visible loading task waiting, at most {@value PRELOAD_MAX_RUNNING} preload task(s) per lane, and one own slot is always
+ * left idle for visible loading (except the lane has only one slot). Preload tasks never borrow slots.
+ * Preload tasks are failed in network lane if the network is metered (unless ServerSettings->setPreloadOnMeteredNetwork).</p>
+ *
+ * <p>Decoding is not executed in lanes, the disk/network slot is released after the file/bytes handed off to
+ * {@link DecodeServer}.</p>
+ *
+ * <p>Lane occupancy, utilization and task waiting time can be got by {@link #getLaneInfo(Server.Type)} or
+ * {@link #getSchedulerReport()}, helps to tune ServerSettings (xxxLoadMaxThread).</p>
+ *
+ * Created by S.Violet on 2017/11/22.
+ */
+public class EngineScheduler implements ComponentManager.Component {
+
+    private static final int PRELOAD_MAX_RUNNING = 1;
+
+    private ComponentManager manager;
+
+    private Lane memoryLane;
+    private Lane diskLane;
+    private Lane netLane;
+
+    private final ReentrantLock slotLock = new ReentrantLock();
+
+    private LazySingleThreadPool dispatchThreadPool = new LazySingleThreadPool("TLoader-Engine-dispatcher-%d");
+    private ThreadPoolExecutor taskThreadPool;
+    private long startTime;
+
+    @Override
+    public void init(ComponentManager manager) {
+        this.manager = manager;
+        init(manager.getMemoryEngine(), manager.getDiskEngine(), manager.getNetEngine(), manager.getLogger());
+    }
+
+    void init(Engine memoryEngine, Engine diskEngine, Engine netEngine, TLogger logger) {
+        memoryLane = new Lane(memoryEngine, true);
+        diskLane = new Lane(diskEngine, true);
+        netLane = new Lane(netEngine, false);
+
+        int poolSize = memoryLane.limit() + diskLane.limit() + netLane.limit();
+        taskThreadPool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        taskThreadPool.allowCoreThreadTimeOut(true);
+        startTime = System.nanoTime();
+        logger.i("[EngineScheduler]initial, worker pool size:" + poolSize);
+    }
+
+    /**
+     * notify scheduler to dispatch tasks of all lanes
+     */
+    public void ignite(){
+        dispatchThreadPool.execute(dispatchRunnable);
+    }
+
+    private Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            //memory and disk first, they are fast, and may borrow idle slots of network lane
+            dispatch(memoryLane);
+            dispatch(diskLane);
+            dispatch(netLane);
+        }
+    };
+
+    /**
+     * single Thread to operate the method! (dispatch thread)
+     */
+    private void dispatch(Lane lane){
+        while (true){
+            Slot slot = acquire(lane);
+            if (slot == null){
+                //no slot, preload is not allowed either
+                return;
+            }
+            Task task = lane.getTask();
+            if (task == null){
+                release(slot);
+                break;
+            }
+            executeTask(lane, slot, task);
+        }
+        //no visible loading task waiting, preload
+        dispatchPreload(lane);
+    }
+
+    /**
+     * single Thread to operate the method! (dispatch thread)
+     */
+    private void dispatchPreload(Lane lane){
+        while (true){
+            Slot slot = acquirePreload(lane);
+            if (slot == null){
+                break;
+            }
+            Task task = manager.getNodeManager().pullPreloadTask(lane.engine.getServerType());
+            if (task == null){
+                release(slot);
+                break;
+            }
+            if (lane == netLane && isPreloadNetworkDisallowed()){
+                release(slot);
+                if (manager.getLogger().checkEnable(TLogger.DEBUG)) {
+                    manager.getLogger().d("[EngineScheduler]skip preload task on metered network, task:" + task);
+                }
+                task.setState(Task.State.FAILED);
+                if (task.getMetrics() != null){
+                    task.getMetrics().setReason(TaskMetrics.Reason.METERED_NETWORK);
+                }
+                lane.engine.response(task);
+                continue;
+            }
+            executeTask(lane, slot, task);
+        }
+    }
+
+    private boolean isPreloadNetworkDisallowed(){
+        if (manager.getServerSettings().isPreloadOnMeteredNetwork()){
+            return false;
+        }
+        Context context = manager.getApplicationContextImage();
+        try {
+            return context == null || NetStateUtils.isActiveNetworkMetered(context);
+        } catch (Exception e) {
+            //missing permission
+            return true;
+        }
+    }
+
+    private void executeTask(final Lane lane, final Slot slot, final Task task){
+        final long enqueueTime = task.getEnqueueTime() > 0 ? task.getEnqueueTime() : System.currentTimeMillis();
+        try {
+            taskThreadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long wait = System.currentTimeMillis() - enqueueTime;
+                    lane.recordWait(wait);
+                    if (task.getMetrics() != null){
+                        task.getMetrics().recordQueueWait(lane.engine.getServerType(), wait);
+                    }
+                    //EXECUTE, slot will be released when ticket finished
+                    lane.engine.execute(task, new Ticket(slot));
+                }
+            });
+        } catch (Exception e){
+            release(slot);
+            manager.getLogger().e("[EngineScheduler]execute task failed, task:" + task, e);
+            task.setState(Task.State.FAILED);
+            if (task.getMetrics() != null){
+                task.getMetrics().setReason(TaskMetrics.Reason.SCHEDULE_FAILED);
+            }
+            lane.engine.response(task);
+        }
+    }
+
+    /*********************************************************************
+     * slot
+     */
+
+    private Slot acquire(Lane lane){
+        try {
+            slotLock.lock();
+            //own slot, the slots lent to other lanes are in use (network lane)
+            if (lane.running + lane.lent < lane.cap()){
+                lane.running++;
+                return lane.ownSlot;
+            }
+            //borrow idle slot from network lane
+            if (lane.stealable && netLane.running + netLane.lent < netLane.cap()){
+                netLane.lent++;
+                lane.borrowed++;
+                return lane.borrowedSlot;
+            }
+            return null;
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    /**
+     * own slot only, one slot left idle for visible loading (except the lane has only one slot)
+     */
+    private Slot acquirePreload(Lane lane){
+        try {
+            slotLock.lock();
+            int used = lane.running + lane.lent;
+            if (lane.preloadRunning < PRELOAD_MAX_RUNNING &&
+                    (used < lane.cap() - 1 || (lane.cap() <= 1 && used <= 0))){
+                lane.running++;
+                lane.preloadRunning++;
+                return lane.preloadSlot;
+            }
+            return null;
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    /**
+     * acquire a visible loading slot of the lane without task (test only), the slot is never released
+     * @return false if no slot
+     */
+    boolean tryAcquire(Server.Type type){
+        Lane lane = getLane(type);
+        return lane != null && acquire(lane) != null;
+    }
+
+    private void release(Slot slot){
+        try {
+            slotLock.lock();
+            if (slot.preload){
+                slot.lane.preloadRunning--;
+                slot.lane.running--;
+            } else if (slot.borrowed){
+                netLane.lent--;
+                slot.lane.borrowed--;
+            } else {
+                slot.lane.running--;
+            }
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    /**
+     * <p>slot of lane: own slot, slot borrowed from network lane (memory/disk lanes), or preload slot (own).</p>
+     *
+     * <p>the slots lent to memory/disk lanes are counted in network lane, a network task can only be executed
+     * when running + lent < cap, it waits for the lent slots to be returned (memory/disk tasks are short).</p>
+     */
+    private static class Slot {
+
+        private final Lane lane;
+        private final boolean borrowed;
+        private final boolean preload;
+
+        private Slot(Lane lane, boolean borrowed, boolean preload) {
+            this.lane = lane;
+            this.borrowed = borrowed;
+            this.preload = preload;
+        }
+
+    }
+
+    /**
+     * <p>the slot held by a running task, finish it to release the slot and dispatch next task.</p>
+     *
+     * <p>the task may be finished asynchronously, after the worker thread returned (e.g. NetEngine in completion mode),
+     * the slot is still held until then, so that the concurrency of lane keeps bounded.</p>
+     */
+    class Ticket {
+
+        private final Slot slot;
+        private final long startTime = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private Ticket(Slot slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * release slot, can be invoked repeatedly (only once take effect)
+         */
+        void finish(){
+            if (finished.compareAndSet(false, true)){
+                slot.lane.busyTimeNanos.addAndGet(System.nanoTime() - startTime);
+                release(slot);
+                ignite();
+            }
+        }
+
+    }
+
+    /*********************************************************************
+     * report
+     */
+
+    /**
+     * @param type MEMORY_ENGINE / DISK_ENGINE / NETWORK_ENGINE
+     * @return snapshot of lane, null if type is illegal
+     */
+    public LaneInfo getLaneInfo(Server.Type type){
+        Lane lane = getLane(type);
+        if (lane == null){
+            return null;
+        }
+        try {
+            slotLock.lock();
+            return new LaneInfo(type, lane.cap(), lane.running, lane.borrowed, lane.lent, lane.preloadRunning, lane.executedCount.get(), lane.totalWait.get(), lane.maxWait.get(),
+                    utilization(lane.busyTimeNanos.get(), lane.cap()));
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    private Lane getLane(Server.Type type){
+        switch (type){
+            case MEMORY_ENGINE:
+                return memoryLane;
+            case DISK_ENGINE:
+                return diskLane;
+            case NETWORK_ENGINE:
+                return netLane;
+            default:
+                return null;
+        }
+    }
+
+    private float utilization(long busyTimeNanos, int cap){
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed <= 0 || cap <= 0){
+            return 0f;
+        }
+        return Math.min(1f, (float) busyTimeNanos / ((float) elapsed * cap));
+    }
+
+    public String getSchedulerReport(){
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[EngineScheduler]SchedulerReport: ");
+        stringBuilder.append(getLaneInfo(Server.Type.MEMORY_ENGINE));
+        stringBuilder.append(getLaneInfo(Server.Type.DISK_ENGINE));
+        stringBuilder.append(getLaneInfo(Server.Type.NETWORK_ENGINE));
+        return stringBuilder.toString();
+    }
+
+    /*********************************************************************
+     * inner class
+     */
+
+    private static class Lane {
+
+        private final Engine engine;
+        private final boolean stealable;
+        private final Slot ownSlot;
+        private final Slot borrowedSlot;
+        private final Slot preloadSlot;
+
+        //guarded by slotLock
+        private int running = 0;//including preload
+        private int preloadRunning = 0;
+        private int borrowed = 0;
+        private int lent = 0;
+
+        private final AtomicInteger executedCount = new AtomicInteger(0);
+        private final AtomicLong totalWait = new AtomicLong(0);
+        private final AtomicLong maxWait = new AtomicLong(0);
+        private final AtomicLong busyTimeNanos = new AtomicLong(0);//slot holding time, including borrowed slots
+
+        private List<Task> cache;//single Thread to operate the cache!
+
+        private Lane(Engine engine, boolean stealable) {
+            this.engine = engine;
+            this.stealable = stealable;
+            this.ownSlot = new Slot(this, false, false);
+            this.borrowedSlot = new Slot(this, true, false);
+            this.preloadSlot = new Slot(this, false, true);
+        }
+
+        private int cap(){
+            return engine.getMaxThread();
+        }
+
+        private int limit(){
+            return engine.getMaxThreadLimit();
+        }
+
+        /**
+         * single Thread to operate the method!
+         */
+        private Task getTask(){
+            if (cache == null || cache.size() <= 0){
+                cache = engine.getComponentManager().getNodeManager().pullTasks(engine.getServerType());
+            }
+            if (cache != null && cache.size() > 0){
+                return cache.remove(0);
+            }
+            return null;
+        }
+
+        private void recordWait(long wait){
+            executedCount.incrementAndGet();
+            totalWait.addAndGet(wait);
+            long max;
+            while ((max = maxWait.get()) < wait){
+                if (maxWait.compareAndSet(max, wait)){
+                    break;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * snapshot of lane
+     */
+    public static class LaneInfo {
+
+        private Server.Type type;
+        private int cap;
+        private int running;
+        private int borrowed;
+        private int lent;
+        private int preloadRunning;
+        private int executedCount;
+        private long totalWait;
+        private long maxWait;
+        private float utilization;
+
+        private LaneInfo(Server.Type type, int cap, int running, int borrowed, int lent, int preloadRunning, int executedCount, long totalWait, long maxWait, float utilization) {
+            this.type = type;
+            this.cap = cap;
+            this.running = running;
+            this.borrowed = borrowed;
+            this.lent = lent;
+            this.preloadRunning = preloadRunning;
+            this.executedCount = executedCount;
+            this.totalWait = totalWait;
+            this.maxWait = maxWait;
+            this.utilization = utilization;
+        }
+
+        public Server.Type getType() {
+            return type;
+        }
+
+        /**
+         * @return max concurrency of lane
+         */
+        public int getCap() {
+            return cap;
+        }
+
+        /**
+         * @return running tasks in own slots
+         */
+        public int getRunning() {
+            return running;
+        }
+
+        /**
+         * @return running tasks in slots borrowed from network lane
+         */
+        public int getBorrowed() {
+            return borrowed;
+        }
+
+        /**
+         * @return slots lent to other lanes (network lane only)
+         */
+        public int getLent() {
+            return lent;
+        }
+
+        /**
+         * @return running preload tasks (included in running)
+         */
+        public int getPreloadRunning() {
+            return preloadRunning;
+        }
+
+        public int getExecutedCount() {
+            return executedCount;
+        }
+
+        /**
+         * @return average waiting time (from entering request queue to executed), milli second
+         */
+        public long getAverageWait() {
+            return executedCount > 0 ? totalWait / executedCount : 0;
+        }
+
+        /**
+         * @return max waiting time (from entering request queue to executed), milli second
+         */
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        /**
+         * @return slot holding time / (elapsed time * cap) since initialized (0f-1f), slots borrowed from network lane
+         * are counted into the borrower
+         */
+        public float getUtilization() {
+            return utilization;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + type + "]: " + (running + lent) + "/" + cap + " borrowed:" + borrowed + " preload:" + preloadRunning +
+                    " executed:" + executedCount + " avgWait:" + getAverageWait() + "ms maxWait:" + maxWait + "ms util:" + (int) (utilization * 100) + "% ";
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, String.format("TLoader-Engine-worker-%d", count.getAndIncrement()));
+        }
+
+    }
+
+}
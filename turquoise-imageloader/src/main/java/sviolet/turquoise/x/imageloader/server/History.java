@@ -19,61 +19,117 @@
 
 package sviolet.turquoise.x.imageloader.server;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
+import sviolet.turquoise.util.common.DateTimeUtilsForAndroid;
+
 /**
- * record resource keys which loaded succeed
+ * <p>record resource keys which loaded succeed, time and size bounded.</p>
+ *
+ * <p>LRU: the keys are kept in access order (a key hit or re-put is moved to tail), the least recently used keys
+ * will be dropped if out of capacity. The keys expire after ttl since they are put (a hit doesn't extend the ttl).</p>
  *
  * Created by S.Violet on 2016/12/16.
  */
 class History {
 
-    private int capacity;
-    private int position = 0;
+    private final int capacity;
+    private final long ttl;
 
-    private Set<String> historySet;
-    private String[] historyQueue;
+    //key -> put time
+    private final LinkedHashMap<String, Long> records;
 
     private final ReentrantLock lock = new ReentrantLock();
 
-    History(int capacity) {
+    //statistic
+    private final AtomicInteger hitCount = new AtomicInteger(0);
+
+    /**
+     * @param capacity max size of keys
+     * @param ttl time to live of keys, millis
+     */
+    History(int capacity, long ttl) {
         this.capacity = capacity;
-        this.historySet = new HashSet<>(capacity);
-        this.historyQueue = new String[capacity];
+        this.ttl = ttl;
+        this.records = new LinkedHashMap<String, Long>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > History.this.capacity;
+            }
+        };
     }
 
     void put(String value){
+        long now = DateTimeUtilsForAndroid.getUptimeMillis();
         try {
             lock.lock();
-            String oldValue = historyQueue[position];
-            if (oldValue != null){
-                historySet.remove(oldValue);
-            }
-            historyQueue[position] = value;
-            historySet.add(value);
-            positionIncrease();
+            //remove first, the re-put key is moved to tail
+            records.remove(value);
+            records.put(value, now);
+            trimExpiredEldest(now);
         } finally {
             lock.unlock();
         }
     }
 
     boolean contains(String value){
+        long now = DateTimeUtilsForAndroid.getUptimeMillis();
         try {
             lock.lock();
-            return historySet.contains(value);
+            //refresh recency
+            Long time = records.get(value);
+            if (time == null){
+                return false;
+            }
+            if (now - time > ttl){
+                records.remove(value);
+                return false;
+            }
         } finally {
             lock.unlock();
         }
+        hitCount.incrementAndGet();
+        return true;
     }
 
-//    private void positionDecrease(){
-//        position = position < 1 ? capacity - 1 : position - 1;
-//    }
+    /**
+     * @return how many times the key is found in history (network fetches saved)
+     */
+    int getHitCount(){
+        return hitCount.get();
+    }
 
-    private void positionIncrease(){
-        position = position > capacity - 2 ? 0 : position + 1;
+    /**
+     * @return size of live (not expired) keys
+     */
+    int size(){
+        long now = DateTimeUtilsForAndroid.getUptimeMillis();
+        try {
+            lock.lock();
+            Iterator<Long> iterator = records.values().iterator();
+            while (iterator.hasNext()){
+                if (now - iterator.next() > ttl){
+                    iterator.remove();
+                }
+            }
+            return records.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * drop the expired keys at the head (least recently used), the expired keys elsewhere are dropped when they are queried
+     */
+    private void trimExpiredEldest(long now){
+        Iterator<Long> iterator = records.values().iterator();
+        while (iterator.hasNext() && now - iterator.next() > ttl){
+            iterator.remove();
+        }
     }
 
 }
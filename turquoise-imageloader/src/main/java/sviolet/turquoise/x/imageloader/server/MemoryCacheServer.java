@@ -19,17 +19,30 @@
 
 package sviolet.turquoise.x.imageloader.server;
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
+import android.os.Build;
 
 import sviolet.turquoise.util.droid.DeviceUtils;
 import sviolet.turquoise.x.imageloader.ComponentManager;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.MemoryTrimPolicy;
+import sviolet.turquoise.x.imageloader.handler.MetricsCollector;
+import sviolet.turquoise.x.imageloader.server.module.ActiveResourceModule;
+import sviolet.turquoise.x.imageloader.server.module.BitmapPoolModule;
+import sviolet.turquoise.x.imageloader.server.module.ImageResourceCache;
 import sviolet.turquoise.x.imageloader.server.module.ImageResourceCacheModule;
+import sviolet.turquoise.x.imageloader.server.module.SegmentedImageResourceCacheModule;
 
 /**
  * <p>manage all memory caches</p>
  *
+ * <p>Registered to ComponentCallbacks2 of application (API >= 14), the memory cache is trimmed progressively by the level
+ * of memory pressure, and grows back when the pressure ends, see {@link MemoryTrimPolicy}.</p>
+ *
  * Created by S.Violet on 2016/3/15.
  */
 public class MemoryCacheServer implements ComponentManager.Component, Server {
@@ -39,12 +52,44 @@ public class MemoryCacheServer implements ComponentManager.Component, Server {
 
     private ComponentManager manager;
 
-    private ImageResourceCacheModule imageResourceCacheModule;
+    private ImageResourceCache imageResourceCacheModule;
+    private BitmapPoolModule bitmapPoolModule;
+    private ActiveResourceModule activeResourceModule;
+    private MemoryTrimPolicy trimPolicy = new MemoryTrimPolicy();
 
     @Override
     public void init(ComponentManager manager) {
         this.manager = manager;
         initBitmapCache();
+        registerComponentCallbacks();
+    }
+
+    private void registerComponentCallbacks(){
+        Context context = manager.getApplicationContextImage();
+        if (context == null || DeviceUtils.getVersionSDK() < Build.VERSION_CODES.ICE_CREAM_SANDWICH){
+            return;
+        }
+        registerComponentCallbacks(context);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerComponentCallbacks(Context context){
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(MemoryTrimPolicy.TRIM_MEMORY_COMPLETE);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+
+            }
+        });
     }
 
     private void initBitmapCache() {
@@ -67,7 +112,30 @@ public class MemoryCacheServer implements ComponentManager.Component, Server {
         }
 
         manager.getLogger().i("[MemoryCacheServer]initial, memoryCacheSize:" + (memoryCacheSize / 1024) + "K");
-        imageResourceCacheModule = new ImageResourceCacheModule(memoryCacheSize, manager.getServerSettings().getImageResourceHandler(), manager.getLogger());
+        activeResourceModule = new ActiveResourceModule(manager.getServerSettings().getImageResourceHandler(), initBitmapPool(), manager.getLogger());
+        if (manager.getServerSettings().isMemoryCacheSegmented()) {
+            manager.getLogger().i("[MemoryCacheServer]initial, segmented memory cache");
+            imageResourceCacheModule = new SegmentedImageResourceCacheModule(memoryCacheSize, manager.getServerSettings().getImageResourceHandler(), activeResourceModule, manager.getLogger());
+        } else {
+            imageResourceCacheModule = new ImageResourceCacheModule(memoryCacheSize, manager.getServerSettings().getImageResourceHandler(), activeResourceModule, manager.getLogger());
+        }
+    }
+
+    private BitmapPoolModule initBitmapPool(){
+        int bitmapPoolSize = manager.getServerSettings().getBitmapPoolSize();
+        //disabled
+        if (bitmapPoolSize <= 0){
+            return null;
+        }
+        if (DeviceUtils.getVersionSDK() < Build.VERSION_CODES.KITKAT){
+            manager.getLogger().i("[MemoryCacheServer]initial, API < 19, bitmap pool disabled");
+            return null;
+        }
+        manager.getLogger().i("[MemoryCacheServer]initial, bitmapPoolSize:" + (bitmapPoolSize / 1024) + "K");
+        bitmapPoolModule = new BitmapPoolModule(bitmapPoolSize, manager.getLogger());
+        //decoder reuses bitmaps in pool
+        manager.getServerSettings().getDecodeHandler().setInBitmapProvider(bitmapPoolModule);
+        return bitmapPoolModule;
     }
 
     public void put(String key, ImageResource resource){
@@ -75,6 +143,7 @@ public class MemoryCacheServer implements ComponentManager.Component, Server {
             manager.getLogger().e("MemoryCacheServer can't put with null key");
             return;
         }
+        recoverLimit();
         imageResourceCacheModule.put(key, resource);
     }
 
@@ -83,7 +152,16 @@ public class MemoryCacheServer implements ComponentManager.Component, Server {
             manager.getLogger().e("MemoryCacheServer can't get with null key");
             return null;
         }
-        return imageResourceCacheModule.get(key);
+        ImageResource resource = imageResourceCacheModule.get(key);
+        if (resource != null){
+            return resource;
+        }
+        //evicted from cache but still displayed, recover it
+        resource = activeResourceModule.recover(key);
+        if (resource != null){
+            imageResourceCacheModule.put(key, resource);
+        }
+        return resource;
     }
 
     public ImageResource extract(String key){
@@ -102,12 +180,106 @@ public class MemoryCacheServer implements ComponentManager.Component, Server {
         imageResourceCacheModule.remove(key);
     }
 
+    /**
+     * increase reference count of resource, the resource will not be recycled until released
+     * @param holder the stub which displays the resource, held weakly
+     * @param key key of resource in memory cache
+     * @param resource resource displayed
+     */
+    public void acquire(Object holder, String key, ImageResource resource){
+        activeResourceModule.acquire(holder, key, resource);
+    }
+
+    /**
+     * decrease reference count of resource
+     * @param holder the stub which displayed the resource
+     * @param resource resource no longer displayed
+     */
+    public void release(Object holder, ImageResource resource){
+        activeResourceModule.release(holder, resource);
+    }
+
     public void removeAll(){
         imageResourceCacheModule.removeAll();
+        activeResourceModule.clear();
+        if (bitmapPoolModule != null){
+            bitmapPoolModule.clear();
+        }
+    }
+
+    /**
+     * release memory on memory pressure, by {@link MemoryTrimPolicy}
+     * @param level level of ComponentCallbacks2.onTrimMemory
+     */
+    public void trimMemory(int level){
+        if (bitmapPoolModule != null){
+            bitmapPoolModule.trimMemory(level);
+        }
+        MemoryTrimPolicy.Stage stage = trimPolicy.onTrimMemory(level, System.currentTimeMillis());
+        if (stage == MemoryTrimPolicy.Stage.NONE){
+            return;
+        }
+        int sizeBefore = imageResourceCacheModule.size();
+        int limit = limitOf(trimPolicy.getLimitFactor(System.currentTimeMillis()));
+        imageResourceCacheModule.setLimit(limit);
+        switch (stage){
+            case EVICT_INVISIBLE:
+                imageResourceCacheModule.trimInvisible(limit);
+                break;
+            case SHRINK:
+                imageResourceCacheModule.trimInvisible(limit);
+                imageResourceCacheModule.trimToSize(limit);
+                break;
+            case DROP_ALL:
+            default:
+                //the displayed resources are moved to active set, recoverable
+                imageResourceCacheModule.removeAll();
+                break;
+        }
+        int releasedBytes = sizeBefore - imageResourceCacheModule.size();
+        manager.getLogger().i("[MemoryCacheServer]trim memory, level:" + level + ", stage:" + stage + ", limit:" + (limit / 1024) + "K, released:" + (releasedBytes / 1024) + "K");
+        MetricsCollector metricsCollector = manager.getServerSettings().getMetricsCollector();
+        if (metricsCollector != null){
+            try {
+                metricsCollector.onMemoryTrimmed(level, stage, limit, releasedBytes);
+            } catch (Exception e) {
+                manager.getLogger().e("[MemoryCacheServer]exception in MetricsCollector", e);
+            }
+        }
+    }
+
+    /**
+     * the limit of memory cache grows back after memory pressure
+     */
+    private void recoverLimit(){
+        int currentLimit = imageResourceCacheModule.limit();
+        if (currentLimit >= imageResourceCacheModule.maxSize()){
+            return;
+        }
+        int limit = limitOf(trimPolicy.getLimitFactor(System.currentTimeMillis()));
+        if (limit <= currentLimit || imageResourceCacheModule.setLimit(limit) >= limit){
+            return;
+        }
+        manager.getLogger().i("[MemoryCacheServer]memory cache recovering, limit:" + (limit / 1024) + "K");
+        MetricsCollector metricsCollector = manager.getServerSettings().getMetricsCollector();
+        if (metricsCollector != null){
+            try {
+                metricsCollector.onMemoryRecovered(limit);
+            } catch (Exception e) {
+                manager.getLogger().e("[MemoryCacheServer]exception in MetricsCollector", e);
+            }
+        }
+    }
+
+    private int limitOf(float factor){
+        return (int) (imageResourceCacheModule.maxSize() * factor);
     }
 
     public String getMemoryReport() {
-        return imageResourceCacheModule.getMemoryReport();
+        if (bitmapPoolModule != null){
+            return imageResourceCacheModule.getMemoryReport() + activeResourceModule.getReport() + bitmapPoolModule.getReport();
+        }
+        return imageResourceCacheModule.getMemoryReport() + activeResourceModule.getReport();
     }
 
     @Override
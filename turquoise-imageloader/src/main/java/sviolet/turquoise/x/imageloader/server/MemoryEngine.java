@@ -20,6 +20,7 @@
 package sviolet.turquoise.x.imageloader.server;
 
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
 import sviolet.turquoise.x.imageloader.node.Task;
 
 /**
@@ -45,6 +46,9 @@ public class MemoryEngine extends Engine {
             return;
         }
         if (resource != null) {
+            if (task.getMetrics() != null){
+                task.getMetrics().setSource(TaskMetrics.Source.MEMORY);
+            }
             task.setState(Task.State.SUCCEED);
             response(task);
         }else{
@@ -23,33 +23,200 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.TILoaderUtils;
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
 import sviolet.turquoise.x.imageloader.entity.IndispensableState;
+import sviolet.turquoise.x.imageloader.entity.LoadProgress;
 import sviolet.turquoise.x.imageloader.entity.LowNetworkSpeedStrategy;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
+import sviolet.turquoise.x.imageloader.entity.TaskMetrics;
+import sviolet.turquoise.x.imageloader.handler.AsyncNetworkLoadHandler;
 import sviolet.turquoise.x.imageloader.handler.NetworkLoadHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.stub.Stub;
 
 /**
  * <p>Net Load Engine</p>
  *
+ * <p>Legacy {@link NetworkLoadHandler} is handled in blocking mode (worker thread waits for result),
+ * {@link AsyncNetworkLoadHandler} is handled in completion mode (no thread waits for result), the result (reading body,
+ * writing disk cache) is handled in NetEngine's I/O threads, the thread of handler (e.g. OkHttp's dispatcher) returns at once.</p>
+ *
+ * <p>If streaming decode enabled (ServerSettings->setStreamingDecodeEnabled), the image is decoded while downloading,
+ * see {@link StreamingDecoder}.</p>
+ *
+ * <p>Decoding is executed in decode stage ({@link DecodeServer}), the network thread (and the lane slot) is released
+ * after the data downloaded.</p>
+ *
+ * <p>If adaptive concurrency enabled (ServerSettings->setNetworkLoadAdaptive), the concurrency of network lane
+ * is adjusted by {@link NetworkConcurrencyController}.</p>
+ *
+ * <p>The task with validator (expired disk cache entry, see {@link DiskEngine}) is loaded by conditional request,
+ * it returns to DiskEngine if 304 Not Modified, or if loading failed (the expired entry is displayed).</p>
+ *
  * Created by S.Violet on 2016/2/19.
  */
 public class NetEngine extends Engine {
 
-    private static final int HISTORY_CAPACITY = 30;
-
     private Map<String, TaskGroup> taskGroups = new ConcurrentHashMap<>();
-    private History history = new History(HISTORY_CAPACITY);
+    private History history;
     private ReentrantLock lock = new ReentrantLock();
 
+    //statistic of revalidation
+    private AtomicInteger notModifiedCount = new AtomicInteger(0);
+    private AtomicInteger modifiedCount = new AtomicInteger(0);
+    private AtomicInteger staleCount = new AtomicInteger(0);
+
+    //timeout checker of completion mode, single thread, no thread waits for result
+    private ScheduledThreadPoolExecutor timeoutExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "TLoader-NetEngine-timer");
+        }
+    });
+
+    //I/O threads of completion mode, reading body and writing disk cache, bounded (in-flight results never exceed lane slots),
+    //the result is handled in the thread which sets result if rejected
+    private ThreadPoolExecutor resultExecutor;
+
+    //decoder threads of streaming decode, null if disabled
+    private ThreadPoolExecutor streamingDecodeExecutor;
+
+    //adaptive concurrency, null if disabled
+    private NetworkConcurrencyController concurrencyController;
+
+    @Override
+    public void init(ComponentManager manager) {
+        super.init(manager);
+        timeoutExecutor.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        timeoutExecutor.allowCoreThreadTimeOut(true);
+        history = new History(manager.getServerSettings().getDownloadHistoryCapacity(), manager.getServerSettings().getDownloadHistoryTtl());
+        if (manager.getServerSettings().isNetworkLoadAdaptive()) {
+            concurrencyController = new NetworkConcurrencyController(manager.getServerSettings().getNetworkLoadAdaptiveMinThread(),
+                    manager.getServerSettings().getNetworkLoadAdaptiveMaxThread(), manager.getServerSettings().getNetworkLoadMaxThread());
+        }
+        resultExecutor = newResultExecutor(getMaxThreadLimit());
+        if (manager.getServerSettings().isStreamingDecodeEnabled()) {
+            //no queue, streaming decode will be skipped if all decoder threads are busy
+            streamingDecodeExecutor = new ThreadPoolExecutor(0, getMaxThreadLimit(), 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger(0);
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "TLoader-NetEngine-decoder-" + counter.getAndIncrement());
+                }
+            });
+        }
+    }
+
+    /**
+     * I/O threads of completion mode, read body / write disk cache / decode after result set. The size is bounded by
+     * max thread of network lane, it doesn't depend on the number of downloads in flight (the caller runs the process
+     * if the executor is full).
+     */
+    static ThreadPoolExecutor newResultExecutor(int maxThread){
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThread, maxThread, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(maxThread), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "TLoader-NetEngine-io-" + counter.getAndIncrement());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     protected void executeNewTask(Task task) {
+        TaskGroup group = prepare(task);
+        if (group == null) {
+            return;
+        }
+        try {
+            loadByHandler(task, group.getIndispensableState());
+        } catch (Exception e) {
+            onLoadException(task, e);
+        }
+    }
+
+    /**
+     * <p>blocking mode: legacy {@link NetworkLoadHandler}, worker thread waits for result.</p>
+     *
+     * <p>completion mode: {@link AsyncNetworkLoadHandler}, worker thread returns immediately, the subsequent process is
+     * continued in I/O thread of NetEngine when result set, the lane slot is held until the process finished.</p>
+     */
+    @Override
+    void execute(Task task, EngineScheduler.Ticket ticket) {
+        NetworkLoadHandler handler = getNetworkLoadHandler(task);
+        if (!(handler instanceof AsyncNetworkLoadHandler)) {
+            super.execute(task, ticket);
+            return;
+        }
+        TaskGroup group = null;
+        try {
+            group = prepare(task);
+            if (group != null) {
+                loadByHandlerAsync(task, group.getIndispensableState(), handler, ticket);
+            }
+        } catch (Exception e) {
+            onLoadException(task, e);
+            ticket.finish();
+        } finally {
+            //otherwise, ticket will be finished by callback
+            if (group == null) {
+                ticket.finish();
+            }
+        }
+    }
+
+    /**
+     * @return report of network loading: download history (fetches saved), revalidation (304 / 200 / stale entry used),
+     * adaptive concurrency, LowNetworkSpeedStrategy (estimated bandwidth / aborting decisions)
+     */
+    public String getNetworkReport(){
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[NetEngine]NetworkReport: ");
+        stringBuilder.append("historySize:");
+        stringBuilder.append(history.size());
+        stringBuilder.append(" fetchSaved:");
+        stringBuilder.append(history.getHitCount());
+        stringBuilder.append(" notModified:");
+        stringBuilder.append(notModifiedCount.get());
+        stringBuilder.append(" modified:");
+        stringBuilder.append(modifiedCount.get());
+        stringBuilder.append(" stale:");
+        stringBuilder.append(staleCount.get());
+        stringBuilder.append(" ");
+        if (concurrencyController != null){
+            stringBuilder.append(concurrencyController.getReport());
+        }
+        stringBuilder.append(getComponentManager().getServerSettings().getLowNetworkSpeedStrategy().getReport());
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @return TaskGroup if the task should be executed, null if the task has returned to DiskEngine or merged into executing group
+     */
+    private TaskGroup prepare(Task task){
 
         //return if resource has loaded recently
         if (history.contains(task.getResourceKey())){
@@ -58,8 +225,11 @@ public class NetEngine extends Engine {
                 task.setServerType(Server.Type.DISK_ENGINE);
                 task.setState(Task.State.STAND_BY);
                 task.setHasReturnedFromNetEngine(true);
+                //the disk cache entry is fresh, no revalidation
+                task.setCacheValidator(null);
+                task.setRevalidated(true);
                 response(task);
-                return;
+                return null;
             }else{
                 //task can only return to DiskEngine once
                 getComponentManager().getLogger().d("[NetEngine]task has returned to DiskEngine phase once, loading by NetEngine this time, task:" + task);
@@ -83,23 +253,25 @@ public class NetEngine extends Engine {
         }
         group.add(task);
 
-        if (executable) {
-            try {
-                loadByHandler(task, group.getIndispensableState());
-            } catch (Exception e) {
-                try {
-                    getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
-                } catch (Exception e2) {
-                    getComponentManager().getLogger().e("exception in ExceptionHandler", e2);
-                }
-                handleFailed(task);
-            }
+        return executable ? group : null;
+    }
+
+    private void onLoadException(Task task, Exception e){
+        try {
+            getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
+        } catch (Exception e2) {
+            getComponentManager().getLogger().e("exception in ExceptionHandler", e2);
         }
+        handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
     }
 
     private void loadByHandler(Task task, IndispensableState indispensableState) {
         //reset progress
         task.getLoadProgress().reset();
+        prepareResume(task);
+        if (task.getMetrics() != null){
+            task.getMetrics().markNetworkStart();
+        }
         //timeout, indispensable task has double timeout
         long connectTimeout = indispensableState.isIndispensable() ? getNetworkConnectTimeout(task) << 1 : getNetworkConnectTimeout(task);
         long readTimeout = indispensableState.isIndispensable() ? getNetworkReadTimeout(task) << 1 : getNetworkReadTimeout(task);
@@ -109,11 +281,76 @@ public class NetEngine extends Engine {
             getNetworkLoadHandler(task).onHandle(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), callback, connectTimeout, readTimeout, getComponentManager().getLogger());
         }catch(Exception e){
             getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), e, getComponentManager().getLogger());
-            handleFailed(task);
+            handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
             return;
         }
         //waiting for result
-        int result = callback.getResult();
+        handleResult(task, callback, callback.getResult(), indispensableState);
+    }
+
+    private void loadByHandlerAsync(final Task task, final IndispensableState indispensableState, NetworkLoadHandler handler, final EngineScheduler.Ticket ticket) {
+        //reset progress
+        task.getLoadProgress().reset();
+        prepareResume(task);
+        if (task.getMetrics() != null){
+            task.getMetrics().markNetworkStart();
+        }
+        //timeout, indispensable task has double timeout
+        long connectTimeout = indispensableState.isIndispensable() ? getNetworkConnectTimeout(task) << 1 : getNetworkConnectTimeout(task);
+        long readTimeout = indispensableState.isIndispensable() ? getNetworkReadTimeout(task) << 1 : getNetworkReadTimeout(task);
+        //callback's timeout is triple of network timeout, checked by timer instead of waiting thread
+        final EngineCallback<NetworkLoadHandler.Result> callback = new EngineCallback<>((connectTimeout + readTimeout) * 3, getComponentManager().getLogger());
+        final ScheduledFuture<?> timeoutFuture = timeoutExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                callback.timeout();
+            }
+        }, (connectTimeout + readTimeout) * 3, TimeUnit.MILLISECONDS);
+        //continue process in I/O thread when result set, the thread of handler returns at once
+        callback.setOnResultListener(new EngineCallback.OnResultListener() {
+            @Override
+            public void onResult(final int result) {
+                timeoutFuture.cancel(false);
+                Runnable process = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handleResult(task, callback, result, indispensableState);
+                        } catch (Exception e) {
+                            onLoadException(task, e);
+                        } finally {
+                            ticket.finish();
+                        }
+                    }
+                };
+                try {
+                    resultExecutor.execute(process);
+                } catch (RejectedExecutionException e) {
+                    process.run();
+                }
+            }
+        });
+        //network loading
+        try {
+            handler.onHandle(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), callback, connectTimeout, readTimeout, getComponentManager().getLogger());
+        }catch(Exception e){
+            callback.setResultFailed(e);
+        }
+    }
+
+    /**
+     * take the partial download of resource (ServerSettings->setResumableDownload), the handler sends range request if exists.
+     * The conditional request (revalidation) is not resumable.
+     */
+    private void prepareResume(Task task){
+        if (getComponentManager().getServerSettings().isResumableDownloadEnabled() && task.getCacheValidator() == null){
+            task.setResumeInfo(getComponentManager().getDiskCacheServer().takePartial(task));
+        } else {
+            task.setResumeInfo(null);
+        }
+    }
+
+    private void handleResult(Task task, EngineCallback<NetworkLoadHandler.Result> callback, int result, IndispensableState indispensableState){
         if (getComponentManager().getLogger().checkEnable(TLogger.DEBUG)) {
             getComponentManager().getLogger().d("[NetEngine]get result from networkHandler, result:" + result + ", task:" + task);
         }
@@ -143,18 +380,33 @@ public class NetEngine extends Engine {
         if (data.getType() == NetworkLoadHandler.ResultType.NULL){
             getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(),
                     new Exception("[TILoader:NetworkLoadHandler]callback return null result!"), getComponentManager().getLogger());
-            handleFailed(task);
+            handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
+        }else if (data.getType() == NetworkLoadHandler.ResultType.NOT_MODIFIED){
+            onNotModifiedResult(task, data.getCacheValidator());
+        }else if (data.getType() == NetworkLoadHandler.ResultType.BYTES && data.getResumeOffset() != 0){
+            //partial content is supported by input stream result only
+            getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(),
+                    new Exception("[TILoader:NetworkLoadHandler]partial content (206) is not supported by bytes result"), getComponentManager().getLogger());
+            handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
         }else if (data.getType() == NetworkLoadHandler.ResultType.BYTES){
             //set progress
             task.getLoadProgress().setTotal(data.getBytes().length);
             task.getLoadProgress().setLoaded(data.getBytes().length);
             //handle
-            onBytesResult(task, data.getBytes(), indispensableState);
+            onBytesResult(task, data.getBytes(), data.getCacheValidator(), indispensableState);
         }else if (data.getType() == NetworkLoadHandler.ResultType.INPUTSTREAM){
             //set progress
-            task.getLoadProgress().setTotal(data.getLength());
+            long resumeOffset = data.getResumeOffset();
+            if (resumeOffset > 0){
+                //partial content, the partial download has been loaded
+                ResumeInfo resumeInfo = task.getResumeInfo();
+                task.getLoadProgress().setTotal(data.getLength() > 0 ? resumeOffset + data.getLength() : (resumeInfo != null ? resumeInfo.getTotal() : LoadProgress.Info.UNKNOWN));
+                task.getLoadProgress().setLoaded(resumeOffset);
+            } else {
+                task.getLoadProgress().setTotal(data.getLength());
+            }
             //handle
-            onInputStreamResult(task, data.getInputStream(), indispensableState);
+            onInputStreamResult(task, data.getInputStream(), data.getCacheValidator(), resumeOffset, indispensableState);
         }
     }
 
@@ -162,20 +414,49 @@ public class NetEngine extends Engine {
         if (exception != null){
             getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(), exception, getComponentManager().getLogger());
         }
-        handleFailed(task);
+        handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
     }
 
     private void onResultCanceled(Task task, IndispensableState indispensableState) {
-        handleCanceled(task);
+        handleCanceled(task, TaskMetrics.Reason.NETWORK_CANCELED);
+    }
+
+    /**
+     * 304 Not Modified, refresh the validator of disk cache entry, the tasks return to DiskEngine
+     * @param task task
+     * @param cacheValidator validator of response, nullable
+     */
+    private void onNotModifiedResult(Task task, CacheValidator cacheValidator){
+        CacheValidator storedValidator = task.getCacheValidator();
+        if (storedValidator == null){
+            //not a conditional request
+            getComponentManager().getServerSettings().getExceptionHandler().onNetworkLoadException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(), task.getTaskInfo(),
+                    new Exception("[TILoader:NetworkLoadHandler]unexpected 304 Not Modified, without conditional request"), getComponentManager().getLogger());
+            handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
+            return;
+        }
+        notModifiedCount.incrementAndGet();
+        getComponentManager().getDiskCacheServer().refresh(task, storedValidator.merge(cacheValidator));
+        history.put(task.getResourceKey());
+        recordNetworkFinish(task, null);
+        TaskGroup group = taskGroups.remove(task.getResourceKey());
+        if (group == null){
+            return;
+        }
+        for (Task t : group.getSet()) {
+            returnToDiskEngine(t);
+        }
+        group.getSet().clear();
     }
 
     /**
      * @param task task
      * @param bytes image bytes data
+     * @param cacheValidator validator of response, nullable
      */
-    private void onBytesResult(Task task, byte[] bytes, IndispensableState indispensableState){
+    private void onBytesResult(Task task, byte[] bytes, CacheValidator cacheValidator, IndispensableState indispensableState){
         //try to write disk cache
-        getComponentManager().getDiskCacheServer().write(task, bytes);
+        getComponentManager().getDiskCacheServer().write(task, bytes, cacheValidator);
         //handle data
         handleImageData(task, bytes, null);
     }
@@ -183,8 +464,10 @@ public class NetEngine extends Engine {
     /**
      * @param task task
      * @param inputStream image input stream
+     * @param cacheValidator validator of response, nullable
+     * @param resumeOffset start position of partial content, 0 if whole resource
      */
-    private void onInputStreamResult(Task task, InputStream inputStream, IndispensableState indispensableState){
+    private void onInputStreamResult(Task task, InputStream inputStream, CacheValidator cacheValidator, long resumeOffset, IndispensableState indispensableState){
         //cancel loading if image data out of limit
         if (task.getLoadProgress().total() > getComponentManager().getServerSettings().getImageDataLengthLimit()){
             getComponentManager().getServerSettings().getExceptionHandler().onImageDataLengthOutOfLimitException(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
@@ -193,28 +476,58 @@ public class NetEngine extends Engine {
                 inputStream.close();
             } catch (IOException ignored) {
             }
-            handleCanceled(task);
+            handleCanceled(task, TaskMetrics.Reason.DATA_LENGTH_LIMIT);
             return;
         }
+        //decode while downloading, not for partial content
+        StreamingDecoder streamingDecoder = null;
+        if (streamingDecodeExecutor != null && task.getType() != Stub.Type.PRELOAD_DISK && resumeOffset == 0) {
+            streamingDecoder = new StreamingDecoder(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
+                    getComponentManager().getServerSettings().getImageResourceHandler(), getComponentManager().getLogger(), task, getDecodeHandler(task));
+            if (streamingDecoder.start(streamingDecodeExecutor)) {
+                inputStream = streamingDecoder.tee(inputStream);
+            } else {
+                streamingDecoder = null;
+            }
+        }
         //try to write disk cache
-        LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig = getComponentManager().getServerSettings().getLowNetworkSpeedStrategy().getConfigure(getComponentManager().getApplicationContextImage(), indispensableState);
+        LowNetworkSpeedStrategy.Configure lowNetworkSpeedConfig = getComponentManager().getServerSettings().getLowNetworkSpeedStrategy().getConfigure(getComponentManager().getApplicationContextImage(), indispensableState,
+                task.getLoadProgress().total() > 0 ? task.getLoadProgress().total() - resumeOffset : task.getLoadProgress().total());
         if (getComponentManager().getLogger().checkEnable(TLogger.DEBUG)) {
             getComponentManager().getLogger().d("[NetEngine]LowNetworkSpeedStrategy:" + lowNetworkSpeedConfig.getType() + ", task:" + task);
         }
-        DiskCacheServer.Result result = getComponentManager().getDiskCacheServer().write(task, inputStream, lowNetworkSpeedConfig);
+        DiskCacheServer.Result result;
+        try {
+            result = getComponentManager().getDiskCacheServer().write(task, inputStream, cacheValidator, resumeOffset, lowNetworkSpeedConfig);
+        } catch (RuntimeException e) {
+            if (streamingDecoder != null) {
+                streamingDecoder.abort();
+            }
+            throw e;
+        }
+        //result of streaming decode
+        ImageResource streamedResource = null;
+        if (streamingDecoder != null) {
+            if (result.getType() == DiskCacheServer.ResultType.SUCCEED || result.getType() == DiskCacheServer.ResultType.RETURN_MEMORY_BUFFER) {
+                streamingDecoder.finish();
+                streamedResource = streamingDecoder.await(getNetworkReadTimeout(task));
+            } else {
+                streamingDecoder.abort();
+            }
+        }
         switch (result.getType()){
             case SUCCEED:
-                handleImageData(task, null, result.getTargetFile());
+                handleImageData(task, null, result.getTargetFile(), streamedResource);
                 break;
             case RETURN_MEMORY_BUFFER:
-                handleImageData(task, result.getMemoryBuffer(), null);
+                handleImageData(task, result.getMemoryBuffer(), null, streamedResource);
                 break;
             case CANCELED:
-                handleCanceled(task);
+                handleCanceled(task, TaskMetrics.Reason.NETWORK_CANCELED);
                 break;
             case FAILED:
             default:
-                handleFailed(task);
+                handleFailed(task, TaskMetrics.Reason.NETWORK_FAILED);
                 break;
         }
     }
@@ -224,50 +537,198 @@ public class NetEngine extends Engine {
      */
 
     private void handleImageData(Task task, byte[] bytes, File file){
-        //add resource key to history if loaded succeed
-        history.put(task.getResourceKey());
-        //get group
-        TaskGroup group = taskGroups.remove(task.getResourceKey());
-        if (group == null){
-            return;
+        handleImageData(task, bytes, file, null);
+    }
+
+    /**
+     * <p>the tasks of group are decoded in decode stage ({@link DecodeServer}), the network thread takes the next download immediately.</p>
+     *
+     * <p>The tasks with the same key are decoded once. The variants (different size) are decoded in parallel, the smaller
+     * variants which can be derived from the largest one are downscaled from it instead of decoding again ({@link VariantPlan}).</p>
+     *
+     * @param file target file of {@link DiskCacheServer#write}, the disk cache is held until all decode jobs finished, nullable
+     * @param streamedResource decoded by {@link StreamingDecoder} for the task (not for other tasks in group), nullable
+     */
+    private void handleImageData(Task task, byte[] bytes, File file, ImageResource streamedResource){
+        DecodeSource source = new DecodeSource(task, bytes, file);
+        try {
+            //add resource key to history if loaded succeed
+            history.put(task.getResourceKey());
+            recordNetworkFinish(task, null);
+            if (task.getCacheValidator() != null){
+                //200 of conditional request
+                modifiedCount.incrementAndGet();
+            }
+            //get group
+            TaskGroup group = taskGroups.remove(task.getResourceKey());
+            if (group == null){
+                if (streamedResource != null){
+                    TILoaderUtils.recycleImageResource(streamedResource);
+                }
+                return;
+            }
+            VariantPlan plan = VariantPlan.of(group.getSet(), streamedResource != null ? task : null);
+            group.getSet().clear();
+            for (Task t : plan.getPreloadDiskTasks()) {
+                //preload to disk only, no decoding
+                responseSucceed(t);
+            }
+            //the variant of the task has been decoded while downloading
+            if (streamedResource != null){
+                if (plan.getStreamedVariant() != null){
+                    onDecoded(plan.getStreamedVariant(), streamedResource);
+                } else {
+                    //not used
+                    TILoaderUtils.recycleImageResource(streamedResource);
+                }
+            }
+            if (plan.getLargest() == null){
+                return;
+            }
+            //the largest variant is decoded from source, the smaller ones are derived from it, others are decoded in parallel
+            for (List<Task> variant : plan.getDecodedVariants()) {
+                dispatchDecode(variant, null, source);
+            }
+            dispatchDecode(plan.getLargest(), plan.getDerivedVariants(), source);
+        } finally {
+            source.release();
         }
-        for (Task t : group.getSet()) {
-            //decode
-            ImageResource imageResource = decode(t, bytes, file);
-            if (imageResource == null) {
+    }
+
+    /**
+     * decode variant in decode stage and respond, then derive the smaller variants from it, each in its own job.
+     * the source is pinned (referenced) until all variants derived, because the memory cache may recycle (or reuse) it.
+     */
+    private void dispatchDecode(final List<Task> variant, final List<List<Task>> derivedVariants, final DecodeSource decodeSource){
+        decodeSource.retain();
+        getComponentManager().getDecodeServer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Task source = variant.get(0);
+                    ImageResource imageResource = decode(source, decodeSource);
+                    if (derivedVariants == null || derivedVariants.size() <= 0){
+                        onDecoded(variant, imageResource);
+                        return;
+                    }
+                    if (imageResource == null){
+                        onDecoded(variant, null);
+                        //decode from source
+                        for (List<Task> derivedVariant : derivedVariants) {
+                            dispatchDecode(derivedVariant, null, decodeSource);
+                        }
+                        return;
+                    }
+                    final Object pin = new Object();
+                    getComponentManager().getMemoryCacheServer().acquire(pin, source.getKey(), imageResource);
+                    onDecoded(variant, imageResource);
+                    AtomicInteger remaining = new AtomicInteger(derivedVariants.size());
+                    for (List<Task> derivedVariant : derivedVariants) {
+                        dispatchDerive(derivedVariant, source, imageResource, pin, remaining, decodeSource);
+                    }
+                } finally {
+                    decodeSource.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * derive variant from the pinned source in decode stage, decode from source if can't be derived.
+     * the source is unpinned after the last variant derived.
+     */
+    private void dispatchDerive(final List<Task> variant, final Task source, final ImageResource sourceResource, final Object pin,
+                                final AtomicInteger remaining, final DecodeSource decodeSource){
+        decodeSource.retain();
+        getComponentManager().getDecodeServer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ImageResource derivedResource = derive(variant.get(0), source, sourceResource);
+                    //decode from source if can't be derived
+                    onDecoded(variant, derivedResource != null ? derivedResource : decode(variant.get(0), decodeSource));
+                } finally {
+                    if (remaining.decrementAndGet() <= 0){
+                        getComponentManager().getMemoryCacheServer().release(pin, sourceResource);
+                    }
+                    decodeSource.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * @param imageResource decoded image, null if decoding failed
+     */
+    private void onDecoded(List<Task> variant, ImageResource imageResource){
+        if (imageResource == null) {
+            for (Task t : variant) {
+                if (t.getMetrics() != null){
+                    t.getMetrics().setReason(TaskMetrics.Reason.DECODE_FAILED);
+                }
                 responseFailed(t);
-                continue;
             }
-            //cache by memory
-            getComponentManager().getMemoryCacheServer().put(t.getKey(), imageResource);
+            return;
+        }
+        Task task = variant.get(0);
+        //cache decoded image in background, pinned before putting into memory cache, the bitmap may be recycled (or reused) after that
+        getComponentManager().getDecodedDiskCacheServer().writeAsync(task, imageResource);
+        //cache by memory, the tasks with same key share the image
+        getComponentManager().getMemoryCacheServer().put(task.getKey(), imageResource);
+        int bitmapBytes = getComponentManager().getServerSettings().getImageResourceHandler().byteCountOf(imageResource);
+        for (Task t : variant) {
+            if (t.getMetrics() != null){
+                t.getMetrics().setBitmapBytes(bitmapBytes);
+            }
             responseSucceed(t);
         }
-        group.getSet().clear();
     }
 
-    private void handleFailed(Task task){
+    private void handleFailed(Task task, TaskMetrics.Reason reason){
+        recordNetworkFinish(task, reason);
         TaskGroup group = taskGroups.remove(task.getResourceKey());
         if (group == null){
             return;
         }
         for (Task t : group.getSet()) {
+            if (t.getCacheValidator() != null){
+                //revalidation failed, display the expired entry
+                staleCount.incrementAndGet();
+                returnToDiskEngine(t);
+                continue;
+            }
+            if (t.getMetrics() != null){
+                t.getMetrics().setReason(reason);
+            }
             responseFailed(t);
         }
         group.getSet().clear();
     }
 
-    private void handleCanceled(Task task){
+    private void handleCanceled(Task task, TaskMetrics.Reason reason){
+        recordNetworkFinish(task, reason);
         TaskGroup group = taskGroups.remove(task.getResourceKey());
         if (group == null){
             return;
         }
         for (Task t : group.getSet()) {
+            if (t.getCacheValidator() != null){
+                //revalidation canceled, display the expired entry
+                staleCount.incrementAndGet();
+                returnToDiskEngine(t);
+                continue;
+            }
+            if (t.getMetrics() != null){
+                t.getMetrics().setReason(reason);
+            }
             responseCanceled(t);
         }
         group.getSet().clear();
     }
 
-    private ImageResource decode(Task task, byte[] bytes, File file){
+    private ImageResource decode(Task task, DecodeSource source){
+        byte[] bytes = source.bytes;
+        File file = source.file;
         ImageResource imageResource = null;
         try {
             //dispatch type
@@ -293,15 +754,67 @@ public class NetEngine extends Engine {
         return imageResource;
     }
 
+    /**
+     * @return derived image, null if it can't be derived (decode from file/bytes instead)
+     */
+    private ImageResource derive(Task task, Task source, ImageResource sourceResource){
+        ImageResource imageResource;
+        try {
+            imageResource = getDecodeHandler(task).derive(getComponentManager().getApplicationContextImage(), getComponentManager().getContextImage(),
+                    task, source, sourceResource, getComponentManager().getLogger());
+        } catch (Exception e) {
+            getComponentManager().getLogger().e("[NetEngine]deriving failed, decode from source instead, task:" + task, e);
+            return null;
+        }
+        if (imageResource != null && !getComponentManager().getServerSettings().getImageResourceHandler().isValid(imageResource)){
+            return null;
+        }
+        return imageResource;
+    }
+
+    /**
+     * bytes transferred and network time, of the task which executed the network loading (not merged tasks)
+     * @param reason reason of failure, null if succeed
+     */
+    private void recordNetworkFinish(Task task, TaskMetrics.Reason reason){
+        if (task.getMetrics() != null){
+            task.getMetrics().markNetworkFinish(task.getLoadProgress().loaded());
+        }
+        if (concurrencyController != null){
+            //timeout or low network speed
+            boolean congested = reason == TaskMetrics.Reason.NETWORK_FAILED || reason == TaskMetrics.Reason.NETWORK_CANCELED;
+            EngineScheduler.LaneInfo laneInfo = getComponentManager().getEngineScheduler().getLaneInfo(Type.NETWORK_ENGINE);
+            boolean saturated = laneInfo != null && laneInfo.getRunning() + laneInfo.getLent() >= laneInfo.getCap();
+            if (concurrencyController.onSample(task.getLoadProgress().loaded(), task.getLoadProgress().elapse(), congested, saturated)){
+                //more slots
+                ignite();
+            }
+        }
+    }
+
     /*********************************************************************
      * response
      */
 
     private void responseSucceed(Task task){
+        if (task.getMetrics() != null){
+            task.getMetrics().setSource(TaskMetrics.Source.NETWORK);
+        }
         task.setState(Task.State.SUCCEED);
         response(task);
     }
 
+    /**
+     * the task (revalidated or revalidation failed) loads the disk cache entry
+     */
+    private void returnToDiskEngine(Task task){
+        task.setCacheValidator(null);
+        task.setRevalidated(true);
+        task.setServerType(Server.Type.DISK_ENGINE);
+        task.setState(Task.State.STAND_BY);
+        response(task);
+    }
+
     private void responseFailed(Task task){
         task.setState(Task.State.FAILED);
         response(task);
@@ -318,9 +831,20 @@ public class NetEngine extends Engine {
 
     @Override
     protected int getMaxThread() {
+        if (concurrencyController != null){
+            return concurrencyController.getConcurrency();
+        }
         return getComponentManager().getServerSettings().getNetworkLoadMaxThread();
     }
 
+    @Override
+    protected int getMaxThreadLimit() {
+        if (concurrencyController != null){
+            return concurrencyController.getMaxConcurrency();
+        }
+        return getMaxThread();
+    }
+
     @Override
     public Type getServerType() {
         return Type.NETWORK_ENGINE;
@@ -359,4 +883,32 @@ public class NetEngine extends Engine {
 
     }
 
+    /**
+     * source data shared by the decode jobs of a group, the disk cache of file is held until the last job finished
+     */
+    private class DecodeSource{
+
+        private final Task task;
+        private final byte[] bytes;
+        private final File file;
+        private final AtomicInteger references = new AtomicInteger(1);//referenced by handleImageData
+
+        private DecodeSource(Task task, byte[] bytes, File file) {
+            this.task = task;
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        public void retain(){
+            references.incrementAndGet();
+        }
+
+        public void release(){
+            if (references.decrementAndGet() == 0 && file != null){
+                getComponentManager().getDiskCacheServer().releaseFile(task);
+            }
+        }
+
+    }
+
 }
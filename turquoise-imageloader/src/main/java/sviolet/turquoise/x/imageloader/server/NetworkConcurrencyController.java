@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Adaptive concurrency of network lane (ServerSettings->setNetworkLoadAdaptive), AIMD with latency gradient.</p>
+ *
+ * <p>The finished network loadings (bytes, time, congested or not) are aggregated per window (at least
+ * {@value WINDOW_MILLIS}ms and {@value MIN_WINDOW_SAMPLES} samples), the aggregate throughput and the average latency
+ * of window decide the concurrency of next window:<br/>
+ * 1.congested (timeout / low network speed) loadings reach {@value CONGESTED_RATIO} of window: multiplicative decrease.<br/>
+ * 2.lane is saturated, latency is close to the minimum latency, throughput is not dropped: additive increase.<br/>
+ * 3.latency grows (queueing on the link) while throughput is not growing: decrease by one.<br/>
+ * The concurrency is always between the configured bounds.</p>
+ *
+ * <p>The changes of concurrency are recorded, see {@link #getHistory()} / {@link #getReport()}.</p>
+ *
+ * Created by S.Violet on 2017/12/7.
+ */
+public class NetworkConcurrencyController {
+
+    private static final long WINDOW_MILLIS = 2000L;
+    private static final int MIN_WINDOW_SAMPLES = 2;
+    private static final float CONGESTED_RATIO = 0.25f;
+    private static final float DECREASE_FACTOR = 0.5f;
+    private static final float LATENCY_TOLERANCE = 2f;//latency > minLatency * tolerance means queueing
+    private static final float THROUGHPUT_TOLERANCE = 0.05f;
+    private static final int MIN_LATENCY_RESET_WINDOWS = 30;//re-measure min latency periodically, the link may change
+    private static final int HISTORY_SIZE = 16;
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long startTime = System.currentTimeMillis();
+    private volatile int concurrency;
+
+    //guarded by lock
+    private long windowStart = 0;
+    private int samples = 0;
+    private int congested = 0;
+    private boolean saturated = false;
+    private long bytes = 0;
+    private long totalLatency = 0;
+    private int windowCount = 0;
+    private long lastThroughput = 0;
+    private long lastLatency = 0;
+    private long minLatency = 0;
+    private final LinkedList<Record> history = new LinkedList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param minConcurrency min concurrency, >=1
+     * @param maxConcurrency max concurrency, >=minConcurrency
+     * @param initialConcurrency initial concurrency, limited by min/max
+     */
+    public NetworkConcurrencyController(int minConcurrency, int maxConcurrency, int initialConcurrency) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency){
+            throw new RuntimeException("[NetworkConcurrencyController]illegal bounds, min:" + minConcurrency + ", max:" + maxConcurrency);
+        }
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = Math.max(minConcurrency, Math.min(maxConcurrency, initialConcurrency));
+        history.add(new Record(0, concurrency, 0, 0));
+    }
+
+    /**
+     * @return current concurrency of network lane
+     */
+    public int getConcurrency(){
+        return concurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * record a finished network loading
+     * @param loadedBytes bytes transferred
+     * @param elapse time of loading, millis
+     * @param congested true if the loading timeout or canceled by low network speed
+     * @param saturated true if all slots of network lane are occupied
+     * @return true if concurrency increased (more tasks can be dispatched)
+     */
+    public boolean onSample(long loadedBytes, long elapse, boolean congested, boolean saturated){
+        return onSample(loadedBytes, elapse, congested, saturated, System.currentTimeMillis());
+    }
+
+    /**
+     * record a finished network loading at the given time, the controller can be driven by simulated clock
+     * @param currentTime time of the loading finished, millis
+     */
+    boolean onSample(long loadedBytes, long elapse, boolean congested, boolean saturated, long currentTime){
+        if (elapse <= 0){
+            return false;
+        }
+        try {
+            lock.lock();
+            if (samples <= 0){
+                //window starts from the beginning of first loading, skip the idle time
+                windowStart = currentTime - elapse;
+            }
+            samples++;
+            bytes += Math.max(0, loadedBytes);
+            totalLatency += elapse;
+            if (congested){
+                this.congested++;
+            }
+            if (saturated){
+                this.saturated = true;
+            }
+            if (currentTime - windowStart < WINDOW_MILLIS || samples < MIN_WINDOW_SAMPLES){
+                return false;
+            }
+            return adjust(currentTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * guarded by lock
+     */
+    private boolean adjust(long currentTime){
+        long throughput = bytes * 1000 / Math.max(1, currentTime - windowStart);
+        long latency = totalLatency / samples;
+        boolean congestedWindow = congested > 0 && congested >= samples * CONGESTED_RATIO;
+        windowCount++;
+        //the latency of congested window is not the latency of link, re-measure in the next window
+        if (minLatency <= 0 || latency < minLatency || (windowCount >= MIN_LATENCY_RESET_WINDOWS && !congestedWindow)){
+            minLatency = latency;
+            windowCount = 0;
+        }
+        int current = concurrency;
+        int next = current;
+        if (congestedWindow){
+            next = (int) (current * DECREASE_FACTOR);
+        } else if (saturated && latency <= minLatency * LATENCY_TOLERANCE && throughput >= lastThroughput * (1f - THROUGHPUT_TOLERANCE)){
+            next = current + 1;
+        } else if (latency > minLatency * LATENCY_TOLERANCE && throughput <= lastThroughput * (1f + THROUGHPUT_TOLERANCE)){
+            next = current - 1;
+        }
+        next = Math.max(minConcurrency, Math.min(maxConcurrency, next));
+        lastThroughput = throughput;
+        lastLatency = latency;
+        //next window
+        samples = 0;
+        congested = 0;
+        saturated = false;
+        bytes = 0;
+        totalLatency = 0;
+        if (next == current){
+            return false;
+        }
+        concurrency = next;
+        history.add(new Record(currentTime - startTime, next, throughput, latency));
+        if (history.size() > HISTORY_SIZE){
+            history.removeFirst();
+        }
+        return next > current;
+    }
+
+    /**
+     * @return the latest changes of concurrency (at most {@value HISTORY_SIZE}), the first one may be the initial concurrency
+     */
+    public List<Record> getHistory(){
+        try {
+            lock.lock();
+            return new ArrayList<>(history);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return report of concurrency: current / bounds / throughput and latency of last window / history of changes
+     */
+    public String getReport(){
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            lock.lock();
+            stringBuilder.append("concurrency:");
+            stringBuilder.append(concurrency);
+            stringBuilder.append("(");
+            stringBuilder.append(minConcurrency);
+            stringBuilder.append("-");
+            stringBuilder.append(maxConcurrency);
+            stringBuilder.append(") throughput:");
+            stringBuilder.append(lastThroughput / 1024);
+            stringBuilder.append("KB/s latency:");
+            stringBuilder.append(lastLatency);
+            stringBuilder.append("ms minLatency:");
+            stringBuilder.append(minLatency);
+            stringBuilder.append("ms history:");
+            for (Record record : history) {
+                stringBuilder.append(record);
+            }
+            stringBuilder.append(" ");
+        } finally {
+            lock.unlock();
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * change of concurrency
+     */
+    public static class Record {
+
+        private final long time;
+        private final int concurrency;
+        private final long throughput;
+        private final long latency;
+
+        private Record(long time, int concurrency, long throughput, long latency) {
+            this.time = time;
+            this.concurrency = concurrency;
+            this.throughput = throughput;
+            this.latency = latency;
+        }
+
+        /**
+         * @return time since initialized, millis
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return concurrency after changed
+         */
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return aggregate throughput of the window which caused the change, bytes/s
+         */
+        public long getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * @return average latency of the window which caused the change, millis
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (time / 1000) + "s:" + concurrency + "]";
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.turquoise.x.imageloader.entity.CacheValidator;
+import sviolet.turquoise.x.imageloader.entity.ResumeInfo;
+
+/**
+ * <p>Side area of disk cache (sub directory "partial" of disk cache path), keeps the partial downloads
+ * for resuming (ServerSettings->setResumableDownload).</p>
+ *
+ * <p>Each partial download has a data file ({resourceKey}.part) and a meta file ({resourceKey}.meta, length of whole
+ * resource, resuming attempts and {@link CacheValidator}). The partial download is discarded if outdated
+ * ({@value EXPIRE_TIME}ms), or resuming failed {@value MAX_ATTEMPTS} times. The oldest ones are discarded
+ * if the area is out of size.</p>
+ *
+ * Created by S.Violet on 2017/12/9.
+ */
+class PartialDownloadStore {
+
+    private static final String SUB_PATH = "partial";
+    private static final String DATA_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".meta";
+    private static final String CHARSET = "UTF-8";
+    private static final String SEPARATOR = "\n";
+    private static final long EXPIRE_TIME = 24 * 60 * 60 * 1000L;//24h
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final File directory;
+    private final long maxSize;
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    /**
+     * @param diskCachePath path of disk cache
+     * @param maxSize max size of side area
+     */
+    PartialDownloadStore(File diskCachePath, long maxSize) {
+        this.directory = new File(diskCachePath, SUB_PATH);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * take the partial download for resuming, the attempts increased
+     * @param resourceKey resource key
+     * @return null if not exists, or discarded
+     */
+    ResumeInfo take(String resourceKey) throws IOException {
+        File dataFile = getDataFile(resourceKey);
+        File metaFile = getMetaFile(resourceKey);
+        if (!dataFile.exists() || !metaFile.exists()){
+            remove(resourceKey);
+            return null;
+        }
+        ResumeInfo resumeInfo = readMeta(metaFile, dataFile.length());
+        if (resumeInfo == null ||
+                resumeInfo.getOffset() <= 0 ||
+                resumeInfo.getOffset() >= resumeInfo.getTotal() ||
+                resumeInfo.getAttempts() >= MAX_ATTEMPTS ||
+                System.currentTimeMillis() - dataFile.lastModified() > EXPIRE_TIME){
+            remove(resourceKey);
+            return null;
+        }
+        writeMeta(resourceKey, resumeInfo.getTotal(), resumeInfo.getCacheValidator(), resumeInfo.getAttempts() + 1);
+        return resumeInfo;
+    }
+
+    /**
+     * @return data file of partial download, the directory is created
+     */
+    File prepareDataFile(String resourceKey) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()){
+            throw new IOException("[TILoader:PartialDownloadStore]can not create directory:" + directory.getAbsolutePath());
+        }
+        return getDataFile(resourceKey);
+    }
+
+    /**
+     * keep the partial download (written into data file) for resuming
+     * @param resourceKey resource key
+     * @param total length of whole resource
+     * @param cacheValidator validator of resource, nonnull
+     * @param attempts resuming attempts, reset if progressed
+     */
+    void keep(String resourceKey, long total, CacheValidator cacheValidator, int attempts) throws IOException {
+        File dataFile = getDataFile(resourceKey);
+        if (!dataFile.exists() || dataFile.length() <= 0 || dataFile.length() >= total){
+            //nothing to resume, or longer than the resource (not the same resource, or broken)
+            remove(resourceKey);
+            return;
+        }
+        writeMeta(resourceKey, total, cacheValidator, attempts);
+        trim();
+    }
+
+    /**
+     * @param partialValidator validator of partial download
+     * @param responseValidator validator of partial content response (206), nullable
+     * @return false if the resource has been changed since the partial download, or it can't be compared
+     */
+    static boolean isSameResource(CacheValidator partialValidator, CacheValidator responseValidator){
+        if (responseValidator == null || !responseValidator.hasValidator()){
+            //the server doesn't return validator, trust the If-Range of request
+            return true;
+        }
+        if (partialValidator.getETag() != null && responseValidator.getETag() != null){
+            return partialValidator.getETag().equals(responseValidator.getETag());
+        }
+        if (partialValidator.getLastModified() != null && responseValidator.getLastModified() != null){
+            return partialValidator.getLastModified().equals(responseValidator.getLastModified());
+        }
+        return false;
+    }
+
+    void remove(String resourceKey){
+        deleteFile(getDataFile(resourceKey));
+        deleteFile(getMetaFile(resourceKey));
+    }
+
+    /**
+     * discard the oldest partial downloads if the area is out of size
+     */
+    private void trim(){
+        try {
+            trimLock.lock();
+            File[] files = directory.listFiles();
+            if (files == null){
+                return;
+            }
+            long size = 0;
+            for (File file : files) {
+                size += file.length();
+            }
+            if (size <= maxSize){
+                return;
+            }
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File file1, File file2) {
+                    long diff = file1.lastModified() - file2.lastModified();
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            });
+            for (File file : files) {
+                if (size <= maxSize){
+                    break;
+                }
+                String name = file.getName();
+                if (!name.endsWith(DATA_SUFFIX)){
+                    continue;
+                }
+                size -= file.length();
+                String resourceKey = name.substring(0, name.length() - DATA_SUFFIX.length());
+                size -= getMetaFile(resourceKey).length();
+                remove(resourceKey);
+            }
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    private ResumeInfo readMeta(File metaFile, long offset) throws IOException {
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(metaFile);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int readLength;
+            while ((readLength = inputStream.read(buffer)) >= 0){
+                outputStream.write(buffer, 0, readLength);
+            }
+            String[] values = new String(outputStream.toByteArray(), CHARSET).split(SEPARATOR, 3);
+            if (values.length < 3){
+                return null;
+            }
+            CacheValidator cacheValidator = CacheValidator.decode(values[2].getBytes(CHARSET));
+            if (cacheValidator == null || !cacheValidator.hasValidator()){
+                return null;
+            }
+            return new ResumeInfo(offset, Long.parseLong(values[0]), cacheValidator, Integer.parseInt(values[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            if (inputStream != null){
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void writeMeta(String resourceKey, long total, CacheValidator cacheValidator, int attempts) throws IOException {
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(getMetaFile(resourceKey));
+            outputStream.write((total + SEPARATOR + attempts + SEPARATOR).getBytes(CHARSET));
+            outputStream.write(cacheValidator.encode());
+        } finally {
+            if (outputStream != null){
+                try {
+                    outputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private File getDataFile(String resourceKey){
+        return new File(directory, resourceKey + DATA_SUFFIX);
+    }
+
+    private File getMetaFile(String resourceKey){
+        return new File(directory, resourceKey + META_SUFFIX);
+    }
+
+    private void deleteFile(File file){
+        if (file.exists() && !file.delete()){
+            file.deleteOnExit();
+        }
+    }
+
+}
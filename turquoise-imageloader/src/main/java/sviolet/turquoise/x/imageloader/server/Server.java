@@ -34,9 +34,11 @@ public interface Server {
     enum Type{
         MEMORY_CACHE,
         DISK_CACHE,
+        DECODED_DISK_CACHE,
         MEMORY_ENGINE,
         DISK_ENGINE,
-        NETWORK_ENGINE
+        NETWORK_ENGINE,
+        DECODE
     }
 
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import android.content.Context;
+
+import sviolet.turquoise.util.common.DateTimeUtilsForAndroid;
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.handler.DecodeHandler;
+import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
+import sviolet.turquoise.x.imageloader.node.Task;
+
+/**
+ * <p>Decode while downloading (ServerSettings->setStreamingDecodeEnabled)</p>
+ *
+ * <p>The network stream is teed ({@link #tee(InputStream)}): the data is written to disk cache by DiskCacheServer as usual,
+ * and copied to an in-memory pipe at the same time. The decoder thread decodes from the pipe
+ * ({@link DecodeHandler#decode(android.content.Context, android.content.Context, Task, InputStream, TLogger)}),
+ * so that decoding is overlapped with downloading, instead of decoding from file after downloaded.</p>
+ *
+ * <p>The data consumed by decoder is released from the pipe. If decoder doesn't support the data (e.g. gif),
+ * or decoding failed, {@link #await(long)} returns null, and the image will be decoded from file/bytes as usual.</p>
+ *
+ * Created by S.Violet on 2017/11/21.
+ */
+class StreamingDecoder implements Runnable {
+
+    private final Context applicationContext;
+    private final Context context;
+    private final ImageResourceHandler imageResourceHandler;
+    private final TLogger logger;
+    private final Task task;
+    private final DecodeHandler decodeHandler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataCondition = lock.newCondition();
+    private final Condition doneCondition = lock.newCondition();
+
+    //pipe
+    private final LinkedList<byte[]> chunks = new LinkedList<>();
+    private boolean writeFinished = false;
+    private boolean writeAborted = false;
+    private boolean readClosed = false;
+
+    //result
+    private ImageResource result;
+    private boolean decodeDone = false;
+    private boolean abandoned = false;
+
+    //statistic
+    private long startTime;
+    private long downloadElapse = -1;
+    private long firstDataElapse = -1;
+    private long decodeElapse = -1;
+
+    StreamingDecoder(Context applicationContext, Context context, ImageResourceHandler imageResourceHandler, TLogger logger, Task task, DecodeHandler decodeHandler) {
+        this.applicationContext = applicationContext;
+        this.context = context;
+        this.imageResourceHandler = imageResourceHandler;
+        this.logger = logger;
+        this.task = task;
+        this.decodeHandler = decodeHandler;
+    }
+
+    /**
+     * start decoder thread
+     * @return false if executor is busy, streaming decode skipped
+     */
+    boolean start(Executor executor){
+        startTime = DateTimeUtilsForAndroid.getUptimeMillis();
+        try {
+            executor.execute(this);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param source network stream
+     * @return stream which copies data to decoder while reading
+     */
+    InputStream tee(InputStream source){
+        return new TeeInputStream(source);
+    }
+
+    /**
+     * all data has been downloaded
+     */
+    void finish(){
+        try {
+            lock.lock();
+            writeFinished = true;
+            if (downloadElapse < 0) {
+                downloadElapse = DateTimeUtilsForAndroid.getUptimeMillis() - startTime;
+            }
+            dataCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * downloading failed/canceled, decoder will be stopped, result will be dropped
+     */
+    void abort(){
+        try {
+            lock.lock();
+            writeAborted = true;
+            abandoned = true;
+            chunks.clear();
+            dataCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        recycleAbandonedResult();
+    }
+
+    /**
+     * waiting for decoding result, invoke after {@link #finish()}
+     * @param timeout timeout in millis, the decoder will be abandoned if timeout
+     * @return ImageResource, null if streaming decode failed or not supported (decode from file/bytes instead)
+     */
+    ImageResource await(long timeout){
+        try {
+            lock.lock();
+            long remain = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (!decodeDone && remain > 0) {
+                remain = doneCondition.awaitNanos(remain);
+            }
+            if (!decodeDone) {
+                abandoned = true;
+                writeAborted = true;
+                dataCondition.signalAll();
+                return null;
+            }
+        } catch (InterruptedException e) {
+            abandoned = true;
+            writeAborted = true;
+            dataCondition.signalAll();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+        if (logger.checkEnable(TLogger.DEBUG)) {
+            logger.d("[StreamingDecoder]download elapse:" + downloadElapse + ", first data elapse:" + firstDataElapse +
+                    ", decode complete elapse:" + decodeElapse + ", succeed:" + (result != null) + ", task:" + task);
+        }
+        return result;
+    }
+
+    @Override
+    public void run() {
+        ImageResource imageResource = null;
+        InputStream inputStream = new PipeInputStream();
+        try {
+            imageResource = decodeHandler.decode(applicationContext, context, task, inputStream, logger);
+            if (imageResource != null && !imageResourceHandler.isValid(imageResource)){
+                imageResource = null;
+            }
+        } catch (Exception e) {
+            //decode from file/bytes instead
+            if (logger.checkEnable(TLogger.DEBUG)) {
+                logger.d("[StreamingDecoder]streaming decode failed, decode from file/bytes instead, task:" + task + ", e:" + e);
+            }
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        try {
+            lock.lock();
+            result = imageResource;
+            decodeDone = true;
+            decodeElapse = DateTimeUtilsForAndroid.getUptimeMillis() - startTime;
+            doneCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        recycleAbandonedResult();
+    }
+
+    private void recycleAbandonedResult(){
+        ImageResource resourceToRecycle = null;
+        try {
+            lock.lock();
+            if (abandoned && decodeDone && result != null) {
+                resourceToRecycle = result;
+                result = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (resourceToRecycle != null) {
+            imageResourceHandler.recycle(resourceToRecycle);
+        }
+    }
+
+    private void write(byte[] buffer, int offset, int length){
+        if (length <= 0) {
+            return;
+        }
+        try {
+            lock.lock();
+            if (readClosed || writeAborted) {
+                //decoder has stopped, drop data
+                return;
+            }
+            byte[] chunk = new byte[length];
+            System.arraycopy(buffer, offset, chunk, 0, length);
+            chunks.addLast(chunk);
+            dataCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * copies data to pipe while reading
+     */
+    private class TeeInputStream extends InputStream {
+
+        private final InputStream source;
+
+        private TeeInputStream(InputStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = source.read();
+            if (value >= 0) {
+                write(new byte[]{(byte) value}, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int readLength = source.read(buffer, offset, length);
+            write(buffer, offset, readLength);
+            return readLength;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    /**
+     * reading side of pipe, blocks until data arrives
+     */
+    private class PipeInputStream extends InputStream {
+
+        private byte[] current;
+        private int position;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int readLength = read(single, 0, 1);
+            return readLength < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length <= 0) {
+                return 0;
+            }
+            if (current == null || position >= current.length) {
+                current = take();
+                position = 0;
+                if (current == null) {
+                    return -1;
+                }
+            }
+            int readLength = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, readLength);
+            position += readLength;
+            return readLength;
+        }
+
+        private byte[] take() throws IOException {
+            try {
+                lock.lock();
+                while (true) {
+                    if (writeAborted) {
+                        throw new IOException("[TILoader:StreamingDecoder]downloading aborted");
+                    }
+                    if (!chunks.isEmpty()) {
+                        if (firstDataElapse < 0) {
+                            firstDataElapse = DateTimeUtilsForAndroid.getUptimeMillis() - startTime;
+                        }
+                        return chunks.removeFirst();
+                    }
+                    if (writeFinished) {
+                        return null;
+                    }
+                    dataCondition.await();
+                }
+            } catch (InterruptedException e) {
+                throw new IOException("[TILoader:StreamingDecoder]interrupted", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.lock();
+                readClosed = true;
+                chunks.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
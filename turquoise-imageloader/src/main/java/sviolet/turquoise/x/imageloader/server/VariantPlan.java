@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.node.Task;
+import sviolet.turquoise.x.imageloader.stub.Stub;
+
+/**
+ * <p>Decoding plan of a downloaded task group (NetEngine): the tasks with the same key are one variant (decoded once),
+ * the largest variant is decoded from source, the smaller ones are derived from it if derivable, the others are
+ * decoded from source in parallel.</p>
+ *
+ * Created by S.Violet on 2017/12/12.
+ */
+class VariantPlan {
+
+    private final List<Task> preloadDiskTasks = new ArrayList<>();
+    private List<Task> streamedVariant;
+    private List<Task> largest;
+    private final List<List<Task>> derivedVariants = new ArrayList<>();
+    private final List<List<Task>> decodedVariants = new ArrayList<>();
+
+    /**
+     * @param tasks tasks of group
+     * @param streamedTask the task decoded while downloading (StreamingDecoder), its variant needn't decoding, nullable
+     */
+    static VariantPlan of(Collection<Task> tasks, Task streamedTask){
+        VariantPlan plan = new VariantPlan();
+        //deduplicate by key, extracting task takes the image away from memory cache, can not be shared
+        Map<String, List<Task>> variants = new LinkedHashMap<>();
+        for (Task t : tasks) {
+            if (t.getType() == Stub.Type.PRELOAD_DISK){
+                //preload to disk only, no decoding
+                plan.preloadDiskTasks.add(t);
+                continue;
+            }
+            String variantKey = t.getType() == Stub.Type.EXTRACT ? t.getKey() + "@" + System.identityHashCode(t) : t.getKey();
+            List<Task> variant = variants.get(variantKey);
+            if (variant == null){
+                variant = new ArrayList<>(1);
+                variants.put(variantKey, variant);
+            }
+            variant.add(t);
+        }
+        //the variant of the task has been decoded while downloading
+        if (streamedTask != null){
+            for (Map.Entry<String, List<Task>> entry : variants.entrySet()) {
+                if (entry.getValue().contains(streamedTask)){
+                    plan.streamedVariant = variants.remove(entry.getKey());
+                    break;
+                }
+            }
+        }
+        //the largest variant is decoded from source
+        for (List<Task> variant : variants.values()) {
+            if (plan.largest == null || compareSize(variant.get(0), plan.largest.get(0)) > 0){
+                plan.largest = variant;
+            }
+        }
+        if (plan.largest == null){
+            return plan;
+        }
+        //the image of extracting task is taken away (may be recycled by receiver), can't be the source of deriving
+        boolean derivable = plan.largest.get(0).getType() != Stub.Type.EXTRACT;
+        for (List<Task> variant : variants.values()) {
+            if (variant == plan.largest){
+                continue;
+            }
+            if (derivable && isDerivable(variant.get(0), plan.largest.get(0))){
+                plan.derivedVariants.add(variant);
+            } else {
+                plan.decodedVariants.add(variant);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return PRELOAD_DISK tasks, respond at once
+     */
+    List<Task> getPreloadDiskTasks() {
+        return preloadDiskTasks;
+    }
+
+    /**
+     * @return variant of the task decoded while downloading, null if the task is not given or not found
+     */
+    List<Task> getStreamedVariant() {
+        return streamedVariant;
+    }
+
+    /**
+     * @return the largest variant, decoded from source, null if no variant to decode
+     */
+    List<Task> getLargest() {
+        return largest;
+    }
+
+    /**
+     * @return variants derived from the largest one
+     */
+    List<List<Task>> getDerivedVariants() {
+        return derivedVariants;
+    }
+
+    /**
+     * @return variants decoded from source, besides the largest one
+     */
+    List<List<Task>> getDecodedVariants() {
+        return decodedVariants;
+    }
+
+    /**
+     * @return positive if task1 requires larger size than task2, SIZE_MATCH_RESOURCE (origin size) is the largest
+     */
+    private static int compareSize(Task task1, Task task2){
+        long size1 = sizeOf(task1);
+        long size2 = sizeOf(task2);
+        return size1 > size2 ? 1 : (size1 < size2 ? -1 : 0);
+    }
+
+    private static long sizeOf(Task task){
+        int reqWidth = task.getParams().getReqWidth();
+        int reqHeight = task.getParams().getReqHeight();
+        if (reqWidth <= Params.SIZE_MATCH_RESOURCE || reqHeight <= Params.SIZE_MATCH_RESOURCE){
+            return Long.MAX_VALUE;
+        }
+        return (long) reqWidth * reqHeight;
+    }
+
+    /**
+     * whether the variant is smaller than source in both dimensions, the DecodeHandler makes the final decision
+     */
+    private static boolean isDerivable(Task task, Task source){
+        int reqWidth = task.getParams().getReqWidth();
+        int reqHeight = task.getParams().getReqHeight();
+        if (reqWidth <= Params.SIZE_MATCH_RESOURCE || reqHeight <= Params.SIZE_MATCH_RESOURCE){
+            return false;
+        }
+        int sourceWidth = source.getParams().getReqWidth();
+        int sourceHeight = source.getParams().getReqHeight();
+        if (sourceWidth <= Params.SIZE_MATCH_RESOURCE || sourceHeight <= Params.SIZE_MATCH_RESOURCE){
+            return true;
+        }
+        return reqWidth <= sourceWidth && reqHeight <= sourceHeight;
+    }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server.module;
+
+import android.graphics.Bitmap;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
+
+/**
+ * <p>Tracks the ImageResources displayed by stubs (reference counted), between stubs and memory cache.</p>
+ *
+ * <p>Stubs acquire the resource when it's displayed, and release it when the stub destroyed (or its node destroyed) or relaunched.
+ * When an entry removed from memory cache, it will be recycled (or put into bitmap pool) only if it's not referenced,
+ * otherwise it will be moved to active set, and recycled when the count reaches zero. The resource
+ * in active set can be recovered to memory cache by key, so that the images on screen will never be reloaded.</p>
+ *
+ * <p>Each reference is held by the stub weakly (registered to a ReferenceQueue), if a stub is collected by GC without
+ * releasing, its references will be released the next time this module is accessed. It's a safety net only,
+ * the references are expected to be released explicitly.</p>
+ *
+ * Created by S.Violet on 2017/11/25.
+ */
+public class ActiveResourceModule {
+
+    //ImageResource doesn't override equals/hashCode, so it's an identity map
+    private final Map<ImageResource, Reference> references = new HashMap<>();
+    //evicted from memory cache, but still referenced
+    private final Map<String, ImageResource> activeSet = new HashMap<>();
+    //holders collected by GC
+    private final ReferenceQueue<Object> collectedHolders = new ReferenceQueue<>();
+
+    private int retainedCount = 0;
+    private int recoveredCount = 0;
+    private int collectedCount = 0;
+
+    private ImageResourceHandler imageResourceHandler;
+    private BitmapPoolModule bitmapPool;
+    private TLogger logger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param bitmapPool bitmaps released will be put into pool for reusing, nullable
+     */
+    public ActiveResourceModule(ImageResourceHandler imageResourceHandler, BitmapPoolModule bitmapPool, TLogger logger) {
+        this.imageResourceHandler = imageResourceHandler;
+        this.bitmapPool = bitmapPool;
+        this.logger = logger;
+    }
+
+    /*****************************************************************************
+     * function
+     */
+
+    /**
+     * increase reference count of resource
+     * @param holder the stub which displays the resource, held weakly
+     * @param key key of resource in memory cache
+     */
+    public void acquire(Object holder, String key, ImageResource resource){
+        if (holder == null || key == null || resource == null){
+            return;
+        }
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            Reference reference = references.get(resource);
+            if (reference == null){
+                reference = new Reference(key);
+                references.put(resource, reference);
+            }
+            reference.holders.add(new HolderReference(holder, resource, collectedHolders));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * decrease reference count of resource, the resource will be recycled if it has been removed from memory cache
+     * and the count reaches zero
+     * @param holder the stub which displayed the resource
+     */
+    public void release(Object holder, ImageResource resource){
+        if (holder == null || resource == null){
+            return;
+        }
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            Reference reference = references.get(resource);
+            if (reference == null){
+                return;
+            }
+            Iterator<HolderReference> iterator = reference.holders.iterator();
+            while (iterator.hasNext()){
+                HolderReference holderReference = iterator.next();
+                if (holderReference.get() == holder){
+                    iterator.remove();
+                    holderReference.clear();
+                    break;
+                }
+            }
+            onReleased(resource, reference);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * invoked by memory cache when the entry removed, recycle it if not referenced, otherwise move it to active set
+     * @param key key of resource in memory cache
+     */
+    public void onRemoved(String key, ImageResource resource){
+        if (resource == null){
+            return;
+        }
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            Reference reference = references.get(resource);
+            if (reference == null || reference.holders.size() <= 0){
+                recycle(resource);
+                return;
+            }
+            reference.evicted = true;
+            activeSet.put(key, resource);
+            retainedCount++;
+        } finally {
+            lock.unlock();
+        }
+        if (logger.checkEnable(TLogger.DEBUG)) {
+            logger.d("[ActiveResourceModule]resource removed from memory cache but still referenced, move to active set, key:" + key);
+        }
+    }
+
+    /**
+     * get the resource which has been removed from memory cache but still referenced, and remove it from active set.
+     * the caller should put it back to memory cache.
+     * @return null if not found
+     */
+    public ImageResource recover(String key){
+        if (key == null){
+            return null;
+        }
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            ImageResource resource = activeSet.remove(key);
+            if (resource == null){
+                return null;
+            }
+            Reference reference = references.get(resource);
+            if (reference == null || !imageResourceHandler.isValid(resource)){
+                return null;
+            }
+            reference.evicted = false;
+            recoveredCount++;
+            return resource;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the resource is displayed by stubs (reference count > 0)
+     */
+    public boolean isReferenced(ImageResource resource){
+        if (resource == null){
+            return false;
+        }
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            Reference reference = references.get(resource);
+            return reference != null && reference.holders.size() > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * forget the resources in active set (no longer recoverable), they will be recycled when released
+     */
+    public void clear(){
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            activeSet.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getReport(){
+        try {
+            lock.lock();
+            expungeCollectedHolders();
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("[Active]: ");
+            stringBuilder.append(references.size());
+            stringBuilder.append("referenced ");
+            stringBuilder.append(activeSet.size());
+            stringBuilder.append("evicted retained:");
+            stringBuilder.append(retainedCount);
+            stringBuilder.append(" recovered:");
+            stringBuilder.append(recoveredCount);
+            stringBuilder.append(" collected:");
+            stringBuilder.append(collectedCount);
+            stringBuilder.append(" ");
+            return stringBuilder.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*****************************************************************************
+     * private
+     */
+
+    /**
+     * release the references of the stubs which have been collected by GC without releasing.
+     * lock before invoke
+     */
+    private void expungeCollectedHolders(){
+        java.lang.ref.Reference<?> polled;
+        while ((polled = collectedHolders.poll()) != null){
+            HolderReference holderReference = (HolderReference) polled;
+            Reference reference = references.get(holderReference.resource);
+            //released before collected
+            if (reference == null || !reference.holders.remove(holderReference)){
+                continue;
+            }
+            collectedCount++;
+            onReleased(holderReference.resource, reference);
+        }
+    }
+
+    /**
+     * recycle if no stub references it and it has been removed from memory cache.
+     * lock before invoke
+     */
+    private void onReleased(ImageResource resource, Reference reference){
+        if (reference.holders.size() > 0){
+            return;
+        }
+        references.remove(resource);
+        if (reference.evicted){
+            if (activeSet.get(reference.key) == resource){
+                activeSet.remove(reference.key);
+            }
+            recycle(resource);
+        }
+    }
+
+    /**
+     * put bitmap into pool for reusing if possible, otherwise recycle it
+     */
+    private void recycle(ImageResource imageResource){
+        if (bitmapPool != null && imageResource.getType() == ImageResource.Type.BITMAP
+                && imageResource.getResource() instanceof Bitmap){
+            if (bitmapPool.put((Bitmap) imageResource.getResource())){
+                return;
+            }
+        }
+        imageResourceHandler.recycle(imageResource);
+    }
+
+    private static class Reference {
+
+        private final String key;
+        private final List<HolderReference> holders = new ArrayList<>(1);
+        private boolean evicted = false;
+
+        private Reference(String key) {
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * weak reference to the holder (stub), keeps the resource it references
+     */
+    private static class HolderReference extends WeakReference<Object> {
+
+        private final ImageResource resource;
+
+        private HolderReference(Object holder, ImageResource resource, ReferenceQueue<Object> queue) {
+            super(holder, queue);
+            this.resource = resource;
+        }
+
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server.module;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.turquoise.util.bitmap.BitmapUtils;
+import sviolet.turquoise.util.droid.DeviceUtils;
+import sviolet.turquoise.utilx.tlogger.TLogger;
+
+/**
+ * <p>Bitmap pool for TILoader, holds the bitmaps evicted from memory cache and not displayed ({@link ActiveResourceModule}),
+ * and provides them to decoder for reusing (BitmapFactory.Options.inBitmap), reduces GC churn.</p>
+ *
+ * <p>Bitmaps are bucketed by config and allocation byte count, only mutable bitmaps are accepted (API >= 19).
+ * The pool has its own byte budget, the earliest bitmap will be recycled when the budget exceeded.</p>
+ *
+ * Created by S.Violet on 2017/11/24.
+ */
+public class BitmapPoolModule implements BitmapUtils.InBitmapProvider {
+
+    //the candidate's allocation byte count can't be larger than MAX_SIZE_MULTIPLE * required byte count
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final Map<Bitmap.Config, TreeMap<Integer, LinkedList<Bitmap>>> buckets = new HashMap<>();
+    private final LinkedList<Bitmap> evictionQueue = new LinkedList<>();//earliest first
+
+    private final int maxSize;
+    private int size = 0;
+
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int putCount = 0;
+    private int evictionCount = 0;
+
+    private final TLogger logger;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param maxSize byte budget of pool
+     * @param logger logger
+     */
+    public BitmapPoolModule(int maxSize, TLogger logger) {
+        if (maxSize <= 0){
+            throw new RuntimeException("[BitmapPoolModule]maxSize must > 0");
+        }
+        this.maxSize = maxSize;
+        this.logger = logger;
+    }
+
+    /*****************************************************************************
+     * function
+     */
+
+    /**
+     * put bitmap into pool
+     * @param bitmap bitmap evicted from memory cache
+     * @return true if the bitmap is accepted, false if the bitmap can't be reused (you should recycle it by yourself)
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public boolean put(Bitmap bitmap){
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null || DeviceUtils.getVersionSDK() < Build.VERSION_CODES.KITKAT){
+            return false;
+        }
+        int byteCount = bitmap.getAllocationByteCount();
+        //too large
+        if (byteCount > maxSize >> 1){
+            return false;
+        }
+        List<Bitmap> evicted;
+        try {
+            lock.lock();
+            TreeMap<Integer, LinkedList<Bitmap>> bucket = buckets.get(bitmap.getConfig());
+            if (bucket == null){
+                bucket = new TreeMap<>();
+                buckets.put(bitmap.getConfig(), bucket);
+            }
+            LinkedList<Bitmap> list = bucket.get(byteCount);
+            if (list == null){
+                list = new LinkedList<>();
+                bucket.put(byteCount, list);
+            }
+            list.add(bitmap);
+            evictionQueue.add(bitmap);
+            size += byteCount;
+            putCount++;
+            evicted = trimToSizeInner(maxSize);
+        } finally {
+            lock.unlock();
+        }
+        recycle(evicted);
+        return true;
+    }
+
+    /**
+     * get a reusable bitmap from pool, the bitmap will be removed from pool
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    @Override
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0 || config == null){
+            return null;
+        }
+        int required = BitmapUtils.getByteCount(width, height, config);
+        try {
+            lock.lock();
+            TreeMap<Integer, LinkedList<Bitmap>> bucket = buckets.get(config);
+            Map.Entry<Integer, LinkedList<Bitmap>> entry = bucket != null ? bucket.ceilingEntry(required) : null;
+            if (entry == null || entry.getKey() > required * MAX_SIZE_MULTIPLE){
+                missCount++;
+                return null;
+            }
+            Bitmap bitmap = entry.getValue().removeLast();
+            if (entry.getValue().isEmpty()){
+                bucket.remove(entry.getKey());
+            }
+            evictionQueue.remove(bitmap);
+            size -= entry.getKey();
+            hitCount++;
+            return bitmap;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * recycle bitmaps until the size of pool less than maxSize
+     */
+    public void trimToSize(int maxSize){
+        List<Bitmap> evicted;
+        try {
+            lock.lock();
+            evicted = trimToSizeInner(maxSize);
+        } finally {
+            lock.unlock();
+        }
+        recycle(evicted);
+        logger.d(getReport());
+    }
+
+    /**
+     * recycle all bitmaps in pool
+     */
+    public void clear(){
+        trimToSize(0);
+    }
+
+    /**
+     * trim pool on memory pressure
+     * @param level level of ComponentCallbacks2.onTrimMemory
+     */
+    public void trimMemory(int level){
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL){
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW){
+            trimToSize(maxSize >> 1);
+        }
+    }
+
+    public String getReport() {
+        try {
+            lock.lock();
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("[BitmapPool]: ");
+            stringBuilder.append(size / 1024);
+            stringBuilder.append("K/");
+            stringBuilder.append(maxSize / 1024);
+            stringBuilder.append("K ");
+            stringBuilder.append(evictionQueue.size());
+            stringBuilder.append("pcs hit:");
+            stringBuilder.append(hitCount);
+            stringBuilder.append(" miss:");
+            stringBuilder.append(missCount);
+            stringBuilder.append(" put:");
+            stringBuilder.append(putCount);
+            stringBuilder.append(" evicted:");
+            stringBuilder.append(evictionCount);
+            stringBuilder.append(" ");
+            return stringBuilder.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int maxSize(){
+        return maxSize;
+    }
+
+    public int getHitCount(){
+        return hitCount;
+    }
+
+    public int getMissCount(){
+        return missCount;
+    }
+
+    /*****************************************************************************
+     * private
+     */
+
+    /**
+     * lock before invoke
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private List<Bitmap> trimToSizeInner(int maxSize){
+        List<Bitmap> evicted = null;
+        while (size > maxSize && !evictionQueue.isEmpty()){
+            Bitmap bitmap = evictionQueue.removeFirst();
+            int byteCount = bitmap.getAllocationByteCount();
+            TreeMap<Integer, LinkedList<Bitmap>> bucket = buckets.get(bitmap.getConfig());
+            if (bucket != null){
+                LinkedList<Bitmap> list = bucket.get(byteCount);
+                if (list != null){
+                    list.remove(bitmap);
+                    if (list.isEmpty()){
+                        bucket.remove(byteCount);
+                    }
+                }
+            }
+            size -= byteCount;
+            evictionCount++;
+            if (evicted == null){
+                evicted = new ArrayList<>();
+            }
+            evicted.add(bitmap);
+        }
+        return evicted;
+    }
+
+    private void recycle(List<Bitmap> bitmaps){
+        if (bitmaps == null){
+            return;
+        }
+        for (Bitmap bitmap : bitmaps){
+            bitmap.recycle();
+        }
+    }
+
+}
@@ -19,16 +19,22 @@
 
 package sviolet.turquoise.x.imageloader.server.module;
 
+import android.content.Context;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import sviolet.thistle.model.cache.DiskLruCache;
 import sviolet.thistle.model.thread.LazySingleThreadPool;
 import sviolet.turquoise.util.droid.ApplicationUtils;
+import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.ComponentManager;
+import sviolet.turquoise.x.imageloader.handler.ExceptionHandler;
 import sviolet.turquoise.x.imageloader.node.Task;
 import sviolet.turquoise.x.imageloader.server.Server;
 
@@ -37,117 +43,95 @@ import sviolet.turquoise.x.imageloader.server.Server;
  *
  * <p>disk cache will close if server is idle for a long time</p>
  *
+ * <p>In persistent mode (ServerSettings->setDiskCachePersistent), disk cache keeps open for the whole process lifetime,
+ * and the journal writes are coalesced into batches (flush when {@value FLUSH_THRESHOLD} modifications pending,
+ * or 5s after the first pending modification).</p>
+ *
+ * <p>The disk cache can be split into shards (ServerSettings->setDiskCacheShards), each shard has its own directory,
+ * journal, lock and size budget (disk cache size / shards), the resource is routed to shard by hash of resource key.
+ * The edits of different shards are not serialized by a single journal.</p>
+ *
  * Created by S.Violet on 2016/3/22.
  */
 public class DiskCacheModule implements ComponentManager.Component, Server {
 
     public static final int BUFFER_SIZE = 8 * 1024;
 
+    protected static final int VALUE_COUNT = 1;
+    protected static final int INDEX_DATA = 0;//image data
+    private static final String META_KEY_SUFFIX = "_meta";//sidecar entry of CacheValidator, key: resource key + suffix
+
     private static final int DEFAULT_APP_VERSION = 1;
+    private static final String SHARD_PATH_PREFIX = "shard-";
     private static final long PAUSE_DELAY_NANOS = 20 * 1000000000L;//20s to pause diskCache
     private static final long FAILED_REOPEN_INTERVAL = 10 * 1000L;//10s, reopen if open failed before
+    private static final long FLUSH_DELAY_NANOS = 5 * 1000000000L;//5s to flush journal, persistent mode
+    private static final int FLUSH_THRESHOLD = 16;//flush journal immediately if modifications reach it, persistent mode
 
     private ComponentManager manager;
+    private File path;
+    private ExceptionHandler exceptionHandler;
+    private TLogger logger;
 
     private int appVersion = DEFAULT_APP_VERSION;
 
-    private DiskLruCache diskLruCache;
-    private Status status = Status.UNINITIALIZED;
+    private Shard[] shards = {new Shard(null, 0, Status.UNINITIALIZED)};
     private AtomicBoolean isHealthy = new AtomicBoolean(true);
-    private int holdCounter = 0;
-    private long lastOpenFailedTime = 0;//last open failed time
+    private AtomicBoolean isLegacyCleaned = new AtomicBoolean(false);
+    private boolean persistent = false;
+
+    //statistic
+    private AtomicInteger openCount = new AtomicInteger(0);
+    private AtomicInteger closeCount = new AtomicInteger(0);
+    private AtomicInteger flushCount = new AtomicInteger(0);
+    private AtomicLong flushTimeNanos = new AtomicLong(0);
+    private AtomicLong maxFlushTimeNanos = new AtomicLong(0);
 
     private LazySingleThreadPool dispatchThreadPool;
-    private ReentrantLock statusLock = new ReentrantLock();
 
     @Override
     public void init(ComponentManager manager) {
         this.manager = manager;
-        this.dispatchThreadPool = new LazySingleThreadPool("TLoader-DiskCacheModule-%d");
         if (manager.getServerSettings().isWipeDiskCacheWhenUpdate() && manager.getApplicationContextImage() != null){
             this.appVersion = ApplicationUtils.getAppVersionCode(manager.getApplicationContextImage());
         }
-        status = Status.PAUSE;
-        manager.getLogger().i("[DiskCacheServer]initial, diskCacheSize:" + (manager.getServerSettings().getDiskCacheSize() / 1024) + "K");
+        init(manager.getServerSettings().getDiskCachePath(), manager.getServerSettings().getDiskCacheSize(), manager.getServerSettings().getDiskCacheShards(),
+                manager.getServerSettings().isDiskCachePersistent(), manager.getServerSettings().getExceptionHandler(), manager.getLogger());
     }
 
     /**
-     * try to open disk cache if is closed
-     * @return true: disk cache ok
+     * initialize without ComponentManager (e.g. JVM benchmark), the contexts passed to ExceptionHandler are null
      */
-    private boolean openCache(){
-        Exception commonException = null;
-        Exception openException = null;
-        try{
-            statusLock.lock();
-            switch (status){
-                case UNINITIALIZED:
-                    commonException = new RuntimeException("[TILoader:DiskCacheModule]can not use disk cache before initialize");
-                    break;
-                case PAUSE:
-                    holdCounter++;
-                    try {
-                        diskLruCache = DiskLruCache.open(manager.getServerSettings().getDiskCachePath(), appVersion, 1, manager.getServerSettings().getDiskCacheSize());
-                        status = Status.READY;
-                        manager.getLogger().d("[DiskCacheServer]ready");
-                        return true;
-                    } catch (IOException e) {
-                        status = Status.DISABLE;
-                        lastOpenFailedTime = System.currentTimeMillis();//record time
-                        openException = e;
-                    }
-                    break;
-                case READY:
-                    holdCounter++;
-                    return true;
-                case DISABLE:
-                    if ((System.currentTimeMillis() - lastOpenFailedTime) < FAILED_REOPEN_INTERVAL) {
-                        commonException = new RuntimeException("[TILoader:DiskCacheModule]can not use disk cache which has been disabled (open failed)");
-                    }else{
-                        status = Status.PAUSE;
-                        manager.getLogger().d("[DiskCacheServer]re-open (open is failed before)");
-                    }
-                    break;
-                default:
-                    commonException = new RuntimeException("[TILoader:DiskCacheModule]illegal status");
-                    break;
+    void init(File path, int diskCacheSize, int shardCount, boolean persistent, ExceptionHandler exceptionHandler, TLogger logger) {
+        this.path = path;
+        this.exceptionHandler = exceptionHandler;
+        this.logger = logger;
+        this.dispatchThreadPool = new LazySingleThreadPool("TLoader-DiskCacheModule-%d");
+        this.persistent = persistent;
+        //shards
+        int shardSize = diskCacheSize / shardCount;
+        Shard[] shards = new Shard[shardCount];
+        if (shardCount == 1){
+            //not sharded, compatible with previous version
+            shards[0] = new Shard(path, shardSize, Status.PAUSE);
+        } else {
+            for (int i = 0 ; i < shardCount ; i++){
+                shards[i] = new Shard(new File(path, SHARD_PATH_PREFIX + i), shardSize, Status.PAUSE);
             }
-        }finally {
-            statusLock.unlock();
-        }
-        if (openException != null){
-            manager.getServerSettings().getExceptionHandler().onDiskCacheOpenException(manager.getApplicationContextImage(), manager.getContextImage(), openException, manager.getLogger());
-        }
-        if (commonException != null){
-            manager.getServerSettings().getExceptionHandler().onDiskCacheCommonException(manager.getApplicationContextImage(), manager.getContextImage(), commonException, manager.getLogger());
         }
-        return false;
+        this.shards = shards;
+        logger.i("[DiskCacheServer]initial, diskCacheSize:" + (diskCacheSize / 1024) + "K, shards:" + shardCount + ", persistent:" + persistent);
     }
 
     /**
-     * try to close disk cache, release resource
+     * @return the shard of resource, routed by hash of resource key
      */
-    private void closeCache(){
-        DiskLruCache diskLruCacheToClose = null;
-        try{
-            statusLock.lock();
-            if (status == Status.READY && holdCounter <= 0){
-                diskLruCacheToClose = this.diskLruCache;
-                this.diskLruCache = null;
-                status = Status.PAUSE;
-                holdCounter = 0;
-            }
-        }finally {
-            statusLock.unlock();
-        }
-        if (diskLruCacheToClose != null) {
-            try {
-                diskLruCacheToClose.close();
-                manager.getLogger().d("[DiskCacheServer]pause");
-            } catch (IOException e) {
-                manager.getServerSettings().getExceptionHandler().onDiskCacheCommonException(manager.getApplicationContextImage(), manager.getContextImage(), e, manager.getLogger());
-            }
+    private Shard getShard(Task task){
+        Shard[] shards = this.shards;
+        if (shards.length == 1){
+            return shards[0];
         }
+        return shards[(task.getResourceKey().hashCode() & Integer.MAX_VALUE) % shards.length];
     }
 
     /**
@@ -155,49 +139,129 @@ public class DiskCacheModule implements ComponentManager.Component, Server {
      * @return file of image disk cache
      */
     protected File get(Task task){
-        if (openCache()){
+        return get(task, task.getResourceKey());
+    }
+
+    /**
+     * @param task task
+     * @return file of sidecar entry (CacheValidator), in the same shard as image
+     */
+    protected File getMeta(Task task){
+        return get(task, task.getResourceKey() + META_KEY_SUFFIX);
+    }
+
+    private File get(Task task, String cacheKey){
+        Shard shard = getShard(task);
+        if (shard.openCache()){
             try{
-                return diskLruCache.getFile(task.getResourceKey(), 0);
+                return shard.diskLruCache.getFile(cacheKey, INDEX_DATA);
             } catch (IOException e) {
-                manager.getServerSettings().getExceptionHandler().onDiskCacheReadException(manager.getApplicationContextImage(), manager.getContextImage(), task.getTaskInfo(), e, manager.getLogger());
+                exceptionHandler.onDiskCacheReadException(getApplicationContextImage(), getContextImage(), task.getTaskInfo(), e, logger);
             }
         }
         return null;
     }
 
     protected DiskLruCache.Editor edit(Task task){
-        if (openCache()){
+        return edit(task, task.getResourceKey());
+    }
+
+    /**
+     * @param task task
+     * @return editor of sidecar entry (CacheValidator), in the same shard as image
+     */
+    protected DiskLruCache.Editor editMeta(Task task){
+        return edit(task, task.getResourceKey() + META_KEY_SUFFIX);
+    }
+
+    private DiskLruCache.Editor edit(Task task, String cacheKey){
+        Shard shard = getShard(task);
+        if (shard.openCache()){
             try{
-                return diskLruCache.edit(task.getResourceKey());
+                return shard.diskLruCache.edit(cacheKey);
             } catch (IOException e) {
-                manager.getServerSettings().getExceptionHandler().onDiskCacheReadException(manager.getApplicationContextImage(), manager.getContextImage(), task.getTaskInfo(), e, manager.getLogger());
+                exceptionHandler.onDiskCacheReadException(getApplicationContextImage(), getContextImage(), task.getTaskInfo(), e, logger);
             }
         }
         return null;
     }
 
     /**
-     * release holding of disk cache, might have close disk cache
+     * remove sidecar entry (CacheValidator), the holding of disk cache is released
+     * @param task task
      */
-    protected void release(){
-        try {
-            DiskLruCache diskLruCacheToFlush = this.diskLruCache;
-            if (diskLruCacheToFlush != null) {
-                diskLruCacheToFlush.flush();
+    protected void removeMeta(Task task){
+        Shard shard = getShard(task);
+        if (shard.openCache()){
+            try{
+                shard.diskLruCache.remove(task.getResourceKey() + META_KEY_SUFFIX);
+            } catch (IOException e) {
+                exceptionHandler.onDiskCacheWriteException(getApplicationContextImage(), getContextImage(), task.getTaskInfo(), e, logger);
             }
-        } catch (IOException e) {
-            manager.getServerSettings().getExceptionHandler().onDiskCacheCommonException(manager.getApplicationContextImage(), manager.getContextImage(), e, manager.getLogger());
+            release(task, true);
+        }
+    }
+
+    /**
+     * release holding of disk cache, might have close disk cache (except persistent mode)
+     * @param task task, the same as get/edit
+     * @param modified true if cache has been modified (edited), journal need to be flushed
+     */
+    protected void release(Task task, boolean modified){
+        getShard(task).release(modified);
+    }
+
+    /**
+     * The disk cache files of previous shard setting (e.g. not sharded -> sharded) will never be used, delete them.
+     */
+    private void cleanLegacy(){
+        if (!isLegacyCleaned.compareAndSet(false, true)){
+            return;
         }
-        try{
-            statusLock.lock();
-            holdCounter--;
-            if (holdCounter < 0) {
-                holdCounter = 0;
+        File[] files = path.listFiles();
+        if (files == null){
+            return;
+        }
+        int shardCount = shards.length;
+        for (File file : files){
+            try {
+                if (shardCount > 1 && file.isFile()){
+                    //journal and entries of not sharded cache
+                    if (!file.delete()) {
+                        throw new IOException("[TILoader:DiskCacheModule]failed to delete legacy file:" + file);
+                    }
+                } else if (file.isDirectory() && file.getName().startsWith(SHARD_PATH_PREFIX) && !isShardPath(file)){
+                    //shard of previous setting
+                    DiskLruCache.deleteContents(file);
+                    if (!file.delete()) {
+                        throw new IOException("[TILoader:DiskCacheModule]failed to delete legacy shard:" + file);
+                    }
+                }
+            } catch (IOException e) {
+                exceptionHandler.onDiskCacheCommonException(getApplicationContextImage(), getContextImage(), e, logger);
+                return;
+            }
+        }
+    }
+
+    private boolean isShardPath(File file){
+        for (Shard shard : shards){
+            if (shard.path.equals(file)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordFlush(long elapse){
+        flushCount.incrementAndGet();
+        flushTimeNanos.addAndGet(elapse);
+        long max;
+        while ((max = maxFlushTimeNanos.get()) < elapse){
+            if (maxFlushTimeNanos.compareAndSet(max, elapse)){
+                break;
             }
-        }finally {
-            statusLock.unlock();
         }
-        tryToClose();
     }
 
     private void tryToClose() {
@@ -205,16 +269,244 @@ public class DiskCacheModule implements ComponentManager.Component, Server {
         dispatchThreadPool.execute(dispatchRunnable);
     }
 
+    private Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            LockSupport.parkNanos(FLUSH_DELAY_NANOS);
+            for (Shard shard : shards) {
+                if (shard.pendingModifications.get() > 0) {
+                    shard.flush();
+                }
+            }
+        }
+    };
+
     private Runnable dispatchRunnable = new Runnable() {
         @Override
         public void run() {
             LockSupport.parkNanos(PAUSE_DELAY_NANOS);
-            closeCache();
+            for (Shard shard : shards) {
+                shard.closeCache();
+            }
         }
     };
 
+    /**
+     * <p>A shard of disk cache, has its own directory, journal and lock</p>
+     */
+    private class Shard {
+
+        private final File path;
+        private final int size;
+
+        private DiskLruCache diskLruCache;
+        private Status status;
+        private int holdCounter = 0;
+        private long lastOpenFailedTime = 0;//last open failed time
+        private AtomicInteger pendingModifications = new AtomicInteger(0);
+
+        private ReentrantLock statusLock = new ReentrantLock();
+
+        private Shard(File path, int size, Status status) {
+            this.path = path;
+            this.size = size;
+            this.status = status;
+        }
+
+        /**
+         * try to open disk cache if is closed
+         * @return true: disk cache ok
+         */
+        private boolean openCache(){
+            Exception commonException = null;
+            Exception openException = null;
+            try{
+                statusLock.lock();
+                switch (status){
+                    case UNINITIALIZED:
+                        commonException = new RuntimeException("[TILoader:DiskCacheModule]can not use disk cache before initialize");
+                        break;
+                    case PAUSE:
+                        holdCounter++;
+                        try {
+                            cleanLegacy();
+                            diskLruCache = DiskLruCache.open(path, appVersion, VALUE_COUNT, size);
+                            status = Status.READY;
+                            openCount.incrementAndGet();
+                            logger.d("[DiskCacheServer]ready, path:" + path);
+                            return true;
+                        } catch (IOException e) {
+                            status = Status.DISABLE;
+                            lastOpenFailedTime = System.currentTimeMillis();//record time
+                            openException = e;
+                        }
+                        break;
+                    case READY:
+                        holdCounter++;
+                        return true;
+                    case DISABLE:
+                        if ((System.currentTimeMillis() - lastOpenFailedTime) < FAILED_REOPEN_INTERVAL) {
+                            commonException = new RuntimeException("[TILoader:DiskCacheModule]can not use disk cache which has been disabled (open failed)");
+                        }else{
+                            status = Status.PAUSE;
+                            logger.d("[DiskCacheServer]re-open (open is failed before), path:" + path);
+                        }
+                        break;
+                    default:
+                        commonException = new RuntimeException("[TILoader:DiskCacheModule]illegal status");
+                        break;
+                }
+            }finally {
+                statusLock.unlock();
+            }
+            if (openException != null){
+                exceptionHandler.onDiskCacheOpenException(getApplicationContextImage(), getContextImage(), openException, logger);
+            }
+            if (commonException != null){
+                exceptionHandler.onDiskCacheCommonException(getApplicationContextImage(), getContextImage(), commonException, logger);
+            }
+            return false;
+        }
+
+        /**
+         * try to close disk cache, release resource
+         */
+        private void closeCache(){
+            DiskLruCache diskLruCacheToClose = null;
+            try{
+                statusLock.lock();
+                if (status == Status.READY && holdCounter <= 0){
+                    diskLruCacheToClose = this.diskLruCache;
+                    this.diskLruCache = null;
+                    status = Status.PAUSE;
+                    holdCounter = 0;
+                }
+            }finally {
+                statusLock.unlock();
+            }
+            if (diskLruCacheToClose != null) {
+                try {
+                    diskLruCacheToClose.close();
+                    closeCount.incrementAndGet();
+                    logger.d("[DiskCacheServer]pause, path:" + path);
+                } catch (IOException e) {
+                    exceptionHandler.onDiskCacheCommonException(getApplicationContextImage(), getContextImage(), e, logger);
+                }
+            }
+        }
+
+        /**
+         * close disk cache even if held, statusLock must be held by the invoker
+         */
+        private void forceClose(){
+            if (status != Status.READY){
+                return;
+            }
+            DiskLruCache diskLruCacheToClose = this.diskLruCache;
+            this.diskLruCache = null;
+            status = Status.PAUSE;
+            holdCounter = 0;
+            pendingModifications.set(0);
+            try {
+                diskLruCacheToClose.close();
+                closeCount.incrementAndGet();
+                logger.d("[DiskCacheServer]closed for wiping, path:" + path);
+            } catch (IOException e) {
+                exceptionHandler.onDiskCacheCommonException(getApplicationContextImage(), getContextImage(), e, logger);
+            }
+        }
+
+        private void release(boolean modified){
+            if (modified) {
+                if (!persistent) {
+                    flush();
+                } else if (pendingModifications.incrementAndGet() >= FLUSH_THRESHOLD) {
+                    //batch is full
+                    flush();
+                } else {
+                    //flush later
+                    dispatchThreadPool.execute(flushRunnable);
+                }
+            }
+            try{
+                statusLock.lock();
+                holdCounter--;
+                if (holdCounter < 0) {
+                    holdCounter = 0;
+                }
+            }finally {
+                statusLock.unlock();
+            }
+            if (!persistent) {
+                tryToClose();
+            }
+        }
+
+        private void flush(){
+            DiskLruCache diskLruCacheToFlush = this.diskLruCache;
+            if (diskLruCacheToFlush == null) {
+                return;
+            }
+            pendingModifications.set(0);
+            long startTime = System.nanoTime();
+            try {
+                diskLruCacheToFlush.flush();
+            } catch (IOException e) {
+                exceptionHandler.onDiskCacheCommonException(getApplicationContextImage(), getContextImage(), e, logger);
+            }
+            recordFlush(System.nanoTime() - startTime);
+        }
+
+    }
+
+    /**
+     * <p>close disk cache of all shards (even if held, persistent mode included), then delete the contents of path.
+     * Disk cache will be reopened lazily when used.</p>
+     *
+     * <p>Make sure TILoader is not loading image, the holders of the closed disk cache will fail.</p>
+     *
+     * @param path directory to delete
+     */
     public void wipe(File path) throws IOException {
-        DiskLruCache.deleteContents(path);
+        Shard[] shards = this.shards;
+        for (Shard shard : shards) {
+            shard.statusLock.lock();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.forceClose();
+            }
+            DiskLruCache.deleteContents(path);
+        } finally {
+            for (Shard shard : shards) {
+                shard.statusLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return report of disk cache io: open/close/flush times and flush time
+     */
+    public String getDiskReport(){
+        int flushes = flushCount.get();
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[DiskCacheServer]DiskReport: ");
+        stringBuilder.append("shards:");
+        stringBuilder.append(shards.length);
+        stringBuilder.append(" persistent:");
+        stringBuilder.append(persistent);
+        stringBuilder.append(" open:");
+        stringBuilder.append(openCount.get());
+        stringBuilder.append(" close:");
+        stringBuilder.append(closeCount.get());
+        stringBuilder.append(" flush:");
+        stringBuilder.append(flushes);
+        stringBuilder.append(" avgFlushTime:");
+        stringBuilder.append(flushes > 0 ? flushTimeNanos.get() / flushes / 1000 : 0);
+        stringBuilder.append("us maxFlushTime:");
+        stringBuilder.append(maxFlushTimeNanos.get() / 1000);
+        stringBuilder.append("us ");
+        return stringBuilder.toString();
     }
 
     public boolean isHealthy(){
@@ -229,6 +521,14 @@ public class DiskCacheModule implements ComponentManager.Component, Server {
         return manager;
     }
 
+    private Context getApplicationContextImage(){
+        return manager != null ? manager.getApplicationContextImage() : null;
+    }
+
+    private Context getContextImage(){
+        return manager != null ? manager.getContextImage() : null;
+    }
+
     @Override
     public Type getServerType() {
         return Type.DISK_CACHE;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+package sviolet.turquoise.x.imageloader.server.module;
+
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+
+/**
+ * <p>ImageResource cache of MemoryCacheServer, {@link ImageResourceCacheModule} by default,
+ * {@link SegmentedImageResourceCacheModule} if ServerSettings->setMemoryCacheSegmented(true).</p>
+ *
+ * Created by S.Violet on 2017/12/13.
+ */
+public interface ImageResourceCache {
+
+    ImageResource get(String key);
+
+    /**
+     * @return null
+     */
+    ImageResource put(String key, ImageResource value);
+
+    /**
+     * remove from cache without recycling
+     * @return the resource removed, null if not found
+     */
+    ImageResource extract(String key);
+
+    /**
+     * remove from cache and recycle (unless referenced by stubs)
+     * @return null
+     */
+    ImageResource remove(String key);
+
+    void removeAll();
+
+    String getMemoryReport();
+
+    int size();
+
+    int maxSize();
+
+    int quantity();
+
+    /**
+     * @return current limit of size, lowered on memory pressure
+     */
+    int limit();
+
+    /**
+     * set limit of size, the entries exceeding will be evicted when next putting (or by {@link #trimToSize})
+     * @param limit (0, maxSize]
+     * @return previous limit
+     */
+    int setLimit(int limit);
+
+    /**
+     * evict the least recently used entries until size <= maxSize
+     */
+    void trimToSize(int maxSize);
+
+    /**
+     * evict the entries which are not displayed by stubs, until size <= maxSize
+     */
+    void trimInvisible(int maxSize);
+
+}
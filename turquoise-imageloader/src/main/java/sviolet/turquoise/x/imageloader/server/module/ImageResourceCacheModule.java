@@ -16,12 +16,15 @@
  * Project GitHub: https://github.com/shepherdviolet/turquoise
  * Email: shepherdviolet@163.com
  */
-
 package sviolet.turquoise.x.imageloader.server.module;
 
 import android.annotation.SuppressLint;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import sviolet.thistle.compat.CompatLruCache;
 import sviolet.turquoise.utilx.tlogger.TLogger;
@@ -31,21 +34,38 @@ import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
 /**
  * <p>ImageResource cache for TILoader</p>
  *
+ * <p>The entries removed from cache are handed to {@link ActiveResourceModule} if given, the resources still displayed
+ * by stubs will not be recycled. The limit of size can be lowered on memory pressure ({@link #setLimit}).</p>
+ *
  * Created by S.Violet on 2016/3/15.
  */
-public class ImageResourceCacheModule extends CompatLruCache<String, ImageResource> {
+public class ImageResourceCacheModule extends CompatLruCache<String, ImageResource> implements ImageResourceCache {
 
     private ImageResourceHandler imageResourceHandler;
+    private ActiveResourceModule activeResources;
     private TLogger logger;
 
+    private final AtomicInteger limit;
+
     /**
      * @param cacheSize cache size
      * @param logger logger
      */
     public ImageResourceCacheModule(int cacheSize, ImageResourceHandler imageResourceHandler, TLogger logger) {
+        this(cacheSize, imageResourceHandler, null, logger);
+    }
+
+    /**
+     * @param cacheSize cache size
+     * @param activeResources entries removed from cache will be handed to it, recycled if not referenced by stubs, nullable (recycle directly)
+     * @param logger logger
+     */
+    public ImageResourceCacheModule(int cacheSize, ImageResourceHandler imageResourceHandler, ActiveResourceModule activeResources, TLogger logger) {
         super(cacheSize);
         this.imageResourceHandler = imageResourceHandler;
+        this.activeResources = activeResources;
         this.logger = logger;
+        this.limit = new AtomicInteger(cacheSize);
     }
 
     /*****************************************************************************
@@ -59,9 +79,11 @@ public class ImageResourceCacheModule extends CompatLruCache<String, ImageResour
         }
         //return ImageResource
         ImageResource imageResource = super.get(key);
-        //exclude invalid ImageResource
+        //exclude invalid ImageResource, only this entry is removed (may be replaced by another thread)
         if (!imageResourceHandler.isValid(imageResource)){
-            remove(key);
+            if (imageResource != null && removeEntry(key, imageResource)) {
+                recycle(key, imageResource);
+            }
             return null;
         }
         return imageResource;
@@ -78,10 +100,14 @@ public class ImageResourceCacheModule extends CompatLruCache<String, ImageResour
             return null;
         }
         //remove previous ImageResource with same key
-        remove(key);
+        ImageResource previous = super.remove(key);
+        if (previous != null && !imageResourceHandler.isEqual(previous, value)) {
+            recycle(key, previous);
+        }
         return super.put(key, value);
     }
 
+    @Override
     public ImageResource extract(String key){
         if (key == null){
             throw new NullPointerException("[TILoader:ImageResourceCacheModule]key must not be null");
@@ -96,31 +122,34 @@ public class ImageResourceCacheModule extends CompatLruCache<String, ImageResour
         }
         ImageResource imageResource = super.remove(key);
         //recycle
-        imageResourceHandler.recycle(imageResource);
+        if (imageResource != null) {
+            recycle(key, imageResource);
+        }
         //return null
         return null;
     }
 
+    @Override
     public void removeAll() {
-        int counter = 0;
-
-        //recycle all
-        for (Map.Entry<String, ImageResource> entry : getMap().entrySet()) {
-            ImageResource imageResource = entry.getValue();
-            if (imageResourceHandler.recycle(imageResource)) {
-                counter++;
-            }
+        List<Map.Entry<String, ImageResource>> removed;
+        synchronized (this) {
+            removed = new ArrayList<Map.Entry<String, ImageResource>>(getMap().entrySet());
+            //clean
+            getMap().clear();
+            setSize(0);
         }
 
-        //clean
-        getMap().clear();
-        setSize(0);
+        //recycle all (except referenced)
+        for (Map.Entry<String, ImageResource> entry : removed) {
+            recycle(entry.getKey(), entry.getValue());
+        }
 
         //打印日志
-        logger.d("[ImageResourceCacheModule]removeAll recycled:" + counter);
+        logger.d("[ImageResourceCacheModule]removeAll removed:" + removed.size());
         logger.d(getMemoryReport());
     }
 
+    @Override
     public String getMemoryReport() {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("[ImageResourceCacheModule]MemoryReport: ");
@@ -134,12 +163,53 @@ public class ImageResourceCacheModule extends CompatLruCache<String, ImageResour
         return stringBuilder.toString();
     }
 
+    @Override
+    public int limit(){
+        return limit.get();
+    }
+
+    @Override
+    public int setLimit(int limit){
+        return this.limit.getAndSet(Math.max(1, Math.min(maxSize(), limit)));
+    }
+
+    @Override
+    public void trimInvisible(int maxSize) {
+        List<Map.Entry<String, ImageResource>> victims = new ArrayList<>();
+        synchronized (this) {
+            //earliest first
+            Iterator<Map.Entry<String, ImageResource>> iterator = getMap().entrySet().iterator();
+            while (size() > maxSize && iterator.hasNext()) {
+                Map.Entry<String, ImageResource> entry = iterator.next();
+                if (activeResources != null && activeResources.isReferenced(entry.getValue())) {
+                    continue;
+                }
+                victims.add(entry);
+                iterator.remove();
+                setSize(size() - safeSizeOf(entry.getKey(), entry.getValue()));
+                setEvictionCount(getEvictionCount() + 1);
+            }
+        }
+        //recycle
+        for (Map.Entry<String, ImageResource> entry : victims) {
+            recycle(entry.getKey(), entry.getValue());
+        }
+        if (victims.size() > 0) {
+            logger.d("[ImageResourceCacheModule]trimInvisible evicted:" + victims.size());
+            logger.d(getMemoryReport());
+        }
+    }
+
     /******************************************************
      * override
      */
 
+    /**
+     * evict the least recently used entries until size <= maxSize (and the current limit)
+     */
     @Override
-    protected void trimToSize(int maxSize) {
+    public void trimToSize(int maxSize) {
+        maxSize = Math.min(maxSize, limit.get());
         while (true) {
             String key;
             ImageResource value;
@@ -176,12 +246,36 @@ public class ImageResourceCacheModule extends CompatLruCache<String, ImageResour
             entryRemoved(true, key, value, null);
 
             //recycle
-            imageResourceHandler.recycle(value);
+            recycle(key, value);
         }
         //打印内存使用情况
         logger.d(getMemoryReport());
     }
 
+    /**
+     * remove the entry only if it's still mapped to the key
+     * @return true if removed
+     */
+    private synchronized boolean removeEntry(String key, ImageResource expected){
+        if (getMap().get(key) != expected) {
+            return false;
+        }
+        getMap().remove(key);
+        setSize(size() - safeSizeOf(key, expected));
+        return true;
+    }
+
+    /**
+     * recycle if not referenced by stubs (otherwise move to active set)
+     */
+    private void recycle(String key, ImageResource imageResource){
+        if (activeResources != null) {
+            activeResources.onRemoved(key, imageResource);
+            return;
+        }
+        imageResourceHandler.recycle(imageResource);
+    }
+
     @SuppressLint("NewApi")
     @Override
     protected int sizeOf(String key, ImageResource value) {
@@ -0,0 +1,475 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.server.module;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sviolet.turquoise.utilx.tlogger.TLogger;
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.handler.ImageResourceHandler;
+
+/**
+ * <p>Lock-striped ImageResource cache for TILoader, operations on different segments do not block each other.</p>
+ *
+ * <p>Entries are spread over segments by key hash, each segment has its own lock. Reading is lock-free
+ * (by a concurrent index), it only stamps the entry with a global access clock. Each segment keeps
+ * insertion order, and gives a second chance to the entries accessed after being queued (CLOCK),
+ * eviction picks the least recently accessed head among all segments, so the LRU is approximately global.</p>
+ *
+ * <p>The byte budget is global (not per segment). The entries removed from cache are handed
+ * to {@link ActiveResourceModule}, the resources still displayed by stubs will not be recycled.</p>
+ *
+ * <p>The limit of size can be lowered on memory pressure ({@link #setLimit}), it's the max size by default.</p>
+ *
+ * Created by S.Violet on 2017/11/24.
+ */
+public class SegmentedImageResourceCacheModule implements ImageResourceCache {
+
+    private static final int MIN_SEGMENT_NUM = 2;
+    private static final int MAX_SEGMENT_NUM = 16;
+
+    private final Segment[] segments;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+    private final AtomicInteger limit;
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger quantity = new AtomicInteger(0);
+    private final AtomicLong clock = new AtomicLong(0);
+    private final AtomicInteger evictionCount = new AtomicInteger(0);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private ImageResourceHandler imageResourceHandler;
+    private ActiveResourceModule activeResources;
+    private TLogger logger;
+
+    /**
+     * @param cacheSize cache size
+     * @param activeResources entries removed from cache will be handed to it, recycled if not referenced by stubs
+     * @param logger logger
+     */
+    public SegmentedImageResourceCacheModule(int cacheSize, ImageResourceHandler imageResourceHandler, ActiveResourceModule activeResources, TLogger logger) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("[TILoader:SegmentedImageResourceCacheModule]cacheSize <= 0");
+        }
+        this.maxSize = cacheSize;
+        this.limit = new AtomicInteger(cacheSize);
+        this.imageResourceHandler = imageResourceHandler;
+        this.activeResources = activeResources;
+        this.logger = logger;
+
+        //segment num: power of 2, about double of cpu num
+        int segmentNum = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() << 1);
+        segmentNum = Math.max(MIN_SEGMENT_NUM, Math.min(MAX_SEGMENT_NUM, segmentNum));
+        segments = new Segment[segmentNum];
+        for (int i = 0 ; i < segmentNum ; i++){
+            segments[i] = new Segment();
+        }
+    }
+
+    /*****************************************************************************
+     * function
+     */
+
+    /**
+     * lock-free
+     */
+    public ImageResource get(String key) {
+        if (key == null){
+            throw new NullPointerException("[TILoader:SegmentedImageResourceCacheModule]key must not be null");
+        }
+        Entry entry = index.get(key);
+        if (entry == null){
+            return null;
+        }
+        //exclude invalid ImageResource, only this entry is removed (may be replaced by another thread)
+        if (!imageResourceHandler.isValid(entry.resource)){
+            if (removeEntry(key, entry)) {
+                recycle(entry);
+            }
+            return null;
+        }
+        entry.accessStamp = clock.incrementAndGet();
+        return entry.resource;
+    }
+
+    public ImageResource put(String key, ImageResource value) {
+        if (key == null){
+            throw new NullPointerException("[TILoader:SegmentedImageResourceCacheModule]key must not be null");
+        }
+        //exclude invalid ImageResource
+        if (!imageResourceHandler.isValid(value)) {
+            logger.e("SegmentedImageResourceCacheModule trying to put an invalid ImageResource, key:" + key);
+            return null;
+        }
+        Entry entry = new Entry(key, value, imageResourceHandler.byteCountOf(value), clock.incrementAndGet());
+        Segment segment = segmentOf(key);
+        Entry previous;
+        try {
+            segment.lock.lock();
+            previous = segment.map.put(key, entry);
+            index.put(key, entry);
+            if (previous != null){
+                onRemoved(previous);
+            }
+            onAdded(entry);
+        } finally {
+            segment.lock.unlock();
+        }
+        //remove previous ImageResource with same key
+        if (previous != null && !imageResourceHandler.isEqual(previous.resource, value)){
+            recycle(previous);
+        }
+        trimToSize(limit.get());
+        return null;
+    }
+
+    public ImageResource extract(String key){
+        if (key == null){
+            throw new NullPointerException("[TILoader:SegmentedImageResourceCacheModule]key must not be null");
+        }
+        Entry entry = removeEntry(key);
+        return entry != null ? entry.resource : null;
+    }
+
+    public ImageResource remove(String key) {
+        if (key == null){
+            throw new NullPointerException("[TILoader:SegmentedImageResourceCacheModule]key must not be null");
+        }
+        Entry entry = removeEntry(key);
+        //recycle
+        if (entry != null) {
+            recycle(entry);
+        }
+        //return null
+        return null;
+    }
+
+    public void removeAll() {
+        int counter = 0;
+
+        for (Segment segment : segments) {
+            List<Entry> removed;
+            try {
+                segment.lock.lock();
+                removed = new ArrayList<>(segment.map.values());
+                for (Entry entry : removed) {
+                    index.remove(entry.key);
+                    onRemoved(entry);
+                }
+                segment.map.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+            //recycle all (except referenced)
+            for (Entry entry : removed) {
+                recycle(entry);
+                counter++;
+            }
+        }
+
+        //打印日志
+        logger.d("[SegmentedImageResourceCacheModule]removeAll removed:" + counter);
+        logger.d(getMemoryReport());
+    }
+
+    public String getMemoryReport() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("[SegmentedImageResourceCacheModule]MemoryReport: ");
+        stringBuilder.append("[Cache]: ");
+        stringBuilder.append(size() / 1024);
+        stringBuilder.append("K/");
+        stringBuilder.append(maxSize() / 1024);
+        stringBuilder.append("K ");
+        stringBuilder.append(quantity());
+        stringBuilder.append("pcs ");
+        return stringBuilder.toString();
+    }
+
+    public int size(){
+        return size.get();
+    }
+
+    public int maxSize(){
+        return maxSize;
+    }
+
+    /**
+     * @return current limit of size, lowered on memory pressure
+     */
+    public int limit(){
+        return limit.get();
+    }
+
+    /**
+     * set limit of size, the entries exceeding will be evicted when next putting (or by {@link #trimToSize})
+     * @param limit (0, maxSize]
+     * @return previous limit
+     */
+    public int setLimit(int limit){
+        return this.limit.getAndSet(Math.max(1, Math.min(maxSize, limit)));
+    }
+
+    public int quantity(){
+        return quantity.get();
+    }
+
+    public int getEvictionCount(){
+        return evictionCount.get();
+    }
+
+    /**
+     * evict the least recently used entries until size <= maxSize, only one thread evicts at the same time,
+     * the others return immediately (the evicting thread will continue until size <= maxSize).
+     */
+    public void trimToSize(int maxSize) {
+        boolean trimmed = false;
+        //recheck after unlock, in case of entries added while another thread finishing eviction
+        while (size.get() > maxSize && evictionLock.tryLock()) {
+            try {
+                while (size.get() > maxSize) {
+                    Entry victim = evictOne();
+                    if (victim == null) {
+                        return;
+                    }
+                    evictionCount.incrementAndGet();
+                    trimmed = true;
+                    //recycle
+                    recycle(victim);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        //打印内存使用情况
+        if (trimmed) {
+            logger.d(getMemoryReport());
+        }
+    }
+
+    /**
+     * evict the entries which are not displayed by stubs (the oldest of each segment in turn), until size <= maxSize.
+     * The displayed entries are kept, because removing them releases no memory.
+     */
+    public void trimInvisible(int maxSize){
+        List<Entry> victims = new ArrayList<>();
+        boolean progressed = true;
+        while (size.get() > maxSize && progressed) {
+            progressed = false;
+            for (Segment segment : segments) {
+                if (size.get() <= maxSize) {
+                    break;
+                }
+                try {
+                    segment.lock.lock();
+                    for (Entry entry : segment.map.values()) {
+                        if (!activeResources.isReferenced(entry.resource)) {
+                            segment.map.remove(entry.key);
+                            index.remove(entry.key);
+                            onRemoved(entry);
+                            victims.add(entry);
+                            progressed = true;
+                            break;
+                        }
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+        }
+        //recycle
+        for (Entry entry : victims) {
+            evictionCount.incrementAndGet();
+            recycle(entry);
+        }
+        if (victims.size() > 0) {
+            logger.d("[SegmentedImageResourceCacheModule]trimInvisible evicted:" + victims.size());
+            logger.d(getMemoryReport());
+        }
+    }
+
+    /*****************************************************************************
+     * private
+     */
+
+    private Segment segmentOf(String key){
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private Entry removeEntry(String key){
+        Segment segment = segmentOf(key);
+        try {
+            segment.lock.lock();
+            Entry entry = segment.map.remove(key);
+            if (entry != null) {
+                index.remove(key);
+                onRemoved(entry);
+            }
+            return entry;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * remove the entry only if it's still mapped to the key
+     * @return true if removed
+     */
+    private boolean removeEntry(String key, Entry expected){
+        Segment segment = segmentOf(key);
+        try {
+            segment.lock.lock();
+            if (segment.map.get(key) != expected) {
+                return false;
+            }
+            segment.map.remove(key);
+            index.remove(key);
+            onRemoved(expected);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * pick the least recently accessed head among all segments, and remove it
+     * @return null if cache is empty
+     */
+    private Entry evictOne(){
+        while (true) {
+            Segment victimSegment = null;
+            Entry victim = null;
+            for (Segment segment : segments) {
+                try {
+                    segment.lock.lock();
+                    Entry head = segment.head(clock);
+                    if (head != null && (victim == null || head.accessStamp < victim.accessStamp)) {
+                        victimSegment = segment;
+                        victim = head;
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            if (victim == null) {
+                return null;
+            }
+            try {
+                victimSegment.lock.lock();
+                //retry if removed or replaced by other thread
+                if (victimSegment.map.get(victim.key) != victim) {
+                    continue;
+                }
+                victimSegment.map.remove(victim.key);
+                index.remove(victim.key);
+                onRemoved(victim);
+                return victim;
+            } finally {
+                victimSegment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * lock segment before invoke
+     */
+    private void onAdded(Entry entry){
+        size.addAndGet(entry.size);
+        quantity.incrementAndGet();
+    }
+
+    /**
+     * lock segment before invoke
+     */
+    private void onRemoved(Entry entry){
+        size.addAndGet(-entry.size);
+        quantity.decrementAndGet();
+    }
+
+    /**
+     * recycle if not referenced by stubs, otherwise move to active set
+     */
+    private void recycle(Entry entry){
+        activeResources.onRemoved(entry.key, entry.resource);
+    }
+
+    /*****************************************************************************
+     * inner class
+     */
+
+    private static class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>();//insertion order
+
+        /**
+         * lock before invoke.
+         * @return the earliest entry which has not been accessed since queued (second chance)
+         */
+        private Entry head(AtomicLong clock){
+            int chances = map.size();
+            while (chances-- > 0) {
+                Iterator<Entry> iterator = map.values().iterator();
+                Entry head = iterator.next();
+                if (head.accessStamp <= head.queueStamp) {
+                    return head;
+                }
+                //accessed after queued, move to tail
+                iterator.remove();
+                head.queueStamp = clock.incrementAndGet();
+                head.accessStamp = head.queueStamp;
+                map.put(head.key, head);
+            }
+            //all entries accessed recently, return the earliest
+            Iterator<Entry> iterator = map.values().iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+    }
+
+    private static class Entry {
+
+        private final String key;
+        private final ImageResource resource;
+        private final int size;
+        private long queueStamp;//guarded by segment lock
+        private volatile long accessStamp;
+
+        private Entry(String key, ImageResource resource, int size, long stamp) {
+            this.key = key;
+            this.resource = resource;
+            this.size = size;
+            this.queueStamp = stamp;
+            this.accessStamp = stamp;
+        }
+
+    }
+
+}
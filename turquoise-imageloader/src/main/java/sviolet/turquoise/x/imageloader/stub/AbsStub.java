@@ -22,11 +22,10 @@ package sviolet.turquoise.x.imageloader.stub;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import sviolet.thistle.util.conversion.ByteUtils;
-import sviolet.thistle.util.crypto.DigestCipher;
 import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.TILoaderUtils;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
 import sviolet.turquoise.x.imageloader.entity.LoadProgress;
 import sviolet.turquoise.x.imageloader.entity.Params;
 import sviolet.turquoise.x.imageloader.node.NodeController;
@@ -48,12 +47,14 @@ public abstract class AbsStub implements Stub {
     private String url;//loading url
     private Params params;//loading params
     private String resourceKey;//resource key
+    private String key;//key = resource key + params key suffix, calculated once
 
     //stat///////////////////////////////
 
     private AtomicInteger state = new AtomicInteger(State.INITIAL);
     private LoadProgress loadProgress = new LoadProgress();
     private int reloadTimes = 0;
+    private volatile LoadPriority priority = LoadPriority.ON_SCREEN;
 
     private WeakReference<NodeController> nodeController;
 
@@ -295,8 +296,8 @@ public abstract class AbsStub implements Stub {
      */
     @Override
     public final void onLoadSucceed(ImageResource resource) {
-        //check resource
-        if (!TILoaderUtils.isImageResourceValid(resource)){
+        //check resource, PRELOAD_DISK has no resource
+        if (getType() != Type.PRELOAD_DISK && !TILoaderUtils.isImageResourceValid(resource)){
             onLoadFailed();
             return;
         }
@@ -307,6 +308,17 @@ public abstract class AbsStub implements Stub {
 
     }
 
+    /**
+     * the image is got from memory cache when initializing, INITIAL state to LOAD_SUCCEED directly
+     * (without launching and loading), the caller should display the image itself.
+     *
+     * @param resource image from memory cache
+     * @return true if state updated
+     */
+    protected final boolean loadSucceedFromMemoryCache(ImageResource resource) {
+        return TILoaderUtils.isImageResourceValid(resource) && state.compareAndSet(State.INITIAL, State.LOAD_SUCCEED);
+    }
+
     /**
      * 1.update state<br/>
      * 2.invoke inner method<br/>
@@ -391,10 +403,18 @@ public abstract class AbsStub implements Stub {
 
     @Override
     public String getKey(){
-        if (getType() == Type.EXTRACT){
-            return "extract:" + getResourceKey() + params.getKeySuffix();
+        //url and params are immutable, calculate once
+        if (key == null){
+            if (getType() == Type.EXTRACT){
+                key = "extract:" + getResourceKey() + params.getKeySuffix();
+            } else if (getType() == Type.PRELOAD_DISK){
+                //no decoding, params is useless
+                key = "preload:" + getResourceKey();
+            } else {
+                key = getResourceKey() + params.getKeySuffix();
+            }
         }
-        return getResourceKey() + params.getKeySuffix();
+        return key;
     }
 
     @Override
@@ -404,7 +424,7 @@ public abstract class AbsStub implements Stub {
             if (url == null) {
                 url = NULL;
             }
-            resourceKey = ByteUtils.bytesToHex(DigestCipher.digestStr(url, DigestCipher.TYPE_SHA1));
+            resourceKey = ResourceKeys.fromUrl(url);
         }
         return resourceKey;
     }
@@ -419,6 +439,26 @@ public abstract class AbsStub implements Stub {
         return loadProgress;
     }
 
+    @Override
+    public LoadPriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public void setPriority(LoadPriority priority) {
+        if (priority == null || this.priority == priority){
+            return;
+        }
+        this.priority = priority;
+        //notify controller if loading
+        if (state.get() == State.LOADING) {
+            final NodeController controller = getNodeController();
+            if (controller != null) {
+                controller.onPriorityChanged(this);
+            }
+        }
+    }
+
     @Override
     public StubRemoter getStubRemoter(){
         return new StubRemoter(this);
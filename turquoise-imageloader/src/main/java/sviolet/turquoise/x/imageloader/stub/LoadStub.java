@@ -23,6 +23,7 @@ import android.graphics.drawable.Drawable;
 import android.view.View;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReference;
 
 import sviolet.turquoise.common.statics.PublicConstants;
 import sviolet.turquoise.x.imageloader.drawable.ContainerDrawable;
@@ -40,6 +41,7 @@ import sviolet.turquoise.x.imageloader.node.NodeController;
 public abstract class LoadStub<V extends View> extends AbsStub {
 
     private WeakReference<V> view;
+    private final AtomicReference<ImageResource> displayingResource = new AtomicReference<>();//referenced, released when stub destroyed or relaunched
 
     public LoadStub(String url, Params params, V view){
         super(url, params);
@@ -49,11 +51,15 @@ public abstract class LoadStub<V extends View> extends AbsStub {
     @Override
     public void initialize(NodeController controller) {
         super.initialize(controller);
-        if (bindView(getView())) {
-            showLoading();
-        } else {
+        if (!bindView(getView())) {
             onDestroy();
+            return;
         }
+        //memory cache hit, show image at once, without loading drawable, launching and fade-in
+        if (loadFromMemoryCache(controller)){
+            return;
+        }
+        showLoading();
     }
 
     /*******************************************************8
@@ -102,6 +108,7 @@ public abstract class LoadStub<V extends View> extends AbsStub {
 
     @Override
     protected LaunchResult onRelaunch() {
+        releaseDisplayingResource();
         return showLoading() ? LaunchResult.SUCCEED : LaunchResult.FAILED;
     }
 
@@ -153,7 +160,32 @@ public abstract class LoadStub<V extends View> extends AbsStub {
         return true;
     }
 
+    /**
+     * get image from memory cache synchronously (in UI thread), when the load method called
+     * @return true if hit and displayed
+     */
+    private boolean loadFromMemoryCache(NodeController controller){
+        //the key depends on the size of view in sizeMatchView mode, unknown until launching
+        if (getParams().isSizeMatchView()){
+            return false;
+        }
+        ImageResource resource = controller.getMemoryCachedResource(this);
+        if (resource == null || !loadSucceedFromMemoryCache(resource)){
+            return false;
+        }
+        //state has been LOAD_SUCCEED, failure handled in showImage
+        showImage(resource, false);
+        return true;
+    }
+
     protected boolean showImage(ImageResource resource){
+        return showImage(resource, true);
+    }
+
+    /**
+     * @param fadeIn false: show image without background and transition, for the image from memory cache
+     */
+    protected boolean showImage(ImageResource resource, boolean fadeIn){
         //get & check view
         final V view = getView();
         if (view == null){
@@ -167,10 +199,13 @@ public abstract class LoadStub<V extends View> extends AbsStub {
             return false;
         }
         //create and set drawable
-        Drawable drawable = controller.getBackgroundDrawableFactory(getParams().getExtensionBackgroundDrawableFactoryIndex())
-                .create(controller.getApplicationContextImage(), controller.getContextImage(), getParams(), getLogger());
-        if (drawable == null){
-            throw new RuntimeException("[LoadStub]BackgroundDrawableFactory create a null drawable");
+        Drawable drawable = null;
+        if (fadeIn) {
+            drawable = controller.getBackgroundDrawableFactory(getParams().getExtensionBackgroundDrawableFactoryIndex())
+                    .create(controller.getApplicationContextImage(), controller.getContextImage(), getParams(), getLogger());
+            if (drawable == null) {
+                throw new RuntimeException("[LoadStub]BackgroundDrawableFactory create a null drawable");
+            }
         }
         Drawable imageDrawable = controller.getServerSettings().getImageResourceHandler().toDrawable(controller.getApplicationContextImage(), resource, false);
         if (imageDrawable == null){
@@ -180,8 +215,16 @@ public abstract class LoadStub<V extends View> extends AbsStub {
         if (getState() == State.DESTROYED){
             return false;
         }
+        if (!fadeIn){
+            //image from memory cache, show directly
+            setDrawableToView(new ContainerDrawable(imageDrawable).relaunchEnable().bindStub(this), view);
+            holdDisplayingResource(controller, resource);
+            return true;
+        }
         ContainerDrawable containerDrawable = new ContainerDrawable(drawable, imageDrawable).relaunchEnable().bindStub(this);
         setDrawableToView(containerDrawable, view);
+        //the resource will not be recycled until released
+        holdDisplayingResource(controller, resource);
         //start animation
         int customImageAppearDuration = getParams().getImageAppearDuration();
         containerDrawable.startTransition(customImageAppearDuration < 0 ? controller.getNodeSettings().getImageAppearDuration() : customImageAppearDuration);
@@ -243,11 +286,36 @@ public abstract class LoadStub<V extends View> extends AbsStub {
     @Override
     protected void onDestroyInner() {
         super.onDestroyInner();
+        releaseDisplayingResource();
         if (view != null){
             view.clear();
         }
     }
 
+    /***********************************************************
+     * resource reference
+     */
+
+    private void holdDisplayingResource(NodeController controller, ImageResource resource){
+        controller.acquireResource(this, resource);
+        ImageResource previous = displayingResource.getAndSet(resource);
+        if (previous != null){
+            controller.releaseResource(this, previous);
+        }
+    }
+
+    private void releaseDisplayingResource(){
+        ImageResource previous = displayingResource.getAndSet(null);
+        if (previous == null){
+            return;
+        }
+        //if controller has been collected, the reference will be released when this stub collected by GC
+        final NodeController controller = getNodeController();
+        if (controller != null){
+            controller.releaseResource(this, previous);
+        }
+    }
+
     /***********************************************************
      * protected
      */
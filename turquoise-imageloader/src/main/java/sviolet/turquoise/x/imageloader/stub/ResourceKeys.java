@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.stub;
+
+import java.io.UnsupportedEncodingException;
+
+import sviolet.thistle.compat.CompatLruCache;
+import sviolet.thistle.util.conversion.ByteUtils;
+import sviolet.thistle.util.crypto.DigestCipher;
+import sviolet.turquoise.x.imageloader.entity.ResourceKeyScheme;
+
+/**
+ * <p>Process-wide resource key generator, calculates key (url to resource key, stub key to decoded disk cache key)
+ * by {@link ResourceKeyScheme}, the recent results are cached by a bounded LRU cache, avoid hashing the same url
+ * repeatedly (list scrolling back and forth).</p>
+ *
+ * <p>The scheme is set by ServerSettings->setResourceKeyScheme, when TILoader initializing.</p>
+ *
+ * Created by S.Violet on 2017/12/4.
+ */
+public class ResourceKeys {
+
+    private static final int CACHE_SIZE = 256;
+    private static final String CHARSET = "UTF-8";
+
+    private static volatile ResourceKeyScheme scheme = ResourceKeyScheme.SHA1;
+    private static final CompatLruCache<String, String> cache = new CompatLruCache<>(CACHE_SIZE);
+
+    /**
+     * set scheme of resource key, the cache will be cleared if scheme changed
+     */
+    public static void setScheme(ResourceKeyScheme scheme) {
+        if (scheme == null) {
+            scheme = ResourceKeyScheme.SHA1;
+        }
+        if (ResourceKeys.scheme != scheme) {
+            ResourceKeys.scheme = scheme;
+            cache.evictAll();
+        }
+    }
+
+    public static ResourceKeyScheme getScheme() {
+        return scheme;
+    }
+
+    /**
+     * @param url url
+     * @return resource key of url, cached
+     */
+    public static String fromUrl(String url) {
+        ResourceKeyScheme scheme = ResourceKeys.scheme;
+        String key = cache.get(url);
+        //the key calculated by old scheme has prefix mismatched
+        if (key != null && isScheme(key, scheme)) {
+            return key;
+        }
+        key = digest(url, scheme);
+        cache.put(url, key);
+        return key;
+    }
+
+    /**
+     * digest string without caching, the result is limited to [a-z0-9_], suitable for DiskLruCache
+     * @param str string
+     * @return key
+     */
+    public static String digest(String str) {
+        return digest(str, scheme);
+    }
+
+    private static String digest(String str, ResourceKeyScheme scheme) {
+        switch (scheme) {
+            case MURMUR3_128:
+                return scheme.getPrefix() + ByteUtils.bytesToHex(murmur3x64_128(toBytes(str)));
+            case SHA1:
+            default:
+                return ByteUtils.bytesToHex(DigestCipher.digestStr(str, DigestCipher.TYPE_SHA1));
+        }
+    }
+
+    private static boolean isScheme(String key, ResourceKeyScheme scheme) {
+        switch (scheme) {
+            case MURMUR3_128:
+                return key.startsWith(scheme.getPrefix());
+            case SHA1:
+            default:
+                return key.length() == 40;
+        }
+    }
+
+    private static byte[] toBytes(String str) {
+        try {
+            return str.getBytes(CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("[ResourceKeys]unsupported charset:" + CHARSET, e);
+        }
+    }
+
+    /*******************************************************************
+     * MurmurHash3 x64 128-bit (seed 0), big-endian output (h1, h2)
+     */
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @SuppressWarnings("fallthrough")
+    static byte[] murmur3x64_128(byte[] data) {
+        final int length = data.length;
+        final int blocks = length >>> 4;
+        long h1 = 0;
+        long h2 = 0;
+
+        //body
+        for (int i = 0; i < blocks; i++) {
+            int offset = i << 4;
+            long k1 = getLongLittleEndian(data, offset);
+            long k2 = getLongLittleEndian(data, offset + 8);
+
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        //tail
+        final int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+        //fall through from the last byte of tail to the first one
+        switch (length & 15) {
+            case 15: k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+            case 14: k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+            case 13: k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+            case 12: k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+            case 11: k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+            case 10: k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+            case 9: k2 ^= ((long) data[tail + 8] & 0xff);
+                k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+                //fall through
+            case 8: k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+            case 7: k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+            case 6: k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+            case 5: k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+            case 4: k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+            case 3: k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+            case 2: k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+            case 1: k1 ^= ((long) data[tail] & 0xff);
+                k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+                //fall through
+            default:
+                break;
+        }
+
+        //finalization
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] result = new byte[16];
+        putLongBigEndian(result, 0, h1);
+        putLongBigEndian(result, 8, h2);
+        return result;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int offset) {
+        return ((long) data[offset] & 0xff)
+                | (((long) data[offset + 1] & 0xff) << 8)
+                | (((long) data[offset + 2] & 0xff) << 16)
+                | (((long) data[offset + 3] & 0xff) << 24)
+                | (((long) data[offset + 4] & 0xff) << 32)
+                | (((long) data[offset + 5] & 0xff) << 40)
+                | (((long) data[offset + 6] & 0xff) << 48)
+                | (((long) data[offset + 7] & 0xff) << 56);
+    }
+
+    private static void putLongBigEndian(byte[] dst, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+}
@@ -22,6 +22,7 @@ package sviolet.turquoise.x.imageloader.stub;
 import sviolet.thistle.entity.Destroyable;
 import sviolet.turquoise.utilx.tlogger.TLogger;
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
 import sviolet.turquoise.x.imageloader.entity.LoadProgress;
 import sviolet.turquoise.x.imageloader.entity.Params;
 import sviolet.turquoise.x.imageloader.node.NodeController;
@@ -105,6 +106,17 @@ public interface Stub extends Destroyable {
 
     LoadProgress getLoadProgress();
 
+    /**
+     * @return priority of loading
+     */
+    LoadPriority getPriority();
+
+    /**
+     * update priority of loading, effective when task is waiting in {@link sviolet.turquoise.x.imageloader.entity.NodeSettings.RequestQueueType#PRIORITY} queue
+     * @param priority priority
+     */
+    void setPriority(LoadPriority priority);
+
     /***********************************************************
      * getter
      */
@@ -117,9 +129,15 @@ public interface Stub extends Destroyable {
      * Enum
      */
 
+    /**
+     * LOAD: load into memory cache, display by view or preload (PreloadTarget.DISK_AND_MEMORY)<br/>
+     * EXTRACT: extract image, without memory cache<br/>
+     * PRELOAD_DISK: download resource to disk cache only, no decoding (PreloadTarget.DISK), callback with null resource<br/>
+     */
     enum Type{
         LOAD,
-        EXTRACT
+        EXTRACT,
+        PRELOAD_DISK
     }
 
     enum LaunchResult{
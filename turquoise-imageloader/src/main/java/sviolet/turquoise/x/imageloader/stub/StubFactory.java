@@ -23,6 +23,7 @@ import android.view.View;
 
 import sviolet.turquoise.x.imageloader.entity.OnLoadedListener;
 import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
 
 /**
  * <p>Factory of stubs</p>
@@ -70,4 +71,18 @@ public abstract class StubFactory {
         return null;
     }
 
+    /**
+     * <p>Usually no need to override (just return null).</p>
+     * <p>create stub for TILoader.preload(...). the stub will load image into cache and callback listener.</p>
+     *
+     * @param url url
+     * @param params params
+     * @param target preload target
+     * @param listener listener
+     * @return Stub
+     */
+    public Stub newPreloadStub(String url, Params params, PreloadTarget target, OnLoadedListener<?> listener){
+        return null;
+    }
+
 }
@@ -25,6 +25,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import sviolet.turquoise.x.imageloader.entity.ImageResource;
 import sviolet.turquoise.x.imageloader.entity.IndispensableState;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.PriorityState;
 
 /**
  * <p>Group of stubs. All tasks for the same purpose will be bundled into a group.</p>
@@ -35,23 +37,42 @@ public class StubGroup {
 
     private Set<Stub> stubSet = Collections.newSetFromMap(new ConcurrentHashMap<Stub, Boolean>());
     private IndispensableState indispensableState = new IndispensableState();
+    private PriorityState priorityState = new PriorityState();
 
     public StubGroup(){
 
     }
 
     /**
-     * @param stub add the stub into group, non-repetitive(Set)
+     * @param stub add the stub into group, non-repetitive(Set), invoked with the lock of stub pool
      */
     public void add(Stub stub){
         if (stub == null) {
             return;
         }
+        boolean first = !hasStub();
         stubSet.add(stub);
         //check and set indispensable state
         if (stub.getParams().isIndispensable()){
             indispensableState.setIndispensable();
         }
+        //the first stub sets the priority, the others raise it
+        if (first || stub.getPriority().ordinal() > priorityState.getPriority().ordinal()){
+            priorityState.setPriority(stub.getPriority());
+        }
+    }
+
+    /**
+     * re-calculate priority of group (the highest priority of stubs), called when priority of stub changed
+     */
+    public void refreshPriority(){
+        LoadPriority priority = LoadPriority.PREFETCH;
+        for (Stub stub : stubSet) {
+            if (stub.getPriority().ordinal() > priority.ordinal()){
+                priority = stub.getPriority();
+            }
+        }
+        priorityState.setPriority(priority);
     }
 
     private boolean hasStub(){
@@ -102,4 +123,8 @@ public class StubGroup {
     public IndispensableState getIndispensableState(){
         return indispensableState;
     }
+
+    public PriorityState getPriorityState(){
+        return priorityState;
+    }
 }
@@ -24,6 +24,7 @@ import android.view.View;
 import java.lang.ref.WeakReference;
 
 import sviolet.turquoise.x.imageloader.TILoaderUtils;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
 import sviolet.turquoise.x.imageloader.entity.LoadProgress;
 
 /**
@@ -33,6 +34,7 @@ import sviolet.turquoise.x.imageloader.entity.LoadProgress;
  * 1.get state of loading<br/>
  * 2.get progress of loading<br/>
  * 3.relaunch canceled task<br/>
+ * 4.update priority of loading<br/>
  *
  * Created by S.Violet on 2016/5/9.
  */
@@ -112,4 +114,23 @@ public class StubRemoter {
         return false;
     }
 
+    /**
+     * <p>update priority of loading, effective when Node using {@link sviolet.turquoise.x.imageloader.entity.NodeSettings.RequestQueueType#PRIORITY}
+     * request queue. Task with higher priority will be executed first, and the lowest priority task will be
+     * dropped first when the queue is full.</p>
+     *
+     * <pre>{@code
+     *      //e.g. in RecyclerView.Adapter / ListView Adapter
+     *      StubRemoter.getFromView(imageView).setPriority(LoadPriority.OFF_SCREEN);
+     * }</pre>
+     *
+     * @param priority priority of loading
+     */
+    public void setPriority(LoadPriority priority){
+        Stub stub = this.stub.get();
+        if (stub != null){
+            stub.setPriority(priority);
+        }
+    }
+
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015-2017 S.Violet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Project GitHub: https://github.com/shepherdviolet/turquoise
+ * Email: shepherdviolet@163.com
+ */
+
+package sviolet.turquoise.x.imageloader.stub.support;
+
+import sviolet.turquoise.x.imageloader.entity.ImageResource;
+import sviolet.turquoise.x.imageloader.entity.LoadPriority;
+import sviolet.turquoise.x.imageloader.entity.OnLoadedListener;
+import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
+import sviolet.turquoise.x.imageloader.node.NodeController;
+import sviolet.turquoise.x.imageloader.stub.AbsStub;
+
+/**
+ * <p>Preload Stub</p>
+ *
+ * <p>loading image into cache (disk or disk+memory) without view, and callback to listener (notify PreloadNode).
+ * Preloading never reloads if failed, the failed task is regarded as canceled.</p>
+ *
+ * Created by S.Violet on 2017/11/23.
+ */
+class PreloadStub extends AbsStub {
+
+    private PreloadTarget target;
+    private OnLoadedListener<?> listener;
+
+    PreloadStub(String url, Params params, PreloadTarget target, OnLoadedListener<?> listener){
+        super(url, params);
+        this.target = target;
+        this.listener = listener;
+        setPriority(LoadPriority.PREFETCH);
+    }
+
+    @Override
+    public void initialize(NodeController controller) {
+        super.initialize(controller);
+        launch();
+    }
+
+    /*******************************************************8
+     * callbacks inner
+     */
+
+    @Override
+    protected void onLoadSucceedInner(ImageResource resource) {
+        super.onLoadSucceedInner(resource);
+        if (listener != null){
+            listener.onLoadSucceed(getUrl(), getParams(), resource);
+        }
+    }
+
+    @Override
+    protected void onLoadFailedInner() {
+        //no reload
+        shiftFailedToCanceled();
+    }
+
+    @Override
+    protected void onLoadCanceledInner() {
+        super.onLoadCanceledInner();
+        if (listener != null){
+            listener.onLoadCanceled(getUrl(), getParams());
+        }
+    }
+
+    @Override
+    protected void onDestroyInner() {
+        super.onDestroyInner();
+        listener = null;
+    }
+
+    /***********************************************************
+     * Getter
+     */
+
+    @Override
+    public Type getType() {
+        return target == PreloadTarget.DISK ? Type.PRELOAD_DISK : Type.LOAD;
+    }
+}
@@ -24,6 +24,7 @@ import android.widget.ImageView;
 
 import sviolet.turquoise.x.imageloader.entity.OnLoadedListener;
 import sviolet.turquoise.x.imageloader.entity.Params;
+import sviolet.turquoise.x.imageloader.entity.PreloadTarget;
 import sviolet.turquoise.x.imageloader.stub.Stub;
 import sviolet.turquoise.x.imageloader.stub.StubFactory;
 
@@ -138,6 +139,36 @@ public final class StubFactoryImpl extends StubFactory {
         return new ExtractStub(url, params, listener);
     }
 
+    @Override
+    public final Stub newPreloadStub(String url, Params params, PreloadTarget target, OnLoadedListener<?> listener) {
+        //check input
+        if (url == null){
+            throw new RuntimeException("[TILoader]can't load image without url!");
+        }
+        if (target == null){
+            throw new RuntimeException("[TILoader]can't preload image without target!");
+        }
+        //copy params
+        if (params == null){
+            params = new Params.Builder().build();
+        }else{
+            params = params.copy();
+        }
+        //invoke custom factory
+        Stub stub = null;
+        if (customStubFactory != null){
+            stub = customStubFactory.newPreloadStub(url, params, target, listener);
+        }
+        if (stub == null){
+            stub = newPreloadStubInner(url, params, target, listener);
+        }
+        return stub;
+    }
+
+    protected final Stub newPreloadStubInner(String url, Params params, PreloadTarget target, OnLoadedListener<?> listener){
+        return new PreloadStub(url, params, target, listener);
+    }
+
     public final void setCustomStubFactory(StubFactory factory) {
         this.customStubFactory = factory;
     }
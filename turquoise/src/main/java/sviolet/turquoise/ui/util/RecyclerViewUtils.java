@@ -80,4 +80,24 @@ public class RecyclerViewUtils {
         }
     }
 
+    /**
+     * 列表从起始位置开始滚动的进度, 支持横向/纵向列表, 可用于计算滚动速度(item/s)
+     * @param linearLayoutManager (LinearLayoutManager)recyclerView.getLayoutManager()
+     * @return float 滚动进度(0-MAXVALUE), 单位为item(GridLayoutManager为position), 并非滚动距离
+     */
+    public static float scrollProgressFromStart(LinearLayoutManager linearLayoutManager){
+        if (linearLayoutManager.getOrientation() == LinearLayoutManager.VERTICAL){
+            return scrollProgressFromTop(linearLayoutManager);
+        }
+        if (linearLayoutManager.getChildCount() <= 0){
+            return 0f;
+        }
+        View child = linearLayoutManager.getChildAt(0);
+        if (child.getWidth() > 0){
+            return linearLayoutManager.findFirstVisibleItemPosition() + ( - (float)child.getLeft() / (float)child.getWidth());
+        }else{
+            return linearLayoutManager.findFirstVisibleItemPosition();
+        }
+    }
+
 }
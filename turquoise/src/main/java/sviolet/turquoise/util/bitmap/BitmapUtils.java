@@ -19,6 +19,7 @@
 
 package sviolet.turquoise.util.bitmap;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
@@ -35,19 +36,26 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
+import android.os.Build;
 import android.text.TextPaint;
 import android.util.Base64;
 import android.view.View;
 import android.webkit.WebView;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.security.InvalidParameterException;
 
+import sviolet.turquoise.util.droid.DeviceUtils;
+
 /**
  * <p>Bitmap工具</p>
  *
@@ -148,13 +156,106 @@ public class BitmapUtils {
      * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
      */
     public static Bitmap decodeFromFile(String path, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality) {
+        return decodeFromFile(path, reqWidth, reqHeight, bitmapConfig, quality, null);
+    }
+
+    /**
+     * 从文件中解码图片(节省内存), 并复用Bitmap内存(inBitmap, API>=19)<br/>
+     * <Br/>
+     * 需求尺寸(reqWidth/reqHeight)参数用于节省内存消耗,请根据界面展示所需尺寸设置(像素px).图片解码时会
+     * 根据需求尺寸整数倍缩小,且长宽保持原图比例,解码后的Bitmap尺寸通常不等于需求尺寸.设置为0不缩小图片.<Br/>
+     *
+     * @param path      文件路径
+     * @param reqWidth  需求宽度 px
+     * @param reqHeight 需求高度 px
+     * @param bitmapConfig 颜色深度
+     * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
+     * @param inBitmapProvider 提供可复用的Bitmap, 可为空(不复用). 解码出的Bitmap为mutable, 可再次被复用
+     */
+    public static Bitmap decodeFromFile(String path, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality, InBitmapProvider inBitmapProvider) {
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;//仅计算参数, 不解码
         BitmapFactory.decodeFile(path, options);
         options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, quality);//缩放因子(整数倍)
         options.inJustDecodeBounds = false;//解码模式
         options.inPreferredConfig = bitmapConfig;//颜色深度
-        return BitmapFactory.decodeFile(path, options);
+        Bitmap inBitmap = applyInBitmap(options, inBitmapProvider);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            //复用失败, 不复用重新解码
+            if (inBitmap == null) {
+                throw e;
+            }
+            inBitmap.recycle();
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * 从文件中解码图片(节省内存), 并复用Bitmap内存(inBitmap, API>=19). 文件只打开一次, 读取文件头(可选),
+     * 解码尺寸, 计算采样率和解码共用同一个文件句柄, 适用于磁盘缓存等频繁读取的场合<br/>
+     * <Br/>
+     * 需求尺寸(reqWidth/reqHeight)参数用于节省内存消耗,请根据界面展示所需尺寸设置(像素px).图片解码时会
+     * 根据需求尺寸整数倍缩小,且长宽保持原图比例,解码后的Bitmap尺寸通常不等于需求尺寸.设置为0不缩小图片.<Br/>
+     *
+     * @param file      文件
+     * @param reqWidth  需求宽度 px
+     * @param reqHeight 需求高度 px
+     * @param bitmapConfig 颜色深度
+     * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
+     * @param inBitmapProvider 提供可复用的Bitmap, 可为空(不复用). 解码出的Bitmap为mutable, 可再次被复用
+     * @param headerFilter 文件头过滤器, 可为空. 用于判断文件格式(例如GIF交由其他解码器处理), 拒绝时不解码, 返回null
+     * @return 解码失败或被文件头过滤器拒绝时返回null
+     */
+    public static Bitmap decodeFromFile(File file, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality, InBitmapProvider inBitmapProvider, HeaderFilter headerFilter) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            FileDescriptor fileDescriptor = inputStream.getFD();
+            //文件头
+            if (headerFilter != null) {
+                byte[] header = new byte[headerFilter.getHeaderLength()];
+                int length = 0;
+                int readLength;
+                while (length < header.length && (readLength = inputStream.read(header, length, header.length - length)) >= 0) {
+                    length += readLength;
+                }
+                if (!headerFilter.accept(header, length)) {
+                    return null;
+                }
+                channel.position(0);
+            }
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;//仅计算参数, 不解码
+            BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, quality);//缩放因子(整数倍)
+            options.inJustDecodeBounds = false;//解码模式
+            options.inPreferredConfig = bitmapConfig;//颜色深度
+            Bitmap inBitmap = applyInBitmap(options, inBitmapProvider);
+            channel.position(0);
+            try {
+                return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+            } catch (IllegalArgumentException e) {
+                //复用失败, 不复用重新解码
+                if (inBitmap == null) {
+                    throw e;
+                }
+                inBitmap.recycle();
+                options.inBitmap = null;
+                channel.position(0);
+                return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+            }
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
     }
 
     /**
@@ -193,13 +294,41 @@ public class BitmapUtils {
      * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
      */
     public static Bitmap decodeFromByteArray(byte[] data, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality) {
+        return decodeFromByteArray(data, reqWidth, reqHeight, bitmapConfig, quality, null);
+    }
+
+    /**
+     * 将二进制数据解码为图片(节省内存), 并复用Bitmap内存(inBitmap, API>=19)<br/>
+     * <Br/>
+     * 需求尺寸(reqWidth/reqHeight)参数用于节省内存消耗,请根据界面展示所需尺寸设置(像素px).图片解码时会
+     * 根据需求尺寸整数倍缩小,且长宽保持原图比例,解码后的Bitmap尺寸通常不等于需求尺寸.设置为0不缩小图片.<Br/>
+     *
+     * @param data      二进制数据
+     * @param reqWidth  需求宽度 px
+     * @param reqHeight 需求高度 px
+     * @param bitmapConfig 颜色深度
+     * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
+     * @param inBitmapProvider 提供可复用的Bitmap, 可为空(不复用). 解码出的Bitmap为mutable, 可再次被复用
+     */
+    public static Bitmap decodeFromByteArray(byte[] data, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality, InBitmapProvider inBitmapProvider) {
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
         BitmapFactory.decodeByteArray(data, 0, data.length, options);
         options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, quality);
         options.inJustDecodeBounds = false;
         options.inPreferredConfig = bitmapConfig;//颜色深度
-        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        Bitmap inBitmap = applyInBitmap(options, inBitmapProvider);
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            //复用失败, 不复用重新解码
+            if (inBitmap == null) {
+                throw e;
+            }
+            inBitmap.recycle();
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
     }
 
     /**
@@ -326,6 +455,54 @@ public class BitmapUtils {
         return BitmapFactory.decodeStream(inputStream, null, options);
     }
 
+    /**
+     * 从输入流中解码图片(节省内存), 根据需求尺寸计算缩放因子<br/>
+     * <Br/>
+     * 通过mark/reset读取图片头部获得图片长宽(头部须在markLimit以内), 计算缩放因子后继续从输入流解码,
+     * 输入流只读取一次, 适用于边下载边解码. 输入流不支持mark时, 会包装为BufferedInputStream.<Br/>
+     *
+     * @param inputStream 输入流
+     * @param markLimit 图片头部最大长度, 超过则无法获得图片长宽, 返回null
+     * @param reqWidth  需求宽度 px
+     * @param reqHeight 需求高度 px
+     * @param bitmapConfig 颜色深度
+     * @param quality 图片质量, 默认InSampleQuality.MEDIUM, 若不需要缩小, 设置ORIGINAL
+     * @param inBitmapProvider 提供可复用的Bitmap, 可为空(不复用). 复用失败时因输入流已被消费无法重试, 返回null
+     * @return 解码失败返回null
+     */
+    public static Bitmap decodeFromStream(InputStream inputStream, int markLimit, int reqWidth, int reqHeight, Bitmap.Config bitmapConfig, InSampleQuality quality, InBitmapProvider inBitmapProvider) throws IOException {
+        if (!inputStream.markSupported()){
+            inputStream = new BufferedInputStream(inputStream);
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;//仅计算参数, 不解码
+        inputStream.mark(markLimit);
+        BitmapFactory.decodeStream(inputStream, null, options);
+        try {
+            inputStream.reset();
+        } catch (IOException e) {
+            //头部超过markLimit
+            return null;
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0){
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight, quality);//缩放因子(整数倍)
+        options.inJustDecodeBounds = false;//解码模式
+        options.inPreferredConfig = bitmapConfig;//颜色深度
+        Bitmap inBitmap = applyInBitmap(options, inBitmapProvider);
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (IllegalArgumentException e) {
+            if (inBitmap == null) {
+                throw e;
+            }
+            //复用失败, 输入流已被消费, 无法重新解码
+            inBitmap.recycle();
+            return null;
+        }
+    }
+
     /*********************************************
      * 				转换/编辑
      *********************************************/
@@ -831,6 +1008,40 @@ public class BitmapUtils {
      * interface
      */
 
+    /**
+     * 提供可复用的Bitmap(inBitmap), 例如从Bitmap池中获取
+     */
+    public interface InBitmapProvider {
+
+        /**
+         * @param width 解码后的宽度(估算值)
+         * @param height 解码后的高度(估算值)
+         * @param config 颜色深度
+         * @return 可复用的Bitmap(mutable, 且内存大小不小于width * height * 像素字节数), 无可复用的返回null
+         */
+        Bitmap get(int width, int height, Bitmap.Config config);
+
+    }
+
+    /**
+     * 文件头过滤器, 解码前判断文件格式
+     */
+    public interface HeaderFilter {
+
+        /**
+         * @return 需要读取的文件头长度
+         */
+        int getHeaderLength();
+
+        /**
+         * @param header 文件头
+         * @param length 实际读取的长度(文件过短时小于getHeaderLength())
+         * @return true:继续解码 false:不解码, 返回null
+         */
+        boolean accept(byte[] header, int length);
+
+    }
+
     /**
      * 图片保存结束监听
      */
@@ -852,6 +1063,66 @@ public class BitmapUtils {
 
     }
 
+    /***********************************************
+     * in bitmap
+     */
+
+    /**
+     * 从provider获取可复用的Bitmap, 设置到options.inBitmap, 仅API>=19有效(KITKAT起只要求内存大小足够)
+     * @return 可复用的Bitmap, 可能为空
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static Bitmap applyInBitmap(BitmapFactory.Options options, InBitmapProvider inBitmapProvider){
+        if (inBitmapProvider == null || DeviceUtils.getVersionSDK() < Build.VERSION_CODES.KITKAT){
+            return null;
+        }
+        //解码出mutable的Bitmap, 以便之后被复用
+        options.inMutable = true;
+        if (options.outWidth <= 0 || options.outHeight <= 0){
+            return null;
+        }
+        //非2的幂次的采样率会被向下取整, 按向下取整的采样率估算尺寸
+        int sampleSize = Integer.highestOneBit(options.inSampleSize > 0 ? options.inSampleSize : 1);
+        int width = (int) Math.ceil((double) options.outWidth / sampleSize);
+        int height = (int) Math.ceil((double) options.outHeight / sampleSize);
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Config.ARGB_8888;
+        Bitmap inBitmap = inBitmapProvider.get(width, height, config);
+        if (inBitmap != null && (inBitmap.isRecycled() || !inBitmap.isMutable())){
+            inBitmap = null;
+        }
+        options.inBitmap = inBitmap;
+        return inBitmap;
+    }
+
+    /**
+     * 计算Bitmap占用内存大小
+     * @param width 宽
+     * @param height 高
+     * @param config 颜色深度
+     * @return bytes
+     */
+    public static int getByteCount(int width, int height, Bitmap.Config config){
+        int bytesPerPixel;
+        if (config == null){
+            bytesPerPixel = 4;
+        } else {
+            switch (config) {
+                case ALPHA_8:
+                    bytesPerPixel = 1;
+                    break;
+                case RGB_565:
+                case ARGB_4444:
+                    bytesPerPixel = 2;
+                    break;
+                case ARGB_8888:
+                default:
+                    bytesPerPixel = 4;
+                    break;
+            }
+        }
+        return width * height * bytesPerPixel;
+    }
+
     /***********************************************
      * in sample size
      */
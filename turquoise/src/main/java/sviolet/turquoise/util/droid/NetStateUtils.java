@@ -19,9 +19,11 @@
 
 package sviolet.turquoise.util.droid;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Build;
 import android.support.annotation.RequiresPermission;
 import android.telephony.TelephonyManager;
 
@@ -57,6 +59,20 @@ public class NetStateUtils {
 		return false;
 	}
 
+	/**
+	 * 判断当前网络是否按流量计费(如移动网络, 计费热点), API16以下非WIFI即视为计费
+	 */
+    @RequiresPermission("android.permission.ACCESS_NETWORK_STATE")
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	public static boolean isActiveNetworkMetered(Context context) {
+		ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		if (DeviceUtils.getVersionSDK() >= Build.VERSION_CODES.JELLY_BEAN) {
+			return manager.isActiveNetworkMetered();
+		}
+		NetworkInfo networkInfo = manager.getActiveNetworkInfo();
+		return networkInfo != null && networkInfo.getType() != ConnectivityManager.TYPE_WIFI;
+	}
+
 	/**
 	 * 判断网络类型
      */